@@ -0,0 +1,297 @@
+package com.judy.audiotag.audio.flac;
+
+import com.judy.audiotag.audio.exceptions.CannotReadException;
+import com.judy.audiotag.audio.flac.metadatablock.BlockType;
+import com.judy.audiotag.audio.flac.metadatablock.MetadataBlockDataSeekTable;
+import com.judy.audiotag.audio.flac.metadatablock.MetadataBlockDataStreamInfo;
+import com.judy.audiotag.audio.flac.metadatablock.MetadataBlockHeader;
+import com.judy.audiotag.audio.generic.SeekLocator;
+import com.judy.audiotag.audio.generic.SeekPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.logging.Logger;
+
+/**
+ * Find seek points in a Flac file
+ *
+ * <p>
+ * The SEEKTABLE block, when there is one, gives the closest seek point before
+ * the wanted sample. The rest of the distance is halved by reading frame
+ * headers, each of them holds the number of its first sample, until it is
+ * short enough to decode through.
+ */
+public class FlacSeekLocator implements SeekLocator {
+	// Logger Object
+	public static Logger logger = Logger.getLogger("com.judy.jaudiotagger.audio.flac");
+
+	/** Stop halving when the distance left is this many bytes */
+	private static final int BISECT_LIMIT = 64 * 1024;
+	/** How far to look for a frame header */
+	private static final int SEARCH_WINDOW = 64 * 1024;
+	/** Longest frame header, 4 fixed bytes, 7 number bytes, 2+2 extra bytes, crc */
+	private static final int MAX_HEADER_LENGTH = 16;
+
+	private final String path;
+	private final long fileLength;
+	private final long lastModified;
+	private long audioStart;
+	private long streamInfoStart;
+	private int blockSize;
+	private long[] pointSamples = new long[0];
+	private long[] pointOffsets = new long[0];
+
+	private FlacSeekLocator(File file) {
+		this.path = file.getAbsolutePath();
+		this.fileLength = file.length();
+		this.lastModified = file.lastModified();
+	}
+
+	/**
+	 * Read the metadata blocks of the file
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws CannotReadException
+	 *             if it is not a flac file
+	 */
+	public static FlacSeekLocator read(File file) throws IOException, CannotReadException {
+		FlacSeekLocator locator = new FlacSeekLocator(file);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FlacStream.findStream(raf);
+			MetadataBlockDataSeekTable seekTable = null;
+			boolean isLastBlock = false;
+			while (!isLastBlock) {
+				MetadataBlockHeader mbh = MetadataBlockHeader.readHeader(raf);
+				if (mbh.getBlockType() == BlockType.STREAMINFO) {
+					locator.streamInfoStart = raf.getFilePointer();
+					MetadataBlockDataStreamInfo mbdsi = new MetadataBlockDataStreamInfo(mbh, raf);
+					locator.blockSize = mbdsi.getMaxBlockSize();
+					raf.seek(locator.streamInfoStart + mbh.getDataLength());
+				} else if (mbh.getBlockType() == BlockType.SEEKTABLE) {
+					seekTable = new MetadataBlockDataSeekTable(mbh, raf);
+				} else {
+					raf.seek(raf.getFilePointer() + mbh.getDataLength());
+				}
+				isLastBlock = mbh.isLastBlock();
+			}
+			locator.audioStart = raf.getFilePointer();
+			if (seekTable != null) {
+				locator.setSeekTable(seekTable);
+			}
+			if (locator.streamInfoStart == 0) {
+				throw new CannotReadException("No STREAMINFO block in flac stream");
+			}
+		} finally {
+			raf.close();
+		}
+		return locator;
+	}
+
+	/**
+	 * Keep the seek points in order, dropping placeholders
+	 */
+	private void setSeekTable(MetadataBlockDataSeekTable seekTable) {
+		int n = seekTable.getNumberOfPoints();
+		long[] samples = new long[n];
+		long[] offsets = new long[n];
+		int count = 0;
+		long last = -1;
+		for (int i = 0; i < n; i++) {
+			long sample = seekTable.getSampleNumber(i);
+			long offset = audioStart + seekTable.getStreamOffset(i);
+			if (sample == MetadataBlockDataSeekTable.PLACEHOLDER || sample <= last || offset >= fileLength) {
+				continue;
+			}
+			samples[count] = sample;
+			offsets[count] = offset;
+			count++;
+			last = sample;
+		}
+		pointSamples = new long[count];
+		pointOffsets = new long[count];
+		System.arraycopy(samples, 0, pointSamples, 0, count);
+		System.arraycopy(offsets, 0, pointOffsets, 0, count);
+	}
+
+	/**
+	 *
+	 * @return true if this was read from the file as it is now
+	 */
+	public boolean isFor(File file) {
+		return path.equals(file.getAbsolutePath()) && fileLength == file.length()
+				&& lastModified == file.lastModified();
+	}
+
+	/**
+	 * The decoder only needs the fLaC marker and STREAMINFO, the other
+	 * metadata blocks, pictures for instance, are left out. An empty PADDING
+	 * block ends the metadata, some decoders rewrite STREAMINFO as not last.
+	 */
+	public byte[] getHeader() throws IOException {
+		int p = FlacStream.FLAC_STREAM_IDENTIFIER_LENGTH;
+		byte[] header = new byte[p + MetadataBlockHeader.HEADER_LENGTH * 2
+				+ MetadataBlockDataStreamInfo.STREAM_INFO_DATA_LENGTH];
+		System.arraycopy(FlacStream.FLAC_STREAM_IDENTIFIER.getBytes("ISO-8859-1"), 0, header, 0, p);
+		// Last block flag and type, then a 24 bit length
+		header[p] = (byte) BlockType.STREAMINFO.getId();
+		header[p + 3] = (byte) MetadataBlockDataStreamInfo.STREAM_INFO_DATA_LENGTH;
+		p += MetadataBlockHeader.HEADER_LENGTH;
+		RandomAccessFile raf = new RandomAccessFile(path, "r");
+		try {
+			raf.seek(streamInfoStart);
+			raf.readFully(header, p, MetadataBlockDataStreamInfo.STREAM_INFO_DATA_LENGTH);
+		} finally {
+			raf.close();
+		}
+		p += MetadataBlockDataStreamInfo.STREAM_INFO_DATA_LENGTH;
+		header[p] = (byte) (0x80 | BlockType.PADDING.getId());
+		return header;
+	}
+
+	public SeekPoint locate(long sample) throws IOException {
+		SeekPoint best = new SeekPoint(audioStart, 0);
+		long hi = fileLength;
+		for (int i = 0; i < pointSamples.length; i++) {
+			if (pointSamples[i] <= sample) {
+				best = new SeekPoint(pointOffsets[i], pointSamples[i]);
+			} else {
+				hi = pointOffsets[i];
+				break;
+			}
+		}
+		RandomAccessFile raf = new RandomAccessFile(path, "r");
+		try {
+			byte[] buffer = new byte[SEARCH_WINDOW + MAX_HEADER_LENGTH];
+			long lo = best.getOffset();
+			while (hi - lo > BISECT_LIMIT) {
+				long mid = lo + (hi - lo) / 2;
+				SeekPoint frame = findFrame(raf, buffer, mid);
+				if (frame == null || frame.getSample() > sample) {
+					hi = mid;
+				} else {
+					best = frame;
+					lo = frame.getOffset();
+				}
+			}
+		} finally {
+			raf.close();
+		}
+		return best;
+	}
+
+	/**
+	 * @return the first frame at or after the position, or null if there is
+	 *         none close to it
+	 */
+	private SeekPoint findFrame(RandomAccessFile raf, byte[] buffer, long position) throws IOException {
+		raf.seek(position);
+		int length = 0;
+		while (length < buffer.length) {
+			int n = raf.read(buffer, length, buffer.length - length);
+			if (n < 0) {
+				break;
+			}
+			length += n;
+		}
+		int last = Math.min(SEARCH_WINDOW, length - MAX_HEADER_LENGTH);
+		for (int i = 0; i < last; i++) {
+			if ((buffer[i] & 0xFF) == 0xFF && (buffer[i + 1] & 0xFE) == 0xF8) {
+				long sample = readFrameHeader(buffer, i);
+				if (sample >= 0) {
+					return new SeekPoint(position + i, sample);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check the frame header starting at i and its crc
+	 *
+	 * @return the first sample of the frame, or -1 if it is not a frame header
+	 */
+	private long readFrameHeader(byte[] b, int i) {
+		boolean variable = (b[i + 1] & 0x01) != 0;
+		int blockSizeCode = (b[i + 2] & 0xF0) >>> 4;
+		int sampleRateCode = b[i + 2] & 0x0F;
+		int channels = (b[i + 3] & 0xF0) >>> 4;
+		int sampleSize = (b[i + 3] & 0x0E) >>> 1;
+		if (blockSizeCode == 0 || sampleRateCode == 0x0F || channels > 10 || sampleSize == 3 || sampleSize == 7
+				|| (b[i + 3] & 0x01) != 0) {
+			return -1;
+		}
+		// UTF-8 like coded frame or sample number
+		int p = i + 4;
+		int first = b[p++] & 0xFF;
+		long number;
+		int more;
+		if ((first & 0x80) == 0) {
+			number = first;
+			more = 0;
+		} else if ((first & 0xE0) == 0xC0) {
+			number = first & 0x1F;
+			more = 1;
+		} else if ((first & 0xF0) == 0xE0) {
+			number = first & 0x0F;
+			more = 2;
+		} else if ((first & 0xF8) == 0xF0) {
+			number = first & 0x07;
+			more = 3;
+		} else if ((first & 0xFC) == 0xF8) {
+			number = first & 0x03;
+			more = 4;
+		} else if ((first & 0xFE) == 0xFC) {
+			number = first & 0x01;
+			more = 5;
+		} else if (first == 0xFE && variable) {
+			number = 0;
+			more = 6;
+		} else {
+			return -1;
+		}
+		for (int j = 0; j < more; j++) {
+			int c = b[p++] & 0xFF;
+			if ((c & 0xC0) != 0x80) {
+				return -1;
+			}
+			number = (number << 6) | (c & 0x3F);
+		}
+		if (blockSizeCode == 6) {
+			p += 1;
+		} else if (blockSizeCode == 7) {
+			p += 2;
+		}
+		if (sampleRateCode == 12) {
+			p += 1;
+		} else if (sampleRateCode == 13 || sampleRateCode == 14) {
+			p += 2;
+		}
+		if (crc8(b, i, p) != (b[p] & 0xFF)) {
+			return -1;
+		}
+		return variable ? number : number * blockSize;
+	}
+
+	/**
+	 * CRC-8 of the frame header, polynomial x^8 + x^2 + x^1 + x^0
+	 */
+	private static int crc8(byte[] b, int from, int to) {
+		int crc = 0;
+		for (int i = from; i < to; i++) {
+			crc ^= b[i] & 0xFF;
+			for (int j = 0; j < 8; j++) {
+				crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0x07) & 0xFF : (crc << 1) & 0xFF;
+			}
+		}
+		return crc;
+	}
+
+	public String toString() {
+		return "flac seeklocator file:" + path + " audioStart:" + audioStart + " blockSize:" + blockSize
+				+ " seekPoints:" + pointSamples.length;
+	}
+}
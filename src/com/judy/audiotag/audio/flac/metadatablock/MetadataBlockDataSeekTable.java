@@ -36,6 +36,11 @@ import java.io.IOException;
  * seek point insertion.
  */
 public class MetadataBlockDataSeekTable implements MetadataBlockData {
+	/** Each seek point is 8 bytes sample number, 8 bytes offset, 2 bytes samples */
+	public static final int SEEK_POINT_LENGTH = 18;
+	/** Sample number of a placeholder seek point */
+	public static final long PLACEHOLDER = 0xFFFFFFFFFFFFFFFFL;
+
 	private byte[] data;
 
 	public MetadataBlockDataSeekTable(MetadataBlockHeader header, RandomAccessFile raf) throws IOException {
@@ -43,6 +48,40 @@ public class MetadataBlockDataSeekTable implements MetadataBlockData {
 		raf.readFully(data);
 	}
 
+	/**
+	 *
+	 * @return number of seek points, including placeholders
+	 */
+	public int getNumberOfPoints() {
+		return data.length / SEEK_POINT_LENGTH;
+	}
+
+	/**
+	 *
+	 * @return sample number of the first sample in the target frame, or
+	 *         PLACEHOLDER
+	 */
+	public long getSampleNumber(int point) {
+		return readLong(point * SEEK_POINT_LENGTH);
+	}
+
+	/**
+	 *
+	 * @return offset in bytes from the first byte of the first frame header to
+	 *         the first byte of the target frame's header
+	 */
+	public long getStreamOffset(int point) {
+		return readLong(point * SEEK_POINT_LENGTH + 8);
+	}
+
+	private long readLong(int start) {
+		long value = 0;
+		for (int i = start; i < start + 8; i++) {
+			value = (value << 8) | (data[i] & 0xFF);
+		}
+		return value;
+	}
+
 	public byte[] getBytes() {
 		return data;
 	}
@@ -98,6 +98,14 @@ public class MetadataBlockDataStreamInfo {
 
 	}
 
+	public int getMinBlockSize() {
+		return minBlockSize & 0xFFFF;
+	}
+
+	public int getMaxBlockSize() {
+		return maxBlockSize & 0xFFFF;
+	}
+
 	public int getLength() {
 		return (int) length;
 	}
@@ -0,0 +1,40 @@
+package com.judy.audiotag.audio.generic;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Finds where to restart decoding an audio file to reach a given sample
+ *
+ * <p>
+ * Some formats can only be decoded after the headers at the start of the
+ * file, such as the FLAC STREAMINFO or the Vorbis setup, so a decoder
+ * restarted at a seek point has to be given those bytes first.
+ */
+public interface SeekLocator {
+	/**
+	 *
+	 * @return true if this was read from the file as it is now
+	 */
+	public boolean isFor(File file);
+
+	/**
+	 *
+	 * @return the bytes to feed the decoder before the seek point, empty if
+	 *         the audio can be decoded on its own
+	 * @throws IOException
+	 */
+	public byte[] getHeader() throws IOException;
+
+	/**
+	 * Find the seek point to decode from to reach the sample, it is at or
+	 * before the sample so the samples in between have to be decoded and
+	 * dropped
+	 *
+	 * @param sample
+	 *            sample per channel counted from the start of the track
+	 * @return
+	 * @throws IOException
+	 */
+	public SeekPoint locate(long sample) throws IOException;
+}
@@ -0,0 +1,38 @@
+package com.judy.audiotag.audio.generic;
+
+/**
+ * A place in an audio file where decoding can restart
+ *
+ * <p>
+ * The decoder started at the offset outputs the given sample first, samples
+ * are counted per channel from the start of the track.
+ */
+public final class SeekPoint {
+	private final long offset;
+	private final long sample;
+
+	public SeekPoint(long offset, long sample) {
+		this.offset = offset;
+		this.sample = sample;
+	}
+
+	/**
+	 *
+	 * @return byte position in the file
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 *
+	 * @return first sample decoded from the offset
+	 */
+	public long getSample() {
+		return sample;
+	}
+
+	public String toString() {
+		return "seekpoint offset:" + offset + " sample:" + sample;
+	}
+}
@@ -19,8 +19,14 @@
 package com.judy.audiotag.audio.generic;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Contains various frequently used static functions in the different tag
@@ -239,4 +245,66 @@ public class Utils {
 	public static byte[] getUTF8Bytes(String s) throws UnsupportedEncodingException {
 		return s.getBytes("UTF-8");
 	}
+
+	/**
+	 * Map part of a file read only, the channel is closed straight away
+	 * because the mapping does not need it. Call unmap() when done, otherwise
+	 * the file stays mapped until the buffer is garbage collected, and on
+	 * Windows a mapped file cannot be replaced or deleted.
+	 *
+	 * @param file
+	 * @param position
+	 *            start of the region
+	 * @param size
+	 *            length of the region, cut at the end of the file
+	 * @return the mapped region, which threads may share as long as they
+	 *         only use absolute gets or their own duplicates
+	 * @throws IOException
+	 */
+	public static MappedByteBuffer map(File file, long position, long size) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel fc = fis.getChannel();
+			size = Math.max(0, Math.min(size, fc.size() - position));
+			return fc.map(FileChannel.MapMode.READ_ONLY, position, size);
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Release a buffer returned by map() without waiting for the garbage
+	 * collector. Only do this once nothing refers to the buffer or to a slice
+	 * of it any more, touching an unmapped buffer crashes the VM. Does
+	 * nothing if the running VM does not allow it.
+	 *
+	 * @param bb
+	 */
+	public static void unmap(MappedByteBuffer bb) {
+		if (bb == null) {
+			return;
+		}
+		try {
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), bb);
+			return;
+		} catch (Exception ex) {
+			// Fall through to the older way
+		}
+		try {
+			// Java 7 and 8
+			Method cleanerMethod = bb.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(bb);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Exception ex) {
+			// Left to the garbage collector
+		}
+	}
 }
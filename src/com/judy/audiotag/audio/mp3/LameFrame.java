@@ -44,13 +44,23 @@ public class LameFrame {
 	public static final int ENCODER_SIZE = 9; // Includes LAME ID
 	public static final int LAME_ID_SIZE = 4;
 	public static final String LAME_ID = "LAME";
+	public static final int ENCODER_DELAY_OFFSET = 21; // 12 bits delay, 12 bits padding
 	private String encoder;
+	private int encoderDelay = 0;
+	private int encoderPadding = 0;
 
 	/**
 	 * Initilise a Lame Mpeg Frame
 	 */
 	private LameFrame(ByteBuffer lameHeader) {
 		encoder = Utils.getString(lameHeader, 0, ENCODER_SIZE, TextEncoding.CHARSET_ISO_8859_1);
+		if (lameHeader.limit() >= ENCODER_DELAY_OFFSET + 3) {
+			int b1 = lameHeader.get(ENCODER_DELAY_OFFSET) & 0xFF;
+			int b2 = lameHeader.get(ENCODER_DELAY_OFFSET + 1) & 0xFF;
+			int b3 = lameHeader.get(ENCODER_DELAY_OFFSET + 2) & 0xFF;
+			encoderDelay = (b1 << 4) | (b2 >> 4);
+			encoderPadding = ((b2 & 0x0F) << 8) | b3;
+		}
 	}
 
 	/**
@@ -78,4 +88,20 @@ public class LameFrame {
 	public String getEncoder() {
 		return encoder;
 	}
+
+	/**
+	 *
+	 * @return samples of silence the encoder added at the start
+	 */
+	public int getEncoderDelay() {
+		return encoderDelay;
+	}
+
+	/**
+	 *
+	 * @return samples of silence the encoder added at the end
+	 */
+	public int getEncoderPadding() {
+		return encoderPadding;
+	}
 }
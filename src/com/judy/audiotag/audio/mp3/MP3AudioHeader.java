@@ -21,12 +21,11 @@ package com.judy.audiotag.audio.mp3;
 
 import com.judy.audiotag.audio.AudioHeader;
 import com.judy.audiotag.audio.exceptions.InvalidAudioFrameException;
-import java.io.EOFException;
+import com.judy.audiotag.audio.generic.Utils;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.MappedByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -76,8 +75,6 @@ public final class MP3AudioHeader implements AudioHeader {
 	private long bitrate;
 	private String encoder = "";
 
-	private static final SimpleDateFormat timeInFormat = new SimpleDateFormat("ss");
-	private static final SimpleDateFormat timeOutFormat = new SimpleDateFormat("mm:ss");
 	private static final char isVbrIdentifier = '~';
 	private static final int CONVERT_TO_KILOBITS = 1000;
 	private static final String TYPE_MP3 = "mp3";
@@ -94,6 +91,12 @@ public final class MP3AudioHeader implements AudioHeader {
 	private final static int MIN_BUFFER_REMAINING_REQUIRED = MPEGFrameHeader.HEADER_SIZE
 			+ XingFrame.MAX_BUFFER_SIZE_NEEDED_TO_READ_XING;
 
+	/**
+	 * How much of the file is mapped at a time while looking for the first
+	 * frame, usually it is found in the first window
+	 */
+	private final static int SCAN_WINDOW_SIZE = 1 << 20;
+
 	/**
 	 * Search for the first MP3Header in the file
 	 *
@@ -137,6 +140,29 @@ public final class MP3AudioHeader implements AudioHeader {
 		}
 	}
 
+	/**
+	 * Search for the first MP3Header within part of the file already read into
+	 * memory
+	 *
+	 * @param fileName
+	 *            for logging
+	 * @param bb
+	 *            holding part of the file
+	 * @param bufferStart
+	 *            location within the file of the start of the buffer
+	 * @param startByte
+	 *            location within the file to start searching from
+	 * @param fileSize
+	 * @throws InvalidAudioFrameException
+	 *             if no frame can be found within the buffer
+	 */
+	MP3AudioHeader(String fileName, ByteBuffer bb, long bufferStart, long startByte, long fileSize)
+			throws InvalidAudioFrameException {
+		if (seek(fileName, bb, bufferStart, startByte, fileSize) == false) {
+			throw new InvalidAudioFrameException("No audio header found within" + fileName);
+		}
+	}
+
 	/**
 	 * Returns true if the first MP3 frame can be found for the MP3 file
 	 *
@@ -153,124 +179,173 @@ public final class MP3AudioHeader implements AudioHeader {
 	 * @noinspection NestedTryStatement
 	 */
 	public boolean seek(final File seekFile, long startByte) throws IOException {
-		// This is substantially faster than updating the filechannels position
-		long filePointerCount;
-
-		final FileInputStream fis = new FileInputStream(seekFile);
-		final FileChannel fc = fis.getChannel();
-
-		// Read into Byte Buffer in Chunks
-		ByteBuffer bb = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
-
-		// Move FileChannel to the starting position (skipping over tag if any)
-		fc.position(startByte);
-
-		// Update filePointerCount
-		filePointerCount = startByte;
-
-		// Read from here into the byte buffer , doesnt move location of
-		// filepointer
-		fc.read(bb, startByte);
-		bb.flip();
+		// Absolute index into the mapped window, no copying and no position
+		// changes on the window while scanning
+		long filePointerCount = startByte;
+		final long length = seekFile.length();
 
+		MappedByteBuffer bb = null;
+		long windowStart = startByte;
 		boolean syncFound = false;
 		try {
 			do {
-				if (bb.remaining() <= MIN_BUFFER_REMAINING_REQUIRED) {
-					bb.clear();
-					fc.position(filePointerCount);
-					fc.read(bb, fc.position());
-					bb.flip();
-					if (bb.limit() <= MIN_BUFFER_REMAINING_REQUIRED) {
-						// No mp3 exists
-						return false;
-					}
+				if (length - filePointerCount <= MIN_BUFFER_REMAINING_REQUIRED) {
+					// No mp3 exists
+					return false;
+				}
+				// Map the next window when the frame and the one after it
+				// might run past the end of this one
+				if (bb == null || (filePointerCount + FILE_BUFFER_SIZE > windowStart + bb.limit()
+						&& windowStart + bb.limit() < length)) {
+					Utils.unmap(bb);
+					bb = null;
+					windowStart = filePointerCount;
+					bb = Utils.map(seekFile, windowStart, SCAN_WINDOW_SIZE);
 				}
-				// MP3File.logger.finest("fc:"+fc.position() +
-				// "bb"+bb.position());
-				if (MPEGFrameHeader.isMPEGFrame(bb)) {
-					try {
-						if (MP3AudioHeader.logger.isLoggable(Level.FINEST)) {
-							MP3AudioHeader.logger.finest("Found Possible header at:" + filePointerCount);
-						}
-
-						mp3FrameHeader = MPEGFrameHeader.parseMPEGHeader(bb);
-						syncFound = true;
-						if (XingFrame.isXingFrame(bb, mp3FrameHeader)) {
-							if (MP3AudioHeader.logger.isLoggable(Level.FINEST)) {
-								MP3AudioHeader.logger.finest("Found Possible XingHeader");
-							}
-							try {
-								// Parses Xing frame without modifying position
-								// of main buffer
-								mp3XingFrame = XingFrame.parseXingFrame();
-							} catch (InvalidAudioFrameException ex) {
-								// We Ignore because even if Xing Header is
-								// corrupted
-								// doesn't mean file is corrupted
-							}
-							break;
-						}
-						// There is a small but real chance that an
-						// unsynchronised ID3 Frame could fool the MPEG
-						// Parser into thinking it was an MPEG Header. If this
-						// happens the chances of the next bytes
-						// forming a Xing frame header are very remote. On the
-						// basis that most files these days have
-						// Xing headers we do an additional check for when an
-						// apparent frame header has been found
-						// but is not followed by a Xing Header:We check the
-						// next header this wont impose a large
-						// overhead because wont apply to most Mpegs anyway (
-						// Most likely to occur if audio
-						// has an APIC frame which should have been
-						// unsynchronised but has not been) , or if the frame
-						// has been encoded with as Unicode LE because these
-						// have a BOM of 0xFF 0xFE
-						else {
-							syncFound = isNextFrameValid(seekFile, filePointerCount, bb, fc);
-							if (syncFound == true) {
-								break;
-							}
-						}
-
-					} catch (InvalidAudioFrameException ex) {
-						// We Ignore because likely to be incorrect sync bits ,
-						// will just continue in loop
-					}
+				syncFound = isFrameStart(seekFile.getName(), filePointerCount, bb,
+						(int) (filePointerCount - windowStart));
+				if (syncFound) {
+					break;
 				}
-				bb.position(bb.position() + 1);
 				filePointerCount++;
 			} while (!syncFound);
-		} catch (EOFException ex) {
-			MP3AudioHeader.logger.log(Level.WARNING, "Reached end of file without finding sync match", ex);
-			syncFound = false;
 		} catch (IOException iox) {
 			MP3AudioHeader.logger.log(Level.SEVERE, "IOException occurred whilst trying to find sync", iox);
 			syncFound = false;
 			throw iox;
 		} finally {
-			if (fc != null) {
-				fc.close();
-			}
-
-			if (fis != null) {
-				fis.close();
-			}
+			Utils.unmap(bb);
 		}
 
 		// Return to start of audio header
 		if (MP3AudioHeader.logger.isLoggable(Level.FINEST)) {
 			MP3AudioHeader.logger.finer("Return found matching mp3 header starting at" + filePointerCount);
 		}
-		setFileSize(seekFile.length());
-		setMp3StartByte(filePointerCount);
+		setAudioProperties(length, filePointerCount);
+		return syncFound;
+	}
+
+	/**
+	 * Returns true if the first MP3 frame can be found within a part of the
+	 * file already in memory
+	 *
+	 * Used when probing a file with a fixed amount of I/O. Unless the buffer
+	 * holds the rest of the file the search stops early enough that a frame
+	 * can always be checked against the next one.
+	 *
+	 * @param fileName
+	 *            for logging
+	 * @param bb
+	 *            holding part of the file
+	 * @param bufferStart
+	 *            location within the file of the start of the buffer
+	 * @param startByte
+	 *            location within the file to start searching from
+	 * @param fileSize
+	 * @return true if the first MP3 frame can be found
+	 */
+	private boolean seek(String fileName, ByteBuffer bb, long bufferStart, long startByte, long fileSize) {
+		int scanLimit;
+		if (bufferStart + bb.limit() >= fileSize) {
+			scanLimit = bb.limit() - MIN_BUFFER_REMAINING_REQUIRED;
+		} else {
+			scanLimit = bb.limit() - FILE_BUFFER_SIZE;
+		}
+		long filePointerCount = startByte;
+		while (true) {
+			int i = (int) (filePointerCount - bufferStart);
+			if (i >= scanLimit) {
+				return false;
+			}
+			if (isFrameStart(fileName, filePointerCount, bb, i)) {
+				break;
+			}
+			filePointerCount++;
+		}
+		setAudioProperties(fileSize, filePointerCount);
+		return true;
+	}
+
+	/**
+	 * Is there an MP3 frame starting at this point, if so the frame header
+	 * and any Xing frame are kept
+	 *
+	 * @param fileName
+	 *            for logging
+	 * @param filePointerCount
+	 *            location within the file
+	 * @param bb
+	 * @param i
+	 *            index of the location within the buffer
+	 * @return true if a frame starts here
+	 */
+	private boolean isFrameStart(String fileName, long filePointerCount, ByteBuffer bb, int i) {
+		int header = MPEGFrameHeader.readHeader(bb, i);
+		if (!MPEGFrameHeader.isMPEGFrame(header)) {
+			return false;
+		}
+		try {
+			if (MP3AudioHeader.logger.isLoggable(Level.FINEST)) {
+				MP3AudioHeader.logger.finest("Found Possible header at:" + filePointerCount);
+			}
+
+			mp3FrameHeader = MPEGFrameHeader.parseMPEGHeader(header);
+			bb.position(i);
+			if (XingFrame.isXingFrame(bb, mp3FrameHeader)) {
+				if (MP3AudioHeader.logger.isLoggable(Level.FINEST)) {
+					MP3AudioHeader.logger.finest("Found Possible XingHeader");
+				}
+				try {
+					// Parses Xing frame without modifying position
+					// of main buffer, copies what it needs so
+					// nothing refers to the window afterwards
+					mp3XingFrame = XingFrame.parseXingFrame();
+				} catch (InvalidAudioFrameException ex) {
+					// We Ignore because even if Xing Header is
+					// corrupted
+					// doesn't mean file is corrupted
+				}
+				return true;
+			}
+			// There is a small but real chance that an
+			// unsynchronised ID3 Frame could fool the MPEG
+			// Parser into thinking it was an MPEG Header. If this
+			// happens the chances of the next bytes
+			// forming a Xing frame header are very remote. On the
+			// basis that most files these days have
+			// Xing headers we do an additional check for when an
+			// apparent frame header has been found
+			// but is not followed by a Xing Header:We check the
+			// next header this wont impose a large
+			// overhead because wont apply to most Mpegs anyway (
+			// Most likely to occur if audio
+			// has an APIC frame which should have been
+			// unsynchronised but has not been) , or if the frame
+			// has been encoded with as Unicode LE because these
+			// have a BOM of 0xFF 0xFE
+			return isNextFrameValid(fileName, filePointerCount, bb, i);
+		} catch (InvalidAudioFrameException ex) {
+			// We Ignore because likely to be incorrect sync bits ,
+			// will just continue in loop
+			return false;
+		}
+	}
+
+	/**
+	 * Work out the audio properties once the first frame has been found
+	 *
+	 * @param fileSize
+	 * @param startByte
+	 *            location of the first frame
+	 */
+	private void setAudioProperties(long fileSize, long startByte) {
+		setFileSize(fileSize);
+		setMp3StartByte(startByte);
 		setTimePerFrame();
 		setNumberOfFrames();
 		setTrackLength();
 		setBitRate();
 		setEncoder();
-		return syncFound;
 	}
 
 	/**
@@ -279,58 +354,32 @@ public final class MP3AudioHeader implements AudioHeader {
 	 *
 	 * @return true if frame is valid
 	 */
-	private boolean isNextFrameValid(File seekFile, long filePointerCount, ByteBuffer bb, FileChannel fc)
-			throws IOException {
+	private boolean isNextFrameValid(String fileName, long filePointerCount, ByteBuffer bb, int i) {
 		if (MP3AudioHeader.logger.isLoggable(Level.FINEST)) {
-			MP3AudioHeader.logger.finer("Checking next frame" + seekFile.getName() + ":fpc:" + filePointerCount
+			MP3AudioHeader.logger.finer("Checking next frame" + fileName + ":fpc:" + filePointerCount
 					+ "skipping to:" + (filePointerCount + mp3FrameHeader.getFrameLength()));
 		}
-		boolean result = false;
-
-		int currentPosition = bb.position();
 
-		// Our buffer is not large enough to fit in the whole of this frame,
-		// something must
-		// have gone wrong because frames are not this large, so just return
-		// false
-		// bad frame header
+		// Frames are not this large, something must have gone wrong so just
+		// return false bad frame header
 		if (mp3FrameHeader.getFrameLength() > (FILE_BUFFER_SIZE - MIN_BUFFER_REMAINING_REQUIRED)) {
 			MP3AudioHeader.logger.finer("Frame size is too large to be a frame:" + mp3FrameHeader.getFrameLength());
 			return false;
 		}
 
-		// Check for end of buffer if not enough room get some more
-		if (bb.remaining() <= MIN_BUFFER_REMAINING_REQUIRED + mp3FrameHeader.getFrameLength()) {
-			MP3AudioHeader.logger.finer("Buffer too small, need to reload, buffer size:" + bb.remaining());
-			bb.clear();
-			fc.position(filePointerCount);
-			fc.read(bb, fc.position());
-			bb.flip();
-			// So now original buffer has been replaced, so set current position
-			// to start of buffer
-			currentPosition = 0;
-			if (bb.limit() <= MIN_BUFFER_REMAINING_REQUIRED) {
-				// No mp3 exists
-				MP3AudioHeader.logger.finer("Nearly at end of file, no header found:");
-				return false;
-			}
+		// The window always reaches FILE_BUFFER_SIZE past the frame unless the
+		// file ends first
+		int next = i + mp3FrameHeader.getFrameLength();
+		if (next + MPEGFrameHeader.HEADER_SIZE > bb.limit()) {
+			MP3AudioHeader.logger.finer("Nearly at end of file, no header found:");
+			return false;
 		}
-
-		// Position bb to the start of the alleged next frame
-		bb.position(bb.position() + mp3FrameHeader.getFrameLength());
-		if (MPEGFrameHeader.isMPEGFrame(bb)) {
-			try {
-				MPEGFrameHeader.parseMPEGHeader(bb);
-				MP3AudioHeader.logger.finer("Check next frame confirms is an audio header ");
-				result = true;
-			} catch (InvalidAudioFrameException ex) {
-				MP3AudioHeader.logger.finer("Check next frame has identified this is not an audio header");
-				result = false;
-			}
+		if (MPEGFrameHeader.getFrameLength(MPEGFrameHeader.readHeader(bb, next)) > 0) {
+			MP3AudioHeader.logger.finer("Check next frame confirms is an audio header ");
+			return true;
 		}
-		// Set back to the start of the previous frame
-		bb.position(currentPosition);
-		return result;
+		MP3AudioHeader.logger.finer("Check next frame has identified this is not an audio header");
+		return false;
 	}
 
 	/**
@@ -387,13 +436,38 @@ public final class MP3AudioHeader implements AudioHeader {
 		return numberOfFramesEstimate;
 	}
 
+	/**
+	 *
+	 * @return the header of the first frame, the Xing/Info frame if there is
+	 *         one
+	 */
+	public MPEGFrameHeader getMpegFrameHeader() {
+		return mp3FrameHeader;
+	}
+
+	/**
+	 *
+	 * @return the Xing/Info frame, or null if the file has none
+	 */
+	public XingFrame getXingFrame() {
+		return mp3XingFrame;
+	}
+
+	/**
+	 *
+	 * @return the number of PCM samples each frame decodes to
+	 */
+	public int getSamplesPerFrame() {
+		return (int) Math.round(timePerFrame * mp3FrameHeader.getSamplingRate());
+	}
+
 	/**
 	 * Set the time each frame contributes to the audio in fractions of seconds,
 	 * the higher the sampling rate the shorter the audio segment provided by
 	 * the frame, the number of samples is fixed by the MPEG Version and Layer
 	 */
 	private void setTimePerFrame() {
-		timePerFrame = mp3FrameHeader.getNoOfSamples() / mp3FrameHeader.getSamplingRate().doubleValue();
+		timePerFrame = mp3FrameHeader.getNoOfSamples() / (double) mp3FrameHeader.getSamplingRate();
 
 		// Because when calculating framelenggth we alter the calculation
 		// slightly for MPEGVersion2
@@ -447,8 +521,9 @@ public final class MP3AudioHeader implements AudioHeader {
 	public String getTrackLengthAsString() {
 		try {
 			final long lengthInSecs = (long) getTrackLength();
-			final Date timeIn = timeInFormat.parse(String.valueOf(lengthInSecs));
-			return timeOutFormat.format(timeIn);
+			// SimpleDateFormat is not thread safe, headers are read in parallel
+			final Date timeIn = new SimpleDateFormat("ss").parse(String.valueOf(lengthInSecs));
+			return new SimpleDateFormat("mm:ss").format(timeIn);
 		} catch (ParseException pe) {
 			return "";
 		}
@@ -22,13 +22,11 @@
 package com.judy.audiotag.audio.mp3;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.MappedByteBuffer;
 import java.util.logging.Level;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
@@ -37,6 +35,7 @@ import com.judy.audiotag.audio.AudioFile;
 import com.judy.audiotag.audio.exceptions.CannotWriteException;
 import com.judy.audiotag.audio.exceptions.InvalidAudioFrameException;
 import com.judy.audiotag.audio.exceptions.ReadOnlyFileException;
+import com.judy.audiotag.audio.generic.Utils;
 import com.judy.audiotag.logging.AbstractTagDisplayFormatter;
 import com.judy.audiotag.logging.PlainTextTagDisplayFormatter;
 import com.judy.audiotag.logging.XMLTagDisplayFormatter;
@@ -169,57 +168,47 @@ public class MP3File extends AudioFile {
 	 * @throws TagException
 	 */
 	private void readV2Tag(File file, int loadOptions) throws IOException, TagException {
-		// We know where the Actual Audio starts so load all the file from start
-		// to that point into
-		// a buffer then we can read the IDv2 information without needing any
-		// more file I/O
+		// We know where the Actual Audio starts so map all the file from start
+		// to that point then we can read the IDv2 information without needing
+		// any more file I/O or copying the tag area onto the heap
 		int startByte = (int) ((MP3AudioHeader) audioHeader).getMp3StartByte();
 		if (startByte >= AbstractID3v2Tag.TAG_HEADER_LENGTH) {
 			log.finer("Attempting to read id3v2tags");
-			FileInputStream fis = null;
-			FileChannel fc = null;
-			ByteBuffer bb = null;
+			MappedByteBuffer bb;
 			try {
-				fis = new FileInputStream(file);
-				fc = fis.getChannel();
-				// Read into Byte Buffer
-				bb = ByteBuffer.allocate(startByte);
-				fc.read(bb);
-			}catch(FileNotFoundException e){
-				
-			} finally {
-				if (fc != null) {
-					fc.close();
-				}
-				if (fis != null) {
-					fis.close();
-				}
+				bb = Utils.map(file, 0, startByte);
+			} catch (FileNotFoundException e) {
+				return;
 			}
-			//
-			bb.rewind();
-			if ((loadOptions & LOAD_IDV2TAG) != 0) {
-				log.info("Attempting to read id3v2tags");
-				try {
-					this.setID3v2Tag(new ID3v24Tag(bb, file.getName()));
-				} catch (TagNotFoundException ex) {
-					log.info("No id3v24 tag found");
-				}
+			// Frames copy their bodies out while being read, so the tags do
+			// not refer to the mapping once they are built
+			try {
+				if ((loadOptions & LOAD_IDV2TAG) != 0) {
+					log.info("Attempting to read id3v2tags");
+					try {
+						this.setID3v2Tag(new ID3v24Tag(bb, file.getName()));
+					} catch (TagNotFoundException ex) {
+						log.info("No id3v24 tag found");
+					}
 
-				try {
-					if (id3v2tag == null) {
-						this.setID3v2Tag(new ID3v23Tag(bb, file.getName()));
+					try {
+						if (id3v2tag == null) {
+							this.setID3v2Tag(new ID3v23Tag(bb, file.getName()));
+						}
+					} catch (TagNotFoundException ex) {
+						log.info("No id3v23 tag found");
 					}
-				} catch (TagNotFoundException ex) {
-					log.info("No id3v23 tag found");
-				}
 
-				try {
-					if (id3v2tag == null) {
-						this.setID3v2Tag(new ID3v22Tag(bb, file.getName()));
+					try {
+						if (id3v2tag == null) {
+							this.setID3v2Tag(new ID3v22Tag(bb, file.getName()));
+						}
+					} catch (TagNotFoundException ex) {
+						log.info("No id3v22 tag found");
 					}
-				} catch (TagNotFoundException ex) {
-					log.info("No id3v22 tag found");
 				}
+			} finally {
+				Utils.unmap(bb);
 			}
 		} else {
 			log.info("Not enough room for valid id3v2 tag:" + startByte);
@@ -409,18 +398,20 @@ public class MP3File extends AudioFile {
 		int startByte = (int) ((MP3AudioHeader) audioHeader).getMp3StartByte();
 		if (startByte >= 0) {
 
-			// Read byte into buffer
-			FileInputStream fis = new FileInputStream(file);
-			FileChannel fc = fis.getChannel();
-			ByteBuffer bb = ByteBuffer.allocate(startByte);
-			fc.read(bb);
-
-			// Write bytes to outputFile
-			FileOutputStream out = new FileOutputStream(outputFile);
-			out.write(bb.array());
-			out.close();
-			fc.close();
-			fis.close();
+			// Map the tag area and write it straight out
+			MappedByteBuffer bb = Utils.map(file, 0, startByte);
+			try {
+				FileOutputStream out = new FileOutputStream(outputFile);
+				try {
+					while (bb.hasRemaining()) {
+						out.getChannel().write(bb);
+					}
+				} finally {
+					out.close();
+				}
+			} finally {
+				Utils.unmap(bb);
+			}
 			return outputFile;
 		}
 		throw new TagNotFoundException("There is no ID3v2Tag data in this file");
@@ -675,7 +666,16 @@ public class MP3File extends AudioFile {
 					new ID3v23Tag().delete(rfile);
 					rfile.close();
 				} else {
+					long length = file.length();
 					id3v2tag.write(file, ((MP3AudioHeader) this.getAudioHeader()).getMp3StartByte());
+					// 标签放不下的时候整个文件重写过,音频往后移了,再保存的时候要用新的位置
+					if (file.length() != length && file.equals(this.file)) {
+						try {
+							audioHeader = new MP3AudioHeader(file, AbstractID3v2Tag.getV2TagSizeIfExists(file));
+						} catch (InvalidAudioFrameException ex) {
+							throw new IOException(ex);
+						}
+					}
 				}
 			}
 			rfile = new RandomAccessFile(file, "rw");
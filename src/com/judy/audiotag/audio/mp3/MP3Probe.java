@@ -0,0 +1,424 @@
+package com.judy.audiotag.audio.mp3;
+
+import com.judy.audiotag.audio.exceptions.InvalidAudioFrameException;
+import com.judy.audiotag.tag.Tag;
+import com.judy.audiotag.tag.TagException;
+import com.judy.audiotag.tag.TagNotFoundException;
+import com.judy.audiotag.tag.ape.APEv2Tag;
+import com.judy.audiotag.tag.ape.TagBody;
+import com.judy.audiotag.tag.ape.TagHead;
+import com.judy.audiotag.tag.id3.AbstractID3v2Tag;
+import com.judy.audiotag.tag.id3.ID3v11Tag;
+import com.judy.audiotag.tag.id3.ID3v1Tag;
+import com.judy.audiotag.tag.id3.ID3v22Tag;
+import com.judy.audiotag.tag.id3.ID3v23Tag;
+import com.judy.audiotag.tag.id3.ID3v24Tag;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A quick look at an MP3 file, enough to display it in a list
+ *
+ * <p>
+ * Unlike {@link MP3File}, which reads every tag and searches the file for the
+ * audio, a probe does two bounded reads: one from the start of the file
+ * holding the ID3v2 tag and the first frame with its Xing/LAME header, and one
+ * from the end holding the ID3v1 tag and any APEv2 tag. The number of bytes
+ * read from a file never exceeds the I/O budget, a tag that does not fit is
+ * only partly read. When the ID3v2 tag alone is larger than the first read a
+ * small third read is made just after it to find the first frame.
+ *
+ * <p>
+ * The result is immutable, the values of each tag are copied out of it.
+ */
+public final class MP3Probe {
+
+	/** Bytes read from a file by default */
+	public static final int DEFAULT_IO_BUDGET = 64 * 1024;
+
+	/** Smallest budget that leaves room to find and check the first frame */
+	public static final int MIN_IO_BUDGET = 32 * 1024;
+
+	// Shares of the budget kept for the read at the end of the file and for
+	// finding the first frame after an ID3v2 tag too large to read
+	private static final int TAIL_SHARE = 8;
+	private static final int FRAME_SHARE = 4;
+
+	private static final int ID3V1_SIZE = 128;
+	private static final int APE_FOOTER_SIZE = 32;
+	private static final byte[] APE_ID = { 'A', 'P', 'E', 'T', 'A', 'G', 'E', 'X' };
+
+	/**
+	 * The values of one tag, copied so they do not change if the tag does
+	 */
+	public static final class Fields {
+
+		private final String title;
+		private final String artist;
+		private final String album;
+		private final String year;
+		private final String genre;
+		private final String track;
+		private final String comment;
+
+		private Fields(Tag tag) {
+			title = tag.getFirstTitle();
+			artist = tag.getFirstArtist();
+			album = tag.getFirstAlbum();
+			year = tag.getFirstYear();
+			genre = tag.getFirstGenre();
+			track = tag.getFirstTrack();
+			comment = tag.getFirstComment();
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public String getArtist() {
+			return artist;
+		}
+
+		public String getAlbum() {
+			return album;
+		}
+
+		public String getYear() {
+			return year;
+		}
+
+		public String getGenre() {
+			return genre;
+		}
+
+		public String getTrack() {
+			return track;
+		}
+
+		public String getComment() {
+			return comment;
+		}
+	}
+
+	private final long fileSize;
+	private final long id3v2Size;
+	private final boolean id3v2Complete;
+	private final MP3AudioHeader audioHeader;
+	private final Fields id3v1;
+	private final Fields id3v2;
+	private final Fields apev2;
+	private final int bytesRead;
+
+	private MP3Probe(long fileSize, long id3v2Size, boolean id3v2Complete, MP3AudioHeader audioHeader, Fields id3v1,
+			Fields id3v2, Fields apev2, int bytesRead) {
+		this.fileSize = fileSize;
+		this.id3v2Size = id3v2Size;
+		this.id3v2Complete = id3v2Complete;
+		this.audioHeader = audioHeader;
+		this.id3v1 = id3v1;
+		this.id3v2 = id3v2;
+		this.apev2 = apev2;
+		this.bytesRead = bytesRead;
+	}
+
+	/**
+	 * Probe a file with the default I/O budget
+	 *
+	 * @param file
+	 * @return summary of the file
+	 * @throws IOException
+	 */
+	public static MP3Probe probe(File file) throws IOException {
+		return probe(file, DEFAULT_IO_BUDGET);
+	}
+
+	/**
+	 * Probe a file reading at most ioBudget bytes from it
+	 *
+	 * @param file
+	 * @param ioBudget
+	 *            most bytes to read, at least {@link #MIN_IO_BUDGET}
+	 * @return summary of the file
+	 * @throws IOException
+	 */
+	public static MP3Probe probe(File file, int ioBudget) throws IOException {
+		if (ioBudget < MIN_IO_BUDGET) {
+			throw new IllegalArgumentException("I/O budget must be at least " + MIN_IO_BUDGET + ":" + ioBudget);
+		}
+		String fileName = file.getName();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			long fileSize = fc.size();
+			int tailSize = ioBudget / TAIL_SHARE;
+			int frameSize = ioBudget / FRAME_SHARE;
+
+			// Start of the file, ID3v2 tag and first frame
+			ByteBuffer head = read(fc, 0, (int) Math.min(fileSize, ioBudget - tailSize - frameSize));
+			int bytesRead = head.limit();
+			long id3v2Size = getV2TagSize(head);
+
+			MP3AudioHeader audioHeader = null;
+			if (id3v2Size + frameSize <= head.limit() || head.limit() == fileSize) {
+				audioHeader = findAudio(fileName, head, 0, id3v2Size, fileSize);
+				if (audioHeader != null && id3v2Size > 0 && id3v2Size != audioHeader.getMp3StartByte()) {
+					// Cant agree on where the audio starts so do as MP3File
+					// does and look again from the start of the file
+					MP3File.log.warning(fileName + "ID3Tag ends at:" + id3v2Size + ":but mp3audio doesnt start until:"
+							+ audioHeader.getMp3StartByte());
+					audioHeader = findAudio(fileName, head, 0, 0, fileSize);
+				}
+			} else if (id3v2Size < fileSize) {
+				ByteBuffer frames = read(fc, id3v2Size, (int) Math.min(fileSize - id3v2Size, frameSize));
+				bytesRead += frames.limit();
+				audioHeader = findAudio(fileName, frames, id3v2Size, id3v2Size, fileSize);
+			}
+
+			long tagEnd = audioHeader != null ? audioHeader.getMp3StartByte() : id3v2Size;
+			boolean id3v2Complete = tagEnd <= head.limit();
+			Fields id3v2 = null;
+			if (tagEnd >= AbstractID3v2Tag.TAG_HEADER_LENGTH) {
+				ByteBuffer tagBuffer = head.duplicate();
+				tagBuffer.limit((int) Math.min(tagEnd, head.limit()));
+				id3v2 = readV2Tag(fileName, tagBuffer);
+			}
+
+			// End of the file, ID3v1 and APEv2 tags, taken from the first read
+			// if that reached the end
+			ByteBuffer tail;
+			if (head.limit() == fileSize) {
+				tail = head.duplicate();
+				tail.position((int) Math.max(0, fileSize - tailSize));
+				tail = tail.slice();
+			} else {
+				tail = read(fc, Math.max(head.limit(), fileSize - tailSize), tailSize);
+				bytesRead += tail.limit();
+			}
+			Fields id3v1 = readV1Tag(tail);
+			Fields apev2 = readAPEv2Tag(tail);
+
+			return new MP3Probe(fileSize, id3v2Size, id3v2Complete, audioHeader, id3v1, id3v2, apev2, bytesRead);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read part of the file
+	 *
+	 * @return buffer holding the bytes read, shorter than size if the file
+	 *         ends first
+	 */
+	private static ByteBuffer read(FileChannel fc, long position, int size) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(size);
+		while (bb.hasRemaining()) {
+			if (fc.read(bb, position + bb.position()) < 0) {
+				break;
+			}
+		}
+		bb.flip();
+		return bb;
+	}
+
+	/**
+	 * @return size of the ID3v2 tag at the start of the buffer including its
+	 *         header, 0 if there is none
+	 */
+	private static long getV2TagSize(ByteBuffer head) {
+		if (head.limit() < AbstractID3v2Tag.TAG_HEADER_LENGTH || head.get(0) != 'I' || head.get(1) != 'D'
+				|| head.get(2) != '3') {
+			return 0;
+		}
+		byte majorVersion = head.get(3);
+		if ((majorVersion != ID3v22Tag.MAJOR_VERSION) && (majorVersion != ID3v23Tag.MAJOR_VERSION)
+				&& (majorVersion != ID3v24Tag.MAJOR_VERSION)) {
+			return 0;
+		}
+		// Same as AbstractID3v2Tag.getV2TagSizeIfExists()
+		return ((head.get(6) & 0x7F) << 21 | (head.get(7) & 0x7F) << 14 | (head.get(8) & 0x7F) << 7
+				| head.get(9) & 0x7F) + AbstractID3v2Tag.TAG_HEADER_LENGTH;
+	}
+
+	/**
+	 * @return header of the first frame within the buffer, or null if there
+	 *         is none
+	 */
+	private static MP3AudioHeader findAudio(String fileName, ByteBuffer bb, long bufferStart, long startByte,
+			long fileSize) {
+		try {
+			return new MP3AudioHeader(fileName, bb, bufferStart, startByte, fileSize);
+		} catch (InvalidAudioFrameException iafe) {
+			MP3File.log.info(fileName + ":No audio header found within the bytes read");
+			return null;
+		}
+	}
+
+	private static Fields readV2Tag(String fileName, ByteBuffer bb) {
+		try {
+			return new Fields(new ID3v24Tag(bb, fileName));
+		} catch (TagException ex) {
+			MP3File.log.finer("No id3v24 tag found");
+		}
+		try {
+			return new Fields(new ID3v23Tag(bb, fileName));
+		} catch (TagException ex) {
+			MP3File.log.finer("No id3v23 tag found");
+		}
+		try {
+			return new Fields(new ID3v22Tag(bb, fileName));
+		} catch (TagException ex) {
+			MP3File.log.finer("No id3v22 tag found");
+		}
+		return null;
+	}
+
+	private static Fields readV1Tag(ByteBuffer tail) {
+		if (tail.limit() < ID3V1_SIZE) {
+			return null;
+		}
+		try {
+			ID3v1Tag tag = new ID3v11Tag();
+			tag.read(last(tail, tail.limit(), ID3V1_SIZE));
+			return new Fields(tag);
+		} catch (TagNotFoundException ex) {
+			MP3File.log.finer("No ids3v11 tag found");
+		}
+		try {
+			ID3v1Tag tag = new ID3v1Tag();
+			tag.read(last(tail, tail.limit(), ID3V1_SIZE));
+			return new Fields(tag);
+		} catch (TagNotFoundException ex) {
+			MP3File.log.finer("No id3v1 tag found");
+		}
+		return null;
+	}
+
+	/**
+	 * Look for an APEv2 tag at the end of the file or just before the ID3v1
+	 * tag, the same places APEv2Tag looks
+	 */
+	private static Fields readAPEv2Tag(ByteBuffer tail) {
+		int[] ends = { tail.limit(), tail.limit() - ID3V1_SIZE };
+		for (int end : ends) {
+			if (end < APE_FOOTER_SIZE) {
+				continue;
+			}
+			byte[] footer = new byte[APE_FOOTER_SIZE];
+			last(tail, end, APE_FOOTER_SIZE).get(footer);
+			if (!startsWith(footer, APE_ID)) {
+				continue;
+			}
+			TagHead head = new TagHead(footer);
+			if (!head.isValid()) {
+				continue;
+			}
+			if (head.getTagSize() < APE_FOOTER_SIZE || head.getTagSize() > end) {
+				MP3File.log.info("APEv2 tag is larger than the bytes read:" + head.getTagSize());
+				return null;
+			}
+			byte[] body = new byte[head.getTagSize() - APE_FOOTER_SIZE];
+			last(tail, end - APE_FOOTER_SIZE, body.length).get(body);
+			return new Fields(new APEv2Tag(head, new TagBody(body)));
+		}
+		return null;
+	}
+
+	/**
+	 * @return buffer holding the size bytes before end
+	 */
+	private static ByteBuffer last(ByteBuffer bb, int end, int size) {
+		ByteBuffer slice = bb.duplicate();
+		slice.limit(end);
+		slice.position(end - size);
+		return slice.slice();
+	}
+
+	private static boolean startsWith(byte[] data, byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++) {
+			if (data[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return size of the file in bytes
+	 */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * @return size of the ID3v2 tag according to its header, 0 if there is
+	 *         none
+	 */
+	public long getID3v2Size() {
+		return id3v2Size;
+	}
+
+	/**
+	 * @return false if the ID3v2 tag was larger than the bytes read, so only
+	 *         the frames near its start have been read
+	 */
+	public boolean isID3v2Complete() {
+		return id3v2Complete;
+	}
+
+	/**
+	 * @return the audio header worked out from the first frame, or null if no
+	 *         frame was found within the bytes read
+	 */
+	public MP3AudioHeader getAudioHeader() {
+		return audioHeader;
+	}
+
+	public boolean hasID3v1Tag() {
+		return id3v1 != null;
+	}
+
+	public boolean hasID3v2Tag() {
+		return id3v2 != null;
+	}
+
+	public boolean hasAPEv2Tag() {
+		return apev2 != null;
+	}
+
+	/**
+	 * @return values of the ID3v1 tag, or null if there is none
+	 */
+	public Fields getID3v1Fields() {
+		return id3v1;
+	}
+
+	/**
+	 * @return values of the ID3v2 tag, or null if there is none
+	 */
+	public Fields getID3v2Fields() {
+		return id3v2;
+	}
+
+	/**
+	 * @return values of the APEv2 tag, or null if there is none
+	 */
+	public Fields getAPEv2Fields() {
+		return apev2;
+	}
+
+	/**
+	 * @return how many bytes were read from the file
+	 */
+	public int getBytesRead() {
+		return bytesRead;
+	}
+
+	public String toString() {
+		return "mp3probe fileSize:" + fileSize + " id3v2Size:" + id3v2Size + " id3v2Complete:" + id3v2Complete
+				+ " id3v1:" + hasID3v1Tag() + " id3v2:" + hasID3v2Tag() + " apev2:" + hasAPEv2Tag() + " bytesRead:"
+				+ bytesRead + " audio:" + audioHeader;
+	}
+}
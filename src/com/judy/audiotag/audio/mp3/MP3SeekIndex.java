@@ -0,0 +1,477 @@
+package com.judy.audiotag.audio.mp3;
+
+import com.judy.audiotag.audio.exceptions.InvalidAudioFrameException;
+import com.judy.audiotag.audio.generic.SeekLocator;
+import com.judy.audiotag.audio.generic.SeekPoint;
+import com.judy.audiotag.tag.id3.AbstractID3v2Tag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Seek Index of an MP3 File
+ *
+ * <p>
+ * Holds the byte position of every audio frame in the file so that a position
+ * in the track can be turned into the frame boundary that starts it without
+ * reading through the frames before it. This matters for variable bit rate
+ * files, where the position of a frame can not be calculated from the bit
+ * rate.
+ *
+ * <p>
+ * Building the index reads every frame header of the file once, the result
+ * can be saved to a directory and loaded again as long as the file has not
+ * changed. Until then an estimate can be used, it only reads the first frame
+ * and places positions with the Xing Table of Contents if there is one or
+ * linearly otherwise, syncing to the next frame header found.
+ *
+ * <p>
+ * Frame 0 is the first audio frame, the Xing/Info frame is not counted.
+ */
+public final class MP3SeekIndex implements SeekLocator {
+	// Logger
+	public static Logger logger = Logger.getLogger("com.judy.jaudiotagger.audio.mp3");
+
+	private static final int MAGIC = 0x4D534958; // MSIX
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".idx";
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+	/** Enough for the largest MPEG audio frame plus the header after it */
+	private static final int MAX_FRAME_SIZE = 8192;
+	/** How far to look for a frame header when syncing an estimated position */
+	private static final int SYNC_WINDOW = 64 * 1024;
+	private static final int LONG_DELTA = 0xFFFF;
+	private static final long MICROS_PER_SECOND = 1000000L;
+	/**
+	 * Frames decoded and dropped before the wanted one, a Layer III frame may
+	 * take its data from the frames before it (bit reservoir) and overlaps
+	 * with the previous frame's output
+	 */
+	private static final int PREROLL_FRAMES = 2;
+
+	private final String path;
+	private final long fileLength;
+	private final long lastModified;
+	private final int version;
+	private final int layer;
+	private final int sampleRate;
+	private final int samplesPerFrame;
+	private final long audioStart;
+	private long[] offsets;
+	private int frameCount;
+	private XingFrame xingFrame;
+	private long xingStart;
+
+	private MP3SeekIndex(File file, int version, int layer, int sampleRate, int samplesPerFrame, long audioStart) {
+		this.path = file.getAbsolutePath();
+		this.fileLength = file.length();
+		this.lastModified = file.lastModified();
+		this.version = version;
+		this.layer = layer;
+		this.sampleRate = sampleRate;
+		this.samplesPerFrame = samplesPerFrame;
+		this.audioStart = audioStart;
+	}
+
+	/**
+	 * Read the first frame of the file, skipping over the ID3v2 tag and the
+	 * Xing frame
+	 */
+	private static MP3SeekIndex readHeader(File file) throws IOException, InvalidAudioFrameException {
+		MP3AudioHeader header = new MP3AudioHeader(file, AbstractID3v2Tag.getV2TagSizeIfExists(file));
+		MPEGFrameHeader first = header.getMpegFrameHeader();
+		long start = header.getMp3StartByte();
+		XingFrame xing = header.getXingFrame();
+		MP3SeekIndex index = new MP3SeekIndex(file, first.getVersion(), first.getLayer(), first.getSamplingRate(),
+				first.getNoOfSamples(), xing != null ? start + first.getFrameLength() : start);
+		if (xing != null) {
+			index.xingFrame = xing;
+			index.xingStart = start;
+		}
+		if (xing != null && xing.isFrameCountEnabled()) {
+			index.frameCount = xing.getFrameCount();
+		} else {
+			index.frameCount = (int) ((index.fileLength - index.audioStart) / first.getFrameLength());
+		}
+		return index;
+	}
+
+	/**
+	 * Estimate the index from the first frame only, this is quick but
+	 * positions found with it need to be synced to a frame header
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws InvalidAudioFrameException
+	 *             if no audio frame can be found
+	 */
+	public static MP3SeekIndex estimate(File file) throws IOException, InvalidAudioFrameException {
+		return readHeader(file);
+	}
+
+	/**
+	 * Build the index by reading every frame header of the file
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws InvalidAudioFrameException
+	 *             if no audio frame can be found
+	 */
+	public static MP3SeekIndex build(File file) throws IOException, InvalidAudioFrameException {
+		MP3SeekIndex index = readHeader(file);
+		long[] offsets = new long[Math.max(16, index.frameCount + 16)];
+		int count = 0;
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel fc = fis.getChannel();
+			ByteBuffer bb = ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE);
+			bb.limit(0);
+			long bufferStart = index.audioStart;
+			long position = index.audioStart;
+			long end = index.fileLength;
+			boolean synced = true;
+			while (position + MPEGFrameHeader.HEADER_SIZE <= end) {
+				if (position + MAX_FRAME_SIZE > bufferStart + bb.limit() && bufferStart + bb.limit() < end) {
+					bufferStart = position;
+					fill(fc, bb, bufferStart);
+				}
+				int i = (int) (position - bufferStart);
+				int length = index.getFrameLength(bb, i);
+				if (length > 0 && !synced) {
+					// Lost sync, only trust a header followed by another one
+					int next = i + length;
+					synced = position + length == end
+							|| (next + MPEGFrameHeader.HEADER_SIZE <= bb.limit() && index.getFrameLength(bb, next) > 0);
+				}
+				if (length > 0 && synced && position + length <= end) {
+					if (count == offsets.length) {
+						offsets = Arrays.copyOf(offsets, count * 3 / 2);
+					}
+					offsets[count++] = position;
+					position += length;
+				} else {
+					synced = false;
+					position++;
+				}
+			}
+		} finally {
+			fis.close();
+		}
+		index.offsets = Arrays.copyOf(offsets, count);
+		index.frameCount = count;
+		if (MP3SeekIndex.logger.isLoggable(Level.FINER)) {
+			MP3SeekIndex.logger.finer("Indexed " + count + " frames of " + file.getName());
+		}
+		return index;
+	}
+
+	private static void fill(FileChannel fc, ByteBuffer bb, long position) throws IOException {
+		bb.clear();
+		while (bb.hasRemaining()) {
+			if (fc.read(bb, position + bb.position()) < 0) {
+				break;
+			}
+		}
+		bb.flip();
+	}
+
+	/**
+	 * @return length of the frame starting at i, or -1 if there is no frame
+	 *         header there matching the first frame of the file
+	 */
+	private int getFrameLength(ByteBuffer bb, int i) {
+		if (i + MPEGFrameHeader.HEADER_SIZE > bb.limit()) {
+			return -1;
+		}
+		int header = MPEGFrameHeader.readHeader(bb, i);
+		if (MPEGFrameHeader.getVersion(header) != version || MPEGFrameHeader.getLayer(header) != layer
+				|| MPEGFrameHeader.getSamplingRate(header) != sampleRate) {
+			return -1;
+		}
+		int length = MPEGFrameHeader.getFrameLength(header);
+		return length > MPEGFrameHeader.HEADER_SIZE ? length : -1;
+	}
+
+	/**
+	 * Load an index saved with save(), if it is still valid for the file
+	 *
+	 * @param dir
+	 *            directory the index was saved to
+	 * @param file
+	 * @return the index, or null if there is none or the file has changed
+	 */
+	public static MP3SeekIndex load(File dir, File file) {
+		File indexFile = getIndexFile(dir, file);
+		if (!indexFile.isFile()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			if (!file.getAbsolutePath().equals(in.readUTF()) || file.length() != in.readLong()
+					|| file.lastModified() != in.readLong()) {
+				return null;
+			}
+			MP3SeekIndex index = new MP3SeekIndex(file, in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+					in.readLong());
+			int count = in.readInt();
+			long[] offsets = new long[count];
+			long position = index.audioStart;
+			for (int i = 0; i < count; i++) {
+				int delta = in.readUnsignedShort();
+				position += delta == LONG_DELTA ? in.readLong() : delta;
+				offsets[i] = position;
+			}
+			index.offsets = offsets;
+			index.frameCount = count;
+			return index;
+		} catch (IOException ex) {
+			MP3SeekIndex.logger.log(Level.FINE, "Cannot load seek index of " + file, ex);
+			return null;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ex) {
+					MP3SeekIndex.logger.log(Level.FINE, null, ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Save a built index so that load() can find it
+	 *
+	 * @param dir
+	 * @throws IOException
+	 */
+	public void save(File dir) throws IOException {
+		if (offsets == null) {
+			throw new IllegalStateException("Only a built index can be saved");
+		}
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getIndexFile(dir,
+				new File(path)))));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(path);
+			out.writeLong(fileLength);
+			out.writeLong(lastModified);
+			out.writeInt(version);
+			out.writeInt(layer);
+			out.writeInt(sampleRate);
+			out.writeInt(samplesPerFrame);
+			out.writeLong(audioStart);
+			out.writeInt(frameCount);
+			// Frame lengths fit in a short, gaps left by lost sync may not
+			long position = audioStart;
+			for (int i = 0; i < frameCount; i++) {
+				long delta = offsets[i] - position;
+				if (delta < LONG_DELTA) {
+					out.writeShort((int) delta);
+				} else {
+					out.writeShort(LONG_DELTA);
+					out.writeLong(delta);
+				}
+				position = offsets[i];
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static File getIndexFile(File dir, File file) {
+		return new File(dir, Integer.toHexString(file.getAbsolutePath().hashCode()) + SUFFIX);
+	}
+
+	/**
+	 *
+	 * @return true if this index was made from the file as it is now
+	 */
+	public boolean isFor(File file) {
+		return path.equals(file.getAbsolutePath()) && fileLength == file.length()
+				&& lastModified == file.lastModified();
+	}
+
+	/**
+	 *
+	 * @return true if every frame position is known, false for an estimate
+	 */
+	public boolean isExact() {
+		return offsets != null;
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public int getSamplesPerFrame() {
+		return samplesPerFrame;
+	}
+
+	/**
+	 *
+	 * @return byte position of the first audio frame
+	 */
+	public long getAudioStart() {
+		return audioStart;
+	}
+
+	public long getDurationMicros() {
+		return getTimeMicros(frameCount);
+	}
+
+	/**
+	 *
+	 * @return time at which the frame starts
+	 */
+	public long getTimeMicros(int frame) {
+		return (long) frame * samplesPerFrame * MICROS_PER_SECOND / sampleRate;
+	}
+
+	/**
+	 *
+	 * @return the frame playing at the given time
+	 */
+	public int getFrameAtTime(long micros) {
+		long frame = micros * sampleRate / ((long) samplesPerFrame * MICROS_PER_SECOND);
+		return (int) Math.max(0, Math.min(frame, Math.max(0, frameCount - 1)));
+	}
+
+	/**
+	 * Get the byte position of the frame playing at the given time
+	 *
+	 * @param micros
+	 * @return byte position of a frame header
+	 * @throws IOException
+	 *             if an estimate can not be synced
+	 */
+	public long getOffsetAtTime(long micros) throws IOException {
+		if (offsets != null) {
+			return frameCount > 0 ? offsets[getFrameAtTime(micros)] : audioStart;
+		}
+		long duration = getDurationMicros();
+		double fraction = duration > 0 ? Math.min(1.0, Math.max(0.0, (double) micros / duration)) : 0;
+		long position;
+		double toc = xingFrame != null && xingFrame.isAudioSizeEnabled() ? xingFrame.getTocPosition(fraction * 100) : -1;
+		if (toc >= 0) {
+			position = Math.max(audioStart, xingStart + (long) (toc * xingFrame.getAudioSize()));
+		} else {
+			position = audioStart + (long) (fraction * (fileLength - audioStart));
+		}
+		return getFrameOffset(position);
+	}
+
+	/**
+	 * MP3 frames carry their own headers, the decoder needs nothing else
+	 */
+	public byte[] getHeader() {
+		return new byte[0];
+	}
+
+	/**
+	 * Find the frame to decode from, a couple of frames before the one holding
+	 * the sample. For an estimate the sample of the frame found is approximate
+	 */
+	public SeekPoint locate(long sample) throws IOException {
+		if (frameCount <= 0) {
+			return new SeekPoint(audioStart, 0);
+		}
+		int frame = (int) Math.max(0, Math.min(sample / samplesPerFrame, frameCount - 1) - PREROLL_FRAMES);
+		long offset = offsets != null ? offsets[frame] : getOffsetAtTime(getTimeMicros(frame));
+		return new SeekPoint(offset, (long) frame * samplesPerFrame);
+	}
+
+	/**
+	 * Get the frame boundary for a byte position, the start of the frame that
+	 * contains it, or for an estimate the next frame header after it
+	 *
+	 * @param position
+	 *            byte position in the file
+	 * @return byte position of a frame header
+	 * @throws IOException
+	 *             if an estimate can not be synced
+	 */
+	public long getFrameOffset(long position) throws IOException {
+		if (position <= audioStart) {
+			return audioStart;
+		}
+		if (offsets != null) {
+			return frameCount > 0 ? offsets[getFrameAtOffset(position)] : audioStart;
+		}
+		return sync(position);
+	}
+
+	/**
+	 *
+	 * @return the frame containing the byte position, only for an exact index
+	 */
+	public int getFrameAtOffset(long position) {
+		if (offsets == null) {
+			if (fileLength <= audioStart) {
+				return 0;
+			}
+			return (int) Math.min(frameCount, (long) frameCount * (position - audioStart) / (fileLength - audioStart));
+		}
+		int i = Arrays.binarySearch(offsets, 0, frameCount, position);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		return Math.max(0, i);
+	}
+
+	/**
+	 * Find the first frame header at or after the position, checking that
+	 * another header follows it
+	 */
+	private long sync(long position) throws IOException {
+		FileInputStream fis = new FileInputStream(path);
+		try {
+			FileChannel fc = fis.getChannel();
+			ByteBuffer bb = ByteBuffer.allocate(SYNC_WINDOW + MAX_FRAME_SIZE);
+			fill(fc, bb, position);
+			int last = Math.min(SYNC_WINDOW, bb.limit());
+			for (int i = 0; i < last; i++) {
+				int length = getFrameLength(bb, i);
+				if (length > 0 && (position + i + length >= fileLength || getFrameLength(bb, i + length) > 0)) {
+					return position + i;
+				}
+			}
+		} finally {
+			fis.close();
+		}
+		throw new IOException("No frame header found after " + position + " in " + path);
+	}
+
+	/**
+	 *
+	 * @return a string represntation
+	 */
+	public String toString() {
+		return "mp3 seekindex" + " file:" + path + " exact:" + isExact() + " frames:" + frameCount + " samplingRate:"
+				+ sampleRate + " samplesPerFrame:" + samplesPerFrame + " audioStart:" + audioStart;
+	}
+}
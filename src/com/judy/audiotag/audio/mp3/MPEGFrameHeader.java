@@ -13,8 +13,6 @@ import com.judy.audiotag.audio.exceptions.InvalidAudioFrameException;
 import com.judy.audiotag.logging.AbstractTagDisplayFormatter;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Represents a MPEGFrameHeader, an MP3 is made up of a number of frames each
@@ -38,36 +36,30 @@ public class MPEGFrameHeader {
 	public static final int SYNC_BYTE1 = 0xFF;
 	public static final int SYNC_BYTE2 = 0xE0;
 
-	private static int position = 0;
-	private static final byte[] header = new byte[HEADER_SIZE];
 
 	/**
 	 * Constants for MPEG Version
 	 */
-	public static final Map<Integer, String> mpegVersionMap = new HashMap<Integer, String>();
 	public final static int VERSION_2_5 = 0;
 	public final static int VERSION_2 = 2;
 	public final static int VERSION_1 = 3;
 
-	static {
-		mpegVersionMap.put(VERSION_2_5, "MPEG-2.5");
-		mpegVersionMap.put(VERSION_2, "MPEG-2");
-		mpegVersionMap.put(VERSION_1, "MPEG-1");
-	}
+	/**
+	 * Version names indexed by the two version bits, null for the reserved value
+	 */
+	private static final String[] VERSION_NAMES = { "MPEG-2.5", null, "MPEG-2", "MPEG-1" };
 
 	/**
 	 * Constants for MPEG Layer
 	 */
-	public static final Map<Integer, String> mpegLayerMap = new HashMap<Integer, String>();
 	public final static int LAYER_I = 3;
 	public final static int LAYER_II = 2;
 	public final static int LAYER_III = 1;
 
-	static {
-		mpegLayerMap.put(LAYER_I, "Layer 1");
-		mpegLayerMap.put(LAYER_II, "Layer 2");
-		mpegLayerMap.put(LAYER_III, "Layer 3");
-	}
+	/**
+	 * Layer names indexed by the two layer bits, null for the reserved value
+	 */
+	private static final String[] LAYER_NAMES = { null, "Layer 3", "Layer 2", "Layer 1" };
 
 	/**
 	 * Slot Size is dependent on Layer
@@ -77,209 +69,71 @@ public class MPEGFrameHeader {
 	public final static int LAYER_III_SLOT_SIZE = 1;
 
 	/**
-	 * Bit Rates, the setBitrate varies for different Version and Layer
+	 * Bit Rates in kbps, the setBitrate varies for different Version and Layer.
+	 * Indexed by the bitrate bits of the third byte or'ed with the id and layer
+	 * bits of the second byte, 0 marks free format and bad values
 	 */
-	private static final Map<Integer, Integer> bitrateMap = new HashMap<Integer, Integer>();
+	private static final int[] BITRATES = new int[256];
 
 	static {
 		// MPEG-1, Layer I (E)
-		bitrateMap.put(0x1E, 32);
-		bitrateMap.put(0x2E, 64);
-		bitrateMap.put(0x3E, 96);
-		bitrateMap.put(0x4E, 128);
-		bitrateMap.put(0x5E, 160);
-		bitrateMap.put(0x6E, 192);
-		bitrateMap.put(0x7E, 224);
-		bitrateMap.put(0x8E, 256);
-		bitrateMap.put(0x9E, 288);
-		bitrateMap.put(0xAE, 320);
-		bitrateMap.put(0xBE, 352);
-		bitrateMap.put(0xCE, 384);
-		bitrateMap.put(0xDE, 416);
-		bitrateMap.put(0xEE, 448);
+		setBitrates(0x0E, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448);
 		// MPEG-1, Layer II (C)
-		bitrateMap.put(0x1C, 32);
-		bitrateMap.put(0x2C, 48);
-		bitrateMap.put(0x3C, 56);
-		bitrateMap.put(0x4C, 64);
-		bitrateMap.put(0x5C, 80);
-		bitrateMap.put(0x6C, 96);
-		bitrateMap.put(0x7C, 112);
-		bitrateMap.put(0x8C, 128);
-		bitrateMap.put(0x9C, 160);
-		bitrateMap.put(0xAC, 192);
-		bitrateMap.put(0xBC, 224);
-		bitrateMap.put(0xCC, 256);
-		bitrateMap.put(0xDC, 320);
-		bitrateMap.put(0xEC, 384);
+		setBitrates(0x0C, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384);
 		// MPEG-1, Layer III (A)
-		bitrateMap.put(0x1A, 32);
-		bitrateMap.put(0x2A, 40);
-		bitrateMap.put(0x3A, 48);
-		bitrateMap.put(0x4A, 56);
-		bitrateMap.put(0x5A, 64);
-		bitrateMap.put(0x6A, 80);
-		bitrateMap.put(0x7A, 96);
-		bitrateMap.put(0x8A, 112);
-		bitrateMap.put(0x9A, 128);
-		bitrateMap.put(0xAA, 160);
-		bitrateMap.put(0xBA, 192);
-		bitrateMap.put(0xCA, 224);
-		bitrateMap.put(0xDA, 256);
-		bitrateMap.put(0xEA, 320);
+		setBitrates(0x0A, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320);
 		// MPEG-2, Layer I (6)
-		bitrateMap.put(0x16, 32);
-		bitrateMap.put(0x26, 48);
-		bitrateMap.put(0x36, 56);
-		bitrateMap.put(0x46, 64);
-		bitrateMap.put(0x56, 80);
-		bitrateMap.put(0x66, 96);
-		bitrateMap.put(0x76, 112);
-		bitrateMap.put(0x86, 128);
-		bitrateMap.put(0x96, 144);
-		bitrateMap.put(0xA6, 160);
-		bitrateMap.put(0xB6, 176);
-		bitrateMap.put(0xC6, 192);
-		bitrateMap.put(0xD6, 224);
-		bitrateMap.put(0xE6, 256);
+		setBitrates(0x06, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256);
 		// MPEG-2, Layer II (4)
-		bitrateMap.put(0x14, 8);
-		bitrateMap.put(0x24, 16);
-		bitrateMap.put(0x34, 24);
-		bitrateMap.put(0x44, 32);
-		bitrateMap.put(0x54, 40);
-		bitrateMap.put(0x64, 48);
-		bitrateMap.put(0x74, 56);
-		bitrateMap.put(0x84, 64);
-		bitrateMap.put(0x94, 80);
-		bitrateMap.put(0xA4, 96);
-		bitrateMap.put(0xB4, 112);
-		bitrateMap.put(0xC4, 128);
-		bitrateMap.put(0xD4, 144);
-		bitrateMap.put(0xE4, 160);
+		setBitrates(0x04, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160);
 		// MPEG-2, Layer III (2)
-		bitrateMap.put(0x12, 8);
-		bitrateMap.put(0x22, 16);
-		bitrateMap.put(0x32, 24);
-		bitrateMap.put(0x42, 32);
-		bitrateMap.put(0x52, 40);
-		bitrateMap.put(0x62, 48);
-		bitrateMap.put(0x72, 56);
-		bitrateMap.put(0x82, 64);
-		bitrateMap.put(0x92, 80);
-		bitrateMap.put(0xA2, 96);
-		bitrateMap.put(0xB2, 112);
-		bitrateMap.put(0xC2, 128);
-		bitrateMap.put(0xD2, 144);
-		bitrateMap.put(0xE2, 160);
+		setBitrates(0x02, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160);
+	}
+
+	private static void setBitrates(int versionAndLayer, int... rates) {
+		for (int i = 0; i < rates.length; i++) {
+			BITRATES[((i + 1) << 4) | versionAndLayer] = rates[i];
+		}
 	}
 
 	/**
 	 * Constants for Channel mode
 	 */
-	protected static final Map<Integer, String> modeMap = new HashMap<Integer, String>();
 	public final static int MODE_STEREO = 0;
 	public final static int MODE_JOINT_STEREO = 1;
 	public final static int MODE_DUAL_CHANNEL = 2;
 	public final static int MODE_MONO = 3;
 
-	static {
-		modeMap.put(MODE_STEREO, "Stereo");
-		modeMap.put(MODE_JOINT_STEREO, "Joint Stereo");
-		modeMap.put(MODE_DUAL_CHANNEL, "Dual");
-		modeMap.put(MODE_MONO, "Mono");
-	}
+	private static final String[] MODE_NAMES = { "Stereo", "Joint Stereo", "Dual", "Mono" };
 
 	/**
 	 * Constants for Emphasis
 	 */
-	private static final Map<Integer, String> emphasisMap = new HashMap<Integer, String>();
 	public final static int EMPHASIS_NONE = 0;
 	public final static int EMPHASIS_5015MS = 1;
 	public final static int EMPHASIS_RESERVED = 2;
 	public final static int EMPHASIS_CCITT = 3;
 
-	static {
-		emphasisMap.put(EMPHASIS_NONE, "None");
-		emphasisMap.put(EMPHASIS_5015MS, "5015MS");
-		emphasisMap.put(EMPHASIS_RESERVED, "Reserved");
-		emphasisMap.put(EMPHASIS_CCITT, "CCITT");
-	}
-
-	private static final Map<Integer, String> modeExtensionMap = new HashMap<Integer, String>();
-	private final static int MODE_EXTENSION_NONE = 0;
-	private final static int MODE_EXTENSION_ONE = 1;
-	private final static int MODE_EXTENSION_TWO = 2;
-	private final static int MODE_EXTENSION_THREE = 3;
-
-	private static final Map<Integer, String> modeExtensionLayerIIIMap = new HashMap<Integer, String>();
-	private final static int MODE_EXTENSION_OFF_OFF = 0;
-	private final static int MODE_EXTENSION_ON_OFF = 1;
-	private final static int MODE_EXTENSION_OFF_ON = 2;
-	private final static int MODE_EXTENSION_ON_ON = 3;
-
-	static {
-		modeExtensionMap.put(MODE_EXTENSION_NONE, "4-31");
-		modeExtensionMap.put(MODE_EXTENSION_ONE, "8-31");
-		modeExtensionMap.put(MODE_EXTENSION_TWO, "12-31");
-		modeExtensionMap.put(MODE_EXTENSION_THREE, "16-31");
-
-		modeExtensionLayerIIIMap.put(MODE_EXTENSION_OFF_OFF, "off-off");
-		modeExtensionLayerIIIMap.put(MODE_EXTENSION_ON_OFF, "on-off");
-		modeExtensionLayerIIIMap.put(MODE_EXTENSION_OFF_ON, "off-on");
-		modeExtensionLayerIIIMap.put(MODE_EXTENSION_ON_ON, "on-on");
-	}
+	private static final String[] EMPHASIS_NAMES = { "None", "5015MS", "Reserved", "CCITT" };
 
 	/**
-	 * Sampling Rate in Hz
+	 * Mode extension names indexed by the two mode extension bits
 	 */
-	private static final Map<Integer, Map<Integer, Integer>> samplingRateMap = new HashMap<Integer, Map<Integer, Integer>>();
-	private static final Map<Integer, Integer> samplingV1Map = new HashMap<Integer, Integer>();
-	private static final Map<Integer, Integer> samplingV2Map = new HashMap<Integer, Integer>();
-	private static final Map<Integer, Integer> samplingV25Map = new HashMap<Integer, Integer>();
-
-	static {
-		samplingV1Map.put(0, 44100);
-		samplingV1Map.put(1, 48000);
-		samplingV1Map.put(2, 32000);
-
-		samplingV2Map.put(0, 22050);
-		samplingV2Map.put(1, 24000);
-		samplingV2Map.put(2, 16000);
-
-		samplingV25Map.put(0, 11025);
-		samplingV25Map.put(1, 12000);
-		samplingV25Map.put(2, 8000);
-
-		samplingRateMap.put(VERSION_1, samplingV1Map);
-		samplingRateMap.put(VERSION_2, samplingV2Map);
-		samplingRateMap.put(VERSION_2_5, samplingV25Map);
-	}
-
-	/* Samples Per Frame */
-	private static final Map<Integer, Map<Integer, Integer>> samplesPerFrameMap = new HashMap<Integer, Map<Integer, Integer>>();
-	private static final Map<Integer, Integer> samplesPerFrameV1Map = new HashMap<Integer, Integer>();
-	private static final Map<Integer, Integer> samplesPerFrameV2Map = new HashMap<Integer, Integer>();
-	private static final Map<Integer, Integer> samplesPerFrameV25Map = new HashMap<Integer, Integer>();
-
-	static {
-		samplesPerFrameV1Map.put(LAYER_I, 384);
-		samplesPerFrameV1Map.put(LAYER_II, 1152);
-		samplesPerFrameV1Map.put(LAYER_III, 1152);
+	private static final String[] MODE_EXTENSION_NAMES = { "4-31", "8-31", "12-31", "16-31" };
 
-		samplesPerFrameV2Map.put(LAYER_I, 384);
-		samplesPerFrameV2Map.put(LAYER_II, 1152);
-		samplesPerFrameV2Map.put(LAYER_III, 1152);
+	private static final String[] MODE_EXTENSION_LAYER_III_NAMES = { "off-off", "on-off", "off-on", "on-on" };
 
-		samplesPerFrameV25Map.put(LAYER_I, 384);
-		samplesPerFrameV25Map.put(LAYER_II, 1152);
-		samplesPerFrameV25Map.put(LAYER_III, 1152);
-
-		samplesPerFrameMap.put(VERSION_1, samplesPerFrameV1Map);
-		samplesPerFrameMap.put(VERSION_2, samplesPerFrameV2Map);
-		samplesPerFrameMap.put(VERSION_2_5, samplesPerFrameV25Map);
+	/**
+	 * Sampling Rate in Hz, indexed by version then by the two frequency bits,
+	 * 0 marks reserved values
+	 */
+	private static final int[][] SAMPLING_RATES = { { 11025, 12000, 8000, 0 }, { 0, 0, 0, 0 },
+			{ 22050, 24000, 16000, 0 }, { 44100, 48000, 32000, 0 } };
 
-	}
+	/**
+	 * Samples Per Frame, indexed by layer, the same for every version
+	 */
+	private static final int[] SAMPLES_PER_FRAME = { 0, 1152, 1152, 384 };
 
 	private static final int SCALE_BY_THOUSAND = 1000;
 	private static final int LAYER_I_FRAME_SIZE_COEFFICIENT = 12;
@@ -354,78 +208,37 @@ public class MPEGFrameHeader {
 	 */
 	private static final int MASK_MP3_EMPHASIS = FileConstants.BIT1 | FileConstants.BIT0;
 
-	private byte[] mpegBytes;
+	/**
+	 * The four header bytes, first byte in the top bits
+	 */
+	private final int header;
 
 	/**
 	 * The version of this MPEG frame (see the constants)
 	 */
-	private int version;
-
-	private String versionAsString;
+	private final int version;
 
 	/**
 	 * Contains the mpeg layer of this frame (see constants)
 	 */
-	private int layer;
+	private final int layer;
 
-	private String layerAsString;
 	/**
 	 * Bitrate of this frame
 	 */
-	private Integer bitRate;
+	private final int bitRate;
 
-	/**
-	 * Channel Mode of this Frame (see constants)
-	 */
-	private int channelMode;
+	private final int samplingRate;
 
 	/**
-	 * Channel Mode of this Frame As English String
+	 * Channel Mode of this Frame (see constants)
 	 */
-	private String channelModeAsString;
+	private final int channelMode;
 
 	/**
 	 * Emphasis of this frame
 	 */
-	private int emphasis;
-
-	/**
-	 *
-	 * Emphasis mode string
-	 */
-	private String emphasisAsString;
-
-	/**
-	 * Mode Extension
-	 */
-	private String modeExtension;
-
-	/**
-	 * Flag indicating if this frame has padding byte
-	 */
-	private boolean isPadding;
-
-	/**
-	 * Flag indicating if this frame contains copyrighted material
-	 */
-	private boolean isCopyrighted;
-
-	/**
-	 * Flag indicating if this frame contains original material
-	 */
-	private boolean isOriginal;
-
-	/**
-	 * Flag indicating if this frame is protected
-	 */
-	private boolean isProtected;
-
-	/**
-	 * Flag indicating if this frame is private
-	 */
-	private boolean isPrivate;
-
-	private Integer samplingRate;
+	private final int emphasis;
 
 	/**
 	 * Gets the layerVersion attribute of the MPEGFrame object
@@ -437,139 +250,7 @@ public class MPEGFrameHeader {
 	}
 
 	public String getLayerAsString() {
-		return layerAsString;
-	}
-
-	/**
-	 * Gets the copyrighted attribute of the MPEGFrame object
-	 */
-	private void setCopyrighted() {
-		isCopyrighted = (mpegBytes[BYTE_4] & MASK_MP3_COPY) != 0;
-	}
-
-	/**
-	 * Set the version of this frame as an int value (see constants)
-	 */
-	private void setVersion() throws InvalidAudioFrameException {
-		// MPEG Version
-		version = (byte) ((mpegBytes[BYTE_2] & MASK_MP3_VERSION) >> 3);
-		versionAsString = (String) mpegVersionMap.get(version);
-		if (versionAsString == null) {
-			throw new InvalidAudioFrameException("Invalid mpeg version");
-		}
-	}
-
-	/**
-	 * Sets the original attribute of the MPEGFrame object
-	 */
-	private void setOriginal() {
-		isOriginal = (mpegBytes[BYTE_4] & MASK_MP3_HOME) != 0;
-	}
-
-	/**
-	 * Sets the protected attribute of the MPEGFrame object
-	 */
-	private void setProtected() {
-		isProtected = (mpegBytes[BYTE_2] & MASK_MP3_PROTECTION) == 0x00;
-	}
-
-	/**
-	 * Sets the private attribute of the MPEGFrame object
-	 */
-	private void setPrivate() {
-		isPrivate = (mpegBytes[BYTE_3] & MASK_MP3_PRIVACY) != 0;
-	}
-
-	/**
-	 * Get the setBitrate of this frame
-	 */
-	private void setBitrate() throws InvalidAudioFrameException {
-		/*
-		 * BitRate, get by checking header setBitrate bits and MPEG Version and
-		 * Layer
-		 */
-		int bitRateIndex = mpegBytes[BYTE_3] & MASK_MP3_BITRATE | mpegBytes[BYTE_2] & MASK_MP3_ID
-				| mpegBytes[BYTE_2] & MASK_MP3_LAYER;
-
-		bitRate = (Integer) bitrateMap.get(bitRateIndex);
-		if (bitRate == null) {
-			throw new InvalidAudioFrameException("Invalid bitrate");
-		}
-	}
-
-	/**
-	 * Set the Mpeg channel mode of this frame as a constant (see constants)
-	 */
-	private void setChannelMode() throws InvalidAudioFrameException {
-		channelMode = (mpegBytes[BYTE_4] & MASK_MP3_MODE) >>> 6;
-		channelModeAsString = (String) modeMap.get(channelMode);
-		if (channelModeAsString == null) {
-			throw new InvalidAudioFrameException("Invalid channel mode");
-		}
-	}
-
-	/**
-	 * Get the setEmphasis mode of this frame in a string representation
-	 */
-	private void setEmphasis() throws InvalidAudioFrameException {
-		emphasis = mpegBytes[BYTE_4] & MASK_MP3_EMPHASIS;
-		emphasisAsString = (String) emphasisMap.get(emphasis);
-		if (getEmphasisAsString() == null) {
-			throw new InvalidAudioFrameException("Invalid emphasis");
-		}
-	}
-
-	/**
-	 * Set whether this frame uses padding bytes
-	 */
-	private void setPadding() {
-		isPadding = (mpegBytes[BYTE_3] & MASK_MP3_PADDING) != 0;
-	}
-
-	/**
-	 * Get the layer version of this frame as a constant int value (see
-	 * constants)
-	 */
-	private void setLayer() throws InvalidAudioFrameException {
-		layer = (mpegBytes[BYTE_2] & MASK_MP3_LAYER) >>> 1;
-		layerAsString = (String) mpegLayerMap.get(layer);
-		if (layerAsString == null) {
-			throw new InvalidAudioFrameException("Invalid Layer");
-		}
-	}
-
-	/**
-	 * Sets the string representation of the mode extension of this frame
-	 */
-	private void setModeExtension() throws InvalidAudioFrameException {
-		int index = (mpegBytes[BYTE_4] & MASK_MP3_MODE_EXTENSION) >> 4;
-		if (layer == LAYER_III) {
-			modeExtension = (String) modeExtensionLayerIIIMap.get(index);
-			if (getModeExtension() == null) {
-				throw new InvalidAudioFrameException("Invalid Mode Extension");
-			}
-		} else {
-			modeExtension = (String) modeExtensionMap.get(index);
-			if (getModeExtension() == null) {
-				throw new InvalidAudioFrameException("Invalid Mode Extension");
-			}
-		}
-	}
-
-	/**
-	 * set the sampling rate in Hz of this frame
-	 */
-	private void setSamplingRate() throws InvalidAudioFrameException {
-		// Frequency
-		int index = (mpegBytes[BYTE_3] & MASK_MP3_FREQUENCY) >>> 2;
-		HashMap<?, ?> samplingRateMapForVersion = (HashMap<?, ?>) samplingRateMap.get(version);
-		if (samplingRateMapForVersion == null) {
-			throw new InvalidAudioFrameException("Invalid version");
-		}
-		samplingRate = (Integer) (samplingRateMapForVersion.get(new Integer(index)));
-		if (samplingRate == null) {
-			throw new InvalidAudioFrameException("Invalid sampling rate");
-		}
+		return LAYER_NAMES[layer];
 	}
 
 	/**
@@ -597,7 +278,7 @@ public class MPEGFrameHeader {
 	}
 
 	public String getChannelModeAsString() {
-		return channelModeAsString;
+		return MODE_NAMES[channelMode];
 	}
 
 	/**
@@ -610,7 +291,7 @@ public class MPEGFrameHeader {
 	}
 
 	public String getVersionAsString() {
-		return versionAsString;
+		return VERSION_NAMES[version];
 	}
 
 	/**
@@ -626,11 +307,11 @@ public class MPEGFrameHeader {
 		}
 	}
 
-	public Integer getBitRate() {
+	public int getBitRate() {
 		return bitRate;
 	}
 
-	public Integer getSamplingRate() {
+	public int getSamplingRate() {
 		return samplingRate;
 	}
 
@@ -646,49 +327,20 @@ public class MPEGFrameHeader {
 	 * 
 	 */
 	public int getFrameLength() {
-		switch (version) {
-		case VERSION_2:
-		case VERSION_2_5:
-			switch (layer) {
-			case LAYER_I:
-				return (LAYER_I_FRAME_SIZE_COEFFICIENT * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength()) * LAYER_I_SLOT_SIZE;
-
-			case LAYER_II:
-				return (LAYER_II_FRAME_SIZE_COEFFICIENT / 2) * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength() * LAYER_II_SLOT_SIZE;
-
-			case LAYER_III:
-				return (LAYER_III_FRAME_SIZE_COEFFICIENT / 2) * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength() * LAYER_III_SLOT_SIZE;
-
-			default:
-				return (LAYER_III_FRAME_SIZE_COEFFICIENT / 2) * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength() * LAYER_III_SLOT_SIZE;
-
-			}
-
-		default:
-
-			switch (layer) {
-			case LAYER_I:
-				return (LAYER_I_FRAME_SIZE_COEFFICIENT * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength()) * LAYER_I_SLOT_SIZE;
-
-			case LAYER_II:
-				return LAYER_II_FRAME_SIZE_COEFFICIENT * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength() * LAYER_II_SLOT_SIZE;
-
-			case LAYER_III:
-				return LAYER_III_FRAME_SIZE_COEFFICIENT * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength() * LAYER_III_SLOT_SIZE;
-
-			default:
-				return LAYER_III_FRAME_SIZE_COEFFICIENT * (getBitRate() * SCALE_BY_THOUSAND) / getSamplingRate()
-						+ getPaddingLength() * LAYER_III_SLOT_SIZE;
+		return getFrameLength(version, layer, bitRate, samplingRate, getPaddingLength());
+	}
 
-			}
+	private static int getFrameLength(int version, int layer, int bitRate, int samplingRate, int padding) {
+		if (layer == LAYER_I) {
+			return (LAYER_I_FRAME_SIZE_COEFFICIENT * (bitRate * SCALE_BY_THOUSAND) / samplingRate + padding)
+					* LAYER_I_SLOT_SIZE;
+		}
+		int coefficient = layer == LAYER_II ? LAYER_II_FRAME_SIZE_COEFFICIENT : LAYER_III_FRAME_SIZE_COEFFICIENT;
+		int slotSize = layer == LAYER_II ? LAYER_II_SLOT_SIZE : LAYER_III_SLOT_SIZE;
+		if (version == VERSION_2 || version == VERSION_2_5) {
+			coefficient = coefficient / 2;
 		}
+		return coefficient * (bitRate * SCALE_BY_THOUSAND) / samplingRate + padding * slotSize;
 	}
 
 	/**
@@ -696,28 +348,27 @@ public class MPEGFrameHeader {
 	 * number of samples as defined by their MPEG Versiona and Layer
 	 */
 	public int getNoOfSamples() {
-		Integer noOfSamples = (Integer) ((HashMap<?, ?>) samplesPerFrameMap.get(version)).get(new Integer(layer));
-		return noOfSamples;
+		return SAMPLES_PER_FRAME[layer];
 	}
 
 	public boolean isPadding() {
-		return isPadding;
+		return (byte3(header) & MASK_MP3_PADDING) != 0;
 	}
 
 	public boolean isCopyrighted() {
-		return isCopyrighted;
+		return (byte4(header) & MASK_MP3_COPY) != 0;
 	}
 
 	public boolean isOriginal() {
-		return isOriginal;
+		return (byte4(header) & MASK_MP3_HOME) != 0;
 	}
 
 	public boolean isProtected() {
-		return isProtected;
+		return (byte2(header) & MASK_MP3_PROTECTION) == 0x00;
 	}
 
 	public boolean isPrivate() {
-		return isPrivate;
+		return (byte3(header) & MASK_MP3_PRIVACY) != 0;
 	}
 
 	public boolean isVariableBitRate() {
@@ -729,43 +380,131 @@ public class MPEGFrameHeader {
 	}
 
 	public String getEmphasisAsString() {
-		return emphasisAsString;
+		return EMPHASIS_NAMES[emphasis];
 	}
 
 	public String getModeExtension() {
-		return modeExtension;
+		int index = (byte4(header) & MASK_MP3_MODE_EXTENSION) >> 4;
+		if (layer == LAYER_III) {
+			return MODE_EXTENSION_LAYER_III_NAMES[index];
+		}
+		return MODE_EXTENSION_NAMES[index];
 	}
 
 	/**
-	 * Hide Constructor
+	 * Try and create a new MPEG frame with the given header bits and decodes
+	 * its contents If decoding header causes a problem it is not a valid header
+	 *
+	 * @param header
+	 *            the four header bytes, first byte in the top bits
+	 * @throws InvalidAudioFrameException
+	 *             if does not match expected format
 	 */
-	private MPEGFrameHeader() throws InvalidAudioFrameException {
+	private MPEGFrameHeader(int header) throws InvalidAudioFrameException {
+		this.header = header;
+		version = getVersion(header);
+		if (VERSION_NAMES[version] == null) {
+			throw new InvalidAudioFrameException("Invalid mpeg version");
+		}
+		layer = getLayer(header);
+		if (LAYER_NAMES[layer] == null) {
+			throw new InvalidAudioFrameException("Invalid Layer");
+		}
+		bitRate = getBitRate(header);
+		if (bitRate == 0) {
+			throw new InvalidAudioFrameException("Invalid bitrate");
+		}
+		samplingRate = getSamplingRate(header);
+		if (samplingRate == 0) {
+			throw new InvalidAudioFrameException("Invalid sampling rate");
+		}
+		channelMode = (byte4(header) & MASK_MP3_MODE) >>> 6;
+		emphasis = byte4(header) & MASK_MP3_EMPHASIS;
+	}
 
+	private static int byte2(int header) {
+		return (header >>> 16) & 0xFF;
+	}
+
+	private static int byte3(int header) {
+		return (header >>> 8) & 0xFF;
+	}
+
+	private static int byte4(int header) {
+		return header & 0xFF;
+	}
+
+	/**
+	 * @param header
+	 *            the four header bytes
+	 * @return the version bits of the header (see the constants)
+	 */
+	public static int getVersion(int header) {
+		return (byte2(header) & MASK_MP3_VERSION) >>> 3;
+	}
+
+	/**
+	 * @param header
+	 *            the four header bytes
+	 * @return the layer bits of the header (see the constants)
+	 */
+	public static int getLayer(int header) {
+		return (byte2(header) & MASK_MP3_LAYER) >>> 1;
+	}
+
+	/**
+	 * @param header
+	 *            the four header bytes
+	 * @return the bitrate in kbps, or 0 if it is free format or invalid
+	 */
+	public static int getBitRate(int header) {
+		return BITRATES[byte3(header) & MASK_MP3_BITRATE | byte2(header) & (MASK_MP3_ID | MASK_MP3_LAYER)];
+	}
+
+	/**
+	 * @param header
+	 *            the four header bytes
+	 * @return the sampling rate in Hz, or 0 if it is invalid
+	 */
+	public static int getSamplingRate(int header) {
+		return SAMPLING_RATES[getVersion(header)][(byte3(header) & MASK_MP3_FREQUENCY) >>> 2];
 	}
 
 	/**
-	 * Try and create a new MPEG frame with the given byte array and decodes its
-	 * contents If decoding header causes a problem it is not a valid header
+	 * Decode the length of a frame straight from the header bits, so that a
+	 * scan does not have to create a header for every frame
 	 *
-	 * @param b
-	 *            the array of bytes representing this mpeg frame
-	 * @throws InvalidAudioFrameException
-	 *             if does not match expected format
+	 * @param header
+	 *            the four header bytes
+	 * @return the frame length in bytes, or -1 if this is not a valid header
 	 */
-	private MPEGFrameHeader(byte[] b) throws InvalidAudioFrameException {
-		mpegBytes = b;
-		setVersion();
-		setLayer();
-		setProtected();
-		setBitrate();
-		setSamplingRate();
-		setPadding();
-		setPrivate();
-		setChannelMode();
-		setModeExtension();
-		setCopyrighted();
-		setOriginal();
-		setEmphasis();
+	public static int getFrameLength(int header) {
+		if (!isMPEGFrame(header)) {
+			return -1;
+		}
+		int version = getVersion(header);
+		int layer = getLayer(header);
+		int bitRate = getBitRate(header);
+		int samplingRate = getSamplingRate(header);
+		if (VERSION_NAMES[version] == null || LAYER_NAMES[layer] == null || bitRate == 0 || samplingRate == 0) {
+			return -1;
+		}
+		return getFrameLength(version, layer, bitRate, samplingRate, (byte3(header) & MASK_MP3_PADDING) != 0 ? 1
+				: 0);
+	}
+
+	/**
+	 * Read the four header bytes at an absolute position, neither the position
+	 * nor the byte order of the buffer is used or changed so buffers can be
+	 * shared between threads that only read
+	 *
+	 * @param bb
+	 * @param position
+	 * @return the header bits, first byte in the top bits
+	 */
+	public static int readHeader(ByteBuffer bb, int position) {
+		return (bb.get(position) & 0xFF) << 24 | (bb.get(position + 1) & 0xFF) << 16
+				| (bb.get(position + 2) & 0xFF) << 8 | bb.get(position + 3) & 0xFF;
 	}
 
 	/**
@@ -779,12 +518,34 @@ public class MPEGFrameHeader {
 	 *             if there is no header at this point
 	 */
 	public static MPEGFrameHeader parseMPEGHeader(ByteBuffer bb) throws InvalidAudioFrameException {
-		int position = bb.position();
-		bb.get(header, 0, HEADER_SIZE);
-		bb.position(position);
-		MPEGFrameHeader frameHeader = new MPEGFrameHeader(header);
+		return new MPEGFrameHeader(readHeader(bb, bb.position()));
+	}
 
-		return frameHeader;
+	/**
+	 * Parse the MPEGFrameHeader held in the first four bytes of the array
+	 *
+	 * @param b
+	 *            the header bytes
+	 * @return
+	 * @throws InvalidAudioFrameException
+	 *             if there is no header in the array
+	 */
+	public static MPEGFrameHeader parseMPEGHeader(byte[] b) throws InvalidAudioFrameException {
+		return new MPEGFrameHeader((b[BYTE_1] & 0xFF) << 24 | (b[BYTE_2] & 0xFF) << 16 | (b[BYTE_3] & 0xFF) << 8
+				| b[BYTE_4] & 0xFF);
+	}
+
+	/**
+	 * Parse the MPEGFrameHeader from header bits read with readHeader()
+	 *
+	 * @param header
+	 *            the four header bytes
+	 * @return
+	 * @throws InvalidAudioFrameException
+	 *             if these are not valid header bits
+	 */
+	public static MPEGFrameHeader parseMPEGHeader(int header) throws InvalidAudioFrameException {
+		return new MPEGFrameHeader(header);
 	}
 
 	/**
@@ -793,23 +554,32 @@ public class MPEGFrameHeader {
 	 * @return The mPEGFrame value
 	 */
 	public static boolean isMPEGFrame(ByteBuffer bb) {
-		position = bb.position();
+		int position = bb.position();
 		return (((bb.get(position) & SYNC_BYTE1) == SYNC_BYTE1) && ((bb.get(position + 1) & SYNC_BYTE2) == SYNC_BYTE2));
 
 	}
 
+	/**
+	 * @param header
+	 *            the four header bytes
+	 * @return true if the header starts with the sync bits
+	 */
+	public static boolean isMPEGFrame(int header) {
+		return (header >>> 21) == 0x7FF;
+	}
+
 	/**
 	 *
 	 * @return a string represntation
 	 */
 	public String toString() {
-		return " mpeg frameheader:" + " version:" + versionAsString + " layer:" + layerAsString + " noOfSamples:"
-				+ getNoOfSamples() + " samplingRate:" + samplingRate + " isPadding:" + isPadding + " isProtected:"
-				+ isProtected + " isPrivate:" + isPrivate + " isCopyrighted:" + isCopyrighted + " isOriginal:"
-				+ isCopyrighted + " isVariableBitRate" + this.isVariableBitRate() + " header as binary:"
-				+ AbstractTagDisplayFormatter.displayAsBinary(mpegBytes[BYTE_1])
-				+ AbstractTagDisplayFormatter.displayAsBinary(mpegBytes[BYTE_2])
-				+ AbstractTagDisplayFormatter.displayAsBinary(mpegBytes[BYTE_3])
-				+ AbstractTagDisplayFormatter.displayAsBinary(mpegBytes[BYTE_4]);
+		return " mpeg frameheader:" + " version:" + getVersionAsString() + " layer:" + getLayerAsString()
+				+ " noOfSamples:" + getNoOfSamples() + " samplingRate:" + samplingRate + " isPadding:" + isPadding()
+				+ " isProtected:" + isProtected() + " isPrivate:" + isPrivate() + " isCopyrighted:" + isCopyrighted()
+				+ " isOriginal:" + isCopyrighted() + " isVariableBitRate" + this.isVariableBitRate()
+				+ " header as binary:" + AbstractTagDisplayFormatter.displayAsBinary((byte) (header >>> 24))
+				+ AbstractTagDisplayFormatter.displayAsBinary((byte) byte2(header))
+				+ AbstractTagDisplayFormatter.displayAsBinary((byte) byte3(header))
+				+ AbstractTagDisplayFormatter.displayAsBinary((byte) byte4(header));
 	}
 }
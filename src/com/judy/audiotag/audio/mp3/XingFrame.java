@@ -36,6 +36,7 @@ public class XingFrame {
 	private static final int XING_FLAG_BUFFER_SIZE = 4;
 	private static final int XING_FRAMECOUNT_BUFFER_SIZE = 4;
 	private static final int XING_AUDIOSIZE_BUFFER_SIZE = 4;
+	private static final int XING_TOC_BUFFER_SIZE = 100;
 
 	public static final int MAX_BUFFER_SIZE_NEEDED_TO_READ_XING = MPEG_VERSION_1_MODE_STEREO_OFFSET
 			+ XING_HEADER_BUFFER_SIZE + LameFrame.LAME_HEADER_BUFFER_SIZE;
@@ -51,18 +52,23 @@ public class XingFrame {
 	/** Use when it is a CBR (Constant Bitrate) file */
 	private static final byte[] XING_CBR_ID = { 'I', 'n', 'f', 'o' };
 
-	private static ByteBuffer header;
-	private static XingFrame xingFrame = null;
+	/** The buffer isXingFrame found, parseXingFrame reads it on the same thread */
+	private static final ThreadLocal<ByteBuffer> candidate = new ThreadLocal<ByteBuffer>();
+
+	private ByteBuffer header;
 
 	private boolean vbr = false;
 	private boolean isFrameCountEnabled = false;
 	private int frameCount = -1;
 	private boolean isAudioSizeEnabled = false;
 	private int audioSize = -1;
+
+	private byte[] toc;
 	private LameFrame lameFrame;
 
 	/** Read the Xing Properties from the buffer */
-	private XingFrame() {
+	private XingFrame(ByteBuffer header) {
+		this.header = header;
 		// Go to start of Buffer
 		header.rewind();
 
@@ -83,7 +89,10 @@ public class XingFrame {
 			setAudioSize();
 		}
 
-		// TODO TOC
+		// Read Table of Contents if flag set
+		if ((flagBuffer[BYTE_4] & (byte) (1 << 2)) != 0) {
+			setToc();
+		}
 		// TODO VBR Quality
 
 		// Look for LAME Header as long as we have enough bytes to do it
@@ -92,6 +101,7 @@ public class XingFrame {
 			header.position(XING_HEADER_BUFFER_SIZE);
 			lameFrame = LameFrame.parseLameFrame(header);
 		}
+		this.header = null;
 	}
 
 	public LameFrame getLameFrame() {
@@ -166,6 +176,47 @@ public class XingFrame {
 		return audioSize;
 	}
 
+	/**
+	 * Set the Table of Contents, 100 entries each giving the position in the
+	 * audio (scaled to 0-255) reached at that percentage of the track length
+	 */
+	private void setToc() {
+		toc = new byte[XING_TOC_BUFFER_SIZE];
+		header.get(toc);
+	}
+
+	/**
+	 *
+	 * @return true if the Table of Contents has been specified in header
+	 */
+	public final boolean isTocEnabled() {
+		return toc != null;
+	}
+
+	/**
+	 * Get the byte position of a point in the track using the Table of
+	 * Contents, interpolating between entries
+	 *
+	 * @param percent
+	 *            position in the track as a percentage of its length (0-100)
+	 * @return position as a fraction of the audio size (0-1), or -1 if there
+	 *         is no Table of Contents
+	 */
+	public final double getTocPosition(double percent) {
+		if (toc == null) {
+			return -1;
+		}
+		if (percent < 0) {
+			percent = 0;
+		} else if (percent > 99.999) {
+			percent = 99.999;
+		}
+		int index = (int) percent;
+		double a = toc[index] & 0xFF;
+		double b = index < XING_TOC_BUFFER_SIZE - 1 ? toc[index + 1] & 0xFF : 256;
+		return (a + (b - a) * (percent - index)) / 256;
+	}
+
 	/**
 	 * Parse the XingFrame of an MP3File, cannot be called until we have
 	 * validated that this is a XingFrame
@@ -174,8 +225,12 @@ public class XingFrame {
 	 * @throws InvalidAudioFrameException
 	 */
 	public static XingFrame parseXingFrame() throws InvalidAudioFrameException {
-		xingFrame = new XingFrame();
-		return xingFrame;
+		ByteBuffer header = candidate.get();
+		candidate.remove();
+		if (header == null) {
+			throw new InvalidAudioFrameException("No Xing frame found on this thread");
+		}
+		return new XingFrame(header);
 	}
 
 	/**
@@ -206,7 +261,7 @@ public class XingFrame {
 		}
 
 		// Create header from here
-		header = bb.slice();
+		ByteBuffer header = bb.slice();
 
 		// Return Buffer to start Point
 		bb.position(startPosition);
@@ -218,6 +273,7 @@ public class XingFrame {
 			return false;
 		}
 		MP3File.log.finest("Found Xing Frame");
+		candidate.set(header);
 		return true;
 	}
 
@@ -0,0 +1,199 @@
+package com.judy.audiotag.audio.ogg;
+
+import com.judy.audiotag.audio.exceptions.CannotReadException;
+import com.judy.audiotag.audio.generic.SeekLocator;
+import com.judy.audiotag.audio.generic.SeekPoint;
+import com.judy.audiotag.audio.ogg.util.OggPageHeader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.logging.Logger;
+
+/**
+ * Find seek points in an Ogg Vorbis file
+ *
+ * <p>
+ * Every page holds the granule position, for vorbis the sample count, at its
+ * end. The file is halved on pages of the first logical stream until the
+ * distance left is short, then walked page by page. The point returned is the
+ * start of the page following the last page ending at or before the wanted
+ * sample, the decoder drops the first packet there so this is accurate to one
+ * vorbis packet.
+ */
+public class OggSeekLocator implements SeekLocator {
+	// Logger Object
+	public static Logger logger = Logger.getLogger("com.judy.jaudiotagger.audio.ogg");
+
+	/** Stop halving when the distance left is this many bytes */
+	private static final int BISECT_LIMIT = 64 * 1024;
+	/** Granule of pages on which no packet ends */
+	private static final long NO_GRANULE = -1;
+
+	private final String path;
+	private final long fileLength;
+	private final long lastModified;
+	private int serialNumber;
+	private long audioStart;
+
+	private OggSeekLocator(File file) {
+		this.path = file.getAbsolutePath();
+		this.fileLength = file.length();
+		this.lastModified = file.lastModified();
+	}
+
+	/**
+	 * Read the header pages of the file
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws CannotReadException
+	 *             if it is not an ogg file
+	 */
+	public static OggSeekLocator read(File file) throws IOException, CannotReadException {
+		OggSeekLocator locator = new OggSeekLocator(file);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			OggPageHeader pageHeader = OggPageHeader.read(raf);
+			locator.serialNumber = pageHeader.getSerialNumber();
+			// The vorbis headers are on pages of their own with granule 0
+			while (getGranule(pageHeader) == 0) {
+				raf.seek(raf.getFilePointer() + pageHeader.getPageLength());
+				if (raf.getFilePointer() >= locator.fileLength) {
+					throw new CannotReadException("No audio pages in ogg stream");
+				}
+				pageHeader = OggPageHeader.read(raf);
+			}
+			locator.audioStart = raf.getFilePointer() - pageHeader.getRawHeaderData().length;
+		} finally {
+			raf.close();
+		}
+		return locator;
+	}
+
+	/**
+	 *
+	 * @return true if this was read from the file as it is now
+	 */
+	public boolean isFor(File file) {
+		return path.equals(file.getAbsolutePath()) && fileLength == file.length()
+				&& lastModified == file.lastModified();
+	}
+
+	/**
+	 * The decoder needs the identification, comment and setup headers, so all
+	 * the pages before the first audio page
+	 */
+	public byte[] getHeader() throws IOException {
+		byte[] header = new byte[(int) audioStart];
+		RandomAccessFile raf = new RandomAccessFile(path, "r");
+		try {
+			raf.readFully(header);
+		} finally {
+			raf.close();
+		}
+		return header;
+	}
+
+	public SeekPoint locate(long sample) throws IOException {
+		SeekPoint best = new SeekPoint(audioStart, 0);
+		RandomAccessFile raf = new RandomAccessFile(path, "r");
+		try {
+			byte[] buffer = new byte[OggPageHeader.MAXIMUM_PAGE_SIZE + OggPageHeader.MAXIMUM_PAGE_HEADER_SIZE];
+			long lo = audioStart;
+			long hi = fileLength;
+			while (hi - lo > BISECT_LIMIT) {
+				long mid = lo + (hi - lo) / 2;
+				SeekPoint page = findPage(raf, buffer, mid, hi);
+				if (page == null || page.getSample() > sample) {
+					hi = mid;
+				} else {
+					best = page;
+					lo = page.getOffset();
+				}
+			}
+			// Walk the pages left
+			long position = best.getOffset();
+			while (position < fileLength) {
+				SeekPoint page = findPage(raf, buffer, position, fileLength);
+				if (page == null || page.getSample() > sample) {
+					break;
+				}
+				best = page;
+				position = page.getOffset();
+			}
+		} finally {
+			raf.close();
+		}
+		return best;
+	}
+
+	/**
+	 * Find the first page of the stream at or after the position that has a
+	 * granule, pages before limit only
+	 *
+	 * @return the start of the page after it and its granule, or null
+	 */
+	private SeekPoint findPage(RandomAccessFile raf, byte[] buffer, long position, long limit) throws IOException {
+		while (position < limit) {
+			raf.seek(position);
+			int length = 0;
+			while (length < buffer.length) {
+				int n = raf.read(buffer, length, buffer.length - length);
+				if (n < 0) {
+					break;
+				}
+				length += n;
+			}
+			int last = length - OggPageHeader.OGG_PAGE_HEADER_FIXED_LENGTH;
+			int i = 0;
+			while (i < last && position + i < limit) {
+				if (buffer[i] != 'O' || buffer[i + 1] != 'g' || buffer[i + 2] != 'g' || buffer[i + 3] != 'S'
+						|| buffer[i + OggPageHeader.FIELD_STREAM_STRUCTURE_VERSION_POS] != 0) {
+					i++;
+					continue;
+				}
+				int segments = buffer[i + OggPageHeader.FIELD_PAGE_SEGMENTS_POS] & 0xFF;
+				int headerLength = OggPageHeader.OGG_PAGE_HEADER_FIXED_LENGTH + segments;
+				if (i + headerLength > length) {
+					break;
+				}
+				byte[] b = new byte[headerLength];
+				System.arraycopy(buffer, i, b, 0, headerLength);
+				OggPageHeader pageHeader = new OggPageHeader(b);
+				long end = position + i + headerLength + pageHeader.getPageLength();
+				if (pageHeader.getSerialNumber() != serialNumber || end > fileLength) {
+					i++;
+					continue;
+				}
+				long granule = getGranule(pageHeader);
+				if (granule != NO_GRANULE) {
+					return new SeekPoint(end, granule);
+				}
+				i += headerLength + pageHeader.getPageLength();
+			}
+			if (length < buffer.length) {
+				break;
+			}
+			position += Math.max(i, 1);
+		}
+		return null;
+	}
+
+	/**
+	 * The granule as a long, getAbsoluteGranulePosition() is a double
+	 */
+	private static long getGranule(OggPageHeader pageHeader) {
+		byte[] b = pageHeader.getRawHeaderData();
+		long granule = 0;
+		for (int i = OggPageHeader.FIELD_ABSOLUTE_GRANULE_LENGTH - 1; i >= 0; i--) {
+			granule = (granule << 8) | (b[OggPageHeader.FIELD_ABSOLUTE_GRANULE_POS + i] & 0xFF);
+		}
+		return granule;
+	}
+
+	public String toString() {
+		return "ogg seeklocator file:" + path + " audioStart:" + audioStart + " serial:" + serialNumber;
+	}
+}
@@ -35,10 +35,10 @@ public class OggCRCFactory
     public static Logger logger = Logger.getLogger("com.judy.jaudiotagger.audio.ogg");
 
     private static long[] crc_lookup = new long[256];
-    private static boolean init = false;
+    private static volatile boolean init = false;
 
 
-    public static void init()
+    public static synchronized void init()
     {
         for (int i = 0; i < 256; i++)
         {
@@ -189,6 +189,20 @@ public class TagOptionSingleton {
 	 */
 	private boolean unsyncTags = false;
 
+	/**
+	 * Only keep the bytes of each ID3v2 frame body when reading a tag, the
+	 * body is decoded the first time it is used and frames that are never
+	 * looked at are written back unchanged
+	 */
+	private boolean id3v2LazyFrameBodies = true;
+
+	/**
+	 * Bytes of padding added when an ID3v2 tag no longer fits before the audio
+	 * and the file has to be rewritten, so that later edits can be written in
+	 * place
+	 */
+	private int id3v2PaddingReserve = 2048;
+
 	/**
 	 * iTunes needlessly writes null terminators at the end for
 	 * TextEncodedStringSizeTerminated values, if this option is enabled these
@@ -763,6 +777,8 @@ public class TagOptionSingleton {
 		replaceWordMap = new HashMap<String, String>();
 		timeStampFormat = 2;
 		unsyncTags = false;
+		id3v2LazyFrameBodies = true;
+		id3v2PaddingReserve = 2048;
 		removeTrailingTerminatorOnWrite = true;
 		id3v23DefaultTextEncoding = TextEncoding.ISO_8859_1;
 		id3v24DefaultTextEncoding = TextEncoding.ISO_8859_1;
@@ -913,6 +929,42 @@ public class TagOptionSingleton {
 		this.unsyncTags = unsyncTags;
 	}
 
+	/**
+	 * @return are ID3v2 frame bodies only decoded when they are first used
+	 */
+	public boolean isId3v2LazyFrameBodies() {
+		return id3v2LazyFrameBodies;
+	}
+
+	/**
+	 * @param id3v2LazyFrameBodies
+	 *            set whether ID3v2 frame bodies are only decoded when they are
+	 *            first used, rather than all of them when the tag is read
+	 */
+	public void setId3v2LazyFrameBodies(boolean id3v2LazyFrameBodies) {
+		this.id3v2LazyFrameBodies = id3v2LazyFrameBodies;
+	}
+
+	/**
+	 * @return bytes of padding added when an ID3v2 tag has to grow
+	 */
+	public int getId3v2PaddingReserve() {
+		return id3v2PaddingReserve;
+	}
+
+	/**
+	 * @param id3v2PaddingReserve
+	 *            bytes of padding added when an ID3v2 tag no longer fits
+	 *            before the audio, the larger it is the more edits can be
+	 *            written without rewriting the file
+	 */
+	public void setId3v2PaddingReserve(int id3v2PaddingReserve) {
+		if (id3v2PaddingReserve < 0) {
+			throw new IllegalArgumentException("Padding reserve cannot be negative:" + id3v2PaddingReserve);
+		}
+		this.id3v2PaddingReserve = id3v2PaddingReserve;
+	}
+
 	/**
 	 * Do we remove unneccessary trailing null characters on write
 	 *
@@ -55,6 +55,18 @@ public class APEv2Tag implements Tag {
 		map = new HashMap<String, String>();
 	}
 
+	/**
+	 * 用已经读到内存里的标签尾和标签内容构造,不用再去读文件
+	 * @param head 标签尾
+	 * @param body 标签尾前面的内容
+	 */
+	public APEv2Tag(TagHead head, TagBody body) {
+		map = new HashMap<String, String>();
+		this.head = head;
+		this.body = body;
+		readTag();
+	}
+
 	/**
 	 * load
 	 * @throws IOException
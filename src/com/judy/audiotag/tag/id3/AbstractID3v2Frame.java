@@ -27,6 +27,7 @@ import com.judy.audiotag.tag.InvalidTagException;
 import com.judy.audiotag.tag.TagField;
 import com.judy.audiotag.tag.TagOptionSingleton;
 import com.judy.audiotag.tag.id3.framebody.AbstractID3v2FrameBody;
+import com.judy.audiotag.tag.id3.framebody.FrameBodyFactory;
 import com.judy.audiotag.tag.id3.framebody.FrameBodyUnsupported;
 
 /**
@@ -60,6 +61,18 @@ public abstract class AbstractID3v2Frame extends AbstractTagFrame implements Tag
 	// when processing many files
 	private String loggingFilename = "";
 
+	// Body of a frame read in lazy mode, decoded into frameBody the first time
+	// the body is asked for. The bytes are copied out of the tag buffer so the
+	// frame never refers to the buffer, which may be memory mapped.
+	private byte[] rawBody;
+
+	// Identifier to decode rawBody with, can differ from the frame identifier
+	private String rawBodyIdentifier;
+
+	// Set when rawBody could not be decoded, read eagerly the frame would
+	// have been dropped instead
+	private boolean bodyInvalid;
+
 	/**
 	 * Create an empty frame
 	 */
@@ -101,26 +114,11 @@ public abstract class AbstractID3v2Frame extends AbstractTagFrame implements Tag
 		logger.info("Creating empty frame of type" + identifier);
 		this.identifier = identifier;
 
-		// Use reflection to map id to frame body, which makes things much
-		// easier
-		// to keep things up to date.
-		try {
-			Class<?> c = Class.forName("com.judy.audiotag.tag.id3.framebody.FrameBody" + identifier);
-			frameBody = (AbstractID3v2FrameBody) c.newInstance();
-		} catch (ClassNotFoundException cnfe) {
-			logger.severe(cnfe.getMessage());
+		frameBody = FrameBodyFactory.newBody(identifier);
+		if (frameBody == null) {
+			logger.severe("No framebody for identifier:" + identifier);
 			frameBody = new FrameBodyUnsupported(identifier);
 		}
-		// Instantiate Interface/Abstract should not happen
-		catch (InstantiationException ie) {
-			logger.log(Level.SEVERE, "InstantiationException:" + identifier, ie);
-			throw new RuntimeException(ie);
-		}
-		// Private Constructor shouild not happen
-		catch (IllegalAccessException iae) {
-			logger.log(Level.SEVERE, "IllegalAccessException:" + identifier, iae);
-			throw new RuntimeException(iae);
-		}
 		frameBody.setHeader(this);
 		if (this instanceof ID3v24Frame) {
 			frameBody.setTextEncoding(TagOptionSingleton.getInstance().getId3v24DefaultTextEncoding());
@@ -191,69 +189,149 @@ public abstract class AbstractID3v2Frame extends AbstractTagFrame implements Tag
 	 */
 	protected AbstractID3v2FrameBody readBody(String identifier, ByteBuffer byteBuffer, int frameSize)
 			throws InvalidFrameException {
-		// Use reflection to map id to frame body, which makes things much
-		// easier
-		// to keep things up to date,although slight performance hit.
 		logger.finest("Creating framebody:start");
 
 		AbstractID3v2FrameBody frameBody;
 		try {
-			Class<?> c = Class.forName("com.judy.audiotag.tag.id3.framebody.FrameBody" + identifier);
-			Class<?>[] constructorParameterTypes = { ((Class<?>) Class.forName("java.nio.ByteBuffer")), Integer.TYPE };
-			Object[] constructorParameterValues = { byteBuffer, frameSize };
-			Constructor<?> construct = c.getConstructor(constructorParameterTypes);
-			frameBody = (AbstractID3v2FrameBody) (construct.newInstance(constructorParameterValues));
-		}
-		// No class defined for this frame type,use FrameUnsupported
-		catch (ClassNotFoundException cex) {
-			logger.info(getLoggingFilename() + ":" + "Identifier not recognised:" + identifier
-					+ " using FrameBodyUnsupported");
-			try {
+			frameBody = FrameBodyFactory.readBody(identifier, byteBuffer, frameSize);
+			// No class defined for this frame type,use FrameUnsupported
+			if (frameBody == null) {
+				logger.info(getLoggingFilename() + ":" + "Identifier not recognised:" + identifier
+						+ " using FrameBodyUnsupported");
 				frameBody = new FrameBodyUnsupported(byteBuffer, frameSize);
 			}
-			// Should only throw InvalidFrameException but unfortunately legacy
-			// hierachy forces
-			// read method to declare it can throw InvalidtagException
-			catch (InvalidFrameException ife) {
-				throw ife;
-			} catch (InvalidTagException te) {
-				throw new InvalidFrameException(te.getMessage());
-			}
 		}
-		// An error has occurred during frame instantiation, if underlying cause
-		// is an unchecked exception or error
-		// propagate it up otherwise mark this frame as invalid
-		catch (InvocationTargetException ite) {
-			logger.severe(getLoggingFilename() + ":" + "An error occurred within abstractID3v2FrameBody for identifier:"
-					+ identifier + ":" + ite.getCause().getMessage());
-			if (ite.getCause() instanceof Error) {
-				throw (Error) ite.getCause();
-			} else if (ite.getCause() instanceof RuntimeException) {
-				throw (RuntimeException) ite.getCause();
-			} else {
-				throw new InvalidFrameException(ite.getCause().getMessage());
-			}
-		}
-		// No Such Method should not happen
-		catch (NoSuchMethodException sme) {
-			logger.log(Level.SEVERE, getLoggingFilename() + ":" + "No such method:" + sme.getMessage(), sme);
-			throw new RuntimeException(sme.getMessage());
-		}
-		// Instantiate Interface/Abstract should not happen
-		catch (InstantiationException ie) {
-			logger.log(Level.SEVERE, getLoggingFilename() + ":" + "Instantiation exception:" + ie.getMessage(), ie);
-			throw new RuntimeException(ie.getMessage());
-		}
-		// Private Constructor shouild not happen
-		catch (IllegalAccessException iae) {
-			logger.log(Level.SEVERE, getLoggingFilename() + ":" + "Illegal access exception :" + iae.getMessage(), iae);
-			throw new RuntimeException(iae.getMessage());
+		// Should only throw InvalidFrameException but unfortunately legacy
+		// hierachy forces read method to declare it can throw
+		// InvalidtagException
+		catch (InvalidFrameException ife) {
+			throw ife;
+		} catch (InvalidTagException te) {
+			throw new InvalidFrameException(te.getMessage());
 		}
 		logger.finest(getLoggingFilename() + ":" + "Created framebody:end" + frameBody.getIdentifier());
 		frameBody.setHeader(this);
 		return frameBody;
 	}
 
+	/**
+	 * Read the frame body, or if lazy frame bodies are enabled just keep a
+	 * copy of its bytes and decode them when the body is first asked for
+	 *
+	 * @param identifier
+	 *            the frame identifier
+	 * @param byteBuffer
+	 *            holding just the body
+	 * @param frameSize
+	 * @throws InvalidFrameException
+	 *             unable to construct a framebody from the data
+	 */
+	protected void readBodyLazily(String identifier, ByteBuffer byteBuffer, int frameSize)
+			throws InvalidFrameException {
+		if (TagOptionSingleton.getInstance().isId3v2LazyFrameBodies()) {
+			rawBody = new byte[frameSize];
+			byteBuffer.get(rawBody);
+			rawBodyIdentifier = identifier;
+			frameBody = null;
+		} else {
+			frameBody = checkBody(readBody(identifier, byteBuffer, frameSize));
+		}
+	}
+
+	/**
+	 * Called with every body read from file, subclasses replace bodies that
+	 * do not belong in their version of the tag
+	 *
+	 * @param body
+	 * @return the body to use
+	 */
+	protected AbstractID3v2FrameBody checkBody(AbstractID3v2FrameBody body) {
+		return body;
+	}
+
+	/**
+	 * Decode a body kept by readBodyLazily(), if it turns out to be invalid
+	 * keep the bytes as an unsupported body so they are still written back,
+	 * and mark the frame so the tag can drop it as an eager read would have
+	 */
+	private void decodeRawBody() {
+		AbstractID3v2FrameBody body;
+		try {
+			body = readBody(rawBodyIdentifier, ByteBuffer.wrap(rawBody), rawBody.length);
+		} catch (InvalidFrameException ife) {
+			logger.warning(getLoggingFilename() + ":" + "Invalid frame body:" + identifier + ":" + ife.getMessage());
+			body = new FrameBodyUnsupported(identifier, rawBody);
+			body.setHeader(this);
+			bodyInvalid = true;
+		}
+		frameBody = checkBody(body);
+		rawBody = null;
+		rawBodyIdentifier = null;
+	}
+
+	/**
+	 * Returns the body, decoding it first if it was read lazily
+	 *
+	 * @return the body datatype
+	 */
+	public synchronized AbstractTagFrameBody getBody() {
+		if (rawBody != null) {
+			decodeRawBody();
+		}
+		return super.getBody();
+	}
+
+	public synchronized void setBody(AbstractTagFrameBody frameBody) {
+		rawBody = null;
+		rawBodyIdentifier = null;
+		bodyInvalid = false;
+		super.setBody(frameBody);
+	}
+
+	/**
+	 * @return true if the body has been read lazily and not asked for yet
+	 */
+	public synchronized boolean isBodyPending() {
+		return rawBody != null;
+	}
+
+	/**
+	 * Decodes a lazily read body if needed
+	 *
+	 * @return true if the body could not be decoded, the body is then only
+	 *         a FrameBodyUnsupported holding the original bytes
+	 */
+	public synchronized boolean isBodyInvalid() {
+		if (rawBody != null) {
+			decodeRawBody();
+		}
+		return bodyInvalid;
+	}
+
+	/**
+	 * @return size of the body as it will be written
+	 */
+	protected synchronized int getBodySize() {
+		if (rawBody != null) {
+			return rawBody.length;
+		}
+		return frameBody.getSize();
+	}
+
+	/**
+	 * Write the body data, a body that was never asked for is copied back
+	 * byte for byte
+	 *
+	 * @param bodyOutputStream
+	 */
+	protected synchronized void writeBody(ByteArrayOutputStream bodyOutputStream) {
+		if (rawBody != null) {
+			bodyOutputStream.write(rawBody, 0, rawBody.length);
+		} else {
+			((AbstractID3v2FrameBody) frameBody).write(bodyOutputStream);
+		}
+	}
+
 	/**
 	 * This creates a new body based of type identifier but populated by the
 	 * data in the body. This is a different type to the body being created
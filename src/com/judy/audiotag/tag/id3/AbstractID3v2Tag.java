@@ -19,13 +19,18 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -42,6 +47,7 @@ import com.judy.audiotag.tag.KeyNotFoundException;
 import com.judy.audiotag.tag.Tag;
 import com.judy.audiotag.tag.TagField;
 import com.judy.audiotag.tag.TagFieldKey;
+import com.judy.audiotag.tag.TagOptionSingleton;
 import com.judy.audiotag.tag.datatype.DataTypes;
 import com.judy.audiotag.tag.id3.framebody.AbstractFrameBodyTextInfo;
 import com.judy.audiotag.tag.id3.framebody.AbstractFrameBodyUrlLink;
@@ -90,12 +96,6 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 	protected static final int FIELD_TAG_FLAG_POS = 5;
 	protected static final int FIELD_TAG_SIZE_POS = 6;
 
-	protected static final int TAG_SIZE_INCREMENT = 100;
-
-	// The max size we try to write in one go to avoid out of memory errors
-	// (10mb)
-	private static final long MAXIMUM_WRITABLE_CHUNK_SIZE = 10000000;
-
 	/**
 	 * Map of all frames for this tag
 	 */
@@ -297,7 +297,48 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 	// sometimes a frame, we need to
 	// replace with two seperate methods as in the tag interface.
 	public Object getFrame(String identifier) {
-		return frameMap.get(identifier);
+		return dropInvalidFrames(identifier, frameMap.get(identifier));
+	}
+
+	/**
+	 * Drop frames of this entry whose lazily read body turned out to be
+	 * invalid, an eager read would never have added them
+	 *
+	 * @param identifier
+	 * @param o
+	 *            the frame or list of frames stored under identifier
+	 * @return what is left of the entry, null if nothing
+	 */
+	private Object dropInvalidFrames(String identifier, Object o) {
+		if (o instanceof AbstractID3v2Frame) {
+			if (((AbstractID3v2Frame) o).isBodyInvalid()) {
+				logger.finest("Removing invalid frame:" + identifier);
+				frameMap.remove(identifier);
+				return null;
+			}
+		} else if (o instanceof List) {
+			Iterator<?> i = ((List<?>) o).iterator();
+			while (i.hasNext()) {
+				if (((AbstractID3v2Frame) i.next()).isBodyInvalid()) {
+					i.remove();
+				}
+			}
+			if (((List<?>) o).isEmpty()) {
+				frameMap.remove(identifier);
+				return null;
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * Drop all frames whose lazily read body turned out to be invalid, this
+	 * decodes every pending body
+	 */
+	protected void removeInvalidFrames() {
+		for (String identifier : new ArrayList<String>(frameMap.keySet())) {
+			dropInvalidFrames(identifier, frameMap.get(identifier));
+		}
 	}
 
 	/**
@@ -591,6 +632,7 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 	 *         identifier
 	 */
 	public Iterator<Object> getFrameOfType(String identifier) {
+		removeInvalidFrames();
 		Iterator<String> iterator = frameMap.keySet().iterator();
 		HashSet<Object> result = new HashSet<Object>();
 		String key;
@@ -653,6 +695,7 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 	 * @return and iterator of the frmaes/list of multi value frames
 	 */
 	public Iterator<?> iterator() {
+		removeInvalidFrames();
 		return frameMap.values().iterator();
 	}
 
@@ -833,9 +876,56 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 		}
 		/**
 		 * There is not enough room as we need to move the audio file we might
-		 * as well increase it more than neccessary for future changes
+		 * as well increase it more than neccessary so future changes can be
+		 * written in place
 		 */
-		return tagSize + TAG_SIZE_INCREMENT;
+		return tagSize + TagOptionSingleton.getInstance().getId3v2PaddingReserve();
+	}
+
+	/**
+	 * Write the tag to the start of the file.
+	 * <p/>
+	 * If the tag including its padding fits before the audio it is written in
+	 * place, otherwise the file is rewritten once with the tag followed by the
+	 * audio, see {@link #rewriteFile(File, long, ByteBuffer...)}.
+	 *
+	 * @param file
+	 * @param audioStart
+	 *            location of the audio within the file
+	 * @param headerBuffer
+	 *            tag header
+	 * @param body
+	 *            the frames
+	 * @param padding
+	 *            bytes of padding to write after the frames
+	 * @throws IOException
+	 */
+	protected void writeToFile(File file, long audioStart, ByteBuffer headerBuffer, byte[] body, int padding)
+			throws IOException {
+		ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+		ByteBuffer paddingBuffer = ByteBuffer.wrap(new byte[padding]);
+		if (headerBuffer.remaining() + body.length + padding > audioStart) {
+			logger.info(getLoggingFilename() + ":Tag does not fit before audio, rewriting file");
+			rewriteFile(file, audioStart, headerBuffer, bodyBuffer, paddingBuffer);
+			return;
+		}
+
+		FileChannel fc = null;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			fc = raf.getChannel();
+			fc.write(headerBuffer);
+			fc.write(bodyBuffer);
+			fc.write(paddingBuffer);
+		} finally {
+			if (fc != null) {
+				fc.close();
+			}
+			if (raf != null) {
+				raf.close();
+			}
+		}
 	}
 
 	/**
@@ -843,8 +933,8 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 	 * is only called when there is currently not enough space before the start
 	 * of the audio to write the tag.
 	 * <p/>
-	 * A new file will be created with enough size to fit the <code>ID3v2</code>
-	 * tag. The old file will be deleted, and the new file renamed.
+	 * The file is rewritten with paddingSize empty bytes in front of the audio,
+	 * see {@link #rewriteFile(File, long, ByteBuffer...)}.
 	 *
 	 * @param paddingSize
 	 *            This is total size required to store tag before audio
@@ -858,74 +948,73 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 	 */
 	public void adjustPadding(File file, int paddingSize, long audioStart) throws FileNotFoundException, IOException {
 		logger.finer("Need to move audio file to accomodate tag");
-		FileChannel fcIn;
-		FileChannel fcOut;
-		FileOutputStream fos = null;
-		FileInputStream fis = null;
+		rewriteFile(file, audioStart, ByteBuffer.wrap(new byte[paddingSize]));
+	}
 
-		// Create buffer holds the neccessary padding
-		ByteBuffer paddingBuffer = ByteBuffer.wrap(new byte[paddingSize]);
-
-		// Create Temporary File and write channel
-		File paddedFile = File.createTempFile("temp", ".mp3", file.getParentFile());
-		fos = new FileOutputStream(paddedFile);
-		fcOut = fos.getChannel();
-		fos.close();
-
-		// Create read channel from original file
-		fis = new FileInputStream(file);
-		fcIn = fis.getChannel();
-		fis.close();
-		// Write padding to new file (this is where the tag will be written to
-		// later)
-		long written = (long) fcOut.write(paddingBuffer);
-
-		// Write rest of file starting from audio
-		logger.finer("Copying:" + (file.length() - audioStart) + "bytes");
-
-		// if the amount to be copied is very large we split into 10MB lumps to
-		// try and avoid
-		// out of memory errors
-		long audiolength = file.length() - audioStart;
-		if (audiolength <= MAXIMUM_WRITABLE_CHUNK_SIZE) {
-			long written2 = fcIn.transferTo(audioStart, audiolength, fcOut);
-			logger.finer("Written padding:" + written + " Data:" + written2);
-			if (written2 != audiolength) {
-				throw new RuntimeException(
-						"Problem adjusting padding, expecting to write:" + audiolength + ":only wrote:" + written2);
+	/**
+	 * Replace everything before the audio with new data.
+	 * <p/>
+	 * The data and then the audio are written to a temporary file in the same
+	 * directory, which is then moved over the original in one atomic step, so
+	 * the original is left untouched if anything goes wrong. The audio is
+	 * copied by the channel without passing through the heap.
+	 *
+	 * @param file
+	 * @param audioStart
+	 *            location of the audio within the file
+	 * @param data
+	 *            written before the audio
+	 * @throws IOException
+	 */
+	private void rewriteFile(File file, long audioStart, ByteBuffer... data) throws IOException {
+		Path path = file.toPath().toAbsolutePath();
+		Path paddedFile = Files.createTempFile(path.getParent(), "temp", ".mp3");
+		boolean moved = false;
+		try {
+			FileChannel fcIn = FileChannel.open(path, StandardOpenOption.READ);
+			try {
+				FileChannel fcOut = FileChannel.open(paddedFile, StandardOpenOption.WRITE);
+				try {
+					for (ByteBuffer bb : data) {
+						while (bb.hasRemaining()) {
+							fcOut.write(bb);
+						}
+					}
+					long audioLength = fcIn.size() - audioStart;
+					logger.finer("Copying:" + audioLength + "bytes");
+					long written = 0;
+					while (written < audioLength) {
+						long count = fcIn.transferTo(audioStart + written, audioLength - written, fcOut);
+						if (count <= 0) {
+							throw new IOException(
+									"Problem moving audio, expecting to write:" + audioLength + ":only wrote:" + written);
+						}
+						written += count;
+					}
+					fcOut.force(false);
+				} finally {
+					fcOut.close();
+				}
+			} finally {
+				fcIn.close();
 			}
-		} else {
-			long noOfChunks = audiolength / MAXIMUM_WRITABLE_CHUNK_SIZE;
-			long lastChunkSize = audiolength % MAXIMUM_WRITABLE_CHUNK_SIZE;
-			long written2 = 0;
-			for (int i = 0; i < noOfChunks; i++) {
-				written2 += fcIn.transferTo(audioStart + (i * MAXIMUM_WRITABLE_CHUNK_SIZE), MAXIMUM_WRITABLE_CHUNK_SIZE,
-						fcOut);
-				// Try and recover memory as quick as possible
-				Runtime.getRuntime().gc();
+
+			// Temporary files are only readable by the owner, keep the
+			// permissions of the original
+			if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+				Files.setPosixFilePermissions(paddedFile, Files.getPosixFilePermissions(path));
 			}
-			written2 += fcIn.transferTo(audioStart + (noOfChunks * MAXIMUM_WRITABLE_CHUNK_SIZE), lastChunkSize, fcOut);
-			logger.finer("Written padding:" + written + " Data:" + written2);
-			if (written2 != audiolength) {
-				throw new RuntimeException("Problem adjusting padding in large file, expecting to write:" + audiolength
-						+ ":only wrote:" + written2);
+			try {
+				Files.move(paddedFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException amnse) {
+				Files.move(paddedFile, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			moved = true;
+		} finally {
+			if (!moved) {
+				Files.deleteIfExists(paddedFile);
 			}
 		}
-
-		// Store original modification time
-		long lastModified = file.lastModified();
-
-		// Close Channels
-		fcIn.close();
-		fcOut.close();
-
-		// Delete original File
-		file.delete();
-
-		// Rename temporary file and set modification time to original time.
-		paddedFile.renameTo(file);
-		paddedFile.setLastModified(lastModified);
-
 	}
 
 	/**
@@ -1039,7 +1128,12 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 			}
 		}
 		// If duplicate frame just stores it somewhere else
-		else if (frameMap.containsKey(frameId)) {
+		else if (frameMap.containsKey(frameId)
+				&& ((AbstractID3v2Frame) frameMap.get(frameId)).isBodyInvalid()) {
+			// The frame read first could not be decoded, keep this one instead
+			logger.warning("Replacing invalid frame" + frameId);
+			frameMap.put(frameId, next);
+		} else if (frameMap.containsKey(frameId)) {
 			logger.warning("Duplicate Frame" + frameId);
 			this.duplicateFrameId += (frameId + "; ");
 			this.duplicateBytes += ((AbstractID3v2Frame) frameMap.get(frameId)).getSize();
@@ -1386,6 +1480,7 @@ public abstract class AbstractID3v2Tag extends AbstractID3Tag implements Tag {
 	}
 
 	public Iterator<?> getFields() {
+		removeInvalidFrames();
 		final Iterator<Map.Entry<String, Object>> it = this.frameMap.entrySet().iterator();
 		return new Iterator<Object>() {
 			private Iterator<?> fieldsIt;
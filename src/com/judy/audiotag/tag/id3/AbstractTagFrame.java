@@ -47,7 +47,7 @@ public abstract class AbstractTagFrame extends AbstractTagItem {
 	 * objectlist.
 	 */
 	public AbstractTagFrame(AbstractTagFrame copyObject) {
-		this.frameBody = (AbstractTagFrameBody) ID3Tags.copyObject(copyObject.frameBody);
+		this.frameBody = (AbstractTagFrameBody) ID3Tags.copyObject(copyObject.getBody());
 		this.frameBody.setHeader(this);
 	}
 
@@ -86,15 +86,17 @@ public abstract class AbstractTagFrame extends AbstractTagItem {
 			return false;
 		}
 
-		if ((frameBody == null) && (((AbstractTagFrame) obj).frameBody == null)) {
+		AbstractTagFrameBody body = getBody();
+		AbstractTagFrameBody objBody = ((AbstractTagFrame) obj).getBody();
+		if ((body == null) && (objBody == null)) {
 			return true;
 		}
 
-		if ((frameBody == null) || (((AbstractTagFrame) obj).frameBody == null)) {
+		if ((body == null) || (objBody == null)) {
 			return false;
 		}
 
-		if (frameBody.isSubsetOf(((AbstractTagFrame) obj).frameBody) == false) {
+		if (body.isSubsetOf(objBody) == false) {
 			return false;
 		}
 
@@ -122,7 +124,7 @@ public abstract class AbstractTagFrame extends AbstractTagItem {
 			return false;
 		}
 
-		if (this.frameBody.equals(object.frameBody) == false) {
+		if (this.getBody().equals(object.getBody()) == false) {
 			return false;
 		}
 
@@ -30,6 +30,7 @@ import com.judy.audiotag.tag.InvalidFrameException;
 import com.judy.audiotag.tag.InvalidFrameIdentifierException;
 import com.judy.audiotag.tag.id3.framebody.AbstractID3v2FrameBody;
 import com.judy.audiotag.tag.id3.framebody.FrameBodyDeprecated;
+import com.judy.audiotag.tag.id3.framebody.FrameBodyFactory;
 import com.judy.audiotag.tag.id3.framebody.FrameBodyUnsupported;
 
 /**
@@ -103,30 +104,12 @@ public class ID3v22Frame extends AbstractID3v2Frame
             }
         }
 
-        // Use reflection to map id to frame body, which makes things much easier
-        // to keep things up to date.
-        try
-        {
-            Class<?> c = Class.forName("com.judy.audiotag.tag.id3.framebody.FrameBody" + bodyIdentifier);
-            frameBody = (AbstractID3v2FrameBody) c.newInstance();
-        }
-        catch (ClassNotFoundException cnfe)
+        frameBody = FrameBodyFactory.newBody(bodyIdentifier);
+        if (frameBody == null)
         {
-            logger.log(Level.SEVERE, cnfe.getMessage(), cnfe);
+            logger.log(Level.SEVERE, "No framebody for identifier:" + bodyIdentifier);
             frameBody = new FrameBodyUnsupported(identifier);
         }
-        //Instantiate Interface/Abstract should not happen
-        catch (InstantiationException ie)
-        {
-            logger.log(Level.SEVERE, ie.getMessage(), ie);
-            throw new RuntimeException(ie);
-        }
-        //Private Constructor shouild not happen
-        catch (IllegalAccessException iae)
-        {
-            logger.log(Level.SEVERE, iae.getMessage(), iae);
-            throw new RuntimeException(iae);
-        }
         frameBody.setHeader(this);
         logger.info("Created empty frame of type" + this.identifier + "with frame body of" + bodyIdentifier);
 
@@ -254,7 +237,7 @@ public class ID3v22Frame extends AbstractID3v2Frame
      */
     public int getSize()
     {
-        return frameBody.getSize() + FRAME_HEADER_SIZE;
+        return getBodySize() + FRAME_HEADER_SIZE;
     }
 
     /**
@@ -334,7 +317,7 @@ public class ID3v22Frame extends AbstractID3v2Frame
 
             try
             {
-                frameBody = readBody(id, frameBodyBuffer, frameSize);
+                readBodyLazily(id, frameBodyBuffer, frameSize);
             }
             finally
             {
@@ -373,12 +356,12 @@ public class ID3v22Frame extends AbstractID3v2Frame
 
         //Write Frame Body Data
         ByteArrayOutputStream bodyOutputStream = new ByteArrayOutputStream();
-        ((AbstractID3v2FrameBody) frameBody).write(bodyOutputStream);
+        writeBody(bodyOutputStream);
 
         //Write Frame Header
         //Write Frame ID must adjust can only be 3 bytes long
         headerBuffer.put(Utils.getDefaultBytes(getIdentifier(),"ISO-8859-1"), 0, FRAME_ID_SIZE);
-        encodeSize(headerBuffer, frameBody.getSize());
+        encodeSize(headerBuffer, getBodySize());
 
         //Add header to the Byte Array Output Stream
         try
@@ -427,7 +410,7 @@ public class ID3v22Frame extends AbstractID3v2Frame
     {
         MP3File.getStructureFormatter().openHeadingElement(TYPE_FRAME, getIdentifier());
         MP3File.getStructureFormatter().addElement(TYPE_FRAME_SIZE, frameSize);
-        frameBody.createStructure();
+        getBody().createStructure();
         MP3File.getStructureFormatter().closeHeadingElement(TYPE_FRAME);
     }
 
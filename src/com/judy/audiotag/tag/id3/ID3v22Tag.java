@@ -137,6 +137,7 @@ public class ID3v22Tag extends AbstractID3v2Tag {
 	 * Copy frames from one tag into a v2.2 tag
 	 */
 	protected void copyFrames(AbstractID3v2Tag copyObject) {
+		copyObject.removeInvalidFrames();
 		logger.info("Copying Frames,there are:" + copyObject.frameMap.keySet().size());
 		frameMap = new LinkedHashMap<String, Object>();
 		// Copy Frames that are a valid 2.2 type
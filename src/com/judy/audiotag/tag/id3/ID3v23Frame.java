@@ -243,7 +243,7 @@ public class ID3v23Frame extends AbstractID3v2Frame {
 	 * @return int frame size
 	 */
 	public int getSize() {
-		return frameBody.getSize() + ID3v23Frame.FRAME_HEADER_SIZE;
+		return getBodySize() + ID3v23Frame.FRAME_HEADER_SIZE;
 	}
 
 	/**
@@ -397,23 +397,13 @@ public class ID3v23Frame extends AbstractID3v2Frame {
 		// Read the body data
 		try {
 			if (((EncodingFlags) encodingFlags).isCompression()) {
-				frameBody = readBody(id, frameBodyBuffer, decompressedFrameSize);
+				readBodyLazily(id, frameBodyBuffer, decompressedFrameSize);
 			} else {
 				// Create Buffer that only contains the body of this frame
 				// rather than the remainder of tag
 				frameBodyBuffer = byteBuffer.slice();
 				frameBodyBuffer.limit(realFrameSize);
-				frameBody = readBody(id, frameBodyBuffer, realFrameSize);
-			}
-			// TODO code seems to assume that if the frame created is not a
-			// v23FrameBody
-			// it should be deprecated, but what about if somehow a V24Frame has
-			// been put into a V23 Tag, shouldnt
-			// it then be created as FrameBodyUnsupported
-			if (!(frameBody instanceof ID3v23FrameBody)) {
-				logger.info(
-						getLoggingFilename() + ":Converted frame body with:" + identifier + " to deprecated framebody");
-				frameBody = new FrameBodyDeprecated((AbstractID3v2FrameBody) frameBody);
+				readBodyLazily(id, frameBodyBuffer, realFrameSize);
 			}
 		} finally {
 			// Update position of main buffer, so no attempt is made to reread
@@ -422,6 +412,22 @@ public class ID3v23Frame extends AbstractID3v2Frame {
 		}
 	}
 
+	/**
+	 * Bodies read into a v23 frame that are not v23 bodies are deprecated
+	 */
+	protected AbstractID3v2FrameBody checkBody(AbstractID3v2FrameBody body) {
+		// TODO code seems to assume that if the frame created is not a
+		// v23FrameBody
+		// it should be deprecated, but what about if somehow a V24Frame has
+		// been put into a V23 Tag, shouldnt
+		// it then be created as FrameBodyUnsupported
+		if (!(body instanceof ID3v23FrameBody)) {
+			logger.info(getLoggingFilename() + ":Converted frame body with:" + identifier + " to deprecated framebody");
+			return new FrameBodyDeprecated(body);
+		}
+		return body;
+	}
+
 	/**
 	 * Write the frame to bufferOutputStream
 	 *
@@ -435,16 +441,16 @@ public class ID3v23Frame extends AbstractID3v2Frame {
 
 		// Write Frame Body Data
 		ByteArrayOutputStream bodyOutputStream = new ByteArrayOutputStream();
-		((AbstractID3v2FrameBody) frameBody).write(bodyOutputStream);
+		writeBody(bodyOutputStream);
 		// Write Frame Header write Frame ID
 		if (getIdentifier().length() == 3) {
 			identifier = identifier + ' ';
 		}
 		headerBuffer.put(Utils.getDefaultBytes(getIdentifier(), "ISO-8859-1"), 0, FRAME_ID_SIZE);
 		// Write Frame Size
-		int size = frameBody.getSize();
+		int size = getBodySize();
 		logger.fine("Frame Size Is:" + size);
-		headerBuffer.putInt(frameBody.getSize());
+		headerBuffer.putInt(getBodySize());
 
 		// Write the Flags
 		// Status Flags:leave as they were when we read
@@ -644,7 +650,7 @@ public class ID3v23Frame extends AbstractID3v2Frame {
 		MP3File.getStructureFormatter().addElement(TYPE_FRAME_SIZE, frameSize);
 		statusFlags.createStructure();
 		encodingFlags.createStructure();
-		frameBody.createStructure();
+		getBody().createStructure();
 		MP3File.getStructureFormatter().closeHeadingElement(TYPE_FRAME);
 	}
 
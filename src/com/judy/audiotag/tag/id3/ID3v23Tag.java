@@ -17,9 +17,7 @@ package com.judy.audiotag.tag.id3;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -184,6 +182,7 @@ public class ID3v23Tag extends AbstractID3v2Tag {
 	 * @param copyObject
 	 */
 	protected void copyFrames(AbstractID3v2Tag copyObject) {
+		copyObject.removeInvalidFrames();
 		logger.info("Copying Frames,there are:" + copyObject.frameMap.keySet().size() + " different types");
 		frameMap = new LinkedHashMap<String, Object>();
 
@@ -655,29 +654,7 @@ public class ID3v23Tag extends AbstractID3v2Tag {
 
 		ByteBuffer headerBuffer = writeHeaderToBuffer(padding, bodyByteBuffer.length);
 
-		// We need to adjust location of audio File
-		if (sizeIncPadding > audioStartLocation) {
-			logger.info(getLoggingFilename() + ":Adjusting Padding");
-			adjustPadding(file, sizeIncPadding, audioStartLocation);
-		}
-
-		// Write changes to file
-		FileChannel fc = null;
-		RandomAccessFile raf = null;
-		try {
-			raf = new RandomAccessFile(file, "rw");
-			fc = raf.getChannel();
-			fc.write(headerBuffer);
-			fc.write(ByteBuffer.wrap(bodyByteBuffer));
-			fc.write(ByteBuffer.wrap(new byte[padding]));
-		} finally {
-			if (fc != null) {
-				fc.close();
-			}
-			if (raf != null) {
-				raf.close();
-			}
-		}
+		writeToFile(file, audioStartLocation, headerBuffer, bodyByteBuffer, padding);
 	}
 
 	/**
@@ -286,7 +286,7 @@ public class ID3v24Frame extends AbstractID3v2Frame {
 	 * @return int frame size
 	 */
 	public int getSize() {
-		return frameBody.getSize() + ID3v24Frame.FRAME_HEADER_SIZE;
+		return getBodySize() + ID3v24Frame.FRAME_HEADER_SIZE;
 	}
 
 	/**
@@ -533,12 +533,7 @@ public class ID3v24Frame extends AbstractID3v2Frame {
 
 		// Read the body data
 		try {
-			frameBody = readBody(identifier, frameBodyBuffer, syncSize);
-			if (!(frameBody instanceof ID3v24FrameBody)) {
-				logger.info(getLoggingFilename() + ":" + "Converted frame body with:" + identifier
-						+ " to deprecated framebody");
-				frameBody = new FrameBodyDeprecated((AbstractID3v2FrameBody) frameBody);
-			}
+			readBodyLazily(identifier, frameBodyBuffer, syncSize);
 		} finally {
 			// Update position of main buffer, so no attempt is made to reread
 			// these bytes
@@ -546,6 +541,18 @@ public class ID3v24Frame extends AbstractID3v2Frame {
 		}
 	}
 
+	/**
+	 * Bodies read into a v24 frame that are not v24 bodies are deprecated
+	 */
+	protected AbstractID3v2FrameBody checkBody(AbstractID3v2FrameBody body) {
+		if (!(body instanceof ID3v24FrameBody)) {
+			logger.info(getLoggingFilename() + ":" + "Converted frame body with:" + identifier
+					+ " to deprecated framebody");
+			return new FrameBodyDeprecated(body);
+		}
+		return body;
+	}
+
 	/**
 	 * Write the frame. Writes the frame header but writing the data is
 	 * delegated to the frame body.
@@ -563,7 +570,7 @@ public class ID3v24Frame extends AbstractID3v2Frame {
 
 		// Write Frame Body Data to a new stream
 		ByteArrayOutputStream bodyOutputStream = new ByteArrayOutputStream();
-		((AbstractID3v2FrameBody) frameBody).write(bodyOutputStream);
+		writeBody(bodyOutputStream);
 
 		// Does it need unsynchronizing, and are we allowing unsychronizing
 		byte[] bodyBuffer = bodyOutputStream.toByteArray();
@@ -855,7 +862,7 @@ public class ID3v24Frame extends AbstractID3v2Frame {
 		MP3File.getStructureFormatter().addElement(TYPE_FRAME_SIZE, frameSize);
 		statusFlags.createStructure();
 		encodingFlags.createStructure();
-		frameBody.createStructure();
+		getBody().createStructure();
 		MP3File.getStructureFormatter().closeHeadingElement(TYPE_FRAME);
 	}
 
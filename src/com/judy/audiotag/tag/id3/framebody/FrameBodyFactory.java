@@ -0,0 +1,477 @@
+/*
+ * Jaudiotagger Copyright (C)2004,2005
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public  License as published by the Free Software Foundation; either version 2.1 of the License,
+ * or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library; if not,
+ * you can get a copy from http://www.opensource.org/licenses/lgpl-license.php or write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.judy.audiotag.tag.id3.framebody;
+
+import com.judy.audiotag.tag.InvalidTagException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Creates frame bodies from their frame identifier without reflection.
+ *
+ * The identifier of a body is the suffix of its class name, a switch on the
+ * identifier is compiled to a hash lookup so neither known nor unknown
+ * identifiers cost a Class.forName() or an exception. Add a case to both
+ * methods when adding a new FrameBody class.
+ */
+public final class FrameBodyFactory {
+
+	private FrameBodyFactory() {
+	}
+
+	/**
+	 * Create an empty body for the identifier
+	 *
+	 * @param identifier
+	 * @return the body, or null if there is no body class for the identifier
+	 */
+	public static AbstractID3v2FrameBody newBody(String identifier) {
+		if (identifier == null) {
+			return null;
+		}
+		switch (identifier) {
+		case "AENC":
+			return new FrameBodyAENC();
+		case "APIC":
+			return new FrameBodyAPIC();
+		case "ASPI":
+			return new FrameBodyASPI();
+		case "CHAP":
+			return new FrameBodyCHAP();
+		case "COMM":
+			return new FrameBodyCOMM();
+		case "COMR":
+			return new FrameBodyCOMR();
+		case "CRM":
+			return new FrameBodyCRM();
+		case "CTOC":
+			return new FrameBodyCTOC();
+		case "ENCR":
+			return new FrameBodyENCR();
+		case "EQU2":
+			return new FrameBodyEQU2();
+		case "EQUA":
+			return new FrameBodyEQUA();
+		case "ETCO":
+			return new FrameBodyETCO();
+		case "GEOB":
+			return new FrameBodyGEOB();
+		case "GRID":
+			return new FrameBodyGRID();
+		case "IPLS":
+			return new FrameBodyIPLS();
+		case "LINK":
+			return new FrameBodyLINK();
+		case "MCDI":
+			return new FrameBodyMCDI();
+		case "MLLT":
+			return new FrameBodyMLLT();
+		case "OWNE":
+			return new FrameBodyOWNE();
+		case "PCNT":
+			return new FrameBodyPCNT();
+		case "PIC":
+			return new FrameBodyPIC();
+		case "POPM":
+			return new FrameBodyPOPM();
+		case "POSS":
+			return new FrameBodyPOSS();
+		case "PRIV":
+			return new FrameBodyPRIV();
+		case "RBUF":
+			return new FrameBodyRBUF();
+		case "RVA2":
+			return new FrameBodyRVA2();
+		case "RVAD":
+			return new FrameBodyRVAD();
+		case "RVRB":
+			return new FrameBodyRVRB();
+		case "SEEK":
+			return new FrameBodySEEK();
+		case "SIGN":
+			return new FrameBodySIGN();
+		case "SYLT":
+			return new FrameBodySYLT();
+		case "SYTC":
+			return new FrameBodySYTC();
+		case "TALB":
+			return new FrameBodyTALB();
+		case "TBPM":
+			return new FrameBodyTBPM();
+		case "TCMP":
+			return new FrameBodyTCMP();
+		case "TCOM":
+			return new FrameBodyTCOM();
+		case "TCON":
+			return new FrameBodyTCON();
+		case "TCOP":
+			return new FrameBodyTCOP();
+		case "TDAT":
+			return new FrameBodyTDAT();
+		case "TDEN":
+			return new FrameBodyTDEN();
+		case "TDLY":
+			return new FrameBodyTDLY();
+		case "TDOR":
+			return new FrameBodyTDOR();
+		case "TDRC":
+			return new FrameBodyTDRC();
+		case "TDRL":
+			return new FrameBodyTDRL();
+		case "TDTG":
+			return new FrameBodyTDTG();
+		case "TENC":
+			return new FrameBodyTENC();
+		case "TEXT":
+			return new FrameBodyTEXT();
+		case "TFLT":
+			return new FrameBodyTFLT();
+		case "TIME":
+			return new FrameBodyTIME();
+		case "TIPL":
+			return new FrameBodyTIPL();
+		case "TIT1":
+			return new FrameBodyTIT1();
+		case "TIT2":
+			return new FrameBodyTIT2();
+		case "TIT3":
+			return new FrameBodyTIT3();
+		case "TKEY":
+			return new FrameBodyTKEY();
+		case "TLAN":
+			return new FrameBodyTLAN();
+		case "TLEN":
+			return new FrameBodyTLEN();
+		case "TMCL":
+			return new FrameBodyTMCL();
+		case "TMED":
+			return new FrameBodyTMED();
+		case "TMOO":
+			return new FrameBodyTMOO();
+		case "TOAL":
+			return new FrameBodyTOAL();
+		case "TOFN":
+			return new FrameBodyTOFN();
+		case "TOLY":
+			return new FrameBodyTOLY();
+		case "TOPE":
+			return new FrameBodyTOPE();
+		case "TORY":
+			return new FrameBodyTORY();
+		case "TOWN":
+			return new FrameBodyTOWN();
+		case "TPE1":
+			return new FrameBodyTPE1();
+		case "TPE2":
+			return new FrameBodyTPE2();
+		case "TPE3":
+			return new FrameBodyTPE3();
+		case "TPE4":
+			return new FrameBodyTPE4();
+		case "TPOS":
+			return new FrameBodyTPOS();
+		case "TPRO":
+			return new FrameBodyTPRO();
+		case "TPUB":
+			return new FrameBodyTPUB();
+		case "TRCK":
+			return new FrameBodyTRCK();
+		case "TRDA":
+			return new FrameBodyTRDA();
+		case "TRSN":
+			return new FrameBodyTRSN();
+		case "TRSO":
+			return new FrameBodyTRSO();
+		case "TSIZ":
+			return new FrameBodyTSIZ();
+		case "TSO2":
+			return new FrameBodyTSO2();
+		case "TSOA":
+			return new FrameBodyTSOA();
+		case "TSOC":
+			return new FrameBodyTSOC();
+		case "TSOP":
+			return new FrameBodyTSOP();
+		case "TSOT":
+			return new FrameBodyTSOT();
+		case "TSRC":
+			return new FrameBodyTSRC();
+		case "TSSE":
+			return new FrameBodyTSSE();
+		case "TSST":
+			return new FrameBodyTSST();
+		case "TXXX":
+			return new FrameBodyTXXX();
+		case "TYER":
+			return new FrameBodyTYER();
+		case "UFID":
+			return new FrameBodyUFID();
+		case "USER":
+			return new FrameBodyUSER();
+		case "USLT":
+			return new FrameBodyUSLT();
+		case "WCOM":
+			return new FrameBodyWCOM();
+		case "WCOP":
+			return new FrameBodyWCOP();
+		case "WOAF":
+			return new FrameBodyWOAF();
+		case "WOAR":
+			return new FrameBodyWOAR();
+		case "WOAS":
+			return new FrameBodyWOAS();
+		case "WORS":
+			return new FrameBodyWORS();
+		case "WPAY":
+			return new FrameBodyWPAY();
+		case "WPUB":
+			return new FrameBodyWPUB();
+		case "WXXX":
+			return new FrameBodyWXXX();
+		case "XSOA":
+			return new FrameBodyXSOA();
+		case "XSOP":
+			return new FrameBodyXSOP();
+		case "XSOT":
+			return new FrameBodyXSOT();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Read the body for the identifier from the buffer
+	 *
+	 * @param identifier
+	 * @param byteBuffer
+	 *            positioned at the start of the body
+	 * @param frameSize
+	 * @return the body, or null if there is no body class that reads the
+	 *         identifier
+	 * @throws InvalidTagException
+	 *             if the data is not valid for the body
+	 */
+	public static AbstractID3v2FrameBody readBody(String identifier, ByteBuffer byteBuffer, int frameSize)
+			throws InvalidTagException {
+		if (identifier == null) {
+			return null;
+		}
+		switch (identifier) {
+		case "AENC":
+			return new FrameBodyAENC(byteBuffer, frameSize);
+		case "APIC":
+			return new FrameBodyAPIC(byteBuffer, frameSize);
+		case "ASPI":
+			return new FrameBodyASPI(byteBuffer, frameSize);
+		case "CHAP":
+			return new FrameBodyCHAP(byteBuffer, frameSize);
+		case "COMM":
+			return new FrameBodyCOMM(byteBuffer, frameSize);
+		case "COMR":
+			return new FrameBodyCOMR(byteBuffer, frameSize);
+		case "CRM":
+			return new FrameBodyCRM(byteBuffer, frameSize);
+		case "CTOC":
+			return new FrameBodyCTOC(byteBuffer, frameSize);
+		case "ENCR":
+			return new FrameBodyENCR(byteBuffer, frameSize);
+		case "EQU2":
+			return new FrameBodyEQU2(byteBuffer, frameSize);
+		case "ETCO":
+			return new FrameBodyETCO(byteBuffer, frameSize);
+		case "GEOB":
+			return new FrameBodyGEOB(byteBuffer, frameSize);
+		case "GRID":
+			return new FrameBodyGRID(byteBuffer, frameSize);
+		case "IPLS":
+			return new FrameBodyIPLS(byteBuffer, frameSize);
+		case "LINK":
+			return new FrameBodyLINK(byteBuffer, frameSize);
+		case "MCDI":
+			return new FrameBodyMCDI(byteBuffer, frameSize);
+		case "OWNE":
+			return new FrameBodyOWNE(byteBuffer, frameSize);
+		case "PCNT":
+			return new FrameBodyPCNT(byteBuffer, frameSize);
+		case "PIC":
+			return new FrameBodyPIC(byteBuffer, frameSize);
+		case "POPM":
+			return new FrameBodyPOPM(byteBuffer, frameSize);
+		case "POSS":
+			return new FrameBodyPOSS(byteBuffer, frameSize);
+		case "PRIV":
+			return new FrameBodyPRIV(byteBuffer, frameSize);
+		case "RBUF":
+			return new FrameBodyRBUF(byteBuffer, frameSize);
+		case "RVA2":
+			return new FrameBodyRVA2(byteBuffer, frameSize);
+		case "RVAD":
+			return new FrameBodyRVAD(byteBuffer, frameSize);
+		case "RVRB":
+			return new FrameBodyRVRB(byteBuffer, frameSize);
+		case "SEEK":
+			return new FrameBodySEEK(byteBuffer, frameSize);
+		case "SIGN":
+			return new FrameBodySIGN(byteBuffer, frameSize);
+		case "SYLT":
+			return new FrameBodySYLT(byteBuffer, frameSize);
+		case "SYTC":
+			return new FrameBodySYTC(byteBuffer, frameSize);
+		case "TALB":
+			return new FrameBodyTALB(byteBuffer, frameSize);
+		case "TBPM":
+			return new FrameBodyTBPM(byteBuffer, frameSize);
+		case "TCMP":
+			return new FrameBodyTCMP(byteBuffer, frameSize);
+		case "TCOM":
+			return new FrameBodyTCOM(byteBuffer, frameSize);
+		case "TCON":
+			return new FrameBodyTCON(byteBuffer, frameSize);
+		case "TCOP":
+			return new FrameBodyTCOP(byteBuffer, frameSize);
+		case "TDAT":
+			return new FrameBodyTDAT(byteBuffer, frameSize);
+		case "TDEN":
+			return new FrameBodyTDEN(byteBuffer, frameSize);
+		case "TDLY":
+			return new FrameBodyTDLY(byteBuffer, frameSize);
+		case "TDOR":
+			return new FrameBodyTDOR(byteBuffer, frameSize);
+		case "TDRC":
+			return new FrameBodyTDRC(byteBuffer, frameSize);
+		case "TDRL":
+			return new FrameBodyTDRL(byteBuffer, frameSize);
+		case "TDTG":
+			return new FrameBodyTDTG(byteBuffer, frameSize);
+		case "TENC":
+			return new FrameBodyTENC(byteBuffer, frameSize);
+		case "TEXT":
+			return new FrameBodyTEXT(byteBuffer, frameSize);
+		case "TFLT":
+			return new FrameBodyTFLT(byteBuffer, frameSize);
+		case "TIME":
+			return new FrameBodyTIME(byteBuffer, frameSize);
+		case "TIPL":
+			return new FrameBodyTIPL(byteBuffer, frameSize);
+		case "TIT1":
+			return new FrameBodyTIT1(byteBuffer, frameSize);
+		case "TIT2":
+			return new FrameBodyTIT2(byteBuffer, frameSize);
+		case "TIT3":
+			return new FrameBodyTIT3(byteBuffer, frameSize);
+		case "TKEY":
+			return new FrameBodyTKEY(byteBuffer, frameSize);
+		case "TLAN":
+			return new FrameBodyTLAN(byteBuffer, frameSize);
+		case "TLEN":
+			return new FrameBodyTLEN(byteBuffer, frameSize);
+		case "TMCL":
+			return new FrameBodyTMCL(byteBuffer, frameSize);
+		case "TMED":
+			return new FrameBodyTMED(byteBuffer, frameSize);
+		case "TMOO":
+			return new FrameBodyTMOO(byteBuffer, frameSize);
+		case "TOAL":
+			return new FrameBodyTOAL(byteBuffer, frameSize);
+		case "TOFN":
+			return new FrameBodyTOFN(byteBuffer, frameSize);
+		case "TOLY":
+			return new FrameBodyTOLY(byteBuffer, frameSize);
+		case "TOPE":
+			return new FrameBodyTOPE(byteBuffer, frameSize);
+		case "TORY":
+			return new FrameBodyTORY(byteBuffer, frameSize);
+		case "TOWN":
+			return new FrameBodyTOWN(byteBuffer, frameSize);
+		case "TPE1":
+			return new FrameBodyTPE1(byteBuffer, frameSize);
+		case "TPE2":
+			return new FrameBodyTPE2(byteBuffer, frameSize);
+		case "TPE3":
+			return new FrameBodyTPE3(byteBuffer, frameSize);
+		case "TPE4":
+			return new FrameBodyTPE4(byteBuffer, frameSize);
+		case "TPOS":
+			return new FrameBodyTPOS(byteBuffer, frameSize);
+		case "TPRO":
+			return new FrameBodyTPRO(byteBuffer, frameSize);
+		case "TPUB":
+			return new FrameBodyTPUB(byteBuffer, frameSize);
+		case "TRCK":
+			return new FrameBodyTRCK(byteBuffer, frameSize);
+		case "TRDA":
+			return new FrameBodyTRDA(byteBuffer, frameSize);
+		case "TRSN":
+			return new FrameBodyTRSN(byteBuffer, frameSize);
+		case "TRSO":
+			return new FrameBodyTRSO(byteBuffer, frameSize);
+		case "TSIZ":
+			return new FrameBodyTSIZ(byteBuffer, frameSize);
+		case "TSO2":
+			return new FrameBodyTSO2(byteBuffer, frameSize);
+		case "TSOA":
+			return new FrameBodyTSOA(byteBuffer, frameSize);
+		case "TSOC":
+			return new FrameBodyTSOC(byteBuffer, frameSize);
+		case "TSOP":
+			return new FrameBodyTSOP(byteBuffer, frameSize);
+		case "TSOT":
+			return new FrameBodyTSOT(byteBuffer, frameSize);
+		case "TSRC":
+			return new FrameBodyTSRC(byteBuffer, frameSize);
+		case "TSSE":
+			return new FrameBodyTSSE(byteBuffer, frameSize);
+		case "TSST":
+			return new FrameBodyTSST(byteBuffer, frameSize);
+		case "TXXX":
+			return new FrameBodyTXXX(byteBuffer, frameSize);
+		case "TYER":
+			return new FrameBodyTYER(byteBuffer, frameSize);
+		case "UFID":
+			return new FrameBodyUFID(byteBuffer, frameSize);
+		case "USER":
+			return new FrameBodyUSER(byteBuffer, frameSize);
+		case "USLT":
+			return new FrameBodyUSLT(byteBuffer, frameSize);
+		case "WCOM":
+			return new FrameBodyWCOM(byteBuffer, frameSize);
+		case "WCOP":
+			return new FrameBodyWCOP(byteBuffer, frameSize);
+		case "WOAF":
+			return new FrameBodyWOAF(byteBuffer, frameSize);
+		case "WOAR":
+			return new FrameBodyWOAR(byteBuffer, frameSize);
+		case "WOAS":
+			return new FrameBodyWOAS(byteBuffer, frameSize);
+		case "WORS":
+			return new FrameBodyWORS(byteBuffer, frameSize);
+		case "WPAY":
+			return new FrameBodyWPAY(byteBuffer, frameSize);
+		case "WPUB":
+			return new FrameBodyWPUB(byteBuffer, frameSize);
+		case "WXXX":
+			return new FrameBodyWXXX(byteBuffer, frameSize);
+		case "XSOA":
+			return new FrameBodyXSOA(byteBuffer, frameSize);
+		case "XSOP":
+			return new FrameBodyXSOP(byteBuffer, frameSize);
+		case "XSOT":
+			return new FrameBodyXSOT(byteBuffer, frameSize);
+		default:
+			return null;
+		}
+	}
+}
@@ -0,0 +1,399 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.lyric;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LRC歌词的解析器,从头到尾扫一遍就分析出所有的句子
+ * 支持一行多个时间标签,时间标签和内容交替出现,
+ * 增强LRC的逐字时间<mm:ss.xx>,以及[ti:],[ar:],[al:],[offset:]这些标签
+ * 文件的编码按BOM,UTF-16,UTF-8,GBK的顺序猜
+ * 一个对象只能在一个线程里用
+ * @author judy
+ */
+final class LrcParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+    private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+    private static final Charset GBK = Charset.forName("GBK");
+    private final boolean trim;//是否去掉内容前后的空白
+    private final List<Sentence> sentences = new ArrayList<Sentence>();
+    private String title;
+    private String artist;
+    private String album;
+    private boolean hasOffset;
+    private int offset;
+    private long[] times = new long[8];//一段内容前面的时间标签
+    private int timeCount;
+    private final StringBuilder text = new StringBuilder();
+    private int[] wordStarts = new int[16];
+    private long[] wordTimes = new long[16];
+
+    /**
+     * @param trim 是否去掉每句内容前后的空白
+     */
+    LrcParser(boolean trim) {
+        this.trim = trim;
+    }
+
+    /**
+     * 读出歌词文件,猜出它的编码
+     * @param file 文件
+     * @return 内容
+     * @throws IOException 读不了
+     */
+    static CharBuffer read(File file) throws IOException {
+        return decode(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * 猜出编码并解码,有BOM按BOM,没有BOM的时候看是不是UTF-16,
+     * 再看是不是合法的UTF-8,都不是就当GBK
+     * @param data 字节
+     * @return 内容
+     */
+    static CharBuffer decode(byte[] data) {
+        int n = data.length;
+        if (n >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) {
+            return decode(data, 3, UTF_8);
+        }
+        if (n >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xFE) {
+            return decode(data, 2, UTF_16LE);
+        }
+        if (n >= 2 && (data[0] & 0xFF) == 0xFE && (data[1] & 0xFF) == 0xFF) {
+            return decode(data, 2, UTF_16BE);
+        }
+        // 歌词开头基本都是ASCII,UTF-16的话每两个字节就有一个0
+        int even = 0;
+        int odd = 0;
+        int sample = Math.min(n, 256) & ~1;
+        for (int i = 0; i < sample; i += 2) {
+            if (data[i] == 0) {
+                even++;
+            }
+            if (data[i + 1] == 0) {
+                odd++;
+            }
+        }
+        if (sample > 0 && odd * 4 > sample && even == 0) {
+            return decode(data, 0, UTF_16LE);
+        }
+        if (sample > 0 && even * 4 > sample && odd == 0) {
+            return decode(data, 0, UTF_16BE);
+        }
+        CharsetDecoder utf8 = UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            return utf8.decode(ByteBuffer.wrap(data));
+        } catch (CharacterCodingException ex) {
+            return decode(data, 0, GBK);
+        }
+    }
+
+    private static CharBuffer decode(byte[] data, int start, Charset cs) {
+        CharsetDecoder decoder = cs.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            return decoder.decode(ByteBuffer.wrap(data, start, data.length - start));
+        } catch (CharacterCodingException ex) {
+            // 用REPLACE的时候不会抛出来
+            return CharBuffer.allocate(0);
+        }
+    }
+
+    /**
+     * 分析歌词内容,分析出来的句子没有排序,也没有结束时间
+     * @param cb 内容
+     */
+    void parse(CharBuffer cb) {
+        // 切出来以后下标都从0开始,get(int)和charAt(int)就一样了
+        cb = cb.slice();
+        int pos = 0;
+        int limit = cb.limit();
+        while (pos < limit) {
+            int end = pos;
+            while (end < limit && cb.get(end) != '\n' && cb.get(end) != '\r') {
+                end++;
+            }
+            parseLine(cb, pos, end);
+            pos = end + 1;
+        }
+    }
+
+    /**
+     * 分析一行,[标签]后面跟着的内容属于它前面连着的那几个标签,
+     * 内容后面又出现标签的时候就是新的一段了
+     */
+    private void parseLine(CharBuffer cb, int start, int end) {
+        // 和以前一样,一行前后的空白先去掉
+        while (start < end && Character.isWhitespace(cb.get(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(cb.get(end - 1))) {
+            end--;
+        }
+        timeCount = 0;
+        int i = start;
+        boolean tagged = false;//这一行是不是已经有过标签了
+        while (i < end) {
+            if (cb.get(i) == '[') {
+                int close = i + 1;
+                while (close < end && cb.get(close) != ']') {
+                    close++;
+                }
+                if (close >= end) {
+                    // 没有配对的方括号,当成内容
+                    if (tagged) {
+                        addSentences(cb, i, end);
+                    }
+                    break;
+                }
+                parseTag(cb, i + 1, close);
+                tagged = true;
+                i = close + 1;
+            } else {
+                int next = i;
+                while (next < end && cb.get(next) != '[') {
+                    next++;
+                }
+                // 第一个标签之前的内容不属于任何时间
+                if (tagged) {
+                    addSentences(cb, i, next);
+                }
+                timeCount = 0;
+                i = next;
+            }
+        }
+    }
+
+    /**
+     * 分析一个方括号里面的标签,时间标签先记下来,等着后面的内容
+     */
+    private void parseTag(CharBuffer cb, int start, int end) {
+        long t = parseTime(cb, start, end);
+        if (t >= 0) {
+            if (timeCount == times.length) {
+                long[] grown = new long[times.length * 2];
+                System.arraycopy(times, 0, grown, 0, timeCount);
+                times = grown;
+            }
+            times[timeCount++] = t;
+            return;
+        }
+        int colon = start;
+        while (colon < end && cb.get(colon) != ':') {
+            colon++;
+        }
+        if (colon >= end) {
+            return;
+        }
+        String key = cb.subSequence(start, colon).toString().trim();
+        String value = cb.subSequence(colon + 1, end).toString().trim();
+        if (key.equalsIgnoreCase("ti")) {
+            title = value;
+        } else if (key.equalsIgnoreCase("ar")) {
+            artist = value;
+        } else if (key.equalsIgnoreCase("al")) {
+            album = value;
+        } else if (key.equalsIgnoreCase("offset")) {
+            try {
+                offset = Integer.parseInt(value.startsWith("+") ? value.substring(1) : value);
+                hasOffset = true;
+            } catch (NumberFormatException ex) {
+                // 不合法的偏移量就不理它
+            }
+        }
+    }
+
+    /**
+     * 把mm:ss,mm:ss.xx或者mm:ss:xx这样的时间转成毫秒
+     * 小数部分一位是百毫秒,两位是十毫秒,三位是毫秒
+     * @return 毫秒,不是时间就返回-1
+     */
+    static long parseTime(CharSequence cs, int start, int end) {
+        int i = start;
+        long min = 0;
+        int digits = 0;
+        while (i < end && isDigit(cs.charAt(i))) {
+            min = min * 10 + (cs.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || digits > 6 || i >= end || cs.charAt(i) != ':') {
+            return -1;
+        }
+        i++;
+        int sec = 0;
+        digits = 0;
+        while (i < end && isDigit(cs.charAt(i))) {
+            sec = sec * 10 + (cs.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || digits > 2 || sec >= 60) {
+            return -1;
+        }
+        long t = (min * 60 + sec) * 1000L;
+        if (i == end) {
+            return t;
+        }
+        char c = cs.charAt(i);
+        if (c != '.' && c != ':') {
+            return -1;
+        }
+        i++;
+        int frac = 0;
+        digits = 0;
+        while (i < end && isDigit(cs.charAt(i))) {
+            frac = frac * 10 + (cs.charAt(i++) - '0');
+            digits++;
+        }
+        if (i != end || digits == 0 || digits > 3) {
+            return -1;
+        }
+        return t + (digits == 1 ? frac * 100 : digits == 2 ? frac * 10 : frac);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 一段内容有几个时间标签就加几句
+     * 内容里有<mm:ss.xx>这样的逐字时间的时候,去掉标签,
+     * 逐字的时间按第一个时间标签算成相对的,重复的句子也能用
+     */
+    private void addSentences(CharBuffer cb, int start, int end) {
+        if (timeCount == 0) {
+            return;
+        }
+        if (trim) {
+            while (start < end && Character.isWhitespace(cb.get(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(cb.get(end - 1))) {
+                end--;
+            }
+        }
+        // 只有时间没有内容的不要.以前只在还没有偏移量的时候才丢掉,
+        // 有了偏移量以后会加一句空的,现在不管偏移量都丢掉
+        if (start == end) {
+            return;
+        }
+        long base = times[0];
+        text.setLength(0);
+        int words = 0;
+        int i = start;
+        while (i < end) {
+            char c = cb.get(i);
+            if (c == '<') {
+                int close = i + 1;
+                while (close < end && cb.get(close) != '>') {
+                    close++;
+                }
+                long t = close < end ? parseTime(cb, i + 1, close) : -1;
+                if (t >= 0) {
+                    if (words == wordStarts.length) {
+                        wordStarts = grow(wordStarts);
+                        wordTimes = grow(wordTimes);
+                    }
+                    long rel = Math.max(0, t - base);
+                    // 时间不能往回走
+                    if (words > 0 && rel < wordTimes[words - 1]) {
+                        rel = wordTimes[words - 1];
+                    }
+                    wordStarts[words] = text.length();
+                    wordTimes[words] = rel;
+                    words++;
+                    i = close + 1;
+                    continue;
+                }
+            }
+            text.append(c);
+            i++;
+        }
+        // 末尾没有字的标签是最后一个字的结束时间,用不上,去掉
+        while (words > 0 && wordStarts[words - 1] >= text.length()) {
+            words--;
+        }
+        String content = text.toString();
+        int[] starts = null;
+        long[] offsets = null;
+        if (words > 0) {
+            starts = new int[words];
+            offsets = new long[words];
+            System.arraycopy(wordStarts, 0, starts, 0, words);
+            System.arraycopy(wordTimes, 0, offsets, 0, words);
+        }
+        for (int k = 0; k < timeCount; k++) {
+            sentences.add(starts == null ? new Sentence(content, times[k])
+                    : new Sentence(content, times[k], starts, offsets));
+        }
+    }
+
+    private static int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static long[] grow(long[] a) {
+        long[] b = new long[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /**
+     * @return 分析出来的句子,按出现的顺序
+     */
+    List<Sentence> getSentences() {
+        return sentences;
+    }
+
+    /**
+     * @return [ti:]标签,没有就是null
+     */
+    String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return [ar:]标签,没有就是null
+     */
+    String getArtist() {
+        return artist;
+    }
+
+    /**
+     * @return [al:]标签,没有就是null
+     */
+    String getAlbum() {
+        return album;
+    }
+
+    /**
+     * @return 有没有[offset:]标签
+     */
+    boolean hasOffset() {
+        return hasOffset;
+    }
+
+    /**
+     * @return [offset:]标签的毫秒数
+     */
+    int getOffset() {
+        return offset;
+    }
+}
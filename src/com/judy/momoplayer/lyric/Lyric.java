@@ -10,26 +10,21 @@ import com.judy.momoplayer.util.Util;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.LinearGradientPaint;
-import java.io.BufferedReader;
+import java.awt.Font;
+import java.awt.Shape;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileFilter;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
-import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * 表示一首歌的歌词对象,它可以以某种方式来画自己
@@ -52,8 +47,13 @@ public class Lyric implements Serializable {
     private boolean enabled = true;//是否起用了该对象,默认是起用的
     private long during = Integer.MAX_VALUE;//这首歌的长度
     private int offset;//整首歌的偏移量
-    //用于缓存的一个正则表达式对象
-    private static final Pattern pattern = Pattern.compile("(?<=\\[).*?(?=\\])");
+    private transient LyricTimeline timeline;//句子的时间索引,句子变了以后置空,用的时候再建
+    private transient Sentence titleSentence;//没有歌词的时候显示的歌名,量好了留着
+    private transient Sentence searchingSentence;
+    private transient Font maxWidthFont;//算最长一句时用的字体
+    private transient int maxWidth = -1;
+    private String title;//歌词里的[ti:]标签
+    private String artist;//歌词里的[ar:]标签
 
     /**
      * 用ID3V1标签的字节和歌名来初始化歌词
@@ -63,6 +63,14 @@ public class Lyric implements Serializable {
      * @param info
      */
     public Lyric(final PlayListItem info) {
+        this(info, true);
+    }
+
+    /**
+     * @param info 歌曲信息
+     * @param async 要不要另起一个线程去找,预取的时候本来就在后台线程里,直接找完
+     */
+    Lyric(final PlayListItem info, boolean async) {
         this.offset = info.getOffset();
         this.info = info;
         this.during = info.getLength() * 1000;
@@ -73,6 +81,9 @@ public class Lyric implements Serializable {
             log.log(Level.INFO, "\u4e0d\u7528\u627e\u4e86\uff0c\u76f4\u63a5\u5173\u8054\u5230\u7684\u6b4c\u8bcd\u662f\uff1a{0}", file);//不用找了，直接关联到的歌词是
             init(file);
             initDone = true;
+        } else if (!async) {
+            doInit(info);
+            initDone = true;
         } else {
             //否则就起一个线程去找了，先是本地找，然后再是网络上找
             new Thread() {
@@ -134,6 +145,8 @@ public class Lyric implements Serializable {
                 //如果抛了任何异常,也要加回去了
                 list.add(temp);
             }
+            timeline = null;
+            maxWidth = -1;
         }
     }
 
@@ -154,6 +167,7 @@ public class Lyric implements Serializable {
             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "GBK"));
             bw.write(lyric);
             bw.close();
+            LyricIndex.getInstance().add(file);
             info.setLyricFile(file);
             log.log(Level.INFO, "\u4fdd\u5b58\u5b8c\u6bd5,\u4fdd\u5b58\u5728:{0}", file);//保存完毕,保存在
         } catch (IOException exe) {
@@ -191,51 +205,14 @@ public class Lyric implements Serializable {
         info.setOffset(offset);
     }
 
-    /**
-     * 根据一个文件夹,和一个歌曲的信息
-     * 从本地搜到最匹配的歌词
-     * @param dir 目录
-     * @param info 歌曲信息 
-     * @return 歌词文件
-     */
-    private File getMathedLyricFile(File dir, PlayListItem info) {
-        File matched = null;//已经匹配的文件
-        File[] fs = dir.listFiles(new FileFilter() {
-
-            public boolean accept(File pathname) {
-                return pathname.getName().toLowerCase().endsWith(".lrc");
-            }
-        });
-        for (File f : fs) {
-            //全部匹配或者部分匹配都行
-            if (matchAll(info, f) || matchSongName(info, f)) {
-                matched = f;
-                break;
-            }
-        }
-        return matched;
-    }
-
     /**
      * 根据歌的信息去初始化,这个时候
      * 可能在本地找到歌词文件,也可能要去网络上搜索了
      * @param info 歌曲信息
      */
     private void init(PlayListItem info) {
-        File matched = null;
-        for (File dir : Config.getConfig().getSearchLyricDirs()) {
-            log.log(Level.FINE, "\u6b63\u5728\u641c\u7d22\u6587\u4ef6\u5939:{0}", dir);//正在搜索文件夹
-            //得到歌曲信息后,先本地搜索,先搜索HOME文件夹
-            //如果还不存在的话,那建一个目录,然后直接退出不管了
-            if (!dir.exists()) {
-                dir.mkdirs();
-            }
-            matched = getMathedLyricFile(dir, info);
-            //当搜索到了,就退出
-            if (matched != null) {
-                break;
-            }
-        }
+        //得到歌曲信息后,先在本地的歌词索引里找
+        File matched = LyricIndex.getInstance().find(info);
         log.info("找到的是:" + matched);
         if (matched != null && matched.exists()) {
             info.setLyricFile(matched);
@@ -247,61 +224,19 @@ public class Lyric implements Serializable {
     }
 
     /**
-     * 根据文件来初始化
+     * 根据文件来初始化,文件的编码自动识别
      * @param file 文件
      */
     private void init(File file) {
-        BufferedReader br = null;
         try {
-            //br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "GBK"));
-            br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
-            StringBuilder sb = new StringBuilder();
-            String temp = null;
-            while ((temp = br.readLine()) != null) {
-                sb.append(temp).append("\n");
-            }
-            init(sb.toString());
+            init(LrcParser.read(file));
         } catch (IOException ex) {
             Logger.getLogger(Lyric.class.getName()).log(Level.SEVERE, null, ex);
-
-        } finally {
-            try {
-                br.close();
-            } catch (IOException ex) {
-                Logger.getLogger(Lyric.class.getName()).log(Level.SEVERE, null, ex);
-            }
         }
     }
 
     /**
-     * 是否完全匹配,完全匹配是指直接对应到ID3V1的标签,
-     * 如果一样,则完全匹配了,完全匹配的LRC的文件格式是:
-     * 阿木 - 有一种爱叫放手.lrc
-     * @param info 歌曲信息
-     * @param file 侯选文件
-     * @return 是否合格
-     */
-    private boolean matchAll(PlayListItem info, File file) {
-        String name = info.getFormattedName();
-        String fn = file.getName().substring(0, file.getName().lastIndexOf("."));
-        return name.equals(fn);
-    }
-
-    /**
-     * 是否匹配了歌曲名
-     * @param info 歌曲信息
-     * @param file 侯选文件
-     * @return 是否合格
-     */
-    private boolean matchSongName(PlayListItem info, File file) {
-        String name = info.getFormattedName();
-        String rn = file.getName().substring(0, file.getName().lastIndexOf("."));
-        return name.equalsIgnoreCase(rn) || info.getTitle().equalsIgnoreCase(rn);
-    }
-
-    /**
-     * 最重要的一个方法，它根据读到的歌词内容
-     * 进行初始化，比如把歌词一句一句分开并计算好时间
+     * 根据歌词的内容进行初始化
      * @param content 歌词内容
      */
     private void init(String content) {
@@ -309,20 +244,35 @@ public class Lyric implements Serializable {
         //直接显示歌曲名就可以了
         if (content == null || content.trim().equals("")) {
             list.add(new Sentence(info.getFormattedName(), Integer.MIN_VALUE, Integer.MAX_VALUE));
+            timeline = null;
             return;
         }
+        init(CharBuffer.wrap(content));
+    }
+
+    /**
+     * 最重要的一个方法，它根据读到的歌词内容
+     * 进行初始化，比如把歌词一句一句分开并计算好时间
+     * @param content 歌词内容
+     */
+    private void init(CharBuffer content) {
         try {
-            BufferedReader br = new BufferedReader(new StringReader(content));
-            String temp = null;
-            while ((temp = br.readLine()) != null) {
-                parseLine(temp.trim());
+            LrcParser parser = new LrcParser(Config.getConfig().isCutBlankChars());
+            parser.parse(content);
+            list.addAll(parser.getSentences());
+            title = parser.getTitle();
+            artist = parser.getArtist();
+            //当已经有了偏移量的时候，就不再用歌词里的了
+            if (parser.hasOffset() && offset == 0) {
+                offset = parser.getOffset();
+                info.setOffset(offset);
+                log.log(Level.FINE, "整体的偏移量：{0}", offset);
             }
-            br.close();
             //读进来以后就排序了
             Collections.sort(list, new Comparator<Sentence>() {
 
                 public int compare(Sentence o1, Sentence o2) {
-                    return (int) (o1.getFromTime() - o2.getFromTime());
+                    return o1.getFromTime() < o2.getFromTime() ? -1 : (o1.getFromTime() == o2.getFromTime() ? 0 : 1);
                 }
             });
             //处理第一句歌词的起始情况,无论怎么样,加上歌名做为第一句歌词,并把它的
@@ -353,144 +303,27 @@ public class Lyric implements Serializable {
                 Sentence last = list.get(list.size() - 1);
                 last.setToTime(info == null ? Integer.MAX_VALUE : info.getLength() * 1000 + 1000);
             }
-        } catch (IOException ex) {
-            Logger.getLogger(Lyric.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-
-    /**
-     * 分析出整体的偏移量
-     * @param str 包含内容的字符串
-     * @return 偏移量，当分析不出来，则返回最大的正数
-     */
-    private int parseOffset(String str) {
-        String[] ss = str.split("\\:");
-        if (ss.length == 2) {
-            if (ss[0].equalsIgnoreCase("offset")) {
-                int os = Integer.parseInt(ss[1]);
-                System.err.println("整体的偏移量：" + os);
-                return os;
-            } else {
-                return Integer.MAX_VALUE;
-            }
-        } else {
-            return Integer.MAX_VALUE;
+        } finally {
+            //句子都定下来了,直接建好时间索引
+            timeline = new LyricTimeline(list);
+            maxWidth = -1;
         }
     }
 
     /**
-     * 分析这一行的内容，根据这内容
-     * 以及标签的数量生成若干个Sentence对象
-     * 当此行中的时间标签分布不在一起时，也要能分析出来
-     * 所以更改了一些实现
-     * 20080824更新
-     * @param line 这一行
+     * 得到歌词里[ti:]标签写的歌名
+     * @return 歌名,没有就是null
      */
-    private void parseLine(String line) {
-        if (line.equals("")) {
-            return;
-        }
-        Matcher matcher = pattern.matcher(line);
-        List<String> temp = new ArrayList<String>();
-        int lastIndex = -1;//最后一个时间标签的下标
-        int lastLength = -1;//最后一个时间标签的长度
-        while (matcher.find()) {
-            String s = matcher.group();
-            int index = line.indexOf("[" + s + "]");
-            if (lastIndex != -1 && index - lastIndex > lastLength + 2) {
-                //如果大于上次的大小，则中间夹了别的内容在里面
-                //这个时候就要分段了
-                String content = line.substring(lastIndex + lastLength + 2, index);
-                for (String str : temp) {
-                    long t = parseTime(str);
-                    if (t != -1) {
-                        list.add(new Sentence(content, t));
-                    }
-                }
-                temp.clear();
-            }
-            temp.add(s);
-            lastIndex = index;
-            lastLength = s.length();
-        }
-        //如果列表为空，则表示本行没有分析出任何标签
-        if (temp.isEmpty()) {
-            return;
-        }
-        try {
-            int length = lastLength + 2 + lastIndex;
-            String content = line.substring(length > line.length() ? line.length() : length);
-            if (Config.getConfig().isCutBlankChars()) {
-                content = content.trim();
-            }
-            //当已经有了偏移量的时候，就不再分析了
-            if (content.equals("") && offset == 0) {
-                for (String s : temp) {
-                    int of = parseOffset(s);
-                    if (of != Integer.MAX_VALUE) {
-                        offset = of;
-                        info.setOffset(offset);
-                        break;//只分析一次
-                    }
-                }
-                return;
-            }
-            for (String s : temp) {
-                long t = parseTime(s);
-                if (t != -1) {
-                    list.add(new Sentence(content, t));
-                }
-            }
-        } catch (Exception exe) {
-        }
+    public String getTitle() {
+        return title;
     }
 
     /**
-     * 把如00:00.00这样的字符串转化成
-     * 毫秒数的时间，比如 
-     * 01:10.34就是一分钟加上10秒再加上340毫秒
-     * 也就是返回70340毫秒
-     * @param time 字符串的时间
-     * @return 此时间表示的毫秒
+     * 得到歌词里[ar:]标签写的歌手
+     * @return 歌手,没有就是null
      */
-    private long parseTime(String time) {
-        String[] ss = time.split("\\:|\\.");
-        //如果 是两位以后，就非法了
-        if (ss.length < 2) {
-            return -1;
-        } else if (ss.length == 2) {//如果正好两位，就算分秒
-            try {
-                //先看有没有一个是记录了整体偏移量的
-                if (offset == 0 && ss[0].equalsIgnoreCase("offset")) {
-                    offset = Integer.parseInt(ss[1]);
-                    info.setOffset(offset);
-                    System.err.println("整体的偏移量：" + offset);
-                    return -1;
-                }
-                int min = Integer.parseInt(ss[0]);
-                int sec = Integer.parseInt(ss[1]);
-                if (min < 0 || sec < 0 || sec >= 60) {
-                    throw new RuntimeException("数字不合法!");
-                }
-                return (min * 60 + sec) * 1000L;
-            } catch (RuntimeException exe) {
-                return -1;
-            }
-        } else if (ss.length == 3) {//如果正好三位，就算分秒，十毫秒
-            try {
-                int min = Integer.parseInt(ss[0]);
-                int sec = Integer.parseInt(ss[1]);
-                int mm = Integer.parseInt(ss[2]);
-                if (min < 0 || sec < 0 || sec >= 60 || mm < 0 || mm > 99) {
-                    throw new RuntimeException("数字不合法!");
-                }
-                return (min * 60 + sec) * 1000L + mm * 10;
-            } catch (RuntimeException exe) {
-                return -1;
-            }
-        } else {//否则也非法
-            return -1;
-        }
+    public String getArtist() {
+        return artist;
     }
 
     /**
@@ -528,7 +361,6 @@ public class Lyric implements Serializable {
     }
 
     private void drawKaraoke(Graphics2D gd, Sentence now, int x, int y, long t) {
-        int nowWidth = now.getContentWidth(gd);
         Color gradient = null;
         //如果要渐入渐出才去求中间色，否则直接用高亮色画
         if (Config.getConfig().isLyricShadow()) {
@@ -537,22 +369,47 @@ public class Lyric implements Serializable {
             gradient = Config.getConfig().getLyricHilight();
         }
         if (Config.getConfig().isKaraoke()) {
-            float f = (t - now.getFromTime()) * 1.0f / (now.getToTime() - now.getFromTime());
-            if (f > 0.98f) {
-                f = 0.98f;
-            }
-            if (x == 0) {
-                x = 1;
+            int nowWidth = now.getContentWidth(gd);
+            float sung;
+            if (now.hasWordTimes()) {
+                //有逐字时间的时候按唱到的字来算
+                sung = now.getSungWidth(gd, t);
+            } else {
+                sung = nowWidth * ((t - now.getFromTime()) * 1.0f / (now.getToTime() - now.getFromTime()));
             }
-            if (nowWidth == 0) {
-                nowWidth = 1;
+            //先用普通色画整句,再把唱过的那一段剪出来用高亮色画一遍
+            gd.setColor(Config.getConfig().getLyricForeground());
+            now.draw(gd, x, y);
+            int w = (int) Math.min(Math.max(sung, 0), nowWidth);
+            if (w > 0) {
+                Shape clip = gd.getClip();
+                gd.clipRect(x, y, w, now.getContentHeight(gd));
+                gd.setColor(gradient);
+                now.draw(gd, x, y);
+                gd.setClip(clip);
             }
-            gd.setPaint(new LinearGradientPaint(x, y, x + nowWidth, y, new float[]{f, f + 0.01f}, new Color[]{gradient, Config.getConfig().getLyricForeground()}));
         } else {
-            gd.setPaint(gradient);
+            gd.setColor(gradient);
+            now.draw(gd, x, y);
+        }
+    }
+
+    /**
+     * 没有歌词的时候显示歌名的那一句,歌名变了才重建
+     */
+    private Sentence getTitleSentence() {
+        String name = info.getFormattedName();
+        if (titleSentence == null || !titleSentence.getContent().equals(name)) {
+            titleSentence = new Sentence(name, Integer.MIN_VALUE, Integer.MAX_VALUE);
         }
+        return titleSentence;
+    }
 
-        Util.drawString(gd, now.getContent(), x, y);
+    private Sentence getSearchingSentence() {
+        if (searchingSentence == null) {
+            searchingSentence = new Sentence("正在搜索歌词");
+        }
+        return searchingSentence;
     }
 
     /**
@@ -563,20 +420,20 @@ public class Lyric implements Serializable {
      */
     public synchronized void drawH(Graphics g) {
         if (!enabled) {
-            Sentence sen = new Sentence(info.getFormattedName());
+            Sentence sen = getTitleSentence();
             int x = (width - sen.getContentWidth(g)) / 2;
             int y = (height - sen.getContentHeight(g) + Config.getConfig().getV_SPACE()) / 2;
             g.setColor(Config.getConfig().getLyricHilight());
-            Util.drawString(g, sen.getContent(), x, y);
+            sen.draw(g, x, y);
             return;
         }
         //首先看是不是初始化完毕了
         if (!initDone) {
-            Sentence temp = new Sentence("正在搜索歌词");
+            Sentence temp = getSearchingSentence();
             int x = (width - temp.getContentWidth(g)) / 2;
             int y = (height - temp.getContentHeight(g)) / 2;
             g.setColor(Config.getConfig().getLyricHilight());
-            Util.drawString(g, temp.getContent(), x, y);
+            temp.draw(g, x, y);
             return;
         }
         //如果只存在一句的话,那就不要浪费那么多计算的时候了
@@ -586,7 +443,7 @@ public class Lyric implements Serializable {
             int x = (width - sen.getContentWidth(g)) / 2;
             int y = (height - sen.getContentHeight(g) + Config.getConfig().getV_SPACE()) / 2;
             g.setColor(Config.getConfig().getLyricHilight());
-            Util.drawString(g, sen.getContent(), x, y);
+            sen.draw(g, x, y);
         } else {
             //取一个time的副本，以防止在一个方法里面产生两种time的情况
             long t = tempTime;
@@ -596,11 +453,11 @@ public class Lyric implements Serializable {
                 currentIndex = index;
             }
             if (index == -1) {
-                Sentence sen = new Sentence(info.getFormattedName(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+                Sentence sen = getTitleSentence();
                 int x = (width - sen.getContentWidth(g) - Config.getConfig().getH_SPACE()) / 2;
                 int y = (height - sen.getContentHeight(g) + Config.getConfig().getV_SPACE()) / 2;
                 g.setColor(Config.getConfig().getLyricHilight());
-                Util.drawString(g, sen.getContent(), x, y);
+                sen.draw(g, x, y);
                 return;
             }
             Sentence now = list.get(index);
@@ -626,7 +483,7 @@ public class Lyric implements Serializable {
                         gd.setPaint(Config.getConfig().getLyricForeground());
                     }
                 }
-                Util.drawString(g, sen.getContent(), tempX, y);
+                sen.draw(g, tempX, y);
             }
             gd.setPaint(Config.getConfig().getLyricForeground());
             tempX = x;
@@ -638,7 +495,7 @@ public class Lyric implements Serializable {
                 if (tempX > width) {
                     break;
                 }
-                Util.drawString(g, sen.getContent(), tempX, y);
+                sen.draw(g, tempX, y);
                 tempWidth = sen.getContentWidth(g) + Config.getConfig().getH_SPACE();
             }
         }
@@ -650,14 +507,19 @@ public class Lyric implements Serializable {
      * @return 最长的长度
      */
     public int getMaxWidth(Graphics g) {
-        int max = 0;
-        for (Sentence sen : list) {
-            int w = sen.getContentWidth(g);
-            if (w > max) {
-                max = w;
+        Font font = g.getFont();
+        if (maxWidth < 0 || !font.equals(maxWidthFont)) {
+            int max = 0;
+            for (Sentence sen : list) {
+                int w = sen.getContentWidth(g);
+                if (w > max) {
+                    max = w;
+                }
             }
+            maxWidth = max;
+            maxWidthFont = font;
         }
-        return max;
+        return maxWidth;
     }
 
     /**
@@ -694,20 +556,20 @@ public class Lyric implements Serializable {
      */
     public synchronized void drawV(Graphics g) {
         if (!enabled) {
-            Sentence sen = new Sentence(info.getFormattedName());
+            Sentence sen = getTitleSentence();
             int x = (width - sen.getContentWidth(g)) / 2;
             int y = (height - sen.getContentHeight(g) + Config.getConfig().getV_SPACE()) / 2;
             g.setColor(Config.getConfig().getLyricHilight());
-            Util.drawString(g, sen.getContent(), x, y);
+            sen.draw(g, x, y);
             return;
         }
         //首先看是不是初始化完毕了
         if (!initDone) {
-            Sentence temp = new Sentence("正在搜索歌词");
+            Sentence temp = getSearchingSentence();
             int x = getSentenceX(g, temp);
             int y = (height - temp.getContentHeight(g)) / 2;
             g.setColor(Config.getConfig().getLyricHilight());
-            Util.drawString(g, temp.getContent(), x, y);
+            temp.draw(g, x, y);
             return;
         }
         //如果只存在一句的话,那就不要浪费那么多计算的时候了
@@ -717,7 +579,7 @@ public class Lyric implements Serializable {
             int x = getSentenceX(g, sen);
             int y = (height - sen.getContentHeight(g)) / 2;
             g.setColor(Config.getConfig().getLyricHilight());
-            Util.drawString(g, sen.getContent(), x, y);
+            sen.draw(g, x, y);
         } else {
             long t = tempTime;
             Graphics2D gd = (Graphics2D) g;
@@ -726,11 +588,11 @@ public class Lyric implements Serializable {
                 currentIndex = index;
             }
             if (index == -1) {
-                Sentence sen = new Sentence(info.getFormattedName(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+                Sentence sen = getTitleSentence();
                 int x = getSentenceX(g, sen);
                 int y = (height - sen.getContentHeight(g)) / 2;
                 gd.setPaint(Config.getConfig().getLyricHilight());
-                Util.drawString(g, sen.getContent(), x, y);
+                sen.draw(g, x, y);
                 return;
             }
             Sentence now = list.get(index);
@@ -758,7 +620,7 @@ public class Lyric implements Serializable {
                         gd.setColor(Config.getConfig().getLyricForeground());
                     }
                 }
-                Util.drawString(g, sen.getContent(), x1, tempY);
+                sen.draw(g, x1, tempY);
             }
             gd.setColor(Config.getConfig().getLyricForeground());
             tempY = y;
@@ -770,7 +632,7 @@ public class Lyric implements Serializable {
                 if (tempY > height) {
                     break;
                 }
-                Util.drawString(g, sen.getContent(), x1, tempY);
+                sen.draw(g, x1, tempY);
             }
         }
     }
@@ -782,13 +644,11 @@ public class Lyric implements Serializable {
      * @return 下标
      */
     private int getNowSentenceIndex(long t) {
-        for (int i = 0; i < list.size(); i++) {
-            if (list.get(i).isInTime(t)) {
-                return i;
-            }
+        LyricTimeline tl = timeline;
+        if (tl == null || tl.size() != list.size()) {
+            tl = timeline = new LyricTimeline(list);
         }
-//        throw new RuntimeException("竟然出现了找不到的情况！");
-        return -1;
+        return tl.indexOf(t);
     }
 
     /**
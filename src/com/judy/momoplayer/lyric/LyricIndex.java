@@ -0,0 +1,506 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.lyric;
+
+import com.judy.momoplayer.playlist.PlayListItem;
+import com.judy.momoplayer.util.Config;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 本地歌词文件的索引,所有的歌共用一个
+ * 每个搜索歌词的文件夹只列一次,文件名规范化以后放到哈希表里,
+ * 换歌的时候直接查表,不用再把文件夹列一遍
+ * 文件名同时按两个字一组建一个索引,名字差一点的时候用来模糊匹配
+ * 索引保存在HOME下面,下次启动的时候文件夹的修改时间没变就直接用,
+ * 运行的时候用WatchService盯着文件夹,有文件加进来或者删掉就跟着改
+ * @author judy
+ */
+public class LyricIndex {
+
+    private static final Logger log = Logger.getLogger(LyricIndex.class.getName());
+    private static final int MAGIC = 0x4D4C4931;//MLI1
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "LyricIndex.dat";
+    private static final float FUZZY_THRESHOLD = 0.8f;//两个名字相同的字组占这么多才算匹配
+    private static LyricIndex instance;
+    private final File file;
+    private final Map<String, DirIndex> dirs = new LinkedHashMap<String, DirIndex>();
+    private final Map<WatchKey, DirIndex> watched = new HashMap<WatchKey, DirIndex>();
+    private WatchService watcher;
+    private boolean dirty;//有改动还没有存
+
+    LyricIndex(File file) {
+        this.file = file;
+        load();
+    }
+
+    public static synchronized LyricIndex getInstance() {
+        if (instance == null) {
+            instance = new LyricIndex(new File(Config.HOME, FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * 一个文件夹里的歌词文件
+     */
+    private static class DirIndex {
+
+        final File dir;
+        long lastModified;
+        final Set<String> names = new LinkedHashSet<String>();//按列出来的顺序
+        final Map<String, List<String>> byKey = new HashMap<String, List<String>>();
+        final Map<String, List<String>> byGram = new HashMap<String, List<String>>();
+        WatchKey key;
+
+        DirIndex(File dir) {
+            this.dir = dir;
+        }
+
+        void add(String name) {
+            if (!names.add(name)) {
+                return;
+            }
+            for (String key : getKeys(name)) {
+                put(byKey, key, name);
+            }
+            for (String gram : getGrams(normalize(getBaseName(name)))) {
+                put(byGram, gram, name);
+            }
+        }
+
+        void remove(String name) {
+            if (!names.remove(name)) {
+                return;
+            }
+            for (String key : getKeys(name)) {
+                delete(byKey, key, name);
+            }
+            for (String gram : getGrams(normalize(getBaseName(name)))) {
+                delete(byGram, gram, name);
+            }
+        }
+
+        void clear() {
+            names.clear();
+            byKey.clear();
+            byGram.clear();
+        }
+
+        private static void put(Map<String, List<String>> map, String key, String name) {
+            List<String> list = map.get(key);
+            if (list == null) {
+                list = new ArrayList<String>(1);
+                map.put(key, list);
+            }
+            list.add(name);
+        }
+
+        private static void delete(Map<String, List<String>> map, String key, String name) {
+            List<String> list = map.get(key);
+            if (list != null) {
+                list.remove(name);
+                if (list.isEmpty()) {
+                    map.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 给一首歌找本地的歌词文件,先按文件夹的顺序精确地找,
+     * 都没有的时候再模糊地找
+     * @param info 歌曲信息
+     * @return 歌词文件,找不到就返回null
+     */
+    public synchronized File find(PlayListItem info) {
+        List<String> queries = new ArrayList<String>(3);
+        addQuery(queries, info.getFormattedName());
+        String title = info.getTitle();
+        String artist = info.getArtist();
+        if (artist != null && artist.trim().length() > 0 && title != null) {
+            addQuery(queries, artist + title);
+        }
+        addQuery(queries, title);
+        List<DirIndex> indexes = new ArrayList<DirIndex>();
+        for (File dir : Config.getConfig().getSearchLyricDirs()) {
+            DirIndex index = getDirIndex(dir);
+            if (index != null) {
+                indexes.add(index);
+            }
+        }
+        saveIfDirty();
+        for (DirIndex index : indexes) {
+            for (String query : queries) {
+                List<String> names = index.byKey.get(query);
+                if (names != null) {
+                    File f = new File(index.dir, names.get(0));
+                    if (f.isFile()) {
+                        return f;
+                    }
+                }
+            }
+        }
+        return queries.isEmpty() ? null : findFuzzy(indexes, queries.get(0));
+    }
+
+    private static void addQuery(List<String> queries, String s) {
+        if (s != null) {
+            String key = normalize(s);
+            if (key.length() > 0 && !queries.contains(key)) {
+                queries.add(key);
+            }
+        }
+    }
+
+    /**
+     * 用两个字一组的索引找最像的文件名
+     */
+    private File findFuzzy(List<DirIndex> indexes, String query) {
+        Set<String> grams = getGrams(query);
+        if (grams.size() < 2) {
+            return null;
+        }
+        File best = null;
+        float bestScore = FUZZY_THRESHOLD;
+        for (DirIndex index : indexes) {
+            Map<String, Integer> common = new HashMap<String, Integer>();
+            for (String gram : grams) {
+                List<String> names = index.byGram.get(gram);
+                if (names == null) {
+                    continue;
+                }
+                for (String name : names) {
+                    Integer c = common.get(name);
+                    common.put(name, c == null ? 1 : c + 1);
+                }
+            }
+            for (Map.Entry<String, Integer> me : common.entrySet()) {
+                int size = getGrams(normalize(getBaseName(me.getKey()))).size();
+                float score = 2.0f * me.getValue() / (grams.size() + size);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = new File(index.dir, me.getKey());
+                }
+            }
+        }
+        if (best != null) {
+            log.log(Level.FINE, "Fuzzy lyric match {0} -> {1}", new Object[]{query, best});
+        }
+        return best;
+    }
+
+    /**
+     * 新保存的歌词文件马上加到索引里,不用等WatchService
+     * @param lrc 歌词文件
+     */
+    public synchronized void add(File lrc) {
+        File dir = lrc.getAbsoluteFile().getParentFile();
+        DirIndex index = dir == null ? null : dirs.get(getPath(dir));
+        if (index != null && isLyricFile(lrc.getName())) {
+            index.add(lrc.getName());
+            dirty = true;
+            saveIfDirty();
+        }
+    }
+
+    /**
+     * 得到一个文件夹的索引,还没有建或者已经过期了就列一遍
+     */
+    private DirIndex getDirIndex(File dir) {
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        String path = getPath(dir);
+        DirIndex index = dirs.get(path);
+        if (index == null) {
+            index = new DirIndex(dir);
+            dirs.put(path, index);
+            scan(index);
+        } else if (index.key == null && index.lastModified != dir.lastModified()) {
+            // 没有WatchService盯着的时候,文件夹改过了就重新列
+            scan(index);
+        }
+        if (index.key == null) {
+            watch(index);
+        }
+        return index;
+    }
+
+    private void scan(DirIndex index) {
+        long start = System.currentTimeMillis();
+        index.clear();
+        index.lastModified = index.dir.lastModified();
+        String[] names = index.dir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (isLyricFile(name)) {
+                    index.add(name);
+                }
+            }
+        }
+        dirty = true;
+        log.log(Level.INFO, "Indexed {0} lyrics in {1} ({2}ms)",
+                new Object[]{index.names.size(), index.dir, System.currentTimeMillis() - start});
+    }
+
+    /**
+     * 让WatchService盯着这个文件夹,第一次用的时候起一个线程
+     */
+    private void watch(DirIndex index) {
+        try {
+            if (watcher == null) {
+                watcher = FileSystems.getDefault().newWatchService();
+                Thread t = new Thread("LyricIndex watcher") {
+
+                    @Override
+                    public void run() {
+                        watchLoop();
+                    }
+                };
+                t.setDaemon(true);
+                t.start();
+            }
+            index.key = index.dir.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watched.put(index.key, index);
+            // 注册之前可能有改动
+            if (index.lastModified != index.dir.lastModified()) {
+                scan(index);
+            }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "Cannot watch " + index.dir, ex);
+        } catch (RuntimeException ex) {
+            log.log(Level.WARNING, "Cannot watch " + index.dir, ex);
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException ex) {
+                return;
+            } catch (ClosedWatchServiceException ex) {
+                return;
+            }
+            synchronized (this) {
+                do {
+                    handle(key);
+                    // 一下子来了很多改动的时候一起处理,最后存一次
+                    key = watcher.poll();
+                } while (key != null);
+                saveIfDirty();
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(500);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void handle(WatchKey key) {
+        DirIndex index = watched.get(key);
+        if (index == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                scan(index);
+                continue;
+            }
+            String name = ((Path) event.context()).getFileName().toString();
+            if (!isLyricFile(name)) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                index.add(name);
+            } else {
+                index.remove(name);
+            }
+            dirty = true;
+        }
+        index.lastModified = index.dir.lastModified();
+        if (!key.reset()) {
+            // 文件夹没了,下次用的时候再建
+            watched.remove(key);
+            dirs.remove(getPath(index.dir));
+            dirty = true;
+        }
+    }
+
+    /**
+     * 读出上次保存的索引,文件夹的修改时间变了的就不要了
+     */
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                File dir = new File(in.readUTF());
+                long lastModified = in.readLong();
+                int size = in.readInt();
+                DirIndex index = new DirIndex(dir);
+                for (int j = 0; j < size; j++) {
+                    index.add(in.readUTF());
+                }
+                index.lastModified = lastModified;
+                if (lastModified == dir.lastModified()) {
+                    dirs.put(getPath(dir), index);
+                }
+            }
+            log.log(Level.INFO, "Lyric index : {0} folders", dirs.size());
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "Cannot read lyric index " + file, ex);
+            dirs.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    log.log(Level.FINE, "Cannot close lyric index", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 有改动就把整个索引写到一个新文件里再换过去
+     */
+    private void saveIfDirty() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dirs.size());
+                for (DirIndex index : dirs.values()) {
+                    out.writeUTF(index.dir.getPath());
+                    out.writeLong(index.lastModified);
+                    out.writeInt(index.names.size());
+                    for (String name : index.names) {
+                        out.writeUTF(name);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot delete " + file);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot rename " + temp);
+            }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "Cannot write lyric index " + file, ex);
+            temp.delete();
+        }
+    }
+
+    private static String getPath(File dir) {
+        try {
+            return dir.getCanonicalPath();
+        } catch (IOException ex) {
+            return dir.getAbsolutePath();
+        }
+    }
+
+    private static boolean isLyricFile(String name) {
+        return name.toLowerCase(Locale.ENGLISH).endsWith(".lrc");
+    }
+
+    private static String getBaseName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * 一个文件名对应的几个键,"歌手 - 歌名"这样的名字反过来也算
+     */
+    private static List<String> getKeys(String name) {
+        List<String> keys = new ArrayList<String>(2);
+        String base = getBaseName(name);
+        keys.add(normalize(base));
+        int dash = base.indexOf('-');
+        if (dash > 0 && dash < base.length() - 1) {
+            String swapped = normalize(base.substring(dash + 1) + base.substring(0, dash));
+            if (!keys.contains(swapped)) {
+                keys.add(swapped);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 规范化一个名字,全角转半角,大写转小写,只留下字母和数字,
+     * 这样空格,横线,括号不一样也能对上
+     * @param s 名字
+     * @return 键
+     */
+    static String normalize(String s) {
+        String n = Normalizer.normalize(s, Normalizer.Form.NFKC).toLowerCase(Locale.ENGLISH);
+        StringBuilder sb = new StringBuilder(n.length());
+        for (int i = 0; i < n.length(); i++) {
+            char c = n.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 两个字一组切开
+     */
+    private static Set<String> getGrams(String key) {
+        Set<String> grams = new LinkedHashSet<String>();
+        for (int i = 0; i + 2 <= key.length(); i++) {
+            grams.add(key.substring(i, i + 2));
+        }
+        return grams;
+    }
+}
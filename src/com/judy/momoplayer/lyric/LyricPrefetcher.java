@@ -0,0 +1,135 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.lyric;
+
+import com.judy.momoplayer.playlist.PlayList;
+import com.judy.momoplayer.playlist.PlayListItem;
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 提前把接下来要放的几首歌的标签和歌词准备好
+ * 每次换歌以后按播放列表的游标和播放策略看接下来的几首,
+ * 在一个低优先级的线程里读标签,找歌词,分析好放在一个不大的LRU里,
+ * 真的放到那一首的时候直接拿来用,歌词窗口就不会空着等了
+ * @author judy
+ */
+public class LyricPrefetcher {
+
+    private static final Logger log = Logger.getLogger(LyricPrefetcher.class.getName());
+    private static final int AHEAD = 3;//往后看几首
+    private static final int CAPACITY = 8;//最多留几个准备好的歌词
+    private static LyricPrefetcher instance;
+    private final ThreadPoolExecutor executor;
+    private final Map<PlayListItem, Lyric> ready;//PlayListItem没有重写equals,按对象来认
+    private final Set<PlayListItem> pending = Collections.newSetFromMap(new IdentityHashMap<PlayListItem, Boolean>());
+
+    private LyricPrefetcher() {
+        ready = new LinkedHashMap<PlayListItem, Lyric>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PlayListItem, Lyric> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "LyricPrefetcher");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+                        return t;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized LyricPrefetcher getInstance() {
+        if (instance == null) {
+            instance = new LyricPrefetcher();
+        }
+        return instance;
+    }
+
+    /**
+     * 得到一首歌的歌词,预取好了的直接用,没有的话照原来的办法现找
+     * @param item 要放的歌
+     * @return 歌词
+     */
+    public Lyric getLyric(PlayListItem item) {
+        Lyric lyric;
+        synchronized (this) {
+            lyric = ready.remove(item);
+        }
+        // 预取以后又手动关联了别的歌词文件,就不能用预取的了
+        File file = item.getLyricFile();
+        if (lyric != null && (file == null || file.equals(lyric.getLyricFile()))) {
+            log.log(Level.FINE, "Prefetched lyric for {0}", item.getFormattedName());
+            return lyric;
+        }
+        return new Lyric(item);
+    }
+
+    /**
+     * 按播放列表现在的位置,把接下来的几首排进预取的队列,
+     * 之前排了还没开始的就不要了,要在调用nextCursor的那个线程里调
+     * @param playlist 播放列表
+     */
+    public void prefetch(PlayList playlist) {
+        if (playlist == null) {
+            return;
+        }
+        List<PlayListItem> upcoming = playlist.peekUpcoming(AHEAD);
+        executor.getQueue().clear();
+        synchronized (this) {
+            pending.clear();
+            for (final PlayListItem item : upcoming) {
+                if (ready.containsKey(item) || !pending.add(item)) {
+                    continue;
+                }
+                executor.execute(new Runnable() {
+
+                    public void run() {
+                        load(item);
+                    }
+                });
+            }
+        }
+    }
+
+    private void load(PlayListItem item) {
+        synchronized (this) {
+            // 排队的时候已经被换掉了
+            if (!pending.remove(item) || ready.containsKey(item)) {
+                return;
+            }
+        }
+        try {
+            long start = System.currentTimeMillis();
+            item.getTagInfo();
+            Lyric lyric = new Lyric(item, false);
+            synchronized (this) {
+                ready.put(item, lyric);
+            }
+            log.log(Level.FINE, "Prefetched {0} in {1}ms", new Object[]{item.getFormattedName(), System.currentTimeMillis() - start});
+        } catch (RuntimeException ex) {
+            log.log(Level.WARNING, "Cannot prefetch lyric for " + item.getLocation(), ex);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.lyric;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 歌词的时间索引,每一句的开始和结束时间放在两个数组里
+ * 正常播放的时候时间只往前走,从上一次的位置往后看几句就找到了,
+ * 拖动或者跳转的时候用二分查找
+ * @author judy
+ */
+class LyricTimeline {
+
+    private static final int MAX_STEPS = 4;//往后看这么多句还没找到就改用二分查找
+    private final long[] starts;
+    private final long[] ends;
+    private int cursor;//上一次找到的下标
+
+    /**
+     * @param list 已经按开始时间排好序的句子
+     */
+    LyricTimeline(List<Sentence> list) {
+        int size = list.size();
+        starts = new long[size];
+        ends = new long[size];
+        for (int i = 0; i < size; i++) {
+            Sentence sen = list.get(i);
+            starts[i] = sen.getFromTime();
+            ends[i] = sen.getToTime();
+        }
+    }
+
+    int size() {
+        return starts.length;
+    }
+
+    /**
+     * 找到某个时间正在唱的那一句
+     * @param t 时间
+     * @return 下标,不在任何一句里面就返回-1
+     */
+    int indexOf(long t) {
+        int n = starts.length;
+        if (n == 0) {
+            return -1;
+        }
+        int c = cursor;
+        if (t >= starts[c]) {
+            for (int i = 0; i < MAX_STEPS && c + 1 < n && t >= starts[c + 1]; i++) {
+                c++;
+            }
+            if (c + 1 < n && t >= starts[c + 1]) {
+                c = search(t);
+            }
+        } else {
+            c = search(t);
+        }
+        if (c < 0) {
+            return -1;
+        }
+        cursor = c;
+        return t <= ends[c] ? c : -1;
+    }
+
+    /**
+     * 二分查找开始时间不晚于t的最后一句
+     */
+    private int search(long t) {
+        int i = Arrays.binarySearch(starts, t);
+        if (i < 0) {
+            return -i - 2;
+        }
+        // 有好几句同时开始的时候,前面的都是一闪而过,要最后那一句
+        while (i + 1 < starts.length && starts[i + 1] == t) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -7,8 +7,15 @@ package com.judy.momoplayer.lyric;
 import com.judy.momoplayer.util.Config;
 import com.judy.momoplayer.util.Util;
 import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * 一个用来表示每一句歌词的类
@@ -22,6 +29,16 @@ public class Sentence implements Serializable {
     private long fromTime;//这句的起始时间,时间是以毫秒为单位
     private long toTime;//这一句的结束时间
     private String content;//这一句的内容
+    private int[] wordStarts;//逐字歌词每个字在内容里开始的位置,没有逐字时间的时候为null
+    private long[] wordOffsets;//逐字歌词每个字开始的时间,相对于这一句的开始
+    //下面这些是量好的大小和排好的字形,字体或者抗锯齿变了才重新量
+    private transient Font layoutFont;
+    private transient FontRenderContext layoutFrc;
+    private transient GlyphVector glyphs;
+    private transient float[] glyphX;//每个字开始的横坐标,逐字歌词用的
+    private transient int layoutWidth;
+    private transient int layoutHeight;
+    private transient int layoutAscent;
     private final static long DISAPPEAR_TIME = 1000L;//歌词从显示完到消失的时间
     public Sentence(String content, long fromTime, long toTime) {
         this.content = content;
@@ -29,6 +46,19 @@ public class Sentence implements Serializable {
         this.toTime = toTime;
     }
 
+    /**
+     * 带逐字时间的句子
+     * @param content 去掉了时间标签的内容
+     * @param fromTime 开始时间
+     * @param wordStarts 每个字在内容里开始的位置
+     * @param wordOffsets 每个字开始的时间,相对于fromTime,从小到大
+     */
+    public Sentence(String content, long fromTime, int[] wordStarts, long[] wordOffsets) {
+        this(content, fromTime, 0);
+        this.wordStarts = wordStarts;
+        this.wordOffsets = wordOffsets;
+    }
+
     public Sentence(String content, long fromTime) {
         this(content, fromTime, 0);
     }
@@ -90,13 +120,100 @@ public class Sentence implements Serializable {
         return (int) ((width + Config.getConfig().getH_SPACE()) * ((time - fromTime) * 1.0 / (toTime - fromTime)));
     }
 
+    /**
+     * 是不是有逐字的时间
+     * @return 有没有
+     */
+    public boolean hasWordTimes() {
+        return wordOffsets != null && wordOffsets.length > 0;
+    }
+
+    /**
+     * 根据逐字的时间算出这一句已经唱过的宽度,
+     * 唱到一半的字按这个字的时间比例算
+     * @param g 画笔
+     * @param time 时间
+     * @return 宽度
+     */
+    public float getSungWidth(Graphics g, long time) {
+        long t = time - fromTime;
+        if (!hasWordTimes()) {
+            return getContentWidth(g) * (t * 1.0f / getDuring());
+        }
+        int k = Arrays.binarySearch(wordOffsets, t);
+        if (k < 0) {
+            k = -k - 2;
+        }
+        if (k < 0) {
+            return 0;
+        }
+        layout(g);
+        int start = wordStarts[k];
+        int end = k + 1 < wordStarts.length ? wordStarts[k + 1] : content.length();
+        long wordEnd = k + 1 < wordOffsets.length ? wordOffsets[k + 1] : toTime - fromTime;
+        float f = wordEnd > wordOffsets[k] ? (t - wordOffsets[k]) * 1.0f / (wordEnd - wordOffsets[k]) : 1;
+        if (f > 1) {
+            f = 1;
+        }
+        return glyphX[start] + f * (glyphX[end] - glyphX[start]);
+    }
+
+    /**
+     * 量这一句的大小,排好字形,字体和画笔的设置没变的时候直接用上次的
+     * @param g 画笔
+     */
+    private void layout(Graphics g) {
+        Font font = g.getFont();
+        FontRenderContext frc = ((Graphics2D) g).getFontRenderContext();
+        if (glyphs != null && font.equals(layoutFont) && frc.equals(layoutFrc)) {
+            return;
+        }
+        FontMetrics fm = g.getFontMetrics(font);
+        Rectangle2D bounds = fm.getStringBounds(content, g);
+        layoutWidth = (int) bounds.getWidth();
+        layoutHeight = (int) bounds.getHeight();
+        layoutAscent = fm.getAscent();
+        glyphs = font.createGlyphVector(frc, content);
+        glyphX = null;
+        if (hasWordTimes()) {
+            int n = content.length();
+            glyphX = new float[n + 1];
+            if (glyphs.getNumGlyphs() == n) {
+                float[] positions = glyphs.getGlyphPositions(0, n + 1, null);
+                for (int i = 0; i <= n; i++) {
+                    glyphX[i] = positions[i * 2];
+                }
+            } else {
+                // 有代理对的时候字形和字符对不上,按字符量
+                char[] chars = content.toCharArray();
+                for (int i = 1; i <= n; i++) {
+                    glyphX[i] = fm.charsWidth(chars, 0, i);
+                }
+            }
+        }
+        layoutFont = font;
+        layoutFrc = frc;
+    }
+
+    /**
+     * 用排好的字形画出这一句,左上角在(x,y)
+     * @param g 画笔
+     * @param x X坐标
+     * @param y Y坐标
+     */
+    public void draw(Graphics g, int x, int y) {
+        layout(g);
+        ((Graphics2D) g).drawGlyphVector(glyphs, x, y + layoutAscent);
+    }
+
     /**
      * 得到内容的宽度
      * @param g 画笔
      * @return 宽度
      */
     public int getContentWidth(Graphics g) {
-        return (int) g.getFontMetrics().getStringBounds(content, g).getWidth();
+        layout(g);
+        return layoutWidth;
     }
 
     /**
@@ -134,7 +251,8 @@ public class Sentence implements Serializable {
      * @return 高度
      */
     public int getContentHeight(Graphics g) {
-        return (int) g.getFontMetrics().getStringBounds(content, g).getHeight() + Config.getConfig().getV_SPACE();
+        layout(g);
+        return layoutHeight + Config.getConfig().getV_SPACE();
     }
 
     /**
@@ -25,9 +25,7 @@ import javax.swing.table.TableRowSorter;
 
 import com.judy.momoplayer.playlist.PlayListItem;
 import com.judy.momoplayer.util.Config;
-import com.june.lrc.ILrcDownload;
-import com.june.lrc.bean.Lyrics;
-import com.june.lrc.gcm.GeCiMiLRC;
+import com.june.lrc.LrcFetcher;
 
 /**
  *
@@ -319,13 +317,12 @@ public class WebSearchDialog extends javax.swing.JDialog {
 
     private void doSave() {
         info.setText(Config.getResource("WebSearchDialog.downloading"));
-        new Thread() {
+        LrcFetcher.getDefault().execute(new Runnable() {
 
-            @Override
             public void run() {
                 doSave0();
             }
-        }.start();
+        });
     }
 
     private void doSave0() {
@@ -350,6 +347,7 @@ public class WebSearchDialog extends javax.swing.JDialog {
                 index = sorter.convertRowIndexToModel(index);
                 SearchResult result = list.get(index);
                 result.save(path);
+                LyricIndex.getInstance().add(file);
                 info.setText(Config.getResource("WebSearchDialog.downloadSuccess")+file.getPath());
                 Lyric lyric = new Lyric(result.getContent(), item);
                 File temp = item.getLyricFile();
@@ -377,13 +375,12 @@ public class WebSearchDialog extends javax.swing.JDialog {
         artistJT.setEnabled(false);
         titleJT.setEnabled(false);
         info.setText(Config.getResource("WebSearchDialog.searching"));
-        new Thread() {
+        LrcFetcher.getDefault().execute(new Runnable() {
 
-            @Override
             public void run() {
                 doSearch0();
             }
-        }.start();
+        });
     }
 
     private void doSearch0() {
@@ -399,9 +396,8 @@ public class WebSearchDialog extends javax.swing.JDialog {
         //原来使用google app engine的,
         //list.addAll(Util.getSearchResults(artist, title));
         //现在采用新方法
-        ILrcDownload result = new GeCiMiLRC();
-        Lyrics lyrics = result.getLyrics(title, artist);
-        list.addAll(com.june.lrc.comm.LRCUtil.getSearchResults(lyrics));
+        //现在所有的来源一起查,结果合在一起
+        list.addAll(LrcFetcher.getDefault().search(title, artist));
         table.revalidate();
         sorter.allRowsChanged();
         if (list.size() > 0) {
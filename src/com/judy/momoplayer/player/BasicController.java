@@ -52,6 +52,20 @@ public interface BasicController {
      */
     public void open(URL url) throws BasicPlayerException;
 
+    /**
+     * Open file to play right after the current one.
+     * The player keeps the line open when the formats match.
+     * @param file
+     */
+    public void openNext(File file);
+
+    /**
+     * Open URL to play right after the current one.
+     * The player keeps the line open when the formats match.
+     * @param url
+     */
+    public void openNext(URL url);
+
     /**
      * Skip bytes.
      * @param bytes
@@ -60,6 +74,15 @@ public interface BasicController {
      */
     public long seek(long bytes) throws BasicPlayerException;
 
+    /**
+     * Seek to a time from the start of the track.
+     * Positions are reported from the start of the track afterwards.
+     * @param micros
+     * @return the time seeked to, or -1 if the data source can not seek by time.
+     * @throws BasicPlayerException
+     */
+    public long seekMicroseconds(long micros) throws BasicPlayerException;
+
     /**
      * Start playback.
      * @throws BasicPlayerException
@@ -22,7 +22,10 @@
  */
 package com.judy.momoplayer.player;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -33,6 +36,14 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sound.sampled.AudioFileFormat;
@@ -47,6 +58,17 @@ import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.Mixer;
 import javax.sound.sampled.SourceDataLine;
 import javax.sound.sampled.UnsupportedAudioFileException;
+import com.judy.audiotag.audio.exceptions.CannotReadException;
+import com.judy.audiotag.audio.exceptions.InvalidAudioFrameException;
+import com.judy.audiotag.audio.flac.FlacSeekLocator;
+import com.judy.audiotag.audio.generic.SeekLocator;
+import com.judy.audiotag.audio.generic.SeekPoint;
+import com.judy.audiotag.audio.mp3.LameFrame;
+import com.judy.audiotag.audio.mp3.MP3AudioHeader;
+import com.judy.audiotag.audio.mp3.MP3SeekIndex;
+import com.judy.audiotag.audio.mp3.XingFrame;
+import com.judy.audiotag.audio.ogg.OggSeekLocator;
+import com.judy.audiotag.tag.id3.AbstractID3v2Tag;
 import javazoom.spi.PropertiesContainer;
 import org.tritonus.share.sampled.TAudioFormat;
 import org.tritonus.share.sampled.file.TAudioFileFormat;
@@ -60,6 +82,11 @@ public class BasicPlayer implements BasicController, Runnable {
 
     public static int EXTERNAL_BUFFER_SIZE = 4000 * 4;
     public static int SKIP_INACCURACY_SIZE = 512;
+    public static int DEFAULT_DECODE_AHEAD_MILLIS = 500;
+    public static int DEFAULT_NEXT_OPEN_MILLIS = 5000;
+    /** Samples of delay added by MP3 decoders, on top of the encoder delay. */
+    private static final int MP3_DECODER_DELAY = 529;
+    private static final long DECODER_WAIT_MS = 20;
     protected Thread m_thread = null;
     protected Object m_dataSource;
     protected AudioInputStream m_encodedaudioInputStream;
@@ -72,7 +99,30 @@ public class BasicPlayer implements BasicController, Runnable {
     protected String m_mixerName = null;
     private int m_lineCurrentBufferSize = -1;
     private int lineBufferSize = -1;
-    private long threadSleep = -1;
+    private int decodeAheadMillis = DEFAULT_DECODE_AHEAD_MILLIS;
+    private BlockingQueue<PcmChunk> m_filled;//解码好的PCM
+    private BlockingQueue<PcmChunk> m_free;//可以重用的空块
+    private volatile Thread m_decoder;//解码线程,只在持有m_streamLock的时候启动和停止
+    private volatile long m_underruns = 0;
+    private volatile long m_overruns = 0;
+    private final Object m_streamLock = new Object();//播放线程在整个播放期间持有它
+    private volatile Object m_nextDataSource;//播放完当前之后要接着播的文件或URL
+    private volatile Source m_next;//已经打开好的下一个数据源
+    private int nextOpenMillis = DEFAULT_NEXT_OPEN_MILLIS;
+    private long m_positionOffset = 0;//接着播放时线路已经播过的时间
+    private boolean m_skipped = false;
+    private volatile MP3SeekIndex m_seekIndex;//当前MP3文件的帧索引,还没建好时是估计的
+    private File seekIndexDir = null;
+    private SeekLocator m_seekLocator;//当前FLAC或Ogg文件的定位器
+    private long m_discardFrames = 0;//按时间seek之后开头要丢掉的PCM帧数
+    private static final ExecutorService indexer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "BasicPlayer Seek Indexer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
     private static final Logger log = Logger.getLogger(BasicPlayer.class.getName());
     /**
      * These variables are used to distinguish stopped, paused, playing states.
@@ -84,9 +134,11 @@ public class BasicPlayer implements BasicController, Runnable {
 //    public static final int STOPPED = 2;
 //    public static final int OPENED = 3;
 //    public static final int SEEKING = 4;
-    private int m_status = UNKNOWN;
+    private volatile int m_status = UNKNOWN;
     private final Map<Object, Object> empty_map = new HashMap<Object, Object>();
     private final BasicPlayerEventLauncher laucher;//事件分派器
+    private final List<ProgressSubscription> progressListeners = new CopyOnWriteArrayList<ProgressSubscription>();
+    private volatile StreamInfo m_streamInfo;//当前流不会变的信息,打开的时候读一次
 
     /**
      * Constructs a Basic Player.
@@ -101,7 +153,8 @@ public class BasicPlayer implements BasicController, Runnable {
     protected void reset() {
         m_status = UNKNOWN;
         if (m_audioInputStream != null) {
-            synchronized (m_audioInputStream) {
+            synchronized (m_streamLock) {
+                takeOverStream();
                 closeStream();
             }
         }
@@ -116,6 +169,11 @@ public class BasicPlayer implements BasicController, Runnable {
         }
         m_gainControl = null;
         m_panControl = null;
+        m_nextDataSource = null;
+        m_positionOffset = 0;
+        m_skipped = false;
+        m_discardFrames = 0;
+        m_streamInfo = null;
     }
 
     /**
@@ -126,6 +184,27 @@ public class BasicPlayer implements BasicController, Runnable {
         laucher.addBasicPlayerListener(bpl);
     }
 
+    /**
+     * Add a listener for typed progress, called at most maxRate times a second.
+     * @param listener
+     * @param maxRate 0 for every PCM chunk
+     */
+    public void addProgressListener(PlaybackProgressListener listener, int maxRate) {
+        progressListeners.add(new ProgressSubscription(listener, maxRate));
+    }
+
+    /**
+     * Remove a progress listener.
+     * @param listener
+     */
+    public void removeProgressListener(PlaybackProgressListener listener) {
+        for (ProgressSubscription subscription : progressListeners) {
+            if (subscription.listener == listener) {
+                progressListeners.remove(subscription);
+            }
+        }
+    }
+
     /**
      * Return registered listeners.
      * @return
@@ -142,10 +221,20 @@ public class BasicPlayer implements BasicController, Runnable {
         laucher.removeBasicPlayerListener(bpl);
     }
 
+    /**
+     * Set how the event dispatcher waits for new events.
+     * PARK (default) is the cheapest, SPIN and YIELD trade CPU for latency.
+     * @param strategy
+     */
+    public void setEventWaitStrategy(BasicPlayerEventLauncher.WaitStrategy strategy) {
+        laucher.setWaitStrategy(strategy);
+    }
+
     /**
      * Set SourceDataLine buffer size. It affects audio latency.
      * (the delay between line.write(data) and real sound).
-     * Minimum value should be over 10000 bytes.
+     * Decoding runs ahead of the line (see setDecodeAheadMillis),
+     * so small values are safe.
      * @param size -1 means maximum buffer size available.
      */
     public void setLineBufferSize(int size) {
@@ -170,19 +259,91 @@ public class BasicPlayer implements BasicController, Runnable {
 
     /**
      * Set thread sleep time.
-     * Default is -1 (no sleep time).
+     * Decoding runs ahead on its own thread, the play loop no longer sleeps.
      * @param time in milliseconds.
+     * @deprecated use {@link #setDecodeAheadMillis(int)}
      */
+    @Deprecated
     public void setSleepTime(long time) {
-        threadSleep = time;
     }
 
     /**
      * Return thread sleep time in milliseconds.
-     * @return -1 means no sleep time.
+     * @return always -1.
+     * @deprecated the play loop no longer sleeps.
      */
+    @Deprecated
     public long getSleepTime() {
-        return threadSleep;
+        return -1;
+    }
+
+    /**
+     * Set how much decoded audio is kept ahead of the SourceDataLine.
+     * A bigger value rides out slow decode frames, and lets the line
+     * buffer itself be small. Applies from the next playback.
+     * @param millis
+     */
+    public void setDecodeAheadMillis(int millis) {
+        decodeAheadMillis = millis;
+    }
+
+    /**
+     * Return decode ahead size in milliseconds.
+     * @return
+     */
+    public int getDecodeAheadMillis() {
+        return decodeAheadMillis;
+    }
+
+    /**
+     * Return how many times the line ran out of decoded audio.
+     * @return
+     */
+    public long getUnderruns() {
+        return m_underruns;
+    }
+
+    /**
+     * Return how many times the line stalled, that is the decoder waited for
+     * a free chunk longer than it takes to play two of them. Waiting less is
+     * the normal state once the decode-ahead buffer is full.
+     * @return
+     */
+    public long getOverruns() {
+        return m_overruns;
+    }
+
+    /**
+     * Set how long before the end of the current stream the next one is opened.
+     * @param millis
+     */
+    public void setNextOpenMillis(int millis) {
+        nextOpenMillis = millis;
+    }
+
+    /**
+     * Return how long before the end of the current stream the next one is opened.
+     * @return
+     */
+    public int getNextOpenMillis() {
+        return nextOpenMillis;
+    }
+
+    /**
+     * Set the directory MP3 seek indexes are saved to, so they are built
+     * only once per file.
+     * @param dir null keeps them in memory only.
+     */
+    public void setSeekIndexDir(File dir) {
+        seekIndexDir = dir;
+    }
+
+    /**
+     * Return the directory MP3 seek indexes are saved to.
+     * @return
+     */
+    public File getSeekIndexDir() {
+        return seekIndexDir;
     }
 
     /**
@@ -227,12 +388,27 @@ public class BasicPlayer implements BasicController, Runnable {
         }
     }
 
+    /**
+     * Open file to play right after the current one.
+     */
+    public void openNext(File file) {
+        log.log(Level.INFO, "openNext({0})", file);
+        m_nextDataSource = file;
+    }
+
+    /**
+     * Open URL to play right after the current one.
+     */
+    public void openNext(URL url) {
+        log.log(Level.INFO, "openNext({0})", url);
+        m_nextDataSource = url;
+    }
+
     /**
      * Inits AudioInputStream and AudioFileFormat from the data source.
      * @throws BasicPlayerException
      */
-    @SuppressWarnings("unchecked")
-	protected void initAudioInputStream() throws BasicPlayerException {
+    protected void initAudioInputStream() throws BasicPlayerException {
         try {
             reset();
             notifyEvent(BasicPlayerEvent.OPENING, getEncodedStreamPosition(), -1, m_dataSource);
@@ -244,66 +420,249 @@ public class BasicPlayer implements BasicController, Runnable {
                 initAudioInputStream((InputStream) m_dataSource);
             }
             createLine();
-            // Notify listeners with AudioFileFormat properties.
-            Map<Object, Object> properties = null;
-            if (m_audioFileFormat instanceof TAudioFileFormat) {
-                // Tritonus SPI compliant audio file format.
-                properties = ((TAudioFileFormat) m_audioFileFormat).properties();
-                // Clone the Map because it is not mutable.
-                properties = deepCopy(properties);
-            } else {
-                properties = new HashMap<Object, Object>();
-            }
-            // Add JavaSound properties.
-            if (m_audioFileFormat.getByteLength() > 0) {
-                properties.put("audio.length.bytes", m_audioFileFormat.getByteLength());
-            }
-            if (m_audioFileFormat.getFrameLength() > 0) {
-                properties.put("audio.length.frames", m_audioFileFormat.getFrameLength());
-            }
-            if (m_audioFileFormat.getType() != null) {
-                properties.put("audio.type", (m_audioFileFormat.getType().toString()));
-            }
-            // Audio format.
-            AudioFormat audioFormat = m_audioFileFormat.getFormat();
-            if (audioFormat.getFrameRate() > 0) {
-                properties.put("audio.framerate.fps", audioFormat.getFrameRate());
-            }
-            if (audioFormat.getFrameSize() > 0) {
-                properties.put("audio.framesize.bytes", audioFormat.getFrameSize());
-            }
-            if (audioFormat.getSampleRate() > 0) {
-                properties.put("audio.samplerate.hz", audioFormat.getSampleRate());
-            }
-            if (audioFormat.getSampleSizeInBits() > 0) {
-                properties.put("audio.samplesize.bits", audioFormat.getSampleSizeInBits());
-            }
-            if (audioFormat.getChannels() > 0) {
-                properties.put("audio.channels", audioFormat.getChannels());
-            }
-            if (audioFormat instanceof TAudioFormat) {
-                // Tritonus SPI compliant audio format.
-                Map<?, ?> addproperties = ((TAudioFormat) audioFormat).properties();
-                properties.putAll(addproperties);
-            }
-            // Add SourceDataLine
-            properties.put("basicplayer.sourcedataline", m_line);
-            Iterator<BasicPlayerListener> it = laucher.getBasicPlayerListeners().iterator();
-            while (it.hasNext()) {
-                BasicPlayerListener bpl = it.next();
-                bpl.opened(m_dataSource, properties);
+            notifyOpened();
+            m_status = OPENED;
+            notifyEvent(BasicPlayerEvent.OPENED, getEncodedStreamPosition(), -1, null);
+            if (m_dataSource instanceof File) {
+                requestSeekIndex((File) m_dataSource);
             }
+        } catch (LineUnavailableException e) {
+            throw new BasicPlayerException(e);
+        } catch (UnsupportedAudioFileException e) {
+            throw new BasicPlayerException(e);
+        } catch (IOException e) {
+            throw new BasicPlayerException(e);
+        }
+    }
+
+    /**
+     * Reopens the file data source with the encoded stream starting at the
+     * given byte, which must be a frame boundary.
+     * Encoded positions stay relative to the start of the file.
+     * @param offset
+     * @throws BasicPlayerException
+     */
+    protected void initAudioInputStream(long offset) throws BasicPlayerException {
+        initAudioInputStream(offset, new byte[0]);
+    }
+
+    /**
+     * Reopens the file data source at the given byte, the decoder is given
+     * the header first, for formats that can not be decoded without it.
+     * @param offset
+     * @param header
+     * @throws BasicPlayerException
+     */
+    protected void initAudioInputStream(long offset, byte[] header) throws BasicPlayerException {
+        // The file itself did not change, keep its format instead of parsing it again.
+        AudioFileFormat fileFormat = m_audioFileFormat;
+        FileInputStream in = null;
+        try {
+            reset();
+            notifyEvent(BasicPlayerEvent.OPENING, getEncodedStreamPosition(), -1, m_dataSource);
+            File file = (File) m_dataSource;
+            in = new FileInputStream(file);
+            in.getChannel().position(offset);
+            InputStream stream = header.length > 0 ? new HeaderInputStream(header, in) : in;
+            m_audioInputStream = AudioSystem.getAudioInputStream(new BufferedInputStream(stream));
+            m_audioFileFormat = fileFormat != null ? fileFormat : AudioSystem.getAudioFileFormat(file);
+            createLine();
+            encodedLength += (int) (offset - header.length);
+            notifyOpened();
             m_status = OPENED;
             notifyEvent(BasicPlayerEvent.OPENED, getEncodedStreamPosition(), -1, null);
         } catch (LineUnavailableException e) {
+            closeQuietly(in);
             throw new BasicPlayerException(e);
         } catch (UnsupportedAudioFileException e) {
+            closeQuietly(in);
             throw new BasicPlayerException(e);
         } catch (IOException e) {
+            closeQuietly(in);
             throw new BasicPlayerException(e);
         }
     }
 
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.log(Level.FINE, "Cannot close stream", e);
+            }
+        }
+    }
+
+    private static boolean isMp3(AudioFileFormat fileFormat) {
+        return fileFormat != null && fileFormat.getType() != null && "mp3".equalsIgnoreCase(fileFormat.getType().toString());
+    }
+
+    /**
+     * Makes the seek index of an MP3 file current. It is loaded from the
+     * seek index directory, or else estimated at once and built in the
+     * background. Seeks made before it is built sync to the next frame.
+     * @param file
+     */
+    private void requestSeekIndex(final File file) {
+        MP3SeekIndex index = m_seekIndex;
+        if (index != null && index.isFor(file)) {
+            return;
+        }
+        m_seekIndex = null;
+        if (!isMp3(m_audioFileFormat)) {
+            return;
+        }
+        final File dir = seekIndexDir;
+        indexer.execute(new Runnable() {
+
+            public void run() {
+                if (!file.equals(m_dataSource)) {
+                    return;
+                }
+                try {
+                    MP3SeekIndex index = dir == null ? null : MP3SeekIndex.load(dir, file);
+                    if (index == null) {
+                        publishSeekIndex(file, MP3SeekIndex.estimate(file));
+                        index = MP3SeekIndex.build(file);
+                        if (dir != null) {
+                            try {
+                                index.save(dir);
+                            } catch (IOException e) {
+                                log.log(Level.WARNING, "Cannot save seek index of " + file, e);
+                            }
+                        }
+                    }
+                    publishSeekIndex(file, index);
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Cannot index " + file, e);
+                } catch (InvalidAudioFrameException e) {
+                    log.log(Level.WARNING, "Cannot index " + file, e);
+                }
+            }
+        });
+    }
+
+    private void publishSeekIndex(File file, MP3SeekIndex index) {
+        if (file.equals(m_dataSource)) {
+            m_seekIndex = index;
+            log.log(Level.INFO, "Seek index : {0}", index);
+        }
+    }
+
+    /**
+     * Returns the frame boundary to reopen the stream at for a seek.
+     * @param bytes position in the file
+     * @return byte offset of a frame, or -1 if there is no seek index
+     */
+    private long getSeekOffset(long bytes) {
+        MP3SeekIndex index = m_seekIndex;
+        if (index == null || !(m_dataSource instanceof File) || !index.isFor((File) m_dataSource)) {
+            return -1;
+        }
+        try {
+            return index.getFrameOffset(bytes);
+        } catch (IOException e) {
+            log.log(Level.FINE, "Cannot sync to a frame", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the seek locator of the file being played, the MP3 seek index,
+     * or for FLAC and Ogg a locator read from the file on first use.
+     * @param file
+     * @return null if the format has none or it can not be read
+     */
+    private SeekLocator getSeekLocator(File file) {
+        if (isMp3(m_audioFileFormat)) {
+            MP3SeekIndex index = m_seekIndex;
+            return index != null && index.isFor(file) ? index : null;
+        }
+        SeekLocator locator = m_seekLocator;
+        if (locator != null && locator.isFor(file)) {
+            return locator;
+        }
+        m_seekLocator = null;
+        String extension = m_audioFileFormat == null || m_audioFileFormat.getType() == null ? null : m_audioFileFormat.getType().getExtension();
+        try {
+            if ("flac".equalsIgnoreCase(extension)) {
+                locator = FlacSeekLocator.read(file);
+            } else if ("ogg".equalsIgnoreCase(extension)) {
+                locator = OggSeekLocator.read(file);
+            } else {
+                return null;
+            }
+            log.log(Level.INFO, "Seek locator : {0}", locator);
+            m_seekLocator = locator;
+            return locator;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot read seek points of " + file, e);
+        } catch (CannotReadException e) {
+            log.log(Level.WARNING, "Cannot read seek points of " + file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Notify listeners with AudioFileFormat properties.
+     */
+    @SuppressWarnings("unchecked")
+    protected void notifyOpened() {
+        Map<Object, Object> properties = null;
+        if (m_audioFileFormat instanceof TAudioFileFormat) {
+            // Tritonus SPI compliant audio file format.
+            properties = ((TAudioFileFormat) m_audioFileFormat).properties();
+            // Clone the Map because it is not mutable.
+            properties = deepCopy(properties);
+        } else {
+            properties = new HashMap<Object, Object>();
+        }
+        // Add JavaSound properties.
+        if (m_audioFileFormat.getByteLength() > 0) {
+            properties.put("audio.length.bytes", m_audioFileFormat.getByteLength());
+        }
+        if (m_audioFileFormat.getFrameLength() > 0) {
+            properties.put("audio.length.frames", m_audioFileFormat.getFrameLength());
+        }
+        if (m_audioFileFormat.getType() != null) {
+            properties.put("audio.type", (m_audioFileFormat.getType().toString()));
+        }
+        // Audio format.
+        AudioFormat audioFormat = m_audioFileFormat.getFormat();
+        if (audioFormat.getFrameRate() > 0) {
+            properties.put("audio.framerate.fps", audioFormat.getFrameRate());
+        }
+        if (audioFormat.getFrameSize() > 0) {
+            properties.put("audio.framesize.bytes", audioFormat.getFrameSize());
+        }
+        if (audioFormat.getSampleRate() > 0) {
+            properties.put("audio.samplerate.hz", audioFormat.getSampleRate());
+        }
+        if (audioFormat.getSampleSizeInBits() > 0) {
+            properties.put("audio.samplesize.bits", audioFormat.getSampleSizeInBits());
+        }
+        if (audioFormat.getChannels() > 0) {
+            properties.put("audio.channels", audioFormat.getChannels());
+        }
+        if (audioFormat instanceof TAudioFormat) {
+            // Tritonus SPI compliant audio format.
+            Map<?, ?> addproperties = ((TAudioFormat) audioFormat).properties();
+            properties.putAll(addproperties);
+        }
+        // Add SourceDataLine
+        properties.put("basicplayer.sourcedataline", m_line);
+        Map<?, ?> streamProperties = null;
+        if (m_audioInputStream instanceof PropertiesContainer) {
+            streamProperties = ((PropertiesContainer) m_audioInputStream).properties();
+        }
+        m_streamInfo = StreamInfo.from(m_dataSource, properties, streamProperties);
+        Iterator<BasicPlayerListener> it = laucher.getBasicPlayerListeners().iterator();
+        while (it.hasNext()) {
+            BasicPlayerListener bpl = it.next();
+            bpl.opened(m_dataSource, properties);
+        }
+    }
+
     /**
      * Inits Audio ressources from file.
      * @param file
@@ -381,17 +740,7 @@ public class BasicPlayer implements BasicController, Runnable {
         if (m_line == null) {
             AudioFormat sourceFormat = m_audioInputStream.getFormat();
             log.log(Level.INFO, "Create Line : Source format : {0}", sourceFormat.toString());
-            int nSampleSizeInBits = sourceFormat.getSampleSizeInBits();
-            if (nSampleSizeInBits <= 0) {
-                nSampleSizeInBits = 16;
-            }
-            if ((sourceFormat.getEncoding() == AudioFormat.Encoding.ULAW) || (sourceFormat.getEncoding() == AudioFormat.Encoding.ALAW)) {
-                nSampleSizeInBits = 16;
-            }
-            if (nSampleSizeInBits != 8) {
-                nSampleSizeInBits = 16;
-            }
-            AudioFormat targetFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceFormat.getSampleRate(), nSampleSizeInBits, sourceFormat.getChannels(), sourceFormat.getChannels() * (nSampleSizeInBits / 8), sourceFormat.getSampleRate(), false);
+            AudioFormat targetFormat = getTargetFormat(sourceFormat);
             log.log(Level.INFO, "Create Line : Target format: {0}", targetFormat);
             // Keep a reference on encoded stream to progress notification.
             m_encodedaudioInputStream = m_audioInputStream;
@@ -419,6 +768,25 @@ public class BasicPlayer implements BasicController, Runnable {
         }
     }
 
+    /**
+     * Returns the PCM format a source format is decoded to before it goes to the line.
+     * @param sourceFormat
+     * @return
+     */
+    protected AudioFormat getTargetFormat(AudioFormat sourceFormat) {
+        int nSampleSizeInBits = sourceFormat.getSampleSizeInBits();
+        if (nSampleSizeInBits <= 0) {
+            nSampleSizeInBits = 16;
+        }
+        if ((sourceFormat.getEncoding() == AudioFormat.Encoding.ULAW) || (sourceFormat.getEncoding() == AudioFormat.Encoding.ALAW)) {
+            nSampleSizeInBits = 16;
+        }
+        if (nSampleSizeInBits != 8) {
+            nSampleSizeInBits = 16;
+        }
+        return new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceFormat.getSampleRate(), nSampleSizeInBits, sourceFormat.getChannels(), sourceFormat.getChannels() * (nSampleSizeInBits / 8), sourceFormat.getSampleRate(), false);
+    }
+
     /**
      * Opens the line.
      * @throws javax.sound.sampled.LineUnavailableException
@@ -464,11 +832,16 @@ public class BasicPlayer implements BasicController, Runnable {
                 m_line.stop();
             }
             m_status = STOPPED;
-            synchronized (m_audioInputStream) {
-                m_audioInputStream.notifyAll();
+            synchronized (m_streamLock) {
+                m_streamLock.notifyAll();
             }
             notifyEvent(BasicPlayerEvent.STOPPED, getEncodedStreamPosition(), -1, null);
-            synchronized (m_audioInputStream) {
+            synchronized (m_streamLock) {
+                if (takeOverStream() && m_line != null) {
+                    // run()停在暂停里,不会再来关线路了
+                    m_line.close();
+                    m_line = null;
+                }
                 closeStream();
             }
             log.info("stopPlayback() completed");
@@ -502,9 +875,10 @@ public class BasicPlayer implements BasicController, Runnable {
             if (m_status == PAUSED) {
                 m_line.start();
                 m_status = PLAYING;
-                synchronized (m_audioInputStream) {
-                    m_audioInputStream.notifyAll();
+                synchronized (m_streamLock) {
+                    m_streamLock.notifyAll();
                 }
+                LockSupport.unpark(m_decoder);
                 log.info("resumePlayback() completed");
                 notifyEvent(BasicPlayerEvent.RESUMED, getEncodedStreamPosition(), -1, null);
             }
@@ -551,98 +925,103 @@ public class BasicPlayer implements BasicController, Runnable {
             if (m_line != null) {
                 m_line.start();
                 m_status = PLAYING;
-                synchronized (m_audioInputStream) {
-                    m_audioInputStream.notifyAll();
+                synchronized (m_streamLock) {
+                    m_streamLock.notifyAll();
                 }
+                LockSupport.unpark(m_decoder);
                 notifyEvent(BasicPlayerEvent.PLAYING, getEncodedStreamPosition(), -1, null);
             }
         }
     }
 
     /**
-     * Main loop.
+     * Main loop, the writer side of the pipeline.
      *
+     * A decoder thread fills the pre-decoded queue, this thread drains it
+     * into the SourceDataLine and notifies the listeners. When a next data
+     * source was given with openNext() the decoder moves on to it at the end
+     * of the stream and the line is kept open.<br>
      * Player Status == STOPPED || SEEKING => End of Thread + Freeing Audio Ressources.<br>
      * Player Status == PLAYING => Audio stream data sent to Audio line.<br>
-     * Player Status == PAUSED => Waiting for another status.
+     * Player Status == PAUSED => Waiting for another status.<br>
+     * While paused the stream lock is released, stopPlayback(), a seek or
+     * reset() may then stop the decoder and close or reopen the stream, run()
+     * leaves the stream and the line to them when it wakes up.
      */
     public void run() {
         log.info("Thread Running");
         int nBytesRead = 1;
-        byte[] abData = new byte[EXTERNAL_BUFFER_SIZE];
-        //int readIndex = 0;//所有读进缓冲区的数量
-        //int writeIndex = 0;//所有写出数量
+        byte[] tail = null;
         // Lock stream while playing.
-        synchronized (m_audioInputStream) {
-            boolean buffering = false;
+        synchronized (m_streamLock) {
+            Thread decoder = startDecoder();
+            BlockingQueue<PcmChunk> filled = m_filled;
+            BlockingQueue<PcmChunk> free = m_free;
+            boolean primed = false;
+            boolean starving = false;
             // Main play/pause loop.
-            while ((nBytesRead != -1) && (m_status != STOPPED) && (m_status != SEEKING) && (m_status != UNKNOWN)) {
+            while ((nBytesRead != -1) && (m_status != STOPPED) && (m_status != SEEKING) && (m_status != UNKNOWN)
+                    && (m_decoder == decoder)) {
                 if (m_status == PLAYING) {
                     // Play.
-                    try {
-                        nBytesRead = m_audioInputStream.read(abData, 0, abData.length);
-                        if (nBytesRead >= 0) {
-                            byte[] pcm = new byte[nBytesRead];
-                            System.arraycopy(abData, 0, pcm, 0, nBytesRead);
-                            if (m_line.available() >= m_line.getBufferSize()) {
-//                                buffering = true;
-                                //缓冲区空虚 :
-                                log.log(Level.FINE, "\u7f13\u51b2\u533a\u7a7a\u865a : {0}/{1}", new Object[]{m_line.available(), m_line.getBufferSize()});
-                            }
-//                            if(m_line.available()==0){
-//                                buffering=false;
-//                            }
-                            if (buffering == false) {
-                                @SuppressWarnings("unused")
-								int nBytesWritten = m_line.write(abData, 0, nBytesRead);
-                                // Compute position in bytes in encoded stream.
-                                int nEncodedBytes = getEncodedStreamPosition();
-                                // Notify listeners
-                                Iterator<BasicPlayerListener> it = laucher.getBasicPlayerListeners().iterator();
-                                while (it.hasNext()) {
-                                    BasicPlayerListener bpl = it.next();
-                                    if (m_audioInputStream instanceof PropertiesContainer) {
-                                        // Pass audio parameters such as instant bitrate, ...
-                                        Map<?, ?> properties = ((PropertiesContainer) m_audioInputStream).properties();
-                                        bpl.progress(nEncodedBytes, m_line.getMicrosecondPosition(), pcm, properties);
-                                    } else {
-                                        bpl.progress(nEncodedBytes, m_line.getMicrosecondPosition(), pcm, empty_map);
-                                    }
-                                }
-                            }
-
+                    PcmChunk chunk = filled.poll();
+                    if (chunk == null) {
+                        if (primed && !starving) {
+                            // The decoder fell behind the line.
+                            starving = true;
+                            m_underruns++;
+                            log.log(Level.FINE, "PCM queue underrun : {0}", m_underruns);
+                            notifyEvent(BasicPlayerEvent.UNDERRUN, getEncodedStreamPosition(), m_underruns, null);
                         }
-                    } catch (IOException e) {
-                        log.log(Level.SEVERE, "Thread cannot run()", e);
-                        m_status = STOPPED;
-                        notifyEvent(BasicPlayerEvent.STOPPED, getEncodedStreamPosition(), -1, null);
-                    }
-                    // Nice CPU usage.
-                    if (threadSleep > 0) {
                         try {
-                            Thread.sleep(threadSleep);
-                        } catch (InterruptedException e) {
-                            log.log(Level.SEVERE, "Thread cannot sleep(" + threadSleep + ")", e);
+                            chunk = filled.poll(DECODER_WAIT_MS, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException ex) {
+                            log.log(Level.FINE, "Writer interrupted", ex);
+                        }
+                        if (chunk == null) {
+                            continue;
                         }
                     }
-                } else {
-                    synchronized (m_audioInputStream) {
-                        try {
-                            log.log(Level.INFO, "状态是不正在播放,要无限期的等待了.....");
-                            m_audioInputStream.wait();
-                            log.log(Level.INFO, "状态改过来了,等待被唤醒了.......");
-                        } catch (InterruptedException ex) {
-                            Logger.getLogger(BasicPlayer.class.getName()).log(Level.SEVERE, null, ex);
+                    starving = false;
+                    if (chunk == PcmChunk.EOM) {
+                        nBytesRead = -1;
+                        continue;
+                    }
+                    if (chunk.next != null) {
+                        // The decoder moved on to the next data source.
+                        chain(chunk.next);
+                        continue;
+                    }
+                    primed = true;
+                    nBytesRead = chunk.length;
+                    byte[] pcm = chunk.data;
+                    if (nBytesRead < pcm.length) {
+                        // Only the last chunk of a stream is short, keep it exact.
+                        if (tail == null || tail.length != nBytesRead) {
+                            tail = new byte[nBytesRead];
                         }
+                        System.arraycopy(pcm, 0, tail, 0, nBytesRead);
+                        pcm = tail;
+                    }
+                    m_line.write(chunk.data, 0, nBytesRead);
+                    notifyProgress(chunk.encodedPosition, pcm);
+                    free.offer(chunk);
+                } else {
+                    try {
+                        log.log(Level.INFO, "状态是不正在播放,要无限期的等待了.....");
+                        m_streamLock.wait();
+                        log.log(Level.INFO, "状态改过来了,等待被唤醒了.......");
+                    } catch (InterruptedException ex) {
+                        Logger.getLogger(BasicPlayer.class.getName()).log(Level.SEVERE, null, ex);
                     }
-                // Pause
-//                    try {
-//                        Thread.sleep(500);
-//                    } catch (InterruptedException e) {
-//                        log.log(Level.SEVERE, "Thread cannot sleep(500)", e);
-//                    }
                 }
             }
+            if (m_decoder != decoder) {
+                // 暂停的时候解码线程被别人停掉了,流和线路都归它们管了
+                log.info("Thread taken over");
+                return;
+            }
+            stopDecoder();
             // Free audio resources.
             if (m_line != null) {
                 m_line.drain();
@@ -662,9 +1041,388 @@ public class BasicPlayer implements BasicController, Runnable {
         log.info("Thread completed");
     }
 
+    /**
+     * Notify progress listeners that are due, and the old style listeners
+     * with the stream properties. The properties map is built at most once
+     * per chunk, and only for listeners that still need it.
+     * @param bytesread
+     * @param pcm
+     */
+    private void notifyProgress(int bytesread, byte[] pcm) {
+        long microseconds = getMicrosecondPosition();
+        PlaybackProgress progress = null;
+        if (!progressListeners.isEmpty()) {
+            long now = System.nanoTime();
+            for (ProgressSubscription subscription : progressListeners) {
+                if (subscription.isDue(now)) {
+                    if (progress == null) {
+                        progress = new PlaybackProgress(m_streamInfo, bytesread, microseconds, pcm, getStreamTitle());
+                    }
+                    subscription.listener.progressUpdated(progress);
+                }
+            }
+        }
+        Map<?, ?> properties = null;
+        for (BasicPlayerListener bpl : laucher.getBasicPlayerListeners()) {
+            if (bpl instanceof PlaybackProgressListener) {
+                continue;
+            }
+            if (properties == null) {
+                // Pass audio parameters such as instant bitrate, ...
+                properties = m_audioInputStream instanceof PropertiesContainer
+                        ? ((PropertiesContainer) m_audioInputStream).properties() : empty_map;
+            }
+            bpl.progress(bytesread, microseconds, pcm, properties);
+        }
+    }
+
+    /**
+     * @return the shoutcast title, only network MP3 streams have one
+     */
+    private String getStreamTitle() {
+        StreamInfo info = m_streamInfo;
+        if (info == null || !info.isShoutcast() || !(m_audioInputStream instanceof PropertiesContainer)) {
+            return null;
+        }
+        Object title = ((PropertiesContainer) m_audioInputStream).properties().get("mp3.shoutcast.metadata.StreamTitle");
+        return title instanceof String ? (String) title : null;
+    }
+
+    /**
+     * A progress listener and how often it wants to be called.
+     */
+    private static class ProgressSubscription {
+
+        final PlaybackProgressListener listener;
+        final long intervalNanos;
+        long lastNanos;
+
+        ProgressSubscription(PlaybackProgressListener listener, int maxRate) {
+            this.listener = listener;
+            this.intervalNanos = maxRate > 0 ? 1000000000L / maxRate : 0;
+        }
+
+        boolean isDue(long now) {
+            if (intervalNanos == 0) {
+                return true;
+            }
+            if (lastNanos != 0 && now - lastNanos < intervalNanos) {
+                return false;
+            }
+            lastNanos = now;
+            return true;
+        }
+    }
+
+    /**
+     * Makes the next data source the current one, the line stays open.
+     * @param next
+     */
+    private void chain(Source next) {
+        closeStream();
+        // Time already played on the line, including what is still buffered.
+        AudioFormat format = m_line.getFormat();
+        long buffered = m_line.getBufferSize() - m_line.available();
+        m_positionOffset = m_line.getMicrosecondPosition() + (long) (buffered * 1000000.0 / (format.getFrameSize() * format.getFrameRate()));
+        m_dataSource = next.dataSource;
+        m_encodedaudioInputStream = next.encoded;
+        m_audioInputStream = next.decoded;
+        m_audioFileFormat = next.fileFormat;
+        encodedLength = next.encodedLength;
+        m_skipped = false;
+        log.log(Level.INFO, "Chained : {0}", m_dataSource);
+        if (m_dataSource instanceof File) {
+            requestSeekIndex((File) m_dataSource);
+        }
+        notifyOpened();
+        notifyEvent(BasicPlayerEvent.CHAINED, getEncodedStreamPosition(), -1, m_dataSource);
+    }
+
+    /**
+     * Creates the PCM queues for the current stream and starts the decoder thread.
+     * The queue holds about decodeAheadMillis of decoded audio.
+     * Must be called holding the stream lock.
+     * @return the decoder thread
+     */
+    private Thread startDecoder() {
+        AudioFormat format = m_audioInputStream.getFormat();
+        float bytesPerSecond = format.getFrameRate() * format.getFrameSize();
+        int chunks = 2;
+        if (bytesPerSecond > 0) {
+            chunks = Math.max(chunks, (int) Math.ceil(bytesPerSecond * decodeAheadMillis / 1000 / EXTERNAL_BUFFER_SIZE));
+        }
+        m_filled = new ArrayBlockingQueue<PcmChunk>(chunks + 2);
+        m_free = new ArrayBlockingQueue<PcmChunk>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            m_free.offer(new PcmChunk(EXTERNAL_BUFFER_SIZE));
+        }
+        log.log(Level.INFO, "Decode ahead : {0} chunks", chunks);
+        final Source current = new Source(m_dataSource, m_encodedaudioInputStream, m_audioInputStream, m_audioFileFormat, encodedLength);
+        current.skipped = m_skipped;
+        if (m_discardFrames > 0) {
+            // Decoded on the decoder thread and dropped, up to the seek target.
+            current.trimStart = m_discardFrames;
+            m_discardFrames = 0;
+        }
+        Thread decoder = new Thread(new Runnable() {
+
+            public void run() {
+                decode(current);
+            }
+        }, "BasicPlayer Decoder");
+        m_decoder = decoder;
+        decoder.start();
+        return decoder;
+    }
+
+    /**
+     * Stops the decoder thread and waits for it, then frees the PCM queues.
+     * Must be called holding the stream lock, before the stream is closed
+     * or reopened.
+     * @return false if there was no decoder running
+     */
+    private boolean stopDecoder() {
+        Thread decoder = m_decoder;
+        if (decoder == null) {
+            return false;
+        }
+        m_decoder = null;
+        decoder.interrupt();
+        try {
+            decoder.join();
+        } catch (InterruptedException ex) {
+            log.log(Level.SEVERE, "Cannot join decoder", ex);
+        }
+        // Close next data sources that never reached the line.
+        if (m_next != null) {
+            m_next.close();
+            m_next = null;
+        }
+        for (PcmChunk chunk : m_filled) {
+            if (chunk.next != null) {
+                chunk.next.close();
+            }
+        }
+        m_filled = null;
+        m_free = null;
+        return true;
+    }
+
+    /**
+     * Stops the decoder of a paused run() before the caller closes or reopens
+     * the stream. The line still holds the audio from before the pause, it is
+     * dropped. Must be called holding the stream lock.
+     * @return true if run() was paused and has been taken over
+     */
+    private boolean takeOverStream() {
+        if (!stopDecoder()) {
+            return false;
+        }
+        if (m_line != null) {
+            m_line.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Decoder loop, the producer side of the pipeline.
+     * It runs without the stream lock, so whoever closes or reopens the
+     * stream stops and joins it with stopDecoder() first. While the player is
+     * not PLAYING it parks until resumePlayback() or startPlayback() wakes it.
+     * @param current the stream to decode first
+     */
+    private void decode(Source current) {
+        BlockingQueue<PcmChunk> filled = m_filled;
+        BlockingQueue<PcmChunk> free = m_free;
+        int frameSize = Math.max(1, current.decoded.getFormat().getFrameSize());
+        long stallMillis = 2 * getChunkMillis(current);
+        long frame = 0;
+        try {
+            while ((m_status != STOPPED) && (m_status != SEEKING) && (m_status != UNKNOWN)) {
+                if (m_status != PLAYING) {
+                    // 暂停的时候不解码,等状态改了再被唤醒
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    continue;
+                }
+                // 缓冲满了就等线路放完一块,等得比放两块还久才算线路卡住了
+                PcmChunk chunk = free.poll(stallMillis, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    // 等的时候暂停了不算
+                    if (m_status == PLAYING) {
+                        m_overruns++;
+                        log.log(Level.FINE, "PCM line stalled : {0}", m_overruns);
+                    }
+                    chunk = free.take();
+                }
+                chunk.length = readFully(current.decoded, chunk.data);
+                if (chunk.length == -1) {
+                    free.offer(chunk);
+                    Source next = m_next;
+                    if (next == null && m_nextDataSource != null) {
+                        next = prepareNext(current);
+                    }
+                    m_next = null;
+                    if (next == null) {
+                        filled.put(PcmChunk.EOM);
+                        break;
+                    }
+                    filled.put(new PcmChunk(next));
+                    current = next;
+                    stallMillis = 2 * getChunkMillis(current);
+                    frame = 0;
+                    continue;
+                }
+                frame = trim(current, chunk, frame, frameSize);
+                if (chunk.length == 0) {
+                    free.offer(chunk);
+                    continue;
+                }
+                // Compute position in bytes in encoded stream.
+                chunk.encodedPosition = current.getEncodedPosition();
+                filled.put(chunk);
+                // Open the next data source in the last seconds of this one.
+                if (m_next == null && m_nextDataSource != null && current.getRemainingMicros(chunk.encodedPosition) <= nextOpenMillis * 1000L) {
+                    m_next = prepareNext(current);
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.log(Level.FINE, "Decoder interrupted");
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Thread cannot run()", e);
+            m_status = STOPPED;
+            notifyEvent(BasicPlayerEvent.STOPPED, getEncodedStreamPosition(), -1, null);
+        } catch (RuntimeException e) {
+            // SPI decoders throw unchecked exceptions on broken streams.
+            log.log(Level.SEVERE, "Decoder failed", e);
+            m_status = STOPPED;
+            notifyEvent(BasicPlayerEvent.STOPPED, getEncodedStreamPosition(), -1, null);
+        }
+    }
+
+    /**
+     * @param source decoded stream
+     * @return how long one PCM chunk of this stream plays, in milliseconds
+     */
+    private static long getChunkMillis(Source source) {
+        AudioFormat format = source.decoded.getFormat();
+        float bytesPerSecond = format.getFrameRate() * Math.max(1, format.getFrameSize());
+        if (bytesPerSecond <= 0) {
+            return 1000;
+        }
+        return Math.max(1, (long) (EXTERNAL_BUFFER_SIZE * 1000L / bytesPerSecond));
+    }
+
+    /**
+     * Cuts the encoder delay and padding out of a chunk.
+     * @param source stream the chunk was decoded from
+     * @param chunk
+     * @param frame PCM frames decoded from the stream before this chunk
+     * @param frameSize
+     * @return PCM frames decoded from the stream including this chunk
+     */
+    private long trim(Source source, PcmChunk chunk, long frame, int frameSize) {
+        int frames = chunk.length / frameSize;
+        int from = 0;
+        int to = frames;
+        if (frame < source.trimStart) {
+            from = (int) Math.min(frames, source.trimStart - frame);
+        }
+        if (source.trimEnd > 0 && frame + to > source.trimEnd) {
+            to = (int) Math.max(from, source.trimEnd - frame);
+        }
+        if (from > 0 || to < frames) {
+            int start = from * frameSize;
+            int end = to < frames ? to * frameSize : chunk.length;
+            System.arraycopy(chunk.data, start, chunk.data, 0, end - start);
+            chunk.length = end - start;
+        }
+        return frame + frames;
+    }
+
+    /**
+     * Opens the data source given with openNext() and decodes it to the line format.
+     * @param current the stream playing now
+     * @return the opened source, or null if it can not share the open line
+     */
+    private Source prepareNext(Source current) {
+        Object source = m_nextDataSource;
+        m_nextDataSource = null;
+        if (source == null || m_line == null) {
+            return null;
+        }
+        AudioInputStream encoded = null;
+        try {
+            AudioFileFormat fileFormat;
+            if (source instanceof File) {
+                encoded = AudioSystem.getAudioInputStream((File) source);
+                fileFormat = AudioSystem.getAudioFileFormat((File) source);
+            } else if (source instanceof URL) {
+                encoded = AudioSystem.getAudioInputStream((URL) source);
+                fileFormat = AudioSystem.getAudioFileFormat((URL) source);
+            } else {
+                return null;
+            }
+            int length = encoded.available();
+            AudioInputStream decoded = AudioSystem.getAudioInputStream(getTargetFormat(encoded.getFormat()), encoded);
+            if (!decoded.getFormat().matches(m_line.getFormat())) {
+                log.log(Level.INFO, "Next format {0} does not match line, reopen after EOM", decoded.getFormat());
+                decoded.close();
+                return null;
+            }
+            Source next = new Source(source, encoded, decoded, fileFormat, length);
+            next.readEncoderDelay(true);
+            if (current.trimEnd == 0 && !current.skipped) {
+                current.readEncoderDelay(false);
+            }
+            log.log(Level.INFO, "Next opened : {0}", source);
+            return next;
+        } catch (UnsupportedAudioFileException e) {
+            log.log(Level.WARNING, "Cannot open next " + source, e);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot open next " + source, e);
+        }
+        if (encoded != null) {
+            try {
+                encoded.close();
+            } catch (IOException e) {
+                log.log(Level.FINE, "Cannot close next", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads decoded PCM until the buffer is full or the stream ends.
+     * Decoders may return short reads, filling the whole buffer keeps
+     * every chunk but the last one full.
+     * @param in
+     * @param buffer
+     * @return bytes read, or -1 if the stream ended before any byte was read
+     * @throws IOException
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int n = in.read(buffer, total, buffer.length - total);
+            if (n == -1) {
+                return total == 0 ? -1 : total;
+            }
+            if (n == 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
     /**
      * Skip bytes in the File inputstream.
      * It will skip N frames matching to bytes, so it will never skip given bytes length exactly.
+     * MP3 files with a seek index are reopened at the frame holding the
+     * byte, other files are reopened and read up to it.
      * @param bytes
      * @return value>0 for File and value=0 for URL and InputStream
      * @throws BasicPlayerException
@@ -677,32 +1435,36 @@ public class BasicPlayer implements BasicController, Runnable {
             m_status = SEEKING;
             long skipped = 0;
             try {
-                synchronized (m_audioInputStream) {
+                synchronized (m_streamLock) {
+                    takeOverStream();
                     notifyEvent(BasicPlayerEvent.SEEKING, getEncodedStreamPosition(), -1, null);
-                    initAudioInputStream();
-                    if (m_audioInputStream != null) {
-                        // Loop until bytes are really skipped.
-                        while (totalSkipped < (bytes - SKIP_INACCURACY_SIZE)) {
-                            skipped = m_audioInputStream.skip(bytes - totalSkipped);
-                            if (skipped == 0) {
-                                break;
-                            }
-                            totalSkipped = totalSkipped + skipped;
-                            log.log(Level.FINE, "Skipped : {0}/{1}", new Object[]{totalSkipped, bytes});
-                            if (totalSkipped == -1) {
-                                throw new BasicPlayerException(BasicPlayerException.SKIPNOTSUPPORTED);
+                    long offset = getSeekOffset(bytes);
+                    if (offset >= 0) {
+                        // Land on the frame directly instead of reading up to it.
+                        log.log(Level.FINE, "Seek to frame at : {0}", offset);
+                        initAudioInputStream(offset);
+                        totalSkipped = offset;
+                        m_skipped = totalSkipped > 0;
+                    } else {
+                        initAudioInputStream();
+                        if (m_audioInputStream != null) {
+                            // Loop until bytes are really skipped.
+                            while (totalSkipped < (bytes - SKIP_INACCURACY_SIZE)) {
+                                skipped = m_audioInputStream.skip(bytes - totalSkipped);
+                                if (skipped == 0) {
+                                    break;
+                                }
+                                totalSkipped = totalSkipped + skipped;
+                                log.log(Level.FINE, "Skipped : {0}/{1}", new Object[]{totalSkipped, bytes});
+                                if (totalSkipped == -1) {
+                                    throw new BasicPlayerException(BasicPlayerException.SKIPNOTSUPPORTED);
+                                }
                             }
+                            m_skipped = totalSkipped > 0;
                         }
                     }
                 }
-                notifyEvent(BasicPlayerEvent.SEEKED, getEncodedStreamPosition(), -1, null);
-                m_status = OPENED;
-                if (previousStatus == PLAYING) {
-                    startPlayback();
-                } else if (previousStatus == PAUSED) {
-                    startPlayback();
-                    pausePlayback();
-                }
+                seeked(previousStatus);
             } catch (IOException e) {
                 throw new BasicPlayerException(e);
             }
@@ -710,6 +1472,75 @@ public class BasicPlayer implements BasicController, Runnable {
         return totalSkipped;
     }
 
+    /**
+     * Seeks to a time in the File inputstream.
+     * The stream is reopened at the seek point before the time, found by the
+     * seek locator of the format, and the samples up to the time are decoded
+     * and dropped. Positions are then reported from the start of the track.
+     * @param micros
+     * @return the time seeked to, or -1 for URL and InputStream and for files
+     *         without a seek locator, these are seeked with skipBytes()
+     * @throws BasicPlayerException
+     */
+    protected long skipMicroseconds(long micros) throws BasicPlayerException {
+        if (!(m_dataSource instanceof File) || m_audioInputStream == null) {
+            return -1;
+        }
+        log.log(Level.FINE, "Microseconds to skip : {0}", micros);
+        File file = (File) m_dataSource;
+        float sampleRate = m_audioInputStream.getFormat().getSampleRate();
+        if (sampleRate <= 0) {
+            return -1;
+        }
+        SeekLocator locator = getSeekLocator(file);
+        if (locator == null) {
+            // 没有定位器的话从头解码太慢,让调用者按字节seek
+            return -1;
+        }
+        long target = (long) (Math.max(0, micros) * (double) sampleRate / 1000000);
+        int previousStatus = m_status;
+        m_status = SEEKING;
+        try {
+            synchronized (m_streamLock) {
+                takeOverStream();
+                notifyEvent(BasicPlayerEvent.SEEKING, getEncodedStreamPosition(), -1, null);
+                SeekPoint point = locator.locate(target);
+                if (point != null && point.getSample() <= target) {
+                    log.log(Level.FINE, "Seek to {0}", point);
+                    initAudioInputStream(point.getOffset(), locator.getHeader());
+                    m_discardFrames = target - point.getSample();
+                } else {
+                    // 在第一个定位点之前,从头解码也没多远
+                    initAudioInputStream();
+                    m_discardFrames = target;
+                }
+                m_skipped = target > 0;
+                // The new line starts at zero, report positions from the start of the track.
+                m_positionOffset = -(long) (target * 1000000.0 / sampleRate);
+            }
+            seeked(previousStatus);
+        } catch (IOException e) {
+            throw new BasicPlayerException(e);
+        }
+        return -m_positionOffset;
+    }
+
+    /**
+     * Notifies the end of a seek and restores the status before it.
+     * @param previousStatus
+     * @throws BasicPlayerException
+     */
+    private void seeked(int previousStatus) throws BasicPlayerException {
+        notifyEvent(BasicPlayerEvent.SEEKED, getEncodedStreamPosition(), -1, null);
+        m_status = OPENED;
+        if (previousStatus == PLAYING) {
+            startPlayback();
+        } else if (previousStatus == PAUSED) {
+            startPlayback();
+            pausePlayback();
+        }
+    }
+
     /**
      * Notify listeners about a BasicPlayerEvent.
      * @param code event code.
@@ -718,7 +1549,7 @@ public class BasicPlayer implements BasicController, Runnable {
      * @param description
      */
     protected void notifyEvent(int code, int position, double value, Object description) {
-        BasicPlayerEvent event = new BasicPlayerEvent(this, code, position, value, description);
+        BasicPlayerEvent event = new BasicPlayerEvent(this, code, position, value, description, m_underruns, m_overruns);
         laucher.put(event);
     }
 
@@ -861,6 +1692,13 @@ public class BasicPlayer implements BasicController, Runnable {
         return skipBytes(bytes);
     }
 
+    /**
+     * @see javazoom.jlgui.basicplayer.BasicController#seekMicroseconds(long)
+     */
+    public long seekMicroseconds(long micros) throws BasicPlayerException {
+        return skipMicroseconds(micros);
+    }
+
     /**
      * @see javazoom.jlgui.basicplayer.BasicController#play()
      */
@@ -996,9 +1834,177 @@ public class BasicPlayer implements BasicController, Runnable {
 
     public long getMicrosecondPosition() {
         if (m_line != null) {
-            return m_line.getMicrosecondPosition();
+            return m_line.getMicrosecondPosition() - m_positionOffset;
         } else {
             return -1;
         }
     }
+
+    /**
+     * A block of decoded PCM passed from the decoder thread to the line.
+     */
+    private static final class PcmChunk {
+
+        static final PcmChunk EOM = new PcmChunk(0);
+        final byte[] data;
+        final Source next;//不为空时表示从这里开始是下一个数据源
+        int length;
+        int encodedPosition;
+
+        PcmChunk(int size) {
+            data = new byte[size];
+            next = null;
+        }
+
+        PcmChunk(Source next) {
+            data = new byte[0];
+            this.next = next;
+        }
+    }
+
+    /**
+     * Serves the header bytes, then the stream.
+     */
+    private static final class HeaderInputStream extends FilterInputStream {
+
+        private final byte[] header;
+        private int position = 0;
+
+        HeaderInputStream(byte[] header, InputStream in) {
+            super(in);
+            this.header = header;
+        }
+
+        public int read() throws IOException {
+            if (position < header.length) {
+                return header[position++] & 0xFF;
+            }
+            return in.read();
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position < header.length) {
+                int n = Math.min(len, header.length - position);
+                System.arraycopy(header, position, b, off, n);
+                position += n;
+                return n;
+            }
+            return in.read(b, off, len);
+        }
+
+        public long skip(long n) throws IOException {
+            if (position < header.length) {
+                int skipped = (int) Math.min(Math.max(0, n), header.length - position);
+                position += skipped;
+                return skipped;
+            }
+            return in.skip(n);
+        }
+
+        public int available() throws IOException {
+            return header.length - position + in.available();
+        }
+
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * An opened data source as seen by the decoder thread.
+     */
+    private static final class Source {
+
+        final Object dataSource;
+        final AudioInputStream encoded;
+        final AudioInputStream decoded;
+        final AudioFileFormat fileFormat;
+        final int encodedLength;
+        final long durationMicros;
+        boolean skipped;//是否已经跳过了一部分,跳过了就数不准帧了
+        long trimStart;//开头要去掉的PCM帧数
+        long trimEnd;//到这一帧为止,后面的是补齐的静音
+
+        Source(Object dataSource, AudioInputStream encoded, AudioInputStream decoded, AudioFileFormat fileFormat, int encodedLength) {
+            this.dataSource = dataSource;
+            this.encoded = encoded;
+            this.decoded = decoded;
+            this.fileFormat = fileFormat;
+            this.encodedLength = encodedLength;
+            long duration = -1;
+            if (fileFormat instanceof TAudioFileFormat) {
+                Object value = ((TAudioFileFormat) fileFormat).properties().get("duration");
+                if (value instanceof Long) {
+                    duration = (Long) value;
+                }
+            }
+            durationMicros = duration;
+        }
+
+        int getEncodedPosition() {
+            if (dataSource instanceof File) {
+                try {
+                    return encodedLength - encoded.available();
+                } catch (IOException e) {
+                    //log.debug("Cannot get encoded.available()",e);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return time left after the given encoded position, Long.MAX_VALUE if unknown
+         */
+        long getRemainingMicros(int encodedPosition) {
+            if (durationMicros <= 0 || encodedLength <= 0 || encodedPosition < 0) {
+                return Long.MAX_VALUE;
+            }
+            return durationMicros * (encodedLength - encodedPosition) / encodedLength;
+        }
+
+        /**
+         * Reads the LAME encoder delay and padding of an MP3 file.
+         * MP3 decoders output the Xing frame as one frame of silence,
+         * then encoder delay plus decoder delay before the real audio starts.
+         * @param head true to cut the start as well as the end
+         */
+        void readEncoderDelay(boolean head) {
+            if (!(dataSource instanceof File) || !isMp3(fileFormat)) {
+                return;
+            }
+            File file = (File) dataSource;
+            try {
+                MP3AudioHeader header = new MP3AudioHeader(file, AbstractID3v2Tag.getV2TagSizeIfExists(file));
+                XingFrame xing = header.getXingFrame();
+                if (xing == null || xing.getLameFrame() == null || !xing.isFrameCountEnabled()) {
+                    return;
+                }
+                LameFrame lame = xing.getLameFrame();
+                int samplesPerFrame = header.getSamplesPerFrame();
+                long start = samplesPerFrame + lame.getEncoderDelay() + MP3_DECODER_DELAY;
+                long valid = (long) xing.getFrameCount() * samplesPerFrame - lame.getEncoderDelay() - lame.getEncoderPadding();
+                if (valid > 0) {
+                    trimEnd = start + valid;
+                    if (head) {
+                        trimStart = start;
+                    }
+                }
+            } catch (IOException e) {
+                log.log(Level.FINE, "Cannot read LAME header " + file, e);
+            } catch (InvalidAudioFrameException e) {
+                log.log(Level.FINE, "Cannot read LAME header " + file, e);
+            }
+        }
+
+        void close() {
+            try {
+                decoded.close();
+            } catch (IOException e) {
+                log.log(Level.FINE, "Cannot close " + dataSource, e);
+            }
+        }
+    }
 }
@@ -39,11 +39,15 @@ public class BasicPlayerEvent {
     public static final int EOM = 8;
     public static final int PAN = 9;
     public static final int GAIN = 10;
+    public static final int UNDERRUN = 11;
+    public static final int CHAINED = 12;
     private int code = UNKNOWN;
     private int position = -1;
     private double value = -1.0;
     private Object source = null;
     private Object description = null;
+    private long underruns = 0;
+    private long overruns = 0;
 
     /**
      * Constructor
@@ -61,6 +65,22 @@ public class BasicPlayerEvent {
         this.description = desc;
     }
 
+    /**
+     * Constructor
+     * @param source of the event
+     * @param code of the envent
+     * @param position optional stream position
+     * @param value opitional control value
+     * @param desc optional description
+     * @param underruns times the line ran out of decoded audio so far
+     * @param overruns times the decoder waited for the line so far
+     */
+    public BasicPlayerEvent(Object source, int code, int position, double value, Object desc, long underruns, long overruns) {
+        this(source, code, position, value, desc);
+        this.underruns = underruns;
+        this.overruns = overruns;
+    }
+
     /**
      * Return code of the event triggered.
      * @return
@@ -97,6 +117,22 @@ public class BasicPlayerEvent {
         return source;
     }
 
+    /**
+     * Return how many times the line ran out of decoded audio.
+     * @return
+     */
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * Return how many times the decoder had to wait for the line.
+     * @return
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
     public String toString() {
         switch (code) {
             case OPENED:
@@ -121,6 +157,10 @@ public class BasicPlayerEvent {
                 return "PAN:" + value;
             case GAIN:
                 return "GAIN:" + value;
+            case CHAINED:
+                return "CHAINED:" + position + ":" + description;
+            case UNDERRUN:
+                return "UNDERRUN:" + underruns;
             default:
                 return "UNKNOWN:" + position;
         }
@@ -4,47 +4,131 @@
  */
 package com.judy.momoplayer.player;
 
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * 本类是一个线程,一个永远在分派事件的线程
- * 它里面维护着一个链表
+ * 它里面维护着一个定长的环形队列,生产者通过原子序号占位,不需要加锁,
+ * 分派线程每次把已发布的事件成批取出再交给监听器
  * @author judy
  */
 public class BasicPlayerEventLauncher extends Thread {
 
-    private Set<BasicPlayerListener> listeners;//保存所有监听器的集合
-    private LinkedList<BasicPlayerEvent> queue;//一个保存所有事件的队列
+    /**
+     * 分派线程在队列为空时的等待方式
+     */
+    public enum WaitStrategy {
+
+        /**
+         * 忙等,延迟最低,但是会占满一个CPU核
+         */
+        SPIN,
+        /**
+         * 空转时让出CPU
+         */
+        YIELD,
+        /**
+         * 挂起线程,由生产者唤醒,最省CPU
+         */
+        PARK
+    }
+    public static final int DEFAULT_CAPACITY = 1024;//必须是2的幂
+    private static final int BATCH_SIZE = 64;//一次最多分派的事件数
+    private static final Logger log = Logger.getLogger(BasicPlayerEventLauncher.class.getName());
+    private final Set<BasicPlayerListener> listeners;//保存所有监听器的集合,写时复制,遍历时不会被修改
+    private final AtomicReferenceArray<BasicPlayerEvent> ring;//保存所有事件的环形队列
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(0);//下一个可以占用的序号
+    private volatile long consumed = 0;//已经分派完的序号
+    private volatile boolean parked = false;//分派线程是否已经挂起
+    private volatile long dropped = 0;//分派线程自己放不进去而丢掉的事件数,只有分派线程会写
+    private volatile WaitStrategy waitStrategy = WaitStrategy.PARK;
+    private final BasicPlayerEvent[] batch = new BasicPlayerEvent[BATCH_SIZE];
+
     /**
      * 默认的构造函数,只是包内友好,
      * 别的包不能初始化本类,因为本类只是给BasicPlayer所使用的
      */
-     BasicPlayerEventLauncher() {
+    BasicPlayerEventLauncher() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 队列的大小,会向上取到2的幂
+     */
+    BasicPlayerEventLauncher(int capacity) {
         super("BasicPlayerEvent Dispacther Thread");
-        listeners = new HashSet<BasicPlayerListener>();
-        queue = new LinkedList<BasicPlayerEvent>();
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        listeners = new CopyOnWriteArraySet<BasicPlayerListener>();
+        ring = new AtomicReferenceArray<BasicPlayerEvent>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * 设置队列为空时的等待方式
+     * @param strategy 等待方式
+     */
+    public void setWaitStrategy(WaitStrategy strategy) {
+        if (strategy != null) {
+            waitStrategy = strategy;
+            LockSupport.unpark(this);
+        }
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
     }
 
     /**
-     * 把事件加进去
+     * 把事件加进去,可以被多个线程同时调用
+     * 队列满的时候会让出CPU直到分派线程空出位置,不会丢失事件.
+     * 监听器在分派线程上调用的时候没有人能空出位置,队列满了就丢掉这个事件
      * @param event 事件
      */
-    public synchronized void put(BasicPlayerEvent event) {
-        queue.offer(event);
-        synchronized (this) {
-            this.notifyAll();
+    public void put(BasicPlayerEvent event) {
+        long seq;
+        if (Thread.currentThread() == this) {
+            //consumed只有本线程会改,先看有没有位置再占序号
+            do {
+                seq = claimed.get();
+                if (seq - consumed >= ring.length()) {
+                    dropped++;
+                    log.log(Level.WARNING, "Event queue full, dropped {0}", event);
+                    return;
+                }
+            } while (!claimed.compareAndSet(seq, seq + 1));
+        } else {
+            seq = claimed.getAndIncrement();
+            while (seq - consumed >= ring.length()) {
+                LockSupport.unpark(this);
+                Thread.yield();
+            }
+        }
+        //这里必须是volatile写,和分派线程挂起前的检查配对,避免丢失唤醒
+        ring.set((int) seq & mask, event);
+        if (parked) {
+            LockSupport.unpark(this);
         }
     }
 
+    /**
+     * @return 监听器在分派线程上加事件时队列已满而丢掉的事件数
+     */
+    public long getDroppedEvents() {
+        return dropped;
+    }
+
     /**
      * 添加事件监听器
      * @param listener 监听器
      */
-    public synchronized void addBasicPlayerListener(BasicPlayerListener listener) {
+    public void addBasicPlayerListener(BasicPlayerListener listener) {
         listeners.add(listener);
     }
 
@@ -52,7 +136,7 @@ public class BasicPlayerEventLauncher extends Thread {
      * 得到所有监听器的集合
      * @return 所有监听器
      */
-    public synchronized Set<BasicPlayerListener> getBasicPlayerListeners() {
+    public Set<BasicPlayerListener> getBasicPlayerListeners() {
         return listeners;
     }
 
@@ -60,27 +144,72 @@ public class BasicPlayerEventLauncher extends Thread {
      * 去除指定的监听器
      * @param listener 要去除的临听器
      */
-    public synchronized void removeBasicPlayerListener(BasicPlayerListener listener) {
+    public void removeBasicPlayerListener(BasicPlayerListener listener) {
         listeners.remove(listener);
     }
 
+    /**
+     * 取出已经发布的事件,最多BATCH_SIZE个
+     * 生产者先占序号后写入,所以遇到还没写入的位置就停下
+     * @return 取出的事件数
+     */
+    private int drain() {
+        long next = consumed;
+        int count = 0;
+        while (count < BATCH_SIZE) {
+            int index = (int) next & mask;
+            BasicPlayerEvent event = ring.get(index);
+            if (event == null) {
+                break;
+            }
+            ring.lazySet(index, null);
+            batch[count++] = event;
+            next++;
+        }
+        consumed = next;
+        return count;
+    }
+
+    private void await() {
+        switch (waitStrategy) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                parked = true;
+                //挂起之前再检查一次,避免错过刚发布的事件
+                if (ring.get((int) consumed & mask) == null) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                if (Thread.interrupted()) {
+                    log.log(Level.FINE, "Event dispatcher interrupted");
+                }
+                break;
+        }
+    }
+
     public void run() {
         while (true) {
-            BasicPlayerEvent event = queue.poll();
-            if (event == null) {//如果事件为空,则等待
-                synchronized (this) {
+            int count = drain();
+            if (count == 0) {//如果事件为空,则等待
+                await();
+                continue;
+            }
+            //否则就指派到指定的监听器去调用
+            for (int i = 0; i < count; i++) {
+                BasicPlayerEvent event = batch[i];
+                batch[i] = null;
+                for (BasicPlayerListener bpl : listeners) {
                     try {
-                        this.wait();
-                    } catch (InterruptedException ex) {
-                        Logger.getLogger(BasicPlayerEventLauncher.class.getName()).log(Level.SEVERE, null, ex);
+                        bpl.stateUpdated(event);
+                    } catch (RuntimeException ex) {
+                        log.log(Level.SEVERE, null, ex);
                     }
                 }
-            } else {//否则就指派到指定的监听器去调用
-                for (BasicPlayerListener bpl : listeners) {
-                    bpl.stateUpdated(event);
-                }
             }
         }
-
     }
 }
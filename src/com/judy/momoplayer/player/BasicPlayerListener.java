@@ -51,7 +51,8 @@ public interface BasicPlayerListener {
      * 
      * @param bytesread from encoded stream.
      * @param microseconds elapsed (<b>reseted after a seek !</b>).
-     * @param pcmdata PCM samples.
+     * @param pcmdata PCM samples. The array is reused by the player for the
+     * next chunk, listeners must copy it if they keep it after returning.
      * @param properties audio stream parameters.
      */
     public void progress(int bytesread, long microseconds, byte[] pcmdata, Map<?, ?> properties);
@@ -0,0 +1,74 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.player;
+
+/**
+ * 播放进度,每一块PCM写到线路上以后生成一个,所有的订阅者共用
+ * 除了PCM数据以外都是不可变的
+ * @author judy
+ */
+public final class PlaybackProgress {
+
+    private final StreamInfo stream;
+    private final int bytesRead;
+    private final long microseconds;
+    private final byte[] pcm;
+    private final String streamTitle;
+
+    PlaybackProgress(StreamInfo stream, int bytesRead, long microseconds, byte[] pcm, String streamTitle) {
+        this.stream = stream;
+        this.bytesRead = bytesRead;
+        this.microseconds = microseconds;
+        this.pcm = pcm;
+        this.streamTitle = streamTitle;
+    }
+
+    /**
+     * @return 正在播放的流的信息
+     */
+    public StreamInfo getStream() {
+        return stream;
+    }
+
+    /**
+     * @return 已经读了的编码后的字节数
+     */
+    public int getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return 播放了的时间,微秒
+     */
+    public long getMicroseconds() {
+        return microseconds;
+    }
+
+    /**
+     * @return 放了的比例,0到1,不知道长度就是-1
+     */
+    public float getRate() {
+        int length = stream.getLengthBytes();
+        if (bytesRead > 0 && length > 0) {
+            return bytesRead * 1.0f / length;
+        }
+        return -1.0f;
+    }
+
+    /**
+     * 这一块PCM,播放器下一块还要用这个数组,回调返回以后还要用的话得复制一份
+     * @return PCM数据
+     */
+    public byte[] getPcm() {
+        return pcm;
+    }
+
+    /**
+     * @return shoutcast的标题,没有就是null
+     */
+    public String getStreamTitle() {
+        return streamTitle;
+    }
+}
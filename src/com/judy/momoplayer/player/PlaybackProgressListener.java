@@ -0,0 +1,19 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.player;
+
+/**
+ * 订阅播放进度的,用BasicPlayer.addProgressListener加进去,可以限定频率
+ * 同时又是BasicPlayerListener的话,就不再收到它的progress回调了
+ * @author judy
+ */
+public interface PlaybackProgressListener {
+
+    /**
+     * 在播放线程里调用,不要做太慢的事情
+     * @param progress 进度
+     */
+    public void progressUpdated(PlaybackProgress progress);
+}
@@ -0,0 +1,124 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.player;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * 一个音频流不会变的信息,打开的时候从属性里读出来一次,
+ * 播放的时候就不用每一块PCM都去属性里查了
+ * @author judy
+ */
+public final class StreamInfo {
+
+    private final Object source;
+    private final String type;
+    private final int lengthBytes;
+    private final long durationMillis;
+    private final float[] equalizer;
+    private final boolean shoutcast;
+
+    private StreamInfo(Object source, String type, int lengthBytes, long durationMillis, float[] equalizer,
+            boolean shoutcast) {
+        this.source = source;
+        this.type = type;
+        this.lengthBytes = lengthBytes;
+        this.durationMillis = durationMillis;
+        this.equalizer = equalizer;
+        this.shoutcast = shoutcast;
+    }
+
+    /**
+     * 从打开时的属性里读出来
+     * @param source 文件,URL或者输入流
+     * @param properties 打开时通知出去的属性
+     * @param streamProperties 解码流的属性,没有就是null
+     * @return 流的信息
+     */
+    static StreamInfo from(Object source, Map<?, ?> properties, Map<?, ?> streamProperties) {
+        String type = (String) properties.get("audio.type");
+        int lengthBytes = getInt(properties, "audio.length.bytes");
+        float[] equalizer = null;
+        if (streamProperties != null && streamProperties.get("mp3.equalizer") instanceof float[]) {
+            equalizer = (float[]) streamProperties.get("mp3.equalizer");
+        }
+        boolean shoutcast = !(source instanceof File) && "mp3".equalsIgnoreCase(type);
+        return new StreamInfo(source, type, lengthBytes, estimateDuration(properties, lengthBytes), equalizer,
+                shoutcast);
+    }
+
+    /**
+     * 有duration就用它,没有的话按字节数算
+     */
+    private static long estimateDuration(Map<?, ?> properties, int lengthBytes) {
+        Object duration = properties.get("duration");
+        if (duration instanceof Long) {
+            return (Long) duration / 1000;
+        }
+        int bitsPerSample = getInt(properties, "audio.samplesize.bits");
+        int channels = getInt(properties, "audio.channels");
+        int frameSize = getInt(properties, "audio.framesize.bytes");
+        Object rate = properties.get("audio.samplerate.hz");
+        float sampleRate = rate instanceof Float ? (Float) rate : -1.0f;
+        if (bitsPerSample > 0) {
+            return (int) (1000.0f * lengthBytes / (sampleRate * channels * (bitsPerSample / 8)));
+        } else {
+            return (int) (1000.0f * lengthBytes / (sampleRate * frameSize));
+        }
+    }
+
+    private static int getInt(Map<?, ?> properties, String key) {
+        Object value = properties.get(key);
+        return value instanceof Integer ? (Integer) value : -1;
+    }
+
+    /**
+     * @return 文件,URL或者输入流
+     */
+    public Object getSource() {
+        return source;
+    }
+
+    /**
+     * @return 格式,比如MP3,WAVE,没有就是null
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return 编码后的字节数,不知道就是-1
+     */
+    public int getLengthBytes() {
+        return lengthBytes;
+    }
+
+    /**
+     * @return 估计的长度,毫秒,不知道的话小于等于0
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return MP3解码器用的均衡器数组,改它就直接生效,不是MP3就是null
+     */
+    public float[] getEqualizer() {
+        return equalizer;
+    }
+
+    /**
+     * @return 是不是可能带着shoutcast标题的网络MP3流
+     */
+    public boolean isShoutcast() {
+        return shoutcast;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamInfo[" + type + "," + lengthBytes + " bytes," + durationMillis + "ms]";
+    }
+}
@@ -20,6 +20,7 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowStateListener;
 import java.awt.geom.RoundRectangle2D;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Iterator;
@@ -130,6 +131,7 @@ public class Main extends JFrame implements Loader {
 
 	public void loadJS() {
 		BasicPlayer bplayer = new BasicPlayer();
+		bplayer.setSeekIndexDir(new File(Config.HOME, "SeekIndex"));
 		List<String> mixers = bplayer.getMixers(system);
 		log.log(Level.INFO, "可用的MIXER:{0}", mixers);
 		config.setMixers(mixers);
@@ -160,6 +162,9 @@ public class Main extends JFrame implements Loader {
 		}
 		// Register the front-end to low-level player events.
 		bplayer.addBasicPlayerListener(mp);
+		// 时间和进度条一秒刷新30次就够了,频谱要每一块PCM
+		bplayer.addProgressListener(mp, 30);
+		bplayer.addProgressListener(mp.getSpectrumFeed(), 0);
 		// Adds controls for front-end to low-level player.
 		mp.setController(bplayer);
 	}
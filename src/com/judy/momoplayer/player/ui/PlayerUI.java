@@ -48,11 +48,15 @@ import javax.swing.event.ChangeListener;
 
 import com.judy.momoplayer.equalizer.EqualizerUI;
 import com.judy.momoplayer.lyric.Lyric;
+import com.judy.momoplayer.lyric.LyricPrefetcher;
 import com.judy.momoplayer.lyric.LyricUI;
 import com.judy.momoplayer.player.BasicController;
 import com.judy.momoplayer.player.BasicPlayerEvent;
 import com.judy.momoplayer.player.BasicPlayerException;
 import com.judy.momoplayer.player.BasicPlayerListener;
+import com.judy.momoplayer.player.PlaybackProgress;
+import com.judy.momoplayer.player.PlaybackProgressListener;
+import com.judy.momoplayer.player.StreamInfo;
 import com.judy.momoplayer.playlist.PlayList;
 import com.judy.momoplayer.playlist.PlayListItem;
 import com.judy.momoplayer.playlist.PlayListUI;
@@ -76,7 +80,7 @@ import com.judy.momoplayer.util.Util;
  * @date 2017年1月12日 下午8:00:05
  * @version 1.0.0
  */
-public class PlayerUI extends JPanel implements Playerable, ActionListener, ChangeListener, BasicPlayerListener {
+public class PlayerUI extends JPanel implements Playerable, ActionListener, ChangeListener, BasicPlayerListener, PlaybackProgressListener {
 
     private static final long serialVersionUID = 20071214L;
     //表示播放器的各种状态
@@ -96,6 +100,16 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
     private Lyric lyric;//一个歌词对象
     private BasicController player;//基本的播放器对象
     private Map<?, ?> audioInfo;//里面存的是所有有关的音频信息
+    private StreamInfo progressStream;//上次进度对应的流,换了流才重设均衡器
+    private final PlaybackProgressListener spectrumFeed = new PlaybackProgressListener() {
+
+        public void progressUpdated(PlaybackProgress progress) {
+            // Spectrum/time analyzer
+            if (audioChart != null) {
+                audioChart.writeDSP(progress.getPcm());
+            }
+        }
+    };
     private int playerState;//播放器的当前状态
     private Config config;//一个配置对象
     @SuppressWarnings("unused")
@@ -693,7 +707,10 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
 
     private JMenu createPlayWhichMenu() {
         JMenu menu = new JMenu(Config.getResource("PlayerUI.playSong"));
-        for (final PlayListItem item : playlist.getAllItems()) {
+        //歌太多的话只列出当前这首前后的50首
+        int size = playlist.getPlaylistSize();
+        int from = Math.max(0, Math.min(playlist.getSelectedIndex() - 25, size - 50));
+        for (final PlayListItem item : playlist.getItems(from, from + 50)) {
             menu.add(new AbstractAction(item.getFormattedName()) {
 
                 /**
@@ -1036,6 +1053,11 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
                     audioChart.startDSP((SourceDataLine) audioInfo.get("basicplayer.sourcedataline"));
                 }
             }
+            queueNextSong();
+        } else if (eventState == BasicPlayerEvent.CHAINED) {
+            //下一首已经无缝接上了,这里只需要更新界面,不用再停止和打开
+            processChained();
+            queueNextSong();
         } else if (eventState == BasicPlayerEvent.SEEKING) {
             posValueJump = true;
         } else if (eventState == BasicPlayerEvent.SEEKED) {
@@ -1073,6 +1095,7 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
                 break;
             case BasicPlayerEvent.PLAYING:
             case BasicPlayerEvent.RESUMED:
+            case BasicPlayerEvent.CHAINED:
                 showTitle(Config.getResource("state.play"));
                 currentState = Config.getResource("state.play");
                 title = currentItem.getFormattedName() + " - " + Config.NAME + "  ";
@@ -1144,8 +1167,16 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
         return milliseconds;
     }
 
-    public void processProgress(int bytesread, long microseconds, byte[] pcmdata, Map<?, ?> properties) {
-        int byteslength = -1;
+    /**
+     * 每一块PCM都交给频谱显示,不限频率
+     */
+    public PlaybackProgressListener getSpectrumFeed() {
+        return spectrumFeed;
+    }
+
+    public void processProgress(PlaybackProgress progressInfo) {
+        StreamInfo stream = progressInfo.getStream();
+        long microseconds = progressInfo.getMicroseconds();
         long total = -1;
         // Try to get time from playlist item.
         if (currentItem != null) {
@@ -1153,66 +1184,45 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
         }
         // If it fails then try again with JavaSound SPI.
         if (total <= 0) {
-            total = (long) Math.round(getTimeLengthEstimation(audioInfo) / 1000);
-            currentItem.setDuration(total);
-            playlistUI.repaint();
+            total = (long) Math.round(stream.getDurationMillis() / 1000);
+            if (currentItem != null) {
+                currentItem.setDuration(total);
+                playlistUI.repaint();
+            }
         }
         // If it fails again then it might be stream => Total = -1
         if (total <= 0) {
             total = -1;
         }
-        if (audioInfo.containsKey("basicplayer.sourcedataline")) {
-            // Spectrum/time analyzer
-            if (audioChart != null) {
-                audioChart.writeDSP(pcmdata);
-            }
-        }
-        if (audioInfo.containsKey("audio.length.bytes")) {
-            //byteslength = ((Integer) audioInfo.get("audio.length.bytes")).intValue();
-            byteslength = ((Integer) audioInfo.get("audio.length.bytes"));
-        }
-        float progress = -1.0f;
-        if ((bytesread > 0) && ((byteslength > 0))) {
-            progress = bytesread * 1.0f / byteslength * 1.0f;
+        float progress = progressInfo.getRate();
+        if (progress >= 0) {
             config.setLastRate(progress);
         }
-
-        if (audioInfo.containsKey("audio.type")) {
-            String audioformat = (String) audioInfo.get("audio.type");
-            if (audioformat.equalsIgnoreCase("mp3")) {
-                //if (properties.containsKey("mp3.position.microseconds")) secondsAmount = (long) Math.round(((Long) properties.get("mp3.position.microseconds")).longValue()/1000000);
-                // Shoutcast stream title.
-                if (properties.containsKey("mp3.shoutcast.metadata.StreamTitle")) {
-                    String shoutTitle = ((String) properties.get("mp3.shoutcast.metadata.StreamTitle")).trim();
-                    if (shoutTitle.length() > 0) {
-                        if (currentItem != null) {
-                            String sTitle = " (" + currentItem.getFormattedDisplayName() + ")";
-                            if (!currentItem.getFormattedName().equals(shoutTitle + sTitle)) {
-                                currentItem.setFormattedDisplayName(shoutTitle + sTitle);
-//                                showTitle((shoutTitle + sTitle).toUpperCase());
-//                                playlistUI.paintList();
-                            }
-                        }
+        // 换了一个流才重设均衡器,解码器一直用的是同一个数组
+        if (stream != progressStream) {
+            progressStream = stream;
+            equalizerUI.setBands(stream.getEqualizer());
+        }
+        String audioformat = stream.getType();
+        if ("mp3".equalsIgnoreCase(audioformat)) {
+            // Shoutcast stream title.
+            String shoutTitle = progressInfo.getStreamTitle();
+            if (shoutTitle != null && shoutTitle.trim().length() > 0) {
+                shoutTitle = shoutTitle.trim();
+                if (currentItem != null) {
+                    String sTitle = " (" + currentItem.getFormattedDisplayName() + ")";
+                    if (!currentItem.getFormattedName().equals(shoutTitle + sTitle)) {
+                        currentItem.setFormattedDisplayName(shoutTitle + sTitle);
                     }
                 }
-                // EqualizerUI
-                if (properties.containsKey("mp3.equalizer")) {
-                    equalizerUI.setBands((float[]) properties.get("mp3.equalizer"));
-                }
-                if (total > 0) {
-                    secondsAmount = (long) (total * progress);
-                } else {
-                    secondsAmount = -1;
-                }
-            } else if (audioformat.equalsIgnoreCase("wave")) {
+            }
+            if (total > 0) {
                 secondsAmount = (long) (total * progress);
             } else {
-                secondsAmount = (long) Math.round(microseconds / 1000000);
-                equalizerUI.setBands(null);
+                secondsAmount = -1;
             }
         } else {
             secondsAmount = (long) Math.round(microseconds / 1000000);
-            equalizerUI.setBands(null);
         }
         if (secondsAmount < 0) {
             secondsAmount = (long) Math.round(microseconds / 1000000);
@@ -1393,6 +1403,77 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
         this.playerState = state;
     }
 
+    /**
+     * 如果启用了无缝播放,则把接下来要播的歌提前交给播放器,
+     * 让它在当前这首快结束的时候就打开,接在同一条音频线路上
+     */
+    private void queueNextSong() {
+        if (!config.isGapless() || !config.isRepeatEnabled() || playlist == null) {
+            return;
+        }
+        //有播放间隔的时候本来就不连续,还是走原来的流程
+        if (config.getSequencePlayInterval() > 0) {
+            return;
+        }
+        PlayListItem next = null;
+        if (config.getRepeatStrategy() == Config.REPEAT_ALL) {
+            next = playlist.peekNextCursor();
+        } else if (config.getRepeatStrategy() == Config.REPEAT_ONE) {
+            next = currentItem;
+        }
+        if (next == null || next.getLocation() == null) {
+            return;
+        }
+        try {
+            if (next.isFile()) {
+                player.openNext(new File(next.getLocation()));
+            } else {
+                player.openNext(new URL(next.getLocation()));
+            }
+        } catch (MalformedURLException ex) {
+            log.log(Level.WARNING, null, ex);
+        }
+    }
+
+    /**
+     * 播放器已经把下一首接上了,把当前项换成下一首
+     */
+    private void processChained() {
+        if (config.getRepeatStrategy() == Config.REPEAT_ALL) {
+            playlist.nextCursor();
+        }
+        PlayListItem pli = playlist.getCursor();
+        if (pli == null) {
+            return;
+        }
+        seekedTime = 0L;
+        secondsAmount = 0;
+        pli.getTagInfo();
+        currentItem = pli;
+        playlistUI.setCurrentItem(pli);
+        currentSongName = pli.getFormattedName();
+        currentFileOrURL = pli.getLocation();
+        currentIsFile = pli.isFile();
+        config.setCurrentFileOrUrl(currentFileOrURL);
+        titleText = currentSongName.toUpperCase();
+        int sec = (int) pli.getLength();
+        if (sec <= 0) {
+            Long duration = (Long) audioInfo.get("duration");
+            if (duration != null) {
+                sec = (int) (duration / 1000000);
+                pli.setDuration(sec);
+            }
+        }
+        timePanel.reset(sec);
+        infoPanel.reset(pli);
+        lastScrollTime = System.currentTimeMillis();
+        posValueJump = false;
+        lyric = LyricPrefetcher.getInstance().getLyric(pli);
+        lyricUI.setLyric(lyric);
+        LyricPrefetcher.getInstance().prefetch(playlist);
+        playlistUI.repaint();
+    }
+
     public void setCurrentSong(PlayListItem pli) {
         seekedTime = 0L;
         //log.log(Level.INFO, "调用了setCurrentSong()" + Thread.currentThread());
@@ -1566,8 +1647,9 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
                         player.open(new URL(currentFileOrURL));
                     }
                     player.play();
-                    lyric = new Lyric(currentItem);
+                    lyric = LyricPrefetcher.getInstance().getLyric(currentItem);
                     lyricUI.setLyric(lyric);
+                    LyricPrefetcher.getInstance().prefetch(playlist);
                     titleText = currentSongName.toUpperCase();
                     // Get bitrate, samplingrate, channels, time in the following order :
                     // PlaylistItem, BasicPlayer (JavaSound SPI), Manual computation.
@@ -1932,13 +2014,19 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
      */
     protected void processSeek(double rate) {
         try {
+            long length = currentItem == null ? -1 : currentItem.getLength();
+            //先按时间seek,播放器报告的时间就是从头算起的了
+            if (length > 0 && player.seekMicroseconds((long) (length * 1000000 * rate)) >= 0) {
+                seekedTime = 0L;
+                applyPanAndGain();
+                return;
+            }
             if ((audioInfo != null) && (audioInfo.containsKey("audio.type"))) {
                 String type = (String) audioInfo.get("audio.type");
                 // Seek support for MP3.
                 if ((type.equalsIgnoreCase("mp3")) && (audioInfo.containsKey("audio.length.bytes"))) {
                     long skipBytes = Math.round(((Integer) audioInfo.get("audio.length.bytes")) * rate);
                     player.seek(skipBytes);
-                    long length = currentItem.getLength();
                     if (length > 0) {
                         seekedTime = (long) (length * 1000 * rate);
                     }
@@ -1946,7 +2034,6 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
                 else if ((type.equalsIgnoreCase("wave")) && (audioInfo.containsKey("audio.length.bytes"))) {
                     long skipBytes = Math.round(((Integer) audioInfo.get("audio.length.bytes")) * rate);
                     player.seek(skipBytes);
-                    long length = currentItem.getLength();
                     if (length > 0) {
                         seekedTime = (long) (length * 1000 * rate);
                     }
@@ -1976,8 +2063,14 @@ public class PlayerUI extends JPanel implements Playerable, ActionListener, Chan
 //        log.log(Level.SEVERE, properties.toString());
     }
 
+    /**
+     * 实现了PlaybackProgressListener,播放器不会再调这个了,进度从progressUpdated来
+     */
     public void progress(int bytesread, long microseconds, byte[] pcmdata, Map<?, ?> properties) {
-        processProgress(bytesread, microseconds, pcmdata, properties);
+    }
+
+    public void progressUpdated(PlaybackProgress progress) {
+        processProgress(progress);
     }
 
     public void stateUpdated(BasicPlayerEvent event) {
@@ -13,9 +13,16 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -26,7 +33,8 @@ import java.util.Vector;
 public class BasicPlayList implements PlayList {
 
     private static final long serialVersionUID = 20071214L;
-    protected Vector<PlayListItem> playList;
+    private Vector<PlayListItem> playList;//旧版本序列化下来的列表,读进来以后就转到items里去
+    protected ItemList items;
     protected int currentIndex = -1;
     protected boolean isModified;
     protected String M3UHome;//MP3U格式列表的位置
@@ -35,9 +43,13 @@ public class BasicPlayList implements PlayList {
     private Config config;//全局的配置对象
     @SuppressWarnings("unused")
 	private PlayListItem playing;//正在播放的项
+    private transient boolean hasPending;//是否已经用peekNextCursor预先算好了下一项
+    private transient int pendingIndex;//预先算好的下标
+    private transient int[] shuffleOrder;//随机播放的顺序,Fisher-Yates洗出来的
+    private transient int[] shuffleRank;//每个下标在随机顺序里排第几
     public BasicPlayList(Config config) {
         this.config = config;
-        playList = new Vector<PlayListItem>();
+        items = new ItemList();
     }
 
     public boolean load(String filename) {
@@ -227,13 +239,13 @@ public class BasicPlayList implements PlayList {
 
     public boolean save(String filename) {
         // Implemented by C.K
-        if (playList != null) {
+        if (items != null) {
             BufferedWriter bw = null;
             try {
                 bw = new BufferedWriter(new FileWriter(filename));
                 bw.write("#EXTM3U");
                 bw.newLine();
-                Iterator<PlayListItem> it = playList.iterator();
+                Iterator<PlayListItem> it = items.iterator();
                 while (it.hasNext()) {
                     PlayListItem pli = it.next();
                     bw.write("#EXTINF:" + pli.getM3UExtInf());
@@ -256,47 +268,77 @@ public class BasicPlayList implements PlayList {
     }
 
     public void addItemAt(PlayListItem pli, int pos) {
-        playList.add(pos, pli);
-        for (int i = 0; i < playList.size(); i++) {
-            if (playList.get(i).isSelected()) {
-                currentIndex = i;
-            }
+        items.add(pos, pli);
+        if (currentIndex >= pos) {
+            currentIndex++;
         }
-        setModified(true);
+        itemsChanged();
         if (Config.getConfig().getReadTagInfoStrategy().equals(Config.READ_WHEN_ADD)) {
             pli.getTagInfo();
         }
     }
 
     public void removeItem(PlayListItem pli) {
-        playList.remove(pli);
-        setModified(true);
-        for (int i = 0; i < playList.size(); i++) {
-            if (playList.get(i).isSelected()) {
-                currentIndex = i;
-            }
+        int pos = items.indexOf(pli);
+        if (pos >= 0) {
+            removeItemAt(pos);
         }
     }
 
     public void removeItemAt(int pos) {
-        playList.remove(pos);
-        setModified(true);
-        for (int i = 0; i < playList.size(); i++) {
-            if (playList.get(i).isSelected()) {
-                currentIndex = i;
-            }
+        items.remove(pos);
+        //删掉的是前面的,当前的下标往前挪一个,删掉的是当前的就指向它后面那首
+        if (pos < currentIndex) {
+            currentIndex--;
         }
+        itemsChanged();
+    }
+
+    public void removeItems(Collection<PlayListItem> toRemove) {
+        if (toRemove.isEmpty()) {
+            return;
+        }
+        PlayListItem current = getCursor();
+        Set<PlayListItem> set = Collections.newSetFromMap(new IdentityHashMap<PlayListItem, Boolean>());
+        set.addAll(toRemove);
+        items.removeItems(set);
+        if (current != null && !set.contains(current)) {
+            currentIndex = items.indexOf(current);
+        } else if (currentIndex >= items.size()) {
+            currentIndex = items.size() - 1;
+        }
+        itemsChanged();
     }
 
     public void removeAllItems() {
-        playList.clear();
+        items.clear();
         currentIndex = -1;
-        setModified(true);
+        itemsChanged();
+    }
+
+    public void addItemsAt(List<PlayListItem> toAdd, int pos) {
+        if (toAdd.isEmpty()) {
+            return;
+        }
+        if (pos < 0 || pos > items.size()) {
+            pos = items.size();
+        }
+        items.addAll(pos, toAdd);
+        //选中的项目在插入点后面才会移动
+        if (currentIndex >= pos) {
+            currentIndex += toAdd.size();
+        }
+        itemsChanged();
+        if (Config.getConfig().getReadTagInfoStrategy().equals(Config.READ_WHEN_ADD)) {
+            for (PlayListItem pli : toAdd) {
+                pli.getTagInfo();
+            }
+        }
     }
 
     public void appendItem(PlayListItem pli) {
-        playList.add(pli);
-        setModified(true);
+        items.add(pli);
+        itemsChanged();
         if (Config.getConfig().getReadTagInfoStrategy().equals(Config.READ_WHEN_ADD)) {
             pli.getTagInfo();
         }
@@ -306,43 +348,46 @@ public class BasicPlayList implements PlayList {
     }
 
     public PlayListItem getItemAt(int pos) {
-        if (pos < playList.size() && pos > -1) {
-            return playList.get(pos);
+        if (pos < items.size() && pos > -1) {
+            return items.get(pos);
         }
         return null;
     }
 
-    public Vector<PlayListItem> getAllItems() {
-        return playList;
+    public List<PlayListItem> getAllItems() {
+        return items;
+    }
+
+    public List<PlayListItem> getItems(int from, int to) {
+        return items.copyOf(from, to);
     }
 
     public int getPlaylistSize() {
-        return playList.size();
+        return items.size();
     }
 
     public void shuffle() {
-        int size = playList.size();
+        int size = items.size();
         if (size < 2) {
             return;
         }
-        List<PlayListItem> v = playList;
-        playList = new Vector<PlayListItem>(size);
-        while ((size = v.size()) > 0) {
-            playList.add(v.remove((int) (Math.random() * size)));
-        }
-        begin();
-        //此次可能不一定需要这个方法,因为本身此方法就是打
-        //乱播放列表的顺序,所以此时再点击下一首不一定就是
-        //当前播放的歌曲的下一首
-        for (int i = 0; i < playList.size(); i++) {
-            if (playList.get(i).isSelected()) {
-                currentIndex = i;
-            }
+        PlayListItem current = getCursor();
+        Object[] array = items.toArray();
+        Random random = new Random();
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
         }
+        items.replaceAll(array);
+        //打乱以后还是指着正在放的那一首
+        currentIndex = current == null ? 0 : items.indexOf(current);
+        itemsChanged();
     }
 
     public PlayListItem getCursor() {
-        if ((currentIndex < 0) || (currentIndex >= playList.size())) {
+        if ((currentIndex < 0) || (currentIndex >= items.size())) {
             return null;
         }
         return getItemAt(currentIndex);
@@ -361,37 +406,167 @@ public class BasicPlayList implements PlayList {
     }
 
     public int getIndex(PlayListItem pli) {
-        return playList.indexOf(pli);
+        return items.indexOf(pli);
     }
 
     public void nextCursor() {
-        //如果是随机播放,则随机取一个下标
+        //已经预先算好了的话就用它,保证和提前打开的是同一首
+        if (hasPending && pendingIndex < items.size()) {
+            currentIndex = pendingIndex;
+        } else {
+            currentIndex = computeNextIndex();
+        }
+        hasPending = false;
+    }
+
+    public PlayListItem peekNextCursor() {
+        if (!hasPending || pendingIndex >= items.size()) {
+            pendingIndex = computeNextIndex();
+            hasPending = true;
+        }
+        if (pendingIndex < 0 || pendingIndex >= items.size()) {
+            return null;
+        }
+        return getItemAt(pendingIndex);
+    }
+
+    public List<PlayListItem> peekUpcoming(int count) {
+        List<PlayListItem> list = new ArrayList<PlayListItem>(count);
+        int size = items.size();
+        if (count <= 0 || peekNextCursor() == null) {
+            return list;
+        }
+        int index = pendingIndex;
+        list.add(getItemAt(index));
+        while (list.size() < Math.min(count, size)) {
+            if (config.getPlayStrategy() == Config.RANDOM_PLAY) {
+                //这一轮洗好的顺序走完了就不往下看了,下一轮还没洗
+                if (shuffleRank == null || shuffleRank.length != size || shuffleRank[index] + 1 >= size) {
+                    break;
+                }
+                index = shuffleOrder[shuffleRank[index] + 1];
+            } else if (config.getPlayStrategy() == Config.ORDER_PLAY) {
+                index++;
+                if (index >= size) {
+                    if (!config.isRepeatEnabled()) {
+                        break;
+                    }
+                    index = 0;
+                }
+            } else {
+                break;
+            }
+            list.add(getItemAt(index));
+        }
+        return list;
+    }
+
+    private int computeNextIndex() {
+        int index = currentIndex;
+        //如果是随机播放,则按洗好的顺序取下一首
         if (config.getPlayStrategy() == Config.RANDOM_PLAY) {
-            currentIndex = (int) (Math.random() * playList.size());
+            index = nextShuffled(1);
         //否则就按顺序  
         } else if (config.getPlayStrategy() == Config.ORDER_PLAY) {
-            currentIndex++;
+            index++;
         }
-        if (config.isRepeatEnabled() && currentIndex >= playList.size()) {
-            currentIndex = 0;
+        if (config.isRepeatEnabled() && index >= items.size()) {
+            index = 0;
         }
-
+        return index;
     }
 
     public void previousCursor() {
-        //如果是随机播放,则随机取一个下标
+        hasPending = false;
+        //如果是随机播放,则按洗好的顺序退回上一首
         if (config.getPlayStrategy() == Config.RANDOM_PLAY) {
-            currentIndex = (int) (Math.random() * playList.size());
+            currentIndex = nextShuffled(-1);
         //否则就按顺序  
         } else if (config.getPlayStrategy() == Config.ORDER_PLAY) {
             currentIndex--;
         }
         if (config.isRepeatEnabled() && currentIndex < 0) {
-            currentIndex = playList.size() - 1;
+            currentIndex = items.size() - 1;
+        }
+    }
+
+    /**
+     * 随机播放的时候,按洗好的顺序走一步,一轮走完了再洗一次,
+     * 这样每首歌一轮只放一次,上一首也能退回去
+     * @param step 1是下一首,-1是上一首
+     * @return 下标
+     */
+    private int nextShuffled(int step) {
+        int size = items.size();
+        if (size == 0) {
+            return -1;
+        }
+        if (shuffleOrder == null || shuffleOrder.length != size) {
+            newShuffleOrder(currentIndex);
+        }
+        int rank = currentIndex >= 0 && currentIndex < size ? shuffleRank[currentIndex] + step : 0;
+        if (rank >= size || rank < 0) {
+            newShuffleOrder(currentIndex);
+            rank = step > 0 ? Math.min(1, size - 1) : size - 1;
+        }
+        return shuffleOrder[rank];
+    }
+
+    /**
+     * Fisher-Yates洗一个新的顺序,first放在最前面
+     */
+    private void newShuffleOrder(int first) {
+        int size = items.size();
+        shuffleOrder = new int[size];
+        shuffleRank = new int[size];
+        for (int i = 0; i < size; i++) {
+            shuffleOrder[i] = i;
+        }
+        Random random = new Random();
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = shuffleOrder[i];
+            shuffleOrder[i] = shuffleOrder[j];
+            shuffleOrder[j] = temp;
+        }
+        if (first >= 0 && first < size) {
+            for (int i = 0; i < size; i++) {
+                if (shuffleOrder[i] == first) {
+                    shuffleOrder[i] = shuffleOrder[0];
+                    shuffleOrder[0] = first;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            shuffleRank[shuffleOrder[i]] = i;
+        }
+    }
+
+    /**
+     * 列表里的项目变了,洗好的顺序也作废了
+     */
+    private void itemsChanged() {
+        shuffleOrder = null;
+        shuffleRank = null;
+        setModified(true);
+    }
+
+    /**
+     * 旧版本的配置文件里存的是Vector
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (items == null) {
+            items = new ItemList(playList == null ? new Vector<PlayListItem>() : playList);
+            playList = null;
         }
     }
 
     public boolean setModified(boolean set) {
+        if (set) {
+            hasPending = false;
+        }
         return isModified = set;
     }
 
@@ -401,7 +576,8 @@ public class BasicPlayList implements PlayList {
 
     public void setCursor(int index) {
         currentIndex = index;
-        playing = playList.get(index);
+        hasPending = false;
+        playing = items.get(index);
     }
 
     public void setName(String name) {
@@ -462,5 +638,6 @@ public class BasicPlayList implements PlayList {
 //        }
 //        pl.setSelected(true);
         this.currentIndex = index;
+        hasPending = false;
     }
 }
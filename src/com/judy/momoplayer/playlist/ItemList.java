@@ -0,0 +1,264 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.playlist;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 播放列表里的项目,分成很多小块存,每块最多BLOCK_SIZE个
+ * 按下标取的时候先二分查找在哪一块,插入和删除只挪动一块里的元素,
+ * 不像Vector那样十万首歌插一首要挪十万个
+ * 和Vector一样,所有的方法都是同步的
+ * @author judy
+ */
+class ItemList extends AbstractList<PlayListItem> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 20161110L;
+	private static final int BLOCK_SIZE = 512;
+	private final List<ArrayList<PlayListItem>> blocks = new ArrayList<ArrayList<PlayListItem>>();
+	private int size;
+	private transient int[] starts;// 每一块第一个元素的下标,改了以后要重算
+
+	ItemList() {
+	}
+
+	ItemList(Collection<? extends PlayListItem> c) {
+		addAll(c);
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized PlayListItem get(int index) {
+		checkIndex(index, size);
+		int b = findBlock(index);
+		return blocks.get(b).get(index - starts[b]);
+	}
+
+	@Override
+	public synchronized PlayListItem set(int index, PlayListItem item) {
+		checkIndex(index, size);
+		int b = findBlock(index);
+		return blocks.get(b).set(index - starts[b], item);
+	}
+
+	@Override
+	public synchronized void add(int index, PlayListItem item) {
+		checkIndex(index, size + 1);
+		if (blocks.isEmpty()) {
+			blocks.add(new ArrayList<PlayListItem>(BLOCK_SIZE));
+			starts = null;
+		}
+		// 加在最后的时候放在最后一块里
+		int b = index == size ? blocks.size() - 1 : findBlock(index);
+		ArrayList<PlayListItem> block = blocks.get(b);
+		block.add(index - getStart(b), item);
+		if (block.size() > BLOCK_SIZE * 2) {
+			split(b);
+		}
+		size++;
+		starts = null;
+		modCount++;
+	}
+
+	@Override
+	public synchronized boolean addAll(int index, Collection<? extends PlayListItem> c) {
+		checkIndex(index, size + 1);
+		if (c.isEmpty()) {
+			return false;
+		}
+		if (blocks.isEmpty()) {
+			blocks.add(new ArrayList<PlayListItem>(BLOCK_SIZE));
+			starts = null;
+		}
+		int b = index == size ? blocks.size() - 1 : findBlock(index);
+		ArrayList<PlayListItem> block = blocks.get(b);
+		block.addAll(index - getStart(b), c);
+		size += c.size();
+		if (block.size() > BLOCK_SIZE * 2) {
+			split(b);
+		}
+		starts = null;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public synchronized boolean addAll(Collection<? extends PlayListItem> c) {
+		return addAll(size, c);
+	}
+
+	@Override
+	public synchronized PlayListItem remove(int index) {
+		checkIndex(index, size);
+		int b = findBlock(index);
+		ArrayList<PlayListItem> block = blocks.get(b);
+		PlayListItem item = block.remove(index - starts[b]);
+		if (block.isEmpty()) {
+			blocks.remove(b);
+		}
+		size--;
+		starts = null;
+		modCount++;
+		return item;
+	}
+
+	@Override
+	public synchronized boolean remove(Object o) {
+		int index = indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	@Override
+	public synchronized int indexOf(Object o) {
+		int index = 0;
+		for (ArrayList<PlayListItem> block : blocks) {
+			int i = block.indexOf(o);
+			if (i >= 0) {
+				return index + i;
+			}
+			index += block.size();
+		}
+		return -1;
+	}
+
+	/**
+	 * 去掉一组项目,只走一遍
+	 * @param c 要去掉的项目
+	 * @return 去掉的个数
+	 */
+	synchronized int removeItems(Collection<?> c) {
+		int removed = 0;
+		for (int b = blocks.size() - 1; b >= 0; b--) {
+			ArrayList<PlayListItem> block = blocks.get(b);
+			int before = block.size();
+			block.removeAll(c);
+			removed += before - block.size();
+			if (block.isEmpty()) {
+				blocks.remove(b);
+			}
+		}
+		if (removed > 0) {
+			size -= removed;
+			starts = null;
+			modCount++;
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void clear() {
+		blocks.clear();
+		size = 0;
+		starts = null;
+		modCount++;
+	}
+
+	@Override
+	public synchronized Object[] toArray() {
+		Object[] a = new Object[size];
+		int i = 0;
+		for (ArrayList<PlayListItem> block : blocks) {
+			for (PlayListItem item : block) {
+				a[i++] = item;
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * 把一段项目复制出来,界面只要画看得见的那些
+	 * @param from 开始的下标,包括
+	 * @param to 结束的下标,不包括
+	 * @return 复制出来的项目
+	 */
+	synchronized List<PlayListItem> copyOf(int from, int to) {
+		from = Math.max(0, from);
+		to = Math.min(size, to);
+		List<PlayListItem> list = new ArrayList<PlayListItem>(Math.max(0, to - from));
+		for (int i = from; i < to; i++) {
+			list.add(get(i));
+		}
+		return list;
+	}
+
+	/**
+	 * 排序,洗牌这些整体重排以后重新分块
+	 * @param items 新的顺序
+	 */
+	synchronized void replaceAll(Object[] items) {
+		blocks.clear();
+		for (int i = 0; i < items.length; i += BLOCK_SIZE) {
+			int end = Math.min(items.length, i + BLOCK_SIZE);
+			ArrayList<PlayListItem> block = new ArrayList<PlayListItem>(BLOCK_SIZE);
+			for (int j = i; j < end; j++) {
+				block.add((PlayListItem) items[j]);
+			}
+			blocks.add(block);
+		}
+		size = items.length;
+		starts = null;
+		modCount++;
+	}
+
+	/**
+	 * 太大的块拆成几块
+	 */
+	private void split(int b) {
+		ArrayList<PlayListItem> block = blocks.remove(b);
+		for (int i = 0; i < block.size(); i += BLOCK_SIZE) {
+			int end = Math.min(block.size(), i + BLOCK_SIZE);
+			ArrayList<PlayListItem> part = new ArrayList<PlayListItem>(BLOCK_SIZE);
+			part.addAll(block.subList(i, end));
+			blocks.add(b++, part);
+		}
+	}
+
+	private int getStart(int b) {
+		if (starts == null) {
+			buildStarts();
+		}
+		return starts[b];
+	}
+
+	/**
+	 * 二分查找下标在哪一块里
+	 */
+	private int findBlock(int index) {
+		if (starts == null) {
+			buildStarts();
+		}
+		int b = Arrays.binarySearch(starts, 0, blocks.size(), index);
+		return b >= 0 ? b : -b - 2;
+	}
+
+	private void buildStarts() {
+		starts = new int[blocks.size()];
+		int start = 0;
+		for (int b = 0; b < starts.length; b++) {
+			starts[b] = start;
+			start += blocks.get(b).size();
+		}
+	}
+
+	private void checkIndex(int index, int limit) {
+		if (index < 0 || index >= limit) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
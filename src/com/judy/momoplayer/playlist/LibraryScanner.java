@@ -0,0 +1,260 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.playlist;
+
+import com.judy.momoplayer.util.Config;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * 扫描文件夹和读标签用的,所有的播放列表共用一个
+ * 遍历文件夹在一个后台线程里做,找到的文件一批一批地交给界面线程,
+ * 界面线程来不及加的时候遍历就停下来等
+ * 读标签放到work-stealing的线程池里并行地读,本地磁盘的线程数和CPU数一样,
+ * 网络磁盘和网络地址大部分时间都在等,线程多给一些
+ *
+ * @author judy
+ */
+public class LibraryScanner {
+
+	private static final Logger log = Logger.getLogger(LibraryScanner.class.getName());
+	private static final int BATCH_SIZE = 256;// 一批最多这么多个文件
+	private static final int MAX_PENDING_BATCHES = 4;// 界面线程最多积压这么多批
+	private static final int MAX_PENDING_READS = 1024;// 每个线程池最多排队这么多个读标签的任务
+	private static final Set<String> NETWORK_TYPES = new HashSet<String>(Arrays.asList("nfs", "nfs4", "cifs",
+			"smbfs", "smb2", "afpfs", "webdav", "davfs", "fuse.sshfs", "9p"));
+	private static LibraryScanner instance;
+	private final ForkJoinPool localPool;
+	private final ForkJoinPool remotePool;
+	private final Semaphore localPermits = new Semaphore(MAX_PENDING_READS);
+	private final Semaphore remotePermits = new Semaphore(MAX_PENDING_READS);
+	private final Map<String, Boolean> networkDirs = new ConcurrentHashMap<String, Boolean>();
+	private final AtomicBoolean repaintPending = new AtomicBoolean();
+
+	private LibraryScanner() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		// asyncMode为true时先进先出,先加进来的先读
+		localPool = new ForkJoinPool(Math.max(1, cpus), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		remotePool = new ForkJoinPool(Math.max(4, cpus * 2), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+				true);
+		log.log(Level.INFO, "Tag readers : {0} local, {1} remote",
+				new Object[] { localPool.getParallelism(), remotePool.getParallelism() });
+	}
+
+	public static synchronized LibraryScanner getInstance() {
+		if (instance == null) {
+			instance = new LibraryScanner();
+		}
+		return instance;
+	}
+
+	/**
+	 * 扫描的时候回调的,都在界面线程里调
+	 */
+	public static interface ScanListener {
+
+		/**
+		 * 找到了一批文件,按遍历的顺序
+		 *
+		 * @param files
+		 *            文件
+		 */
+		public void filesFound(List<File> files);
+
+		/**
+		 * 扫描完了
+		 *
+		 * @param count
+		 *            一共找到的文件数
+		 */
+		public void scanFinished(int count);
+	}
+
+	/**
+	 * 在后台线程里遍历文件或者文件夹
+	 *
+	 * @param roots
+	 *            要扫描的文件或者文件夹
+	 * @param maxDepth
+	 *            往下遍历几层,1表示只要文件夹下面的文件
+	 * @param filter
+	 *            过滤器,只对文件起作用
+	 * @param listener
+	 *            回调
+	 */
+	public void scan(final List<File> roots, final int maxDepth, final FileFilter filter,
+			final ScanListener listener) {
+		Thread walker = new Thread("LibraryScanner") {
+
+			@Override
+			public void run() {
+				walk(roots, maxDepth, filter, listener);
+			}
+		};
+		walker.setDaemon(true);
+		walker.setPriority(Thread.NORM_PRIORITY - 1);
+		walker.start();
+	}
+
+	private void walk(List<File> roots, int maxDepth, final FileFilter filter, final ScanListener listener) {
+		final Semaphore pending = new Semaphore(MAX_PENDING_BATCHES);
+		final List<File> batch = new ArrayList<File>(BATCH_SIZE);
+		final int[] count = new int[1];
+		final long start = System.currentTimeMillis();
+		for (File root : roots) {
+			try {
+				Files.walkFileTree(root.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth,
+						new SimpleFileVisitor<Path>() {
+
+							@Override
+							public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+								if (attrs.isRegularFile()) {
+									File file = path.toFile();
+									if (filter.accept(file)) {
+										batch.add(file);
+										count[0]++;
+										if (batch.size() >= BATCH_SIZE) {
+											deliver(batch, pending, listener);
+										}
+									}
+								}
+								return FileVisitResult.CONTINUE;
+							}
+
+							@Override
+							public FileVisitResult visitFileFailed(Path path, IOException ex) {
+								// 没有权限的文件夹或者断掉的链接,跳过就是了
+								log.log(Level.FINE, "Cannot visit " + path, ex);
+								return FileVisitResult.CONTINUE;
+							}
+						});
+			} catch (IOException ex) {
+				log.log(Level.WARNING, "Cannot scan " + root, ex);
+			}
+		}
+		if (!batch.isEmpty()) {
+			deliver(batch, pending, listener);
+		}
+		final int total = count[0];
+		SwingUtilities.invokeLater(new Runnable() {
+
+			public void run() {
+				listener.scanFinished(total);
+			}
+		});
+		log.log(Level.INFO, "Scanned {0} files in {1}ms", new Object[] { total, System.currentTimeMillis() - start });
+	}
+
+	/**
+	 * 把一批文件交给界面线程,积压的太多就等着
+	 */
+	private void deliver(List<File> batch, final Semaphore pending, final ScanListener listener) {
+		final List<File> files = new ArrayList<File>(batch);
+		batch.clear();
+		pending.acquireUninterruptibly();
+		SwingUtilities.invokeLater(new Runnable() {
+
+			public void run() {
+				try {
+					listener.filesFound(files);
+				} finally {
+					pending.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * 读一个项目的标签
+	 *
+	 * @param location
+	 *            文件或者网络地址
+	 * @param isFile
+	 *            是不是文件
+	 * @param task
+	 *            读标签的任务
+	 * @return 排队的任务太多就不要了,返回false,过一会再来
+	 */
+	public boolean execute(String location, boolean isFile, final Runnable task) {
+		boolean remote = !isFile || isNetworkFile(new File(location));
+		final Semaphore permits = remote ? remotePermits : localPermits;
+		if (!permits.tryAcquire()) {
+			return false;
+		}
+		(remote ? remotePool : localPool).execute(new Runnable() {
+
+			public void run() {
+				try {
+					task.run();
+				} finally {
+					permits.release();
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * 重画播放列表,很多项目一起读完的时候只画一次
+	 */
+	public void repaintLater() {
+		if (repaintPending.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(new Runnable() {
+
+				public void run() {
+					repaintPending.set(false);
+					Config.getConfig().getPlWindow().repaint();
+				}
+			});
+		}
+	}
+
+	/**
+	 * 看文件是不是在网络磁盘上,按文件夹记下来,每个文件都查一次太慢了
+	 */
+	private boolean isNetworkFile(File file) {
+		File dir = file.getParentFile();
+		if (dir == null) {
+			return false;
+		}
+		String key = dir.getPath();
+		Boolean network = networkDirs.get(key);
+		if (network == null) {
+			network = Boolean.FALSE;
+			try {
+				FileStore store = Files.getFileStore(dir.toPath());
+				network = NETWORK_TYPES.contains(store.type().toLowerCase());
+			} catch (IOException ex) {
+				log.log(Level.FINE, "Cannot get file store of " + dir, ex);
+			} catch (RuntimeException ex) {
+				log.log(Level.FINE, "Cannot get file store of " + dir, ex);
+			}
+			networkDirs.put(key, network);
+		}
+		return network;
+	}
+}
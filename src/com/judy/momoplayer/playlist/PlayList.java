@@ -5,7 +5,8 @@
 package com.judy.momoplayer.playlist;
 
 import java.io.Serializable;
-import java.util.Vector;
+import java.util.Collection;
+import java.util.List;
 
 /**
  *
@@ -33,6 +34,11 @@ public interface PlayList extends Serializable {
      */
     public void addItemAt(PlayListItem pli, int pos);
 
+    /**
+     * Adds items in order at a given position, appends them if pos is out of range.
+     */
+    public void addItemsAt(List<PlayListItem> items, int pos);
+
     /**
      * Searchs and removes item from the playlist.
      */
@@ -43,6 +49,11 @@ public interface PlayList extends Serializable {
      */
     public void removeItemAt(int pos);
 
+    /**
+     * Removes the given items from the playlist.
+     */
+    public void removeItems(Collection<PlayListItem> items);
+
     /**
      * Removes all items in the playlist.
      */
@@ -66,7 +77,12 @@ public interface PlayList extends Serializable {
     /**
      * Returns a collection of playlist items.
      */
-    public Vector<PlayListItem> getAllItems();
+    public List<PlayListItem> getAllItems();
+
+    /**
+     * Returns a copy of the items from index from, inclusive, to index to, exclusive.
+     */
+    public List<PlayListItem> getItems(int from, int to);
 
     /**
      * Returns then number of items in the playlist.
@@ -104,6 +120,21 @@ public interface PlayList extends Serializable {
      */
     public void nextCursor();
 
+    /**
+     * 预先算出下一次nextCursor()会移到的项,但并不移动游标,
+     * 随机播放时紧接着的nextCursor()会移到同一项
+     * @return 下一项,没有的话返回null
+     */
+    public PlayListItem peekNextCursor();
+
+    /**
+     * 按现在的播放策略预先算出接下来要放的几项,不移动游标,
+     * 第一项就是peekNextCursor()的那一项
+     * @param count 最多几项
+     * @return 接下来的项,可能比count少
+     */
+    public List<PlayListItem> peekUpcoming(int count);
+
     /**
      * Computes cursor position (previous).
      */
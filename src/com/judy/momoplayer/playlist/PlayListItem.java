@@ -12,8 +12,6 @@ import com.judy.momoplayer.util.Util;
 import java.io.File;
 import java.io.Serializable;
 import java.util.Vector;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,7 +33,7 @@ public class PlayListItem implements Serializable {
 	protected boolean isFile = true;
 	protected long seconds = -1;
 	protected boolean isSelected = false; //
-	protected TagInfo taginfo = null;
+	protected volatile TagInfo taginfo = null;
 	private String bitRate;
 	private String sampled;
 	private String channels;
@@ -46,9 +44,9 @@ public class PlayListItem implements Serializable {
 	private String year;
 	private String track;
 	private String genre;
-	private boolean isRead;// 是否读过标签了,免得每次都去读
+	private volatile boolean isRead;// 是否读过标签了,免得每次都去读
 	private File lyricFile;// 这个项目所关联的歌词文件
-	protected static ExecutorService es = Executors.newSingleThreadExecutor();
+	private transient volatile boolean reading;// 已经交给线程池去读了,免得重复交
 	private int offset;// 存在这里的歌曲偏移量，以保存下来，但是又不需要去写LRC文件
 
 	protected PlayListItem() {
@@ -337,7 +335,7 @@ public class PlayListItem implements Serializable {
 		// Read Audio Format and read tags/comments.
 		if ((location != null) && (!location.equals(""))) {
 			TagInfoFactory factory = TagInfoFactory.getInstance();
-			taginfo = factory.getTagInfo(location);
+			taginfo = factory.reloadTagInfo(location);
 			log.log(Level.INFO, "taginfo={0}", taginfo);
 		}
 		displayName = getFormattedDisplayName();
@@ -384,27 +382,24 @@ public class PlayListItem implements Serializable {
 	 * @param readInfo
 	 */
 	private void setLocation(final String l, final boolean readInfo) {
-		if (isRead) {
+		if (isRead || reading) {
 			return;
 		}
-		// 如果是文件,则当场读出来
-		if (isFile) {
-			es.execute(new Runnable() {
-
-				public void run() {
-					setLocation0(l, readInfo);
-				}
-			});
-		} else {// 如果不是文件,则起个线程异步读出来
-			new Thread() {
+		reading = true;
+		// 文件和网络地址都交给线程池去读,排队的太多就等下次再来
+		boolean queued = LibraryScanner.getInstance().execute(l, isFile, new Runnable() {
 
-				@Override
-				public void run() {
+			public void run() {
+				try {
 					setLocation0(l, readInfo);
+				} finally {
+					reading = false;
 				}
-			}.start();
+			}
+		});
+		if (!queued) {
+			reading = false;
 		}
-
 	}
 
 	private void setLocation0(String l, boolean readInfo) {
@@ -418,12 +413,12 @@ public class PlayListItem implements Serializable {
 			if ((location != null) && (!location.equals(""))) {
 				TagInfoFactory factory = TagInfoFactory.getInstance();
 				taginfo = factory.getTagInfo(l);
-				log.log(Level.INFO, "taginfo={0}", taginfo);
+				log.log(Level.FINE, "taginfo={0}", taginfo);
 			}
 		}
 		displayName = getFormattedDisplayName();
-		log.log(Level.INFO, "setDisPlay={0}", displayName);
-		Config.getConfig().getPlWindow().repaint();
+		log.log(Level.FINE, "setDisPlay={0}", displayName);
+		LibraryScanner.getInstance().repaintLater();
 	}
 
 	/**
@@ -0,0 +1,454 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.playlist;
+
+import com.judy.momoplayer.util.Config;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 播放列表的存储,不再跟着Config一起序列化
+ * 文件里是一条一条的记录,只往后追加:
+ * 字符串记录把文件夹,文件名,歌手这些重复很多的字符串编上号,后面只写编号;
+ * 列表记录是一个列表当时的全部内容,同一个列表后面的记录盖掉前面的;
+ * 顺序记录是所有列表的顺序,删掉的列表不在里面
+ * 保存的时候只追加内容变了的列表,过期的记录多了就重写一遍
+ * 标签不存在这里,要用的时候从TagInfoCache里取
+ * @author judy
+ */
+public class PlayListStore {
+
+	private static final Logger log = Logger.getLogger(PlayListStore.class.getName());
+	private static final int MAGIC = 0x4D504C31;// MPL1
+	private static final int VERSION = 1;
+	private static final String FILE_NAME = "PlayLists.dat";
+	private static final int TAG_STRING = 1;
+	private static final int TAG_LIST = 2;
+	private static final int TAG_ORDER = 3;
+	private static final int NULL_STRING = -1;
+	private static final int FLAG_FILE = 1;
+	private static final int FLAG_SELECTED = 2;
+	private static PlayListStore instance;
+	private final File file;
+	private final List<String> strings = new ArrayList<String>();// 编号到字符串
+	private final Map<String, Integer> stringIds = new HashMap<String, Integer>();// 字符串到编号
+	private final Map<PlayList, Integer> listIds = new IdentityHashMap<PlayList, Integer>();
+	private final Map<Integer, Long> listChecksums = new HashMap<Integer, Long>();// 每个列表最后写下去的内容
+	private int[] order = new int[0];
+	private int nextListId;
+	private long liveBytes;// 还有用的记录的大小,用来判断要不要重写
+	private boolean broken;// 上次没写完,内存里的编号和文件对不上了,要整个重写
+
+	PlayListStore(File file) {
+		this.file = file;
+	}
+
+	public static synchronized PlayListStore getInstance() {
+		if (instance == null) {
+			instance = new PlayListStore(new File(Config.HOME, FILE_NAME));
+		}
+		return instance;
+	}
+
+	/**
+	 * 读出所有的播放列表
+	 * @param config 全局的配置
+	 * @return 播放列表,没有的话是空的
+	 */
+	public synchronized Vector<PlayList> load(Config config) {
+		long start = System.currentTimeMillis();
+		reset();
+		Map<Integer, byte[]> records = new HashMap<Integer, byte[]>();
+		long good = 0;
+		if (file.isFile()) {
+			DataInputStream in = null;
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+				if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+					good = 8;
+					int[] lastOrder = order;
+					while (true) {
+						int tag = in.readByte();
+						long length = 1;
+						if (tag == TAG_STRING) {
+							String s = in.readUTF();
+							length += 2 + modifiedUtfLength(s);
+							stringIds.put(s, strings.size());
+							strings.add(s);
+						} else if (tag == TAG_LIST) {
+							int id = in.readInt();
+							byte[] data = new byte[in.readInt()];
+							in.readFully(data);
+							length += 8 + data.length;
+							records.put(id, data);
+							nextListId = Math.max(nextListId, id + 1);
+						} else if (tag == TAG_ORDER) {
+							int[] ids = new int[in.readInt()];
+							for (int i = 0; i < ids.length; i++) {
+								ids[i] = in.readInt();
+							}
+							length += 4 + 4 * ids.length;
+							lastOrder = ids;
+						} else {
+							throw new IOException("Unknown record " + tag);
+						}
+						good += length;
+						order = lastOrder;
+					}
+				}
+			} catch (EOFException ex) {
+				log.log(Level.FINE, "Playlist store read to end");
+			} catch (IOException ex) {
+				log.log(Level.WARNING, "Cannot read playlist store " + file, ex);
+			} finally {
+				closeQuietly(in);
+			}
+		}
+		Vector<PlayList> lists = new Vector<PlayList>();
+		liveBytes = 8 + 5 + 4 * order.length;
+		for (int id : order) {
+			byte[] data = records.get(id);
+			if (data == null) {
+				continue;
+			}
+			try {
+				PlayList list = decodeList(data, config);
+				lists.add(list);
+				listIds.put(list, id);
+				listChecksums.put(id, checksum(data));
+				liveBytes += 9 + data.length;
+			} catch (IOException ex) {
+				log.log(Level.WARNING, "Broken playlist record " + id, ex);
+			}
+		}
+		for (String s : strings) {
+			liveBytes += 3 + modifiedUtfLength(s);
+		}
+		try {
+			truncate(good);
+		} catch (IOException ex) {
+			log.log(Level.WARNING, "Cannot truncate playlist store " + file, ex);
+		}
+		log.log(Level.INFO, "Loaded {0} playlists in {1}ms",
+				new Object[] { lists.size(), System.currentTimeMillis() - start });
+		return lists;
+	}
+
+	/**
+	 * 保存播放列表,只追加变了的
+	 * @param lists 所有的播放列表
+	 */
+	public synchronized void save(List<PlayList> lists) {
+		if (broken || file.length() > liveBytes * 2 + 64 * 1024) {
+			rewrite(lists);
+			return;
+		}
+		DataOutputStream out = null;
+		try {
+			file.getParentFile().mkdirs();
+			boolean fresh = !file.isFile() || file.length() == 0;
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			if (fresh) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+			}
+			append(out, lists);
+			out.close();
+			out = null;
+		} catch (IOException ex) {
+			log.log(Level.WARNING, "Cannot write playlist store " + file, ex);
+			broken = true;
+		} finally {
+			closeQuietly(out);
+		}
+	}
+
+	/**
+	 * 把变了的列表和新的顺序写到out里
+	 */
+	private void append(DataOutputStream out, List<PlayList> lists) throws IOException {
+		int[] ids = new int[lists.size()];
+		int changed = 0;
+		long live = 8 + 5 + 4 * ids.length;
+		for (int i = 0; i < ids.length; i++) {
+			PlayList list = lists.get(i);
+			Integer id = listIds.get(list);
+			if (id == null) {
+				id = nextListId++;
+				listIds.put(list, id);
+			}
+			ids[i] = id;
+			int firstNew = strings.size();
+			byte[] data = encodeList(list);
+			long sum = checksum(data);
+			live += 9 + data.length;
+			Long last = listChecksums.get(id);
+			if (last != null && last == sum) {
+				continue;
+			}
+			// 新编号的字符串要写在用到它们的列表前面
+			for (int j = firstNew; j < strings.size(); j++) {
+				out.writeByte(TAG_STRING);
+				out.writeUTF(strings.get(j));
+			}
+			out.writeByte(TAG_LIST);
+			out.writeInt(id);
+			out.writeInt(data.length);
+			out.write(data);
+			listChecksums.put(id, sum);
+			changed++;
+		}
+		if (!Arrays.equals(ids, order)) {
+			out.writeByte(TAG_ORDER);
+			out.writeInt(ids.length);
+			for (int id : ids) {
+				out.writeInt(id);
+			}
+			order = ids;
+		}
+		// 删掉的列表不用再记着了
+		listIds.keySet().retainAll(lists);
+		listChecksums.keySet().retainAll(listIds.values());
+		for (String s : strings) {
+			live += 3 + modifiedUtfLength(s);
+		}
+		liveBytes = live;
+		log.log(Level.INFO, "Saved {0} of {1} playlists", new Object[] { changed, lists.size() });
+	}
+
+	/**
+	 * 所有的列表重新写一个文件,字符串也重新编号,不用的就丢掉了
+	 */
+	private void rewrite(List<PlayList> lists) {
+		reset();
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			file.getParentFile().mkdirs();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				append(out, lists);
+			} finally {
+				out.close();
+			}
+			// 直接换掉旧文件,中间出事也不会两个都没有
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			liveBytes = file.length();
+			broken = false;
+		} catch (IOException ex) {
+			log.log(Level.WARNING, "Cannot write playlist store " + file, ex);
+			temp.delete();
+			broken = true;
+		}
+	}
+
+	private void reset() {
+		strings.clear();
+		stringIds.clear();
+		listIds.clear();
+		listChecksums.clear();
+		order = new int[0];
+		nextListId = 0;
+	}
+
+	private byte[] encodeList(PlayList list) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeString(out, list.getName());
+		if (list instanceof BasicPlayList) {
+			BasicPlayList bpl = (BasicPlayList) list;
+			writeString(out, bpl.getM3UHome());
+			writeString(out, bpl.getPLSHome());
+		} else {
+			writeString(out, null);
+			writeString(out, null);
+		}
+		writeVarLong(out, list.getSelectedIndex());
+		List<PlayListItem> items = list.getAllItems();
+		writeVarLong(out, items.size());
+		for (PlayListItem item : items) {
+			writePath(out, item.location);
+			writeString(out, item.name);
+			writeString(out, item.displayName);
+			writeVarLong(out, item.getLength());
+			writeVarLong(out, (item.isFile ? FLAG_FILE : 0) | (item.isSelected ? FLAG_SELECTED : 0));
+			writeVarLong(out, item.getOffset());
+			File lyric = item.getLyricFile();
+			writePath(out, lyric == null ? null : lyric.getPath());
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private PlayList decodeList(byte[] data, Config config) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		BasicPlayList list = new BasicPlayList(config);
+		list.setName(readString(in));
+		list.setM3UHome(readString(in));
+		list.setPLSHome(readString(in));
+		int currentIndex = (int) readVarLong(in);
+		int count = (int) readVarLong(in);
+		List<PlayListItem> items = new ArrayList<PlayListItem>(count);
+		for (int i = 0; i < count; i++) {
+			String location = readPath(in);
+			String name = readString(in);
+			String displayName = readString(in);
+			long seconds = readVarLong(in);
+			int flags = (int) readVarLong(in);
+			PlayListItem item = new PlayListItem(name, location, seconds, (flags & FLAG_FILE) != 0);
+			item.displayName = displayName;
+			item.isSelected = (flags & FLAG_SELECTED) != 0;
+			item.setOffset((int) readVarLong(in));
+			String lyric = readPath(in);
+			if (lyric != null) {
+				item.setLyricFile(new File(lyric));
+			}
+			items.add(item);
+		}
+		list.items.addAll(items);
+		list.currentIndex = currentIndex;
+		list.setModified(false);
+		return list;
+	}
+
+	/**
+	 * 路径分成文件夹和文件名两个字符串,同一个文件夹下的文件共用一个编号
+	 */
+	private void writePath(DataOutputStream out, String path) throws IOException {
+		if (path == null) {
+			writeString(out, null);
+			return;
+		}
+		int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+		writeString(out, path.substring(0, slash));
+		writeString(out, path.substring(slash));
+	}
+
+	private String readPath(DataInputStream in) throws IOException {
+		String dir = readString(in);
+		return dir == null ? null : dir + readString(in);
+	}
+
+	private void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			writeVarLong(out, NULL_STRING);
+			return;
+		}
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = strings.size();
+			stringIds.put(s, id);
+			strings.add(s);
+		}
+		writeVarLong(out, id);
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		int id = (int) readVarLong(in);
+		if (id == NULL_STRING) {
+			return null;
+		}
+		if (id < 0 || id >= strings.size()) {
+			throw new IOException("Unknown string " + id);
+		}
+		return strings.get(id);
+	}
+
+	/**
+	 * 变长的整数,小的数只占一个字节,负数先zigzag一下
+	 */
+	private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+		v = (v << 1) ^ (v >> 63);
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (v >>> 1) ^ -(v & 1);
+			}
+		}
+		throw new IOException("Bad varint");
+	}
+
+	private static int modifiedUtfLength(String s) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			length += (c >= 0x0001 && c <= 0x007F) ? 1 : (c > 0x07FF ? 3 : 2);
+		}
+		return length;
+	}
+
+	private static long checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return crc.getValue() ^ ((long) data.length << 32);
+	}
+
+	private void truncate(long length) throws IOException {
+		if (length > 0 && file.length() > length) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+		} else if (length == 0 && file.isFile() && file.length() > 0) {
+			// 不认识的文件,下次保存的时候整个重写
+			liveBytes = 0;
+			if (!file.delete()) {
+				log.log(Level.WARNING, "Cannot delete playlist store {0}", file);
+			}
+		}
+	}
+
+	private static void closeQuietly(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException ex) {
+				log.log(Level.FINE, "Cannot close playlist store", ex);
+			}
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.datatransfer.DataFlavor;
@@ -27,6 +28,8 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -34,12 +37,15 @@ import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.swing.AbstractListModel;
 import javax.swing.ButtonGroup;
 import javax.swing.DropMode;
 import javax.swing.JFileChooser;
@@ -55,8 +61,11 @@ import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.ListCellRenderer;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.TransferHandler;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.plaf.basic.BasicScrollBarUI;
 
 import com.judy.momoplayer.player.ui.PlayerUI;
@@ -91,6 +100,8 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 	private int onIndex = -1;// 目前鼠标在哪个下标的上面,如果下一个一样的话,就不用再设tooltip了
 	private boolean rightHasFocus;// 指示右边的列表该不该有焦点
 	private List<PlayListItem> clip;// 复制在粘帖板里面的数据
+	private final PlayListModel rightModel = new PlayListModel();// 右边列表的模型,直接从当前的播放列表里取
+	private int visibleFrom = -1, visibleTo = -1;// 上次看得见的那些行,读过标签了
 
 	public PlayListUI() {
 		super(new BorderLayout());
@@ -165,13 +176,27 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 		rightList.setBackground(BG);
 		leftList.setListData(playlists);
 		leftList.setCellRenderer(new LeftListCellRenderer());
-		rightList.setListData(currentPlayList.getAllItems());
+		rightList.setModel(rightModel);
 		rightList.setCellRenderer(new RightListCellRenderer());
+		// 行的大小固定下来,JList就不会为了算大小把每一行都渲染一遍
+		rightList.setFixedCellWidth(1);
+		updateCellHeight();
+		rightList.addPropertyChangeListener("font", new PropertyChangeListener() {
+
+			public void propertyChange(PropertyChangeEvent evt) {
+				SwingUtilities.invokeLater(new Runnable() {
+
+					public void run() {
+						updateCellHeight();
+					}
+				});
+			}
+		});
 		leftList.addMouseListener(this);
 		rightList.addMouseListener(this);
 		rightList.addMouseMotionListener(this);
 		JScrollPane jsp1 = new JScrollPane(leftList);
-		JScrollPane jsp2 = new JScrollPane(rightList);
+		final JScrollPane jsp2 = new JScrollPane(rightList);
 		// jsp1.setBorder(new EmptyBorder(0, 0, 0, 0));
 		// jsp2.setBorder(new EmptyBorder(0, 0, 0, 0));
 		BasicScrollBarUI momo1 = new MOMOScrollBarUI();
@@ -183,20 +208,18 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 		jsp2.getVerticalScrollBar().addAdjustmentListener(new AdjustmentListener() {
 
 			public void adjustmentValueChanged(AdjustmentEvent e) {
-				if (!config.getReadTagInfoStrategy().equals(Config.READ_WHEN_DISPLAY)) {
-					return;
-				}
 				// 如果滚动条正在拖动的时候，则不读取任何信息
-				if (e.getValueIsAdjusting()) {
-					return;
-				}
-				int from = rightList.getFirstVisibleIndex();
-				int to = rightList.getLastVisibleIndex();
-				if (from == -1 || to == -1) {
-					return;
+				if (!e.getValueIsAdjusting()) {
+					readVisibleTags();
 				}
-				for (int i = from; i <= to; i++) {
-					currentPlayList.getItemAt(i).getTagInfo();
+			}
+		});
+		// 窗口大小变了,列表内容变了,看得见的行也会变
+		jsp2.getViewport().addChangeListener(new ChangeListener() {
+
+			public void stateChanged(ChangeEvent e) {
+				if (!jsp2.getVerticalScrollBar().getValueIsAdjusting()) {
+					readVisibleTags();
 				}
 			}
 		});
@@ -212,7 +235,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 				if (rightIndex != -1 && rightIndex < currentPlayList.getPlaylistSize()) {
 					if (ke.getKeyCode() == KeyEvent.VK_DELETE) {
 						currentPlayList.removeItemAt(rightIndex);
-						rightList.setListData(currentPlayList.getAllItems());
+						updateRightList();
 						if (rightIndex > currentPlayList.getPlaylistSize() - 1) {
 							rightIndex = 0;
 						}
@@ -328,11 +351,8 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						List<File> s = (List<File>) obj;
 						FileNameFilter ff = new FileNameFilter(Config.EXTS,
 								Config.getResource("playlist.filechooser.name"), true);
-						for (File f : s) {
-							if (f.exists()) {
-								toSelect = addFiles(f, ff, index);
-							}
-						}
+						addFiles(s, Integer.MAX_VALUE, ff, index);
+						return true;
 
 					} else if (trans.isDataFlavorSupported(DataFlavor.stringFlavor)
 							&& System.getProperty("os.name").startsWith("Linux")) {
@@ -341,16 +361,18 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						String[] ss = obj.toString().split("\r\n");
 						FileNameFilter ff = new FileNameFilter(Config.EXTS,
 								Config.getResource("playlist.filechooser.name"), true);
+						List<File> fs = new ArrayList<File>();
 						for (String s : ss) {
 							try {
-								File f = new File(new URI(s));
-								toSelect = addFiles(f, ff, index);
+								fs.add(new File(new URI(s)));
 							} catch (Exception exe) {
 								exe.printStackTrace();
 							}
 						}
+						addFiles(fs, Integer.MAX_VALUE, ff, index);
+						return true;
 					}
-					rightList.setListData(currentPlayList.getAllItems());
+					updateRightList();
 					rightList.setSelectedValue(toSelect, true);
 					return true;
 				} catch (UnsupportedFlavorException ex) {
@@ -365,34 +387,89 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 	}
 
 	/**
-	 * 用于遍历子文件夹而加的方法,此方法会递归调用,直到 最后一层为止
+	 * 在后台遍历文件和文件夹,找到的文件一批一批地加到当前的播放列表里
 	 * 
-	 * @param f
+	 * @param roots
 	 *            文件或文件夹
+	 * @param maxDepth
+	 *            往下遍历几层
 	 * @param ff
 	 *            过滤器
 	 * @param index
-	 *            要加在什么地方
-	 * @return 最后选中的文件
+	 *            要加在什么地方,-1表示加在最后
 	 */
-	private Object addFiles(File f, FileNameFilter ff, int index) {
-		Object toSelect = null;
-		if (f.exists()) {
-			// 如果是文件，则检查其后缀名
-			// 现在不用检查了,错了也不要紧
-			if (f.isFile() && ff.accept(f)) {
-				PlayListItem item = new PlayListItem(Util.getSongName(f), f.getPath(), -1, true);
-				currentPlayList.addItemAt(item, index);
-				toSelect = item;
-				// 如果是目录，则遍历它下面的文件，不再往下层遍历了
-			} else if (f.isDirectory()) {
-				File[] fs = f.listFiles(ff);
-				for (File file : fs) {
-					toSelect = addFiles(file, ff, index);
+	private void addFiles(List<File> roots, int maxDepth, FileNameFilter ff, final int index) {
+		final PlayList target = currentPlayList;
+		LibraryScanner.getInstance().scan(roots, maxDepth, ff, new LibraryScanner.ScanListener() {
+
+			private int pos = index;
+			private PlayListItem last;
+
+			public void filesFound(List<File> files) {
+				List<PlayListItem> items = new ArrayList<PlayListItem>(files.size());
+				for (File f : files) {
+					items.add(new PlayListItem(Util.getSongName(f), f.getPath(), -1, true));
+				}
+				target.addItemsAt(items, pos);
+				if (pos >= 0) {
+					pos += items.size();
+				}
+				last = items.get(items.size() - 1);
+				// 一批只刷新一次
+				if (target == currentPlayList) {
+					updateRightList();
+				}
+			}
+
+			public void scanFinished(int count) {
+				if (target == currentPlayList && last != null) {
+					rightList.setSelectedValue(last, true);
 				}
 			}
+		});
+	}
+
+	/**
+	 * 当前的播放列表变了以后刷新右边的列表
+	 */
+	private void updateRightList() {
+		rightList.clearSelection();
+		rightModel.fireChanged();
+		visibleFrom = visibleTo = -1;
+	}
+
+	/**
+	 * 行高跟着字体走
+	 */
+	private void updateCellHeight() {
+		Font font = config.getPlaylistFont();
+		if (font != null && !font.equals(rightList.getFont())) {
+			rightList.setFont(font);
+		}
+		rightList.setPrototypeCellValue(new PlayListItem("judy", "", -1, true));
+	}
+
+	/**
+	 * 只给新滚进来的行读标签,已经看得见的不再去读
+	 */
+	private void readVisibleTags() {
+		if (!config.getReadTagInfoStrategy().equals(Config.READ_WHEN_DISPLAY)) {
+			return;
+		}
+		int from = rightList.getFirstVisibleIndex();
+		int to = rightList.getLastVisibleIndex();
+		if (from == -1 || to == -1 || (from == visibleFrom && to == visibleTo)) {
+			return;
+		}
+		List<PlayListItem> items = currentPlayList.getItems(from, to + 1);
+		for (int i = 0; i < items.size(); i++) {
+			int index = from + i;
+			if (index < visibleFrom || index > visibleTo) {
+				items.get(i).getTagInfo();
+			}
 		}
-		return toSelect;
+		visibleFrom = from;
+		visibleTo = to;
 	}
 
 	public void setPlaylist(PlayList playlist) {
@@ -403,7 +480,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 		this.currentPlayList = playlist;
 		player.setPlayList(playlist);
 		config.setCurrentPlayListName(playlist.getName());
-		rightList.setListData(currentPlayList.getAllItems());
+		updateRightList();
 		rightList.setSelectedValue(player.getCurrentItem(), true);
 	}
 
@@ -827,7 +904,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 					} else {
 						currentPlayList.addItemAt(item, rightIndex);
 					}
-					rightList.setListData(currentPlayList.getAllItems());
+					updateRightList();
 				}
 			}
 		});
@@ -844,17 +921,8 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 				if (i == JFileChooser.APPROVE_OPTION) {
 					File f = jf.getSelectedFile();
 					if (f.isDirectory()) {
-						File[] fs = f.listFiles(new FileNameFilter(Config.EXTS,
-								Config.getResource("playlist.filechooser.name"), false));
-						for (File file : fs) {
-							PlayListItem item = new PlayListItem(Util.getSongName(file), file.getPath(), -1, true);
-							if (rightIndex == -1) {
-								currentPlayList.appendItem(item);
-							} else {
-								currentPlayList.addItemAt(item, rightIndex);
-							}
-						}
-						rightList.setListData(currentPlayList.getAllItems());
+						addFiles(Collections.singletonList(f), 1, new FileNameFilter(Config.EXTS,
+								Config.getResource("playlist.filechooser.name"), false), rightIndex);
 					}
 				}
 			}
@@ -875,7 +943,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						} else {
 							currentPlayList.addItemAt(item, rightIndex);
 						}
-						rightList.setListData(currentPlayList.getAllItems());
+						updateRightList();
 					} else {
 						JOptionPane.showMessageDialog(config.getPlWindow(),
 								Config.getResource("playlist.add.invalidUrl"));
@@ -908,7 +976,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 				for (Object obj : objs) {
 					currentPlayList.removeItem((PlayListItem) obj);
 				}
-				rightList.setListData(currentPlayList.getAllItems());
+				updateRightList();
 				rightList.setSelectedIndex(rightIndex);
 			}
 		});
@@ -918,18 +986,15 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 		ActionListener() {
 
 			public void actionPerformed(ActionEvent ae) {
-				Vector<PlayListItem> vs = currentPlayList.getAllItems();
-				for (int i = 0; i < vs.size() - 1; i++) {
-					PlayListItem item1 = vs.get(i);
-					for (int j = i + 1; j < vs.size(); j++) {
-						PlayListItem item2 = vs.get(j);
-						if (item1.getLocation().equals(item2.getLocation())) {
-							vs.remove(item2);
-							j--;
-						}
+				Set<String> locations = new HashSet<String>();
+				List<PlayListItem> temp = new ArrayList<PlayListItem>();
+				for (PlayListItem item : currentPlayList.getAllItems()) {
+					if (!locations.add(item.getLocation())) {
+						temp.add(item);
 					}
 				}
-				rightList.setListData(vs);
+				currentPlayList.removeItems(temp);
+				updateRightList();
 			}
 		});
 		// 删除错误文件
@@ -938,9 +1003,8 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 		ActionListener() {
 
 			public void actionPerformed(ActionEvent ae) {
-				Vector<PlayListItem> vs = currentPlayList.getAllItems();
 				List<PlayListItem> temp = new ArrayList<PlayListItem>();
-				for (PlayListItem item : vs) {
+				for (PlayListItem item : currentPlayList.getAllItems()) {
 					// 如果是文件,则文件不存在或者文件格式不合法则为错误文件
 					if (item.isFile) {
 						File f = new File(item.getLocation());
@@ -954,8 +1018,8 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 					} else {// 如果是网络文件则无法判断了,留以后实现
 					}
 				}
-				vs.removeAll(temp);
-				rightList.setListData(vs);
+				currentPlayList.removeItems(temp);
+				updateRightList();
 			}
 		});
 
@@ -966,7 +1030,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 
 			public void actionPerformed(ActionEvent ae) {
 				currentPlayList.removeAllItems();
-				rightList.setListData(currentPlayList.getAllItems());
+				updateRightList();
 			}
 		});
 		// 物理删除
@@ -1096,7 +1160,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						return Collator.getInstance(Locale.CHINESE).compare(s1, s2);
 					}
 				});
-				rightList.setListData(currentPlayList.getAllItems());
+				updateRightList();
 			}
 		});
 		// 按标题
@@ -1113,7 +1177,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						return Collator.getInstance(Locale.CHINESE).compare(s1, s2);
 					}
 				});
-				rightList.setListData(currentPlayList.getAllItems());
+				updateRightList();
 			}
 		});
 		// 按专辑
@@ -1130,7 +1194,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						return Collator.getInstance(Locale.CHINESE).compare(s1, s2);
 					}
 				});
-				rightList.setListData(currentPlayList.getAllItems());
+				updateRightList();
 			}
 		});
 		// 按文件名
@@ -1147,7 +1211,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						return Collator.getInstance(Locale.CHINESE).compare(s1, s2);
 					}
 				});
-				rightList.setListData(currentPlayList.getAllItems());
+				updateRightList();
 			}
 		});
 		// 按歌曲长度
@@ -1164,7 +1228,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						return (int) (o1.getLength() - o2.getLength());
 					}
 				});
-				rightList.setListData(currentPlayList.getAllItems());
+				updateRightList();
 			}
 		});
 		menu.addSeparator();
@@ -1174,8 +1238,8 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 		ActionListener() {
 
 			public void actionPerformed(ActionEvent ae) {
-				Collections.shuffle(currentPlayList.getAllItems());
-				rightList.setListData(currentPlayList.getAllItems());
+				currentPlayList.shuffle();
+				updateRightList();
 			}
 		});
 		return menu;
@@ -1198,7 +1262,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						currentPlayList.removeItem(item);
 						clip.add(item);
 					}
-					rightList.setListData(currentPlayList.getAllItems());
+					updateRightList();
 					rightList.setSelectedIndex(rightIndex);
 				}
 			});
@@ -1240,7 +1304,7 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 						}
 						last = it;
 					}
-					rightList.setListData(currentPlayList.getAllItems());
+					updateRightList();
 					rightList.setSelectedValue(last, true);
 					rightList.requestFocus();
 					rightHasFocus = true;
@@ -1405,6 +1469,39 @@ public class PlayListUI extends JPanel implements ActionListener, MouseListener,
 		}
 	}
 
+	/**
+	 * 右边列表的模型,不复制播放列表,JList要哪一行就取哪一行
+	 */
+	private class PlayListModel extends AbstractListModel<Object> {
+
+		private static final long serialVersionUID = 20161110L;
+		private int size;
+
+		public int getSize() {
+			return currentPlayList == null ? 0 : currentPlayList.getPlaylistSize();
+		}
+
+		public Object getElementAt(int index) {
+			return currentPlayList.getItemAt(index);
+		}
+
+		/**
+		 * 播放列表变了,先报行数的变化,再报内容的变化
+		 */
+		void fireChanged() {
+			int old = size;
+			size = getSize();
+			if (size < old) {
+				fireIntervalRemoved(this, size, old - 1);
+			} else if (size > old) {
+				fireIntervalAdded(this, old, size - 1);
+			}
+			if (size > 0) {
+				fireContentsChanged(this, 0, size - 1);
+			}
+		}
+	}
+
 	/**
 	 * 左边列表的渲染器
 	 */
@@ -39,6 +39,7 @@ public class PlayPanel extends javax.swing.JPanel implements Initable {
         interval = new javax.swing.JSpinner();
         jLabel2 = new javax.swing.JLabel();
         isStopWhenError = new javax.swing.JCheckBox();
+        isGapless = new javax.swing.JCheckBox();
         jPanel2 = new javax.swing.JPanel();
         jButton9 = new javax.swing.JButton();
         jButton10 = new javax.swing.JButton();
@@ -62,6 +63,8 @@ public class PlayPanel extends javax.swing.JPanel implements Initable {
 
         isStopWhenError.setText(Config.getResource("PlayPanel.stopWhenError")); // NOI18N
 
+        isGapless.setText(Config.getResource("PlayPanel.gapless")); // NOI18N
+
         javax.swing.GroupLayout jPanel1Layout = new javax.swing.GroupLayout(jPanel1);
         jPanel1.setLayout(jPanel1Layout);
         jPanel1Layout.setHorizontalGroup(
@@ -79,7 +82,8 @@ public class PlayPanel extends javax.swing.JPanel implements Initable {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, 27, Short.MAX_VALUE)
                 .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(isStopWhenError)
-                    .addComponent(goon))
+                    .addComponent(goon)
+                    .addComponent(isGapless))
                 .addContainerGap())
         );
         jPanel1Layout.setVerticalGroup(
@@ -94,6 +98,8 @@ public class PlayPanel extends javax.swing.JPanel implements Initable {
                     .addComponent(interval, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(jLabel2)
                     .addComponent(isStopWhenError))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(isGapless)
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
 
@@ -167,6 +173,7 @@ public class PlayPanel extends javax.swing.JPanel implements Initable {
         config.setAutoPlayWhenStart(isAutoStart.isSelected());
         config.setMaintainLastPlay(goon.isSelected());
         config.setStopWhenError(isStopWhenError.isSelected());
+        config.setGapless(isGapless.isSelected());
         if (config.isAutoCloseDialogWhenSave()) {
             config.getOptionDialog().setVisible(false);
         }
@@ -179,11 +186,13 @@ public class PlayPanel extends javax.swing.JPanel implements Initable {
         goon.setEnabled(config.isAutoPlayWhenStart());
         interval.setValue(config.getSequencePlayInterval());
         isStopWhenError.setSelected(config.isStopWhenError());
+        isGapless.setSelected(config.isGapless());
     }
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JCheckBox goon;
     private javax.swing.JSpinner interval;
     private javax.swing.JCheckBox isAutoStart;
+    private javax.swing.JCheckBox isGapless;
     private javax.swing.JCheckBox isStopWhenError;
     private javax.swing.JButton jButton10;
     private javax.swing.JButton jButton9;
@@ -0,0 +1,127 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.tag;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Vector;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * 从标签缓存里读出来的信息,只保存TagInfo接口里的那些值,
+ * 不能再从文件里load,要重读的话用TagInfoFactory
+ * @author judy
+ */
+public class CachedTagInfo implements TagInfo {
+
+    private static final long serialVersionUID = 20161101L;
+    private final String type;
+    private final int samplingRate;
+    private final int bitRate;
+    private final int channels;
+    private final long playTime;
+    private final String title;
+    private final String artist;
+    private final String album;
+    private final String track;
+    private final String genre;
+    private final String year;
+    private final Vector<String> comment;
+
+    CachedTagInfo(String type, int samplingRate, int bitRate, int channels, long playTime,
+            String title, String artist, String album, String track, String genre, String year,
+            Vector<String> comment) {
+        this.type = type;
+        this.samplingRate = samplingRate;
+        this.bitRate = bitRate;
+        this.channels = channels;
+        this.playTime = playTime;
+        this.title = title;
+        this.artist = artist;
+        this.album = album;
+        this.track = track;
+        this.genre = genre;
+        this.year = year;
+        this.comment = comment;
+    }
+
+    /**
+     * 复制一个标签的值
+     * @param info 标签
+     * @return 复制出来的标签
+     */
+    static CachedTagInfo copyOf(TagInfo info) {
+        Vector<String> comment = info.getComment() == null ? null : new Vector<String>(info.getComment());
+        return new CachedTagInfo(info.getType(), info.getSamplingRate(), info.getBitRate(),
+                info.getChannels(), info.getPlayTime(), info.getTitle(), info.getArtist(),
+                info.getAlbum(), info.getTrack(), info.getGenre(), info.getYear(), comment);
+    }
+
+    public void load(InputStream input) throws UnsupportedAudioFileException {
+        throw new UnsupportedAudioFileException("Cached tag info can not be loaded");
+    }
+
+    public void load(URL input) throws UnsupportedAudioFileException {
+        throw new UnsupportedAudioFileException("Cached tag info can not be loaded");
+    }
+
+    public void load(File input) throws UnsupportedAudioFileException {
+        throw new UnsupportedAudioFileException("Cached tag info can not be loaded");
+    }
+
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public long getPlayTime() {
+        return playTime;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public String getTrack() {
+        return track;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public String getYear() {
+        return year;
+    }
+
+    public Vector<String> getComment() {
+        return comment;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedTagInfo[" + type + "," + title + "," + artist + "," + album + "," + playTime + "s]";
+    }
+}
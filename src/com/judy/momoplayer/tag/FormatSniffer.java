@@ -0,0 +1,150 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.tag;
+
+import com.judy.audiotag.audio.mp3.MPEGFrameHeader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * 按文件开头的几个字节猜格式,免得每个格式的解析器都去试一遍
+ * 文件开头是ID3v2标签的话跳过标签再看后面的内容
+ * 每个TagInfo的实现配一个Probe,在TagInfoFactory里登记
+ * @author judy
+ */
+public class FormatSniffer {
+
+    public static final int HEAD_SIZE = 64;//看多少个字节
+    private static final int ID3_HEADER_SIZE = 10;
+
+    /**
+     * 判断一段文件头是不是某一种格式
+     */
+    public interface Probe {
+
+        /**
+         * @param head 文件开头,有ID3v2标签的话是标签后面的内容
+         * @param length head里有效的字节数
+         * @return 是不是这种格式
+         */
+        boolean accept(byte[] head, int length);
+    }
+    /**
+     * MPEG音频,开头就是一个合法的帧头,或者是音频数据是MP3的WAV
+     */
+    public static final Probe MPEG = new Probe() {
+
+        public boolean accept(byte[] head, int length) {
+            if (length >= MPEGFrameHeader.HEADER_SIZE) {
+                int header = (head[0] & 0xFF) << 24 | (head[1] & 0xFF) << 16 | (head[2] & 0xFF) << 8 | head[3] & 0xFF;
+                if (MPEGFrameHeader.getFrameLength(header) > 0) {
+                    return true;
+                }
+            }
+            int tag = getWaveFormatTag(head, length);
+            return tag == 0x0050 || tag == 0x0055;//MPEG,MPEG Layer 3
+        }
+    };
+    public static final Probe OGG = new Probe() {
+
+        public boolean accept(byte[] head, int length) {
+            return startsWith(head, length, "OggS");
+        }
+    };
+    public static final Probe APE = new Probe() {
+
+        public boolean accept(byte[] head, int length) {
+            return startsWith(head, length, "MAC ");
+        }
+    };
+    public static final Probe FLAC = new Probe() {
+
+        public boolean accept(byte[] head, int length) {
+            return startsWith(head, length, "fLaC");
+        }
+    };
+
+    private FormatSniffer() {
+    }
+
+    /**
+     * 读文件开头,有ID3v2标签就跳过去读标签后面的
+     * @param file 文件
+     * @param head 读到这里,至少HEAD_SIZE那么大
+     * @return 读到了多少个字节
+     * @throws IOException
+     */
+    public static int readHead(File file, byte[] head) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            int length = read(raf, 0, head);
+            if (startsWith(head, length, "ID3") && length >= ID3_HEADER_SIZE) {
+                long size = ID3_HEADER_SIZE + ((head[6] & 0x7F) << 21 | (head[7] & 0x7F) << 14
+                        | (head[8] & 0x7F) << 7 | head[9] & 0x7F);
+                if ((head[5] & 0x10) != 0) {
+                    size += ID3_HEADER_SIZE;//有footer
+                }
+                length = read(raf, size, head);
+            }
+            return length;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * 是不是认得出来但是没有解析器的格式,比如普通的WAV和AIFF,
+     * 这种就不用再一个个去试了
+     */
+    public static boolean isUnsupported(byte[] head, int length) {
+        if (startsWith(head, length, "RIFF")) {
+            return !MPEG.accept(head, length);
+        }
+        return startsWith(head, length, "FORM") && length >= 12
+                && (head[8] == 'A' && head[9] == 'I' && head[10] == 'F' && (head[11] == 'F' || head[11] == 'C'));
+    }
+
+    private static int read(RandomAccessFile raf, long position, byte[] head) throws IOException {
+        if (position >= raf.length()) {
+            return 0;
+        }
+        raf.seek(position);
+        int length = 0;
+        while (length < head.length) {
+            int n = raf.read(head, length, head.length - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+        return length;
+    }
+
+    private static boolean startsWith(byte[] head, int length, String magic) {
+        if (length < magic.length()) {
+            return false;
+        }
+        for (int i = 0; i < magic.length(); i++) {
+            if (head[i] != magic.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * RIFF WAVE的fmt块紧跟在文件头后面的话,取出里面的格式编号
+     * @return 格式编号,不是WAV就是-1
+     */
+    private static int getWaveFormatTag(byte[] head, int length) {
+        if (length < 22 || !startsWith(head, length, "RIFF")
+                || head[8] != 'W' || head[9] != 'A' || head[10] != 'V' || head[11] != 'E'
+                || head[12] != 'f' || head[13] != 'm' || head[14] != 't' || head[15] != ' ') {
+            return -1;
+        }
+        return (head[20] & 0xFF) | (head[21] & 0xFF) << 8;
+    }
+}
@@ -22,12 +22,8 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import org.tritonus.share.sampled.file.TAudioFileFormat;
 
 import com.judy.audiotag.audio.exceptions.InvalidAudioFrameException;
-import com.judy.audiotag.audio.exceptions.ReadOnlyFileException;
 import com.judy.audiotag.audio.mp3.MP3AudioHeader;
-import com.judy.audiotag.audio.mp3.MP3File;
-import com.judy.audiotag.tag.Tag;
-import com.judy.audiotag.tag.TagException;
-import com.judy.audiotag.tag.ape.APEv2Tag;
+import com.judy.audiotag.audio.mp3.MP3Probe;
 import com.judy.momoplayer.util.Config;
 import com.judy.momoplayer.util.Util;
 
@@ -65,7 +61,7 @@ public class MpegInfo implements TagInfo {
     protected Vector<String> comments = null;
     private final String type = "mp3";
     protected transient MP3AudioHeader header;//音频文件头
-    protected transient Tag tag;
+    protected transient MP3Probe.Fields tag;
 
     /**
      * Constructor.
@@ -132,8 +128,12 @@ public class MpegInfo implements TagInfo {
         try {
             AudioFileFormat aff = AudioSystem.getAudioFileFormat(file);
             loadInfo(aff);
-            MP3File mp3 = new MP3File(file, MP3File.LOAD_ALL, true);
-            header = mp3.getMP3AudioHeader();
+            //只读文件头和文件尾,不用把所有标签都读出来
+            MP3Probe mp3 = MP3Probe.probe(file);
+            header = mp3.getAudioHeader();
+            if (header == null) {//读的范围里没找到帧,从标签后面一直找下去
+                header = new MP3AudioHeader(file, mp3.getID3v2Size());
+            }
             readHead();
             int tp = Config.getConfig().getReadTagOrder();
             log.log(Level.INFO, "读取顺序是:" + tp);
@@ -156,89 +156,85 @@ public class MpegInfo implements TagInfo {
 //                throw new UnsupportedAudioFileException("没有标签");
             } else {//否则就把标签读出来
 
-                readTag();
+                readTag(tag == mp3.getAPEv2Fields());
             }
-        } catch (TagException ex) {
-            throw new IOException(ex);
-        } catch (ReadOnlyFileException ex) {
-            throw new IOException(ex);
         } catch (InvalidAudioFrameException ex) {
             throw new IOException(ex);
         }
 
     }
 
-    private void readAPEv2_ID3v2_ID3v1(MP3File mp3) {
+    private void readAPEv2_ID3v2_ID3v1(MP3Probe mp3) {
         if (mp3.hasAPEv2Tag()) {
-            tag = mp3.getAPEv2Tag();
+            tag = mp3.getAPEv2Fields();
         } else if (mp3.hasID3v2Tag()) {
-            tag = mp3.getID3v2Tag();
+            tag = mp3.getID3v2Fields();
         } else if (mp3.hasID3v1Tag()) {
-            tag = mp3.getID3v1Tag();
+            tag = mp3.getID3v1Fields();
         }
     }
 
-    private void readID3v1_APEv2_ID3v2(MP3File mp3) {
+    private void readID3v1_APEv2_ID3v2(MP3Probe mp3) {
         if (mp3.hasID3v1Tag()) {
-            tag = mp3.getID3v1Tag();
+            tag = mp3.getID3v1Fields();
         } else if (mp3.hasAPEv2Tag()) {
-            tag = mp3.getAPEv2Tag();
+            tag = mp3.getAPEv2Fields();
         } else if (mp3.hasID3v2Tag()) {
-            tag = mp3.getID3v2Tag();
+            tag = mp3.getID3v2Fields();
         }
     }
 
-    private void readID3v1_ID3v2_APEv2(MP3File mp3) {
+    private void readID3v1_ID3v2_APEv2(MP3Probe mp3) {
         if (mp3.hasID3v1Tag()) {
-            tag = mp3.getID3v1Tag();
+            tag = mp3.getID3v1Fields();
         } else if (mp3.hasID3v2Tag()) {
-            tag = mp3.getID3v2Tag();
+            tag = mp3.getID3v2Fields();
         } else if (mp3.hasAPEv2Tag()) {
-            tag = mp3.getAPEv2Tag();
+            tag = mp3.getAPEv2Fields();
         }
     }
 
-    private void readID3v2_APEv2_ID3v1(MP3File mp3) {
+    private void readID3v2_APEv2_ID3v1(MP3Probe mp3) {
         System.out.println("读id3v2...");
         if (mp3.hasID3v2Tag()) {
             System.out.println("有id3v2标答........");
-            tag = mp3.getID3v2Tag();
+            tag = mp3.getID3v2Fields();
         } else if (mp3.hasAPEv2Tag()) {
-            tag = mp3.getAPEv2Tag();
+            tag = mp3.getAPEv2Fields();
         } else if (mp3.hasID3v1Tag()) {
-            tag = mp3.getID3v1Tag();
+            tag = mp3.getID3v1Fields();
         }
     }
 
     /**
      * 读取标签,以替换以前读的标签
      */
-    private void readTag() {
+    private void readTag(boolean ape) {
         //只有APE格式的标签是UTF-8的编码,不用变格式,其它的都要做字符转换
-        if (tag instanceof APEv2Tag) {
+        if (ape) {
             log.log(Level.INFO, "是APE的标签.......");
-            this.album = tag.getFirstAlbum();
-            this.artist = tag.getFirstArtist();
-            this.genre = tag.getFirstGenre();
-            this.track = tag.getFirstTrack();
+            this.album = tag.getAlbum();
+            this.artist = tag.getArtist();
+            this.genre = tag.getGenre();
+            this.track = tag.getTrack();
             if (comments == null) {
                 comments = new Vector<String>();
             }
-            comments.add(tag.getFirstComment());
-            this.title = tag.getFirstTitle();
-            this.year = tag.getFirstYear();
+            comments.add(tag.getComment());
+            this.title = tag.getTitle();
+            this.year = tag.getYear();
         } else {
             //System.out.println("tag=" + tag.getClass());
-            this.album= getChineseString(tag.getFirstAlbum());
-            this.artist = getChineseString(tag.getFirstArtist());
-            this.genre = getChineseString(tag.getFirstGenre());
-            this.track = getChineseString(tag.getFirstTrack());
+            this.album= getChineseString(tag.getAlbum());
+            this.artist = getChineseString(tag.getArtist());
+            this.genre = getChineseString(tag.getGenre());
+            this.track = getChineseString(tag.getTrack());
             if (comments == null) {
                 comments = new Vector<String>();
             }
-            comments.add(getChineseString(tag.getFirstComment()));
-            this.title = getChineseString(tag.getFirstTitle());
-            this.year = getChineseString(tag.getFirstYear());
+            comments.add(getChineseString(tag.getComment()));
+            this.title = getChineseString(tag.getTitle());
+            this.year = getChineseString(tag.getYear());
 //            if (Config.getConfig().getEncoding().equals("ISO8859-1")) {
 //                this.album = tag.getFirstAlbum();
 //                this.artist = tag.getFirstArtist();
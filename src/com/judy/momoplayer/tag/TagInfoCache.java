@@ -0,0 +1,442 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.tag;
+
+import com.judy.momoplayer.util.Config;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 标签信息的磁盘缓存,所有的播放列表共用一个
+ * 以文件的规范路径为键,文件的大小或者修改时间变了就自动失效
+ * 缓存文件只往后追加记录,读的时候后面的记录覆盖前面的,
+ * 过期的记录太多了就在下次打开的时候重写一遍
+ * 读不出标签的文件也记下来,免得每次都把所有的格式都试一遍
+ * 查缓存不加锁,读文件属性也在锁外面,只有写缓存文件的时候才锁住writeLock
+ * @author judy
+ */
+public class TagInfoCache {
+
+    private static final Logger log = Logger.getLogger(TagInfoCache.class.getName());
+    private static final int MAGIC = 0x4D544331;//MTC1
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "TagCache.dat";
+    private static TagInfoCache instance;
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final Object writeLock = new Object();//管out,改settings和重写文件也要拿着它
+    private DataOutputStream out;//追加记录用的
+    private volatile String settings;//读标签的设置,变了以后缓存的值就不对了
+    private volatile boolean disabled;
+
+    TagInfoCache(File file) {
+        this.file = file;
+        open();
+    }
+
+    public static synchronized TagInfoCache getInstance() {
+        if (instance == null) {
+            instance = new TagInfoCache(new File(Config.HOME, FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * 缓存的一个文件
+     */
+    private static class Entry {
+
+        final long size;
+        final long lastModified;
+        final TagInfo info;//为空表示这个文件读不出标签
+
+        Entry(long size, long lastModified, TagInfo info) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.info = info;
+        }
+    }
+
+    /**
+     * 结果,用来区分没有缓存和缓存了读不出标签
+     */
+    public static final class Hit {
+
+        private final TagInfo info;
+
+        private Hit(TagInfo info) {
+            this.info = info;
+        }
+
+        /**
+         * @return 标签,为空表示这个文件读不出标签
+         */
+        public TagInfo getTagInfo() {
+            return info;
+        }
+    }
+
+    /**
+     * 得到缓存的标签
+     * @param location 文件
+     * @return 没有缓存或者文件已经改过了就返回null
+     */
+    public Hit get(File location) {
+        if (disabled) {
+            return null;
+        }
+        checkSettings();
+        String key = getKey(location);
+        Entry entry = key == null ? null : entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.size != location.length() || entry.lastModified != location.lastModified()) {
+            // 只去掉自己看到的这条,别把别的线程刚放进去的新记录删了
+            entries.remove(key, entry);
+            return null;
+        }
+        return new Hit(entry.info);
+    }
+
+    /**
+     * 把读出来的标签放到缓存里去
+     * @param location 文件
+     * @param info 标签,为空表示读不出标签
+     */
+    public void put(File location, TagInfo info) {
+        if (disabled) {
+            return;
+        }
+        checkSettings();
+        String key = getKey(location);
+        if (key == null) {
+            return;
+        }
+        TagInfo cached = info == null ? null : CachedTagInfo.copyOf(info);
+        Entry entry = new Entry(location.length(), location.lastModified(), cached);
+        synchronized (writeLock) {
+            if (disabled) {
+                return;
+            }
+            entries.put(key, entry);
+            try {
+                writeEntry(out, key, entry);
+                //一条记录一次写下去,比读一次标签快得多,程序退出时也不会丢
+                out.flush();
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "Cannot write tag cache " + file, ex);
+                disable();
+            }
+        }
+    }
+
+    /**
+     * 去掉一个文件的缓存,要重读标签的时候用
+     * @param location 文件
+     */
+    public void remove(File location) {
+        String key = getKey(location);
+        if (key == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (entries.remove(key) != null && !disabled) {
+                try {
+                    // 大小为-1的记录永远不会命中,读的时候就把前面的盖掉了
+                    writeEntry(out, key, new Entry(-1, -1, null));
+                    out.flush();
+                } catch (IOException ex) {
+                    log.log(Level.WARNING, "Cannot write tag cache " + file, ex);
+                    disable();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 缓存的文件数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static String getKey(File location) {
+        try {
+            return location.getCanonicalPath();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static String getSettings() {
+        Config config = Config.getConfig();
+        return config.getReadTagOrder() + "," + config.getEncoding();
+    }
+
+    /**
+     * 读标签的顺序或者编码改了,以前缓存的都不算数了
+     */
+    private void checkSettings() {
+        String current = getSettings();
+        if (current.equals(settings)) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (!current.equals(settings)) {
+                log.log(Level.INFO, "Tag settings changed, clear tag cache");
+                entries.clear();
+                settings = current;
+                rewrite();
+            }
+        }
+    }
+
+    /**
+     * 读出缓存文件,坏掉的尾巴截掉,过期的记录太多就重写
+     */
+    private void open() {
+        settings = getSettings();
+        int records = 0;
+        if (file.isFile()) {
+            long good = 0;
+            DataInputStream in = null;
+            try {
+                CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+                in = new DataInputStream(counter);
+                if (in.readInt() == MAGIC && in.readInt() == VERSION && settings.equals(in.readUTF())) {
+                    good = counter.getPosition();
+                    while (true) {
+                        String key = in.readUTF();
+                        Entry entry = readEntry(in);
+                        if (entry.size < 0) {
+                            entries.remove(key);
+                        } else {
+                            entries.put(key, entry);
+                        }
+                        records++;
+                        good = counter.getPosition();
+                    }
+                }
+            } catch (EOFException ex) {
+                log.log(Level.FINE, "Tag cache read to end");
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "Cannot read tag cache " + file, ex);
+            } finally {
+                closeQuietly(in);
+            }
+            if (good > 0 && records <= entries.size() * 2 + 1024) {
+                try {
+                    truncate(good);
+                    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                    log.log(Level.INFO, "Tag cache : {0} files", entries.size());
+                    return;
+                } catch (IOException ex) {
+                    log.log(Level.WARNING, "Cannot open tag cache " + file, ex);
+                }
+            }
+        }
+        rewrite();
+    }
+
+    /**
+     * 把现在所有的记录重写到一个新的缓存文件里去,
+     * 除了构造的时候都要拿着writeLock调用
+     */
+    private void rewrite() {
+        closeQuietly(out);
+        out = null;
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeUTF(settings);
+                for (Map.Entry<String, Entry> me : entries.entrySet()) {
+                    writeEntry(dos, me.getKey(), me.getValue());
+                }
+            } finally {
+                dos.close();
+            }
+            // 直接换掉旧文件,中间出事也不会两个都没有
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            log.log(Level.INFO, "Tag cache rewritten : {0} files", entries.size());
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "Cannot write tag cache " + file, ex);
+            temp.delete();
+            disable();
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        if (file.length() > length) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(length);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    /**
+     * 写不了缓存文件就只在内存里用
+     */
+    private void disable() {
+        closeQuietly(out);
+        out = null;
+        disabled = true;
+    }
+
+    private static void writeEntry(DataOutputStream dos, String key, Entry entry) throws IOException {
+        dos.writeUTF(key);
+        dos.writeLong(entry.size);
+        dos.writeLong(entry.lastModified);
+        TagInfo info = entry.info;
+        dos.writeBoolean(info != null);
+        if (info == null) {
+            return;
+        }
+        writeString(dos, info.getType());
+        dos.writeInt(info.getSamplingRate());
+        dos.writeInt(info.getBitRate());
+        dos.writeInt(info.getChannels());
+        dos.writeLong(info.getPlayTime());
+        writeString(dos, info.getTitle());
+        writeString(dos, info.getArtist());
+        writeString(dos, info.getAlbum());
+        writeString(dos, info.getTrack());
+        writeString(dos, info.getGenre());
+        writeString(dos, info.getYear());
+        Vector<String> comment = info.getComment();
+        dos.writeInt(comment == null ? -1 : comment.size());
+        if (comment != null) {
+            for (String s : comment) {
+                writeString(dos, s);
+            }
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        if (!in.readBoolean()) {
+            return new Entry(size, lastModified, null);
+        }
+        String type = readString(in);
+        int samplingRate = in.readInt();
+        int bitRate = in.readInt();
+        int channels = in.readInt();
+        long playTime = in.readLong();
+        String title = readString(in);
+        String artist = readString(in);
+        String album = readString(in);
+        String track = readString(in);
+        String genre = readString(in);
+        String year = readString(in);
+        int count = in.readInt();
+        Vector<String> comment = null;
+        if (count >= 0) {
+            comment = new Vector<String>(count);
+            for (int i = 0; i < count; i++) {
+                comment.add(readString(in));
+            }
+        }
+        return new Entry(size, lastModified, new CachedTagInfo(type, samplingRate, bitRate, channels,
+                playTime, title, artist, album, track, genre, year, comment));
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        dos.writeBoolean(s != null);
+        if (s != null) {
+            // writeUTF最多65535个字节,超长的注释截掉
+            if (s.length() > 16383) {
+                s = s.substring(0, 16383);
+            }
+            dos.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ex) {
+                log.log(Level.FINE, "Cannot close tag cache", ex);
+            }
+        }
+    }
+
+    /**
+     * 数着读了多少字节的输入流,用来找到最后一条完整记录的位置
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long position;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            position += skipped;
+            return skipped;
+        }
+
+        long getPosition() {
+            return position;
+        }
+    }
+}
@@ -28,6 +28,10 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sound.sampled.UnsupportedAudioFileException;
@@ -41,18 +45,17 @@ public class TagInfoFactory {
 
     private static Logger log = Logger.getLogger(TagInfoFactory.class.getName());
     private static TagInfoFactory instance = null;
-    private Class<?> MpegTagInfoClass = null;
-    private Class<?> VorbisTagInfoClass = null;
-    private Class<?> APETagInfoClass = null;
-    private Class<?> FlacTagInfoClass = null;
+    // TagInfo implementations in the order they are tried, each with the
+    // probe that recognizes its files from the first bytes
+    private final Map<Class<?>, FormatSniffer.Probe> probes = new LinkedHashMap<Class<?>, FormatSniffer.Probe>();
 
     private TagInfoFactory() {
         super();
         log.setLevel(Level.OFF);
-        MpegTagInfoClass = getTagInfoImpl("com.judy.momoplayer.tag.MpegInfo");
-        VorbisTagInfoClass = getTagInfoImpl("com.judy.momoplayer.tag.OggVorbisInfo");
-        APETagInfoClass = getTagInfoImpl("com.judy.momoplayer.tag.APEInfo");
-        FlacTagInfoClass = getTagInfoImpl("com.judy.momoplayer.tag.FlacInfo");
+        registerTagInfoImpl(getTagInfoImpl("com.judy.momoplayer.tag.MpegInfo"), FormatSniffer.MPEG);
+        registerTagInfoImpl(getTagInfoImpl("com.judy.momoplayer.tag.OggVorbisInfo"), FormatSniffer.OGG);
+        registerTagInfoImpl(getTagInfoImpl("com.judy.momoplayer.tag.APEInfo"), FormatSniffer.APE);
+        registerTagInfoImpl(getTagInfoImpl("com.judy.momoplayer.tag.FlacInfo"), FormatSniffer.FLAC);
     }
 
     public static synchronized TagInfoFactory getInstance() {
@@ -69,57 +72,22 @@ public class TagInfoFactory {
      * @return TagInfo structure for given URL
      */
     public TagInfo getTagInfo(URL location) {
-        TagInfo taginfo;
-        try {
-            taginfo = getTagInfoImplInstance(MpegTagInfoClass);
-            taginfo.load(location);
-        } catch (IOException ex) {
-            log.log(Level.SEVERE,null,ex);
-            taginfo = null;
-        } catch (UnsupportedAudioFileException ex) {
-            // Not Mpeg Format
-            taginfo = null;
-        }
-        if (taginfo == null) {
-            // Check Ogg Vorbis format.
-            try {
-                taginfo = getTagInfoImplInstance(VorbisTagInfoClass);
-                taginfo.load(location);
-            } catch (UnsupportedAudioFileException ex) {
-                // Not Ogg Vorbis Format
-                taginfo = null;
-            } catch (IOException ex) {
-                log.log(Level.SEVERE,null,ex);
-                taginfo = null;
+        // Streams cannot be sniffed cheaply, try every format.
+        for (Class<?> aClass : getTagInfoImpls()) {
+            TagInfo taginfo = getTagInfoImplInstance(aClass);
+            if (taginfo == null) {
+                continue;
             }
-        }
-        if (taginfo == null) {
-            // Check APE format.
             try {
-                taginfo = getTagInfoImplInstance(APETagInfoClass);
                 taginfo.load(location);
-            } catch (UnsupportedAudioFileException ex) {
-                // Not APE Format
-                taginfo = null;
+                return taginfo;
             } catch (IOException ex) {
-                log.log(Level.SEVERE,null,ex);
-                taginfo = null;
-            }
-        }
-        if (taginfo == null) {
-            // Check Flac format.
-            try {
-                taginfo = getTagInfoImplInstance(FlacTagInfoClass);
-                taginfo.load(location);
+                log.log(Level.SEVERE, null, ex);
             } catch (UnsupportedAudioFileException ex) {
-                // Not Flac Format
-                taginfo = null;
-            } catch (IOException ex) {
-                log.log(Level.SEVERE,null,ex);
-                taginfo = null;
+                // Not this format
             }
         }
-        return taginfo;
+        return null;
     }
 
     /**
@@ -142,64 +110,118 @@ public class TagInfoFactory {
 
     /**
      * Get TagInfo for given file.
+     * Files read before and not changed since come from the tag cache.
      *
      * @param location
      * @return TagInfo structure for given location
      */
     public TagInfo getTagInfo(File location) {
-        TagInfo taginfo;
-        // Check Mpeg format.
-        try {
-            taginfo = getTagInfoImplInstance(MpegTagInfoClass);
-            taginfo.load(location);
-        } catch (IOException ex) {
-            log.log(Level.SEVERE,null,ex);
-            taginfo = null;
-        } catch (UnsupportedAudioFileException ex) {
-            // Not Mpeg Format
-            taginfo = null;
+        TagInfoCache cache = TagInfoCache.getInstance();
+        TagInfoCache.Hit hit = cache.get(location);
+        if (hit != null) {
+            return hit.getTagInfo();
         }
-        if (taginfo == null) {
-            // Check Ogg Vorbis format.
-            try {
-                //taginfo = new OggVorbisInfo(location);
-                taginfo = getTagInfoImplInstance(VorbisTagInfoClass);
-                taginfo.load(location);
-            } catch (UnsupportedAudioFileException ex) {
-                // Not Ogg Vorbis Format
-                taginfo = null;
-            } catch (IOException ex) {
-                log.log(Level.SEVERE,null,ex);
-                taginfo = null;
-            }
+        TagInfo taginfo = readTagInfo(location);
+        if (location.isFile()) {
+            cache.put(location, taginfo);
         }
-        if (taginfo == null) {
-            // Check APE format.
+        return taginfo;
+    }
+
+    /**
+     * Read TagInfo again from given location, skipping the tag cache.
+     *
+     * @param location
+     * @return TagInfo structure for given location
+     */
+    public TagInfo reloadTagInfo(String location) {
+        if (!Config.startWithProtocol(location)) {
+            TagInfoCache.getInstance().remove(new File(location));
+        }
+        return getTagInfo(location);
+    }
+
+    /**
+     * Parse TagInfo from given file. Formats whose probe recognizes the
+     * first bytes of the file are tried first, then the others in order.
+     *
+     * @param location
+     * @return TagInfo structure for given location
+     */
+    private TagInfo readTagInfo(File location) {
+        for (Class<?> aClass : getReadOrder(location)) {
+            TagInfo taginfo = getTagInfoImplInstance(aClass);
+            if (taginfo == null) {
+                continue;
+            }
             try {
-                taginfo = getTagInfoImplInstance(APETagInfoClass);
                 taginfo.load(location);
-            } catch (UnsupportedAudioFileException ex) {
-                // Not APE Format
-                taginfo = null;
+                return taginfo;
             } catch (IOException ex) {
-                log.log(Level.SEVERE,null,ex);
-                taginfo = null;
+                log.log(Level.SEVERE, null, ex);
+            } catch (UnsupportedAudioFileException ex) {
+                // Not this format
             }
         }
-        if (taginfo == null) {
-            // Check Flac format.
-            try {
-                taginfo = getTagInfoImplInstance(FlacTagInfoClass);
-                taginfo.load(location);
-            } catch (UnsupportedAudioFileException ex) {
-                // Not Flac Format
-                taginfo = null;
-            } catch (IOException ex) {
-                log.log(Level.SEVERE,null,ex);
-                taginfo = null;
+        return null;
+    }
+
+    /**
+     * Order in which to try the TagInfo implementations for given file.
+     *
+     * @param location
+     * @return matching implementations first, empty for a known format that
+     * no implementation reads
+     */
+    private List<Class<?>> getReadOrder(File location) {
+        Map<Class<?>, FormatSniffer.Probe> registered;
+        synchronized (probes) {
+            registered = new LinkedHashMap<Class<?>, FormatSniffer.Probe>(probes);
+        }
+        byte[] head = new byte[FormatSniffer.HEAD_SIZE];
+        int length;
+        try {
+            length = FormatSniffer.readHead(location, head);
+        } catch (IOException ex) {
+            // Let the implementations report it
+            return new ArrayList<Class<?>>(registered.keySet());
+        }
+        List<Class<?>> order = new ArrayList<Class<?>>(registered.size());
+        if (FormatSniffer.isUnsupported(head, length)) {
+            return order;
+        }
+        List<Class<?>> others = new ArrayList<Class<?>>(registered.size());
+        for (Map.Entry<Class<?>, FormatSniffer.Probe> e : registered.entrySet()) {
+            if (e.getValue() != null && e.getValue().accept(head, length)) {
+                order.add(e.getKey());
+            } else {
+                others.add(e.getKey());
             }
         }
-        return taginfo;
+        order.addAll(others);
+        return order;
+    }
+
+    private List<Class<?>> getTagInfoImpls() {
+        synchronized (probes) {
+            return new ArrayList<Class<?>>(probes.keySet());
+        }
+    }
+
+    /**
+     * Register a TagInfo implementation, tried after the ones registered
+     * before it.
+     *
+     * @param aClass TagInfo implementation
+     * @param probe recognizes its files from their first bytes, may be null
+     */
+    public void registerTagInfoImpl(Class<?> aClass, FormatSniffer.Probe probe) {
+        if (aClass == null) {
+            return;
+        }
+        synchronized (probes) {
+            probes.put(aClass, probe);
+        }
     }
 
     /**
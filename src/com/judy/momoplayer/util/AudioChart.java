@@ -7,10 +7,14 @@ package com.judy.momoplayer.util;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Graphics;
-import java.awt.Image;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.VolatileImage;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,10 +23,12 @@ import javax.swing.JPanel;
 
 import kj.dsp.KJDigitalSignalProcessingAudioDataConsumer;
 import kj.dsp.KJDigitalSignalProcessor;
-import kj.dsp.KJFFT;
 
 /**
  * 示波器
+ * DSP线程只把采样复制到三缓冲里就返回,不会被画图拖住,
+ * 画图在自己的线程里按帧率画到显卡里的VolatileImage上,
+ * 画好的图再通过另一个三缓冲交给界面线程,界面线程只管贴图
  *
  * @author HappyLove
  */
@@ -38,7 +44,7 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
     public static final int DEFAULT_WIDTH = 256;
     public static final int DEFAULT_HEIGHT = 128;
     public static final int DEFAULT_FPS = 20;
-    public static final int DEFAULT_SPECTRUM_ANALYSER_FFT_SAMPLE_SIZE = 512;
+    public static final int DEFAULT_SPECTRUM_ANALYSER_FFT_SAMPLE_SIZE = 2048;
     public static final int DEFAULT_SPECTRUM_ANALYSER_BAND_COUNT = 19;
     public static final float DEFAULT_SPECTRUM_ANALYSER_DECAY = 0.05f;
     public static final int DEFAULT_SPECTRUM_ANALYSER_PEAK_DELAY = 20;
@@ -49,7 +55,9 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
     public static final Color DEFAULT_BACKGROUND_COLOR = new Color(0, 0, 0);
     public static final Color DEFAULT_SCOPE_COLOR = new Color(255, 192, 0);
     public static final float DEFAULT_VU_METER_DECAY = 0.02f;
-    private Image bi;
+    private final TripleBuffer<Frame> frames = new TripleBuffer<Frame>(new Frame(), new Frame(), new Frame());
+    private final TripleBuffer<Surface> surfaces = new TripleBuffer<Surface>(new Surface(), new Surface(), new Surface());
+    private RenderLoop renderer;
     private int displayMode = DISPLAY_MODE_SCOPE;
     private Color scopeColor = DEFAULT_SCOPE_COLOR;
     private Color[] spectrumAnalyserColors = getDefaultSpectrumAnalyserColors();
@@ -66,12 +74,11 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
     private int height;
     private int height_2;
     // -- Spectrum analyser variables.
-    private KJFFT fft;
-    private float[] old_FFT;
+    private SpectrumAnalyzer analyzer;
+    private float[] old_FFT;//每个频带上一帧的高度
     private int saFFTSampleSize;
     private int saBands;
     private float saColorScale;
-    private float saMultiplier;
     private float saDecay = DEFAULT_SPECTRUM_ANALYSER_DECAY;
     //private float sad;
     private SourceDataLine m_line = null;
@@ -87,6 +94,10 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
     private int fc = 0;
     private boolean showFPS = false;
     private int fp = 0;
+    private long frameNanos;//一秒里画图用的时间
+    private float frameMillis;//上一秒平均每帧用的时间
+    private final AtomicInteger dropped = new AtomicInteger();//一秒里丢掉的帧,DSP给的太快或者画得太慢
+    private int droppedShown;
 
     //  private Runnable PAINT_SYNCHRONIZER = new AWTPaintSynchronizer();
     public AudioChart() {
@@ -129,12 +140,42 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
             if (dspStarted == true) {
                 stopDSP();
             }
+            startRenderer();
             dsp.start(m_line);
             dspStarted = true;
             log.info("DSP started");
         }
     }
 
+    private synchronized void startRenderer() {
+        if (renderer == null) {
+            renderer = new RenderLoop(Config.getConfig().getAudioChartfps());
+            renderer.start();
+        }
+    }
+
+    /**
+     * 等旧的线程真的退出了再返回,frames只能有一个线程在读.
+     * render()也要this的锁,所以不能拿着锁等
+     */
+    private void stopRenderer() {
+        RenderLoop old;
+        synchronized (this) {
+            old = renderer;
+            renderer = null;
+        }
+        if (old != null) {
+            old.running = false;
+            LockSupport.unpark(old);
+            try {
+                old.join();
+            } catch (InterruptedException ex) {
+                log.log(Level.WARNING, "Cannot join renderer", ex);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Stop DSP.
      */
@@ -142,6 +183,7 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
         if (dsp != null) {
             dsp.stop();
             dspStarted = false;
+            stopRenderer();
             log.info("DSP stopped");
         }
     }
@@ -269,10 +311,6 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
         vuColorScale = ((float) spectrumAnalyserColors.length / (width - 32)) * 2.0f;
     }
 
-    private void computeSAMultiplier() {
-        saMultiplier = (saFFTSampleSize / 2) / saBands;
-    }
-
     private void drawScope(Graphics pGrp, float[] pSample) {
         pGrp.setColor(scopeColor);
         int wLas = (int) (pSample[0] * (float) height_2) + height_2;
@@ -284,31 +322,27 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
         }
     }
 
-    private void drawSpectrumAnalyser(Graphics pGrp, float[] pSample, float pFrrh) {
+    private void drawSpectrumAnalyser(Graphics pGrp, float[] pLeft, float[] pRight, float pFrrh) {
         float c = 0;
-        float[] wFFT = fft.calculate(pSample);
+        analyzer.transform(pLeft, pRight);
+        float[] wBands = analyzer.getBands();
         float wSadfrr = (saDecay * pFrrh);
         float wBw = ((float) width / (float) saBands);
-        for (int a = 0, bd = 0; bd < saBands; a += saMultiplier, bd++) {
-            float wFs = 0;
-            // -- Average out nearest bands.
-            for (int b = 0; b < saMultiplier; b++) {
-                wFs += wFFT[a + b];
-            }
+        for (int bd = 0; bd < saBands; bd++) {
             // -- Log filter.
-            wFs = (wFs * (float) Math.log(bd + 2));
+            float wFs = (wBands[bd] * (float) Math.log(bd + 2));
             if (wFs > 1.0f) {
                 wFs = 1.0f;
             }
             // -- Compute SA decay...
-            if (wFs >= (old_FFT[a] - wSadfrr)) {
-                old_FFT[a] = wFs;
+            if (wFs >= (old_FFT[bd] - wSadfrr)) {
+                old_FFT[bd] = wFs;
             } else {
-                old_FFT[a] -= wSadfrr;
-                if (old_FFT[a] < 0) {
-                    old_FFT[a] = 0;
+                old_FFT[bd] -= wSadfrr;
+                if (old_FFT[bd] < 0) {
+                    old_FFT[bd] = 0;
                 }
-                wFs = old_FFT[a];
+                wFs = old_FFT[bd];
             }
             drawSpectrumAnalyserBar(pGrp, (int) c, height, (int) wBw - 1, (int) (wFs * height), bd);
             c += wBw;
@@ -319,21 +353,9 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
         if (displayMode == DISPLAY_MODE_OFF) {
             return;
         }
-        float wLeft = 0.0f;
-        float wRight = 0.0f;
         float wSadfrr = (vuDecay * pFrrh);
-        for (int a = 0; a < pLeft.length; a++) {
-            wLeft += Math.abs(pLeft[a]);
-            wRight += Math.abs(pRight[a]);
-        }
-        wLeft = ((wLeft * 2.0f) / (float) pLeft.length);
-        wRight = ((wRight * 2.0f) / (float) pRight.length);
-        if (wLeft > 1.0f) {
-            wLeft = 1.0f;
-        }
-        if (wRight > 1.0f) {
-            wRight = 1.0f;
-        }
+        float wLeft = SpectrumAnalyzer.level(pLeft);
+        float wRight = SpectrumAnalyzer.level(pRight);
         //      vuAverage += ( ( wLeft + wRight ) / 2.0f );
         //      vuSamples++;
         //
@@ -403,15 +425,38 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
         }
     }
 
-    private synchronized Image getDoubleBuffer() {
-        if (bi == null || (bi.getWidth(null) != getSize().width || bi.getHeight(null) != getSize().height)) {
-            width = getSize().width;
-            height = getSize().height;
+    /**
+     * 准备好要画的图,大小变了或者显卡的内容丢了就重建,只在画图线程里调
+     * @return 还没有显示出来的时候返回false
+     */
+    private boolean prepareSurface(Surface surface) {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        int w = getWidth();
+        int h = getHeight();
+        if (gc == null || w <= 0 || h <= 0) {
+            return false;
+        }
+        if (w != width || h != height) {
+            width = w;
+            height = h;
             height_2 = height >> 1;
             computeColorScale();
-            bi = getGraphicsConfiguration().createCompatibleVolatileImage(width, height);
         }
-        return bi;
+        VolatileImage image = surface.image;
+        if (image == null || image.getWidth() != w || image.getHeight() != h
+                || image.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+            if (surface.graphics != null) {
+                surface.graphics.dispose();
+            }
+            if (image != null) {
+                image.flush();
+            }
+            surface.image = gc.createCompatibleVolatileImage(w, h);
+            surface.graphics = surface.image.createGraphics();
+        } else if (surface.graphics == null) {
+            surface.graphics = image.createGraphics();
+        }
+        return true;
     }
 
     public static Color[] getDefaultSpectrumAnalyserColors() {
@@ -488,7 +533,12 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
             return;
         }
         if (dspStarted) {
-            pGraphics.drawImage(getDoubleBuffer(), 0, 0, null);
+            surfaces.update();
+            VolatileImage image = surfaces.front().image;
+            // 显卡的内容丢了就不贴了,下一帧会重画
+            if (image != null && !image.contentsLost()) {
+                pGraphics.drawImage(image, 0, 0, null);
+            }
         } else {
             super.paintComponent(pGraphics);
         }
@@ -516,47 +566,61 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
     /* (non-Javadoc)
      * @see kj.dsp.KJDigitalSignalProcessor#process(float[], float[], float)
      */
-    public synchronized void process(float[] pLeft, float[] pRight, float pFrameRateRatioHint) {
+    public void process(float[] pLeft, float[] pRight, float pFrameRateRatioHint) {
         if (displayMode == DISPLAY_MODE_OFF) {
             return;
         }
-        Graphics wGrp = getDoubleBuffer().getGraphics();
+        // DSP线程里只复制采样,画图的线程来不及取就丢掉旧的
+        Frame frame = frames.back();
+        frame.set(pLeft, pRight, pFrameRateRatioHint);
+        if (frames.publish()) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 画一帧,只在画图线程里调
+     */
+    private synchronized void render(Frame frame) {
+        Surface surface = surfaces.back();
+        if (!prepareSurface(surface)) {
+            return;
+        }
+        long start = System.nanoTime();
+        Graphics wGrp = surface.graphics;
         wGrp.setColor(getBackground());
-        wGrp.fillRect(0, 0, getSize().width, getSize().height);
+        wGrp.fillRect(0, 0, width, height);
         switch (displayMode) {
             case DISPLAY_MODE_SCOPE:
-                drawScope(wGrp, stereoMerge(pLeft, pRight));
+                drawScope(wGrp, stereoMerge(frame.left, frame.right));
                 break;
             case DISPLAY_MODE_SPECTRUM_ANALYSER:
-                drawSpectrumAnalyser(wGrp, stereoMerge(pLeft, pRight), pFrameRateRatioHint);
+                drawSpectrumAnalyser(wGrp, frame.left, frame.right, frame.frrh);
                 break;
             case DISPLAY_MODE_OFF:
-                drawVUMeter(wGrp, pLeft, pRight, pFrameRateRatioHint);
+                drawVUMeter(wGrp, frame.left, frame.right, frame.frrh);
                 break;
         }
         // -- Show FPS if necessary.
-
         if (showFPS) {
             // -- Calculate FPS.
-            if (System.currentTimeMillis() >= lfu + 1000) {
-                lfu = System.currentTimeMillis();
+            long now = System.currentTimeMillis();
+            if (now >= lfu + 1000) {
+                lfu = now;
                 fp = fc;
+                frameMillis = fc == 0 ? 0 : frameNanos / 1000000f / fc;
+                droppedShown = dropped.getAndSet(0);
                 fc = 0;
+                frameNanos = 0;
             }
             fc++;
             wGrp.setColor(Color.yellow);
-            wGrp.drawString("FPS: " + fp + " (FRRH: " + pFrameRateRatioHint + ")", 0, height - 1);
-        }
-        if (getGraphics() != null) {
-            getGraphics().drawImage(getDoubleBuffer(), 0, 0, null);
+            wGrp.drawString("FPS: " + fp + " " + String.format("%.2f", frameMillis) + "ms drop: " + droppedShown,
+                    0, height - 1);
         }
-        //      repaint();
-        //      try {
-        //          EventQueue.invokeLater( new AWTPaintSynchronizer() );
-        //      } catch ( Exception pEx ) {
-        //          // -- Ignore exception.
-        //          pEx.printStackTrace();
-        //      }
+        frameNanos += System.nanoTime() - start;
+        surfaces.publish();
+        repaint();
     }
 
     /**
@@ -597,7 +661,10 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
         saBands = pCount;
         peaks = new int[saBands];
         peaksDelay = new int[saBands];
-        computeSAMultiplier();
+        old_FFT = new float[saBands];
+        if (analyzer != null) {
+            analyzer.setBandCount(saBands);
+        }
     }
 
     /**
@@ -625,16 +692,15 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
 
     /**
      * Sets the FFT sample size to be just for calculating the spectrum analyser
-     * values. The default is 512.
+     * values. The default is 2048.
      *
      * @param pSize Cannot be more than the size of the sample provided by the
      * DSP.
      */
     public synchronized void setSpectrumAnalyserFFTSampleSize(int pSize) {
         saFFTSampleSize = pSize;
-        fft = new KJFFT(saFFTSampleSize);
-        old_FFT = new float[saFFTSampleSize];
-        computeSAMultiplier();
+        analyzer = new SpectrumAnalyzer(saFFTSampleSize);
+        analyzer.setBandCount(saBands);
     }
 
     private float[] stereoMerge(float[] pLeft, float[] pRight) {
@@ -644,6 +710,69 @@ public class AudioChart extends JPanel implements KJDigitalSignalProcessor {
         return pLeft;
     }
 
+    /**
+     * DSP给的一帧采样,复制下来的,画图的时候DSP可以接着往下走
+     */
+    private static final class Frame {
+
+        float[] left = new float[0];
+        float[] right = new float[0];
+        float frrh;
+
+        void set(float[] pLeft, float[] pRight, float pFrrh) {
+            if (left.length != pLeft.length) {
+                left = new float[pLeft.length];
+                right = new float[pLeft.length];
+            }
+            System.arraycopy(pLeft, 0, left, 0, left.length);
+            System.arraycopy(pRight, 0, right, 0, right.length);
+            frrh = pFrrh;
+        }
+    }
+
+    /**
+     * 画图用的一块显卡内存,Graphics跟着图一起留着,不用每帧都建
+     */
+    private static final class Surface {
+
+        VolatileImage image;
+        Graphics graphics;
+    }
+
+    /**
+     * 按帧率画图的线程,有新的采样才画,赶不上的帧直接跳过
+     */
+    private final class RenderLoop extends Thread {
+
+        private final long period;
+        volatile boolean running = true;
+
+        RenderLoop(int fps) {
+            super("AudioChart renderer");
+            period = TimeUnit.SECONDS.toNanos(1) / Math.max(1, fps);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = System.nanoTime();
+            while (running) {
+                if (frames.update()) {
+                    render(frames.front());
+                }
+                next += period;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else if (-wait > period) {
+                    // 落后一帧以上,少画几帧,从现在重新开始算
+                    dropped.addAndGet((int) (-wait / period));
+                    next = System.nanoTime();
+                }
+            }
+        }
+    }
+
     /*public void update(Graphics pGraphics)
      {
      // -- Prevent AWT from clearing background.
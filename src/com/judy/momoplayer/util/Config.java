@@ -7,6 +7,7 @@ package com.judy.momoplayer.util;
 import com.judy.momoplayer.lyric.LyricPanel;
 import com.judy.momoplayer.player.ui.PlayerUI;
 import com.judy.momoplayer.playlist.PlayList;
+import com.judy.momoplayer.playlist.PlayListStore;
 import com.judy.momoplayer.setting.OptionDialog;
 import java.awt.Color;
 import java.awt.Component;
@@ -181,7 +182,7 @@ public class Config implements Serializable {
     private Point disLrc, disEq, disPl;//三个面板和主面板的距离
 	private File lyricDir = new File(System.getProperty("user.home"));//歌词的搜索目录,并不是写入的目录,写入还是固定在user.home里面
     private Dimension lrcSize, plSize;//歌词秀和播放列表的大小
-    private final Vector<PlayList> playlists;//所有的播放列表
+    private Vector<PlayList> playlists;//所有的播放列表,存在PlayListStore里,以前的版本是跟着一起序列化的
     private final Map<String, Set<String>> componentMap;//一个窗口关系的变量
     private Date lastCheckUpdate = new Date();//最后一次检查更新的时候
   
@@ -234,6 +235,7 @@ public class Config implements Serializable {
     private double lastRate;//最后一次的播放进度
     private int sequencePlayInterval;//连续播放的时间间隔(单位:秒)
     private boolean stopWhenError;//当出现错误的时候,是否停止播放
+    private boolean gapless;//是否无缝连续播放,即提前打开下一首接在当前的音频线路上
     
     /*
      * ****************播放列表设置面板要用到的变量**********************
@@ -297,7 +299,6 @@ public class Config implements Serializable {
 
     private Config() {
         lastEqualizer = new int[10];
-        playlists = new Vector<PlayList>();
         Arrays.fill(lastEqualizer, 50);
         componentMap = new HashMap<String, Set<String>>();
         searchLyricDirs.add(saveLyricDir);
@@ -403,6 +404,7 @@ public class Config implements Serializable {
             if (!Config.HOME.exists()) {
                 Config.HOME.mkdirs();
             }
+            PlayListStore.getInstance().save(config.getPlayLists());
             FileOutputStream fout = new FileOutputStream((new File(Config.HOME, NAME + ".dat")));
             ObjectOutputStream oos = new ObjectOutputStream(fout);
             oos.writeObject(config);
@@ -973,6 +975,14 @@ public class Config implements Serializable {
         this.stopWhenError = stopWhenError;
     }
 
+    public boolean isGapless() {
+        return gapless;
+    }
+
+    public void setGapless(boolean gapless) {
+        this.gapless = gapless;
+    }
+
     public boolean isAutoOverWriteExistFile() {
         return autoOverWriteExistFile;
     }
@@ -1340,13 +1350,35 @@ public class Config implements Serializable {
     }
 
     public void addPlayList(PlayList list) {
-        playlists.add(list);
+        getPlayLists().add(list);
     }
 
-    public Vector<PlayList> getPlayLists() {
+    /**
+     * 第一次用的时候才从PlayListStore里读出来,
+     * 旧的配置文件里带着的列表下次保存的时候就存到PlayListStore里去了
+     * @return 所有的播放列表
+     */
+    public synchronized Vector<PlayList> getPlayLists() {
+        if (playlists == null) {
+            playlists = PlayListStore.getInstance().load(this);
+        }
         return playlists;
     }
 
+    /**
+     * 播放列表单独存,不跟着序列化.
+     * 和getPlayLists()用同一把锁,免得写的时候它看到null又去读一遍
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        Vector<PlayList> lists = playlists;
+        playlists = null;
+        try {
+            out.defaultWriteObject();
+        } finally {
+            playlists = lists;
+        }
+    }
+
     public Point getEqLocation() {
         return eqLocation;
     }
@@ -0,0 +1,189 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.util;
+
+/**
+ * 频谱和音量的计算,给AudioChart用的
+ * 窗函数,旋转因子,位反转表都在构造的时候算好,
+ * 每一帧只在自己的数组里做实数FFT,不分配新的数组
+ * 频带按对数划分,只在频带数改变的时候算一次边界
+ * 不是线程安全的,由调用者同步
+ * @author judy
+ */
+public class SpectrumAnalyzer {
+
+    private final int size;//FFT的点数,2的幂
+    private final int half;//复数FFT的点数,也是输出的频率点数
+    private final float[] window;//汉宁窗
+    private final float[] cos;//cos(2*PI*k/size)
+    private final float[] sin;//sin(2*PI*k/size)
+    private final int[] bitReverse;
+    private final float[] re;
+    private final float[] im;
+    private final float[] magnitudes;
+    private final float gain;//把窗函数的衰减补回来,正弦波的幅度算出来还是它自己
+    private int[] bandEdges;//第b个频带是[bandEdges[b],bandEdges[b+1])
+    private float[] bands;
+
+    /**
+     * @param size FFT的点数,必须是2的幂,至少是4
+     */
+    public SpectrumAnalyzer(int size) {
+        if (size < 4 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of 2 : " + size);
+        }
+        this.size = size;
+        half = size >> 1;
+        window = new float[size];
+        float sum = 0;
+        for (int i = 0; i < size; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (size - 1)));
+            sum += window[i];
+        }
+        gain = 2.0f / sum;
+        cos = new float[half];
+        sin = new float[half];
+        for (int k = 0; k < half; k++) {
+            cos[k] = (float) Math.cos(2 * Math.PI * k / size);
+            sin[k] = (float) Math.sin(2 * Math.PI * k / size);
+        }
+        bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        re = new float[half];
+        im = new float[half];
+        magnitudes = new float[half];
+        setBandCount(1);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 把左右声道混成单声道以后算频谱
+     * @param left 左声道
+     * @param right 右声道,单声道的时候可以和左声道是同一个数组
+     * @return 每个频率点的幅度,0到1左右,数组是共用的,下一次计算会覆盖
+     */
+    public float[] transform(float[] left, float[] right) {
+        // 采样比点数多的时候隔几个取一个,少的时候后面补零
+        int step = Math.max(1, left.length / size);
+        int count = Math.min(size, left.length / step);
+        // 偶数点放实部,奇数点放虚部,一次做half个点的复数FFT
+        for (int n = 0; n < half; n++) {
+            int i = n << 1;
+            int r = bitReverse[n];
+            re[r] = sample(left, right, i, step, count) * window[i];
+            im[r] = sample(left, right, i + 1, step, count) * window[i + 1];
+        }
+        fft();
+        // 从half个点的复数结果里分出size个点的实数FFT的前一半
+        magnitudes[0] = Math.abs(re[0] + im[0]) * gain * 0.5f;
+        for (int k = 1; k < half; k++) {
+            float a = re[k];
+            float b = im[k];
+            float c = re[half - k];
+            float d = im[half - k];
+            float evenRe = (a + c) * 0.5f;
+            float evenIm = (b - d) * 0.5f;
+            float oddRe = (b + d) * 0.5f;
+            float oddIm = (c - a) * 0.5f;
+            float xr = evenRe + cos[k] * oddRe + sin[k] * oddIm;
+            float xi = evenIm + cos[k] * oddIm - sin[k] * oddRe;
+            magnitudes[k] = (float) Math.sqrt(xr * xr + xi * xi) * gain;
+        }
+        return magnitudes;
+    }
+
+    private static float sample(float[] left, float[] right, int i, int step, int count) {
+        if (i >= count) {
+            return 0;
+        }
+        int j = i * step;
+        return (left[j] + right[j]) * 0.5f;
+    }
+
+    /**
+     * 原地做half个点的基2复数FFT,输入已经按位反转的顺序放好了
+     */
+    private void fft() {
+        for (int len = 2; len <= half; len <<= 1) {
+            int span = len >> 1;
+            int stride = size / len;
+            for (int i = 0; i < half; i += len) {
+                for (int j = 0, t = 0; j < span; j++, t += stride) {
+                    int p = i + j;
+                    int q = p + span;
+                    float wr = cos[t];
+                    float wi = -sin[t];
+                    float tr = re[q] * wr - im[q] * wi;
+                    float ti = re[q] * wi + im[q] * wr;
+                    re[q] = re[p] - tr;
+                    im[q] = im[p] - ti;
+                    re[p] += tr;
+                    im[p] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置频带数,按对数划分频率,低频的频带窄,高频的频带宽
+     * @param count 频带数,不能比FFT点数的一半多
+     */
+    public void setBandCount(int count) {
+        count = Math.max(1, Math.min(count, half - 1));
+        if (bands != null && bands.length == count) {
+            return;
+        }
+        int[] edges = new int[count + 1];
+        edges[0] = 1;//直流分量不算
+        double ratio = Math.pow(half, 1.0 / count);
+        double edge = 1;
+        for (int b = 1; b <= count; b++) {
+            edge *= ratio;
+            // 每个频带至少一个频率点,也要给后面的频带留够
+            int e = Math.max(edges[b - 1] + 1, (int) Math.round(edge));
+            edges[b] = Math.min(e, half - (count - b));
+        }
+        bandEdges = edges;
+        bands = new float[count];
+    }
+
+    public int getBandCount() {
+        return bands.length;
+    }
+
+    /**
+     * 把上一次transform的结果合到各个频带里
+     * @return 每个频带的幅度,数组是共用的,下一次计算会覆盖
+     */
+    public float[] getBands() {
+        for (int b = 0; b < bands.length; b++) {
+            float power = 0;
+            for (int k = bandEdges[b]; k < bandEdges[b + 1]; k++) {
+                power += magnitudes[k] * magnitudes[k];
+            }
+            bands[b] = (float) Math.sqrt(power);
+        }
+        return bands;
+    }
+
+    /**
+     * 算一个声道的音量,给音量表用的
+     * @param samples 采样
+     * @return 0到1
+     */
+    public static float level(float[] samples) {
+        float sum = 0;
+        for (int a = 0; a < samples.length; a++) {
+            sum += Math.abs(samples[a]);
+        }
+        return Math.min(1.0f, sum * 2.0f / samples.length);
+    }
+}
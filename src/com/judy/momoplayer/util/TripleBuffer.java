@@ -0,0 +1,76 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.judy.momoplayer.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一个线程写,一个线程读的三缓冲,两边都不用等对方
+ * 写的一方在back里写好以后publish,读的一方update以后读front,
+ * 中间那个在两边交换,读的一方来不及取的时候旧的就被新的换掉了
+ * @author judy
+ */
+class TripleBuffer<T> {
+
+    private static final class Slot<T> {
+
+        final T value;
+        volatile boolean fresh;//写好了还没有被读的一方取走
+
+        Slot(T value) {
+            this.value = value;
+        }
+    }
+    private final AtomicReference<Slot<T>> middle;
+    private Slot<T> back;//只有写的一方用
+    private Slot<T> front;//只有读的一方用
+
+    TripleBuffer(T back, T middle, T front) {
+        this.back = new Slot<T>(back);
+        this.middle = new AtomicReference<Slot<T>>(new Slot<T>(middle));
+        this.front = new Slot<T>(front);
+    }
+
+    /**
+     * @return 写的一方现在可以写的那个
+     */
+    T back() {
+        return back.value;
+    }
+
+    /**
+     * 把写好的back交出去,换一个新的back回来
+     * @return 上一次交出去的还没有被读走,被这一次丢掉了
+     */
+    boolean publish() {
+        back.fresh = true;
+        Slot<T> old = middle.getAndSet(back);
+        boolean dropped = old.fresh;
+        old.fresh = false;
+        back = old;
+        return dropped;
+    }
+
+    /**
+     * 有新写好的就换到front来
+     * @return 有没有换到新的
+     */
+    boolean update() {
+        if (!middle.get().fresh) {
+            return false;
+        }
+        Slot<T> s = middle.getAndSet(front);
+        s.fresh = false;
+        front = s;
+        return true;
+    }
+
+    /**
+     * @return 读的一方现在可以读的那个
+     */
+    T front() {
+        return front.value;
+    }
+}
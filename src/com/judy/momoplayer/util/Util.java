@@ -69,8 +69,7 @@ import com.judy.momoplayer.lyric.WebSearchDialog;
 import com.judy.momoplayer.playlist.PlayListItem;
 import com.judy.momoplayer.setting.OptionDialog;
 import com.judy.momoplayer.setting.SettingPanel;
-import com.june.lrc.ILrcDownload;
-import com.june.lrc.gcm.GeCiMiLRC;
+import com.june.lrc.LrcFetcher;
 import com.sun.jna.examples.WindowUtils;
 
 /**
@@ -1150,9 +1149,8 @@ public final class Util {
      * @throws java.lang.Exception
      */
     private static String getBaidu_Lyric(String key,String artist) throws Exception {
-        ILrcDownload lrc = null;// new BaiDuLRC();
-        lrc = new GeCiMiLRC();
-        String conts = lrc.getLrcContent(key, artist);
+        //所有的来源一起查,谁先找到用谁
+        String conts = LrcFetcher.getDefault().fetch(key, artist);
         //System.out.println("content:"+conts);
         return conts;
         //*
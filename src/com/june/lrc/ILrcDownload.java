@@ -5,6 +5,8 @@
  */
 package com.june.lrc;
 
+import java.io.IOException;
+
 import com.june.lrc.bean.Lyrics;
 
 /**
@@ -27,9 +29,10 @@ public interface ILrcDownload {
      *
      * @param title 歌曲名称
      * @param artist 歌手名
-     * @return 歌曲内容
+     * @return 歌曲内容,没找到是null
+     * @throws IOException 网络出错,和没找到分开,出错的结果不会被缓存
      */
-    String getLrcContent(String title, String artist);
+    String getLrcContent(String title, String artist) throws IOException;
 
     /**
      * 根据歌曲名和歌手名获取歌词对象列表
@@ -37,6 +40,7 @@ public interface ILrcDownload {
      * @param title
      * @param artist
      * @return 歌词对象集
+     * @throws IOException 网络出错
      */
-    Lyrics getLyrics(String title, String artist);
+    Lyrics getLyrics(String title, String artist) throws IOException;
 }
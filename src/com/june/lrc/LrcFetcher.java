@@ -0,0 +1,419 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.june.lrc;
+
+import com.judy.momoplayer.lyric.SearchResult;
+import com.judy.momoplayer.util.Config;
+import com.june.lrc.bean.Lyric;
+import com.june.lrc.bean.Lyrics;
+import com.june.lrc.comm.LRCUtil;
+import com.june.lrc.comm.LrcCache;
+import com.june.lrc.gcm.GeCiMiLRC;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 同时向所有的歌词来源查询,谁先回来用谁
+ * 每个来源都有超时,过了对冲的时间还没回来的再发一次,哪一次先回来算哪一次
+ * 搜索的结果合在一起去重,按和歌名歌手的接近程度排序
+ * 找到的和没找到的结果都缓存在磁盘上,出错或者超时的不缓存
+ *
+ * @author HappyLove
+ */
+public class LrcFetcher {
+
+    private static final Logger log = Logger.getLogger(LrcFetcher.class.getName());
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static LrcFetcher instance;
+    private final List<ILrcDownload> providers;
+    private final LrcCache cache;
+    private final ExecutorService executor;
+    private long timeout = 8000;//每个来源最多等这么多毫秒
+    private long hedgeDelay = 2000;//过了这么多毫秒还没回来就再发一次
+
+    /**
+     * @param providers 歌词来源,排在前面的优先
+     * @param cache 缓存,可以是null
+     */
+    public LrcFetcher(List<ILrcDownload> providers, LrcCache cache) {
+        this.providers = new ArrayList<ILrcDownload>(providers);
+        this.cache = cache;
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "LrcFetcher-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @return 播放器用的,查歌词迷,缓存在HOME/LyricCache下面
+     */
+    public static synchronized LrcFetcher getDefault() {
+        if (instance == null) {
+            // 百度的接口box.zhangmen.baidu.com已经不能用了,不要加进来
+            List<ILrcDownload> list = Arrays.<ILrcDownload>asList(new GeCiMiLRC());
+            instance = new LrcFetcher(list, new LrcCache(new File(Config.HOME, "LyricCache"), 7 * DAY, DAY / 24));
+        }
+        return instance;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public void setHedgeDelay(long hedgeDelay) {
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    /**
+     * 在查询用的线程池里执行一个任务,免得每次都开新线程
+     *
+     * @param task 任务
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * 找一首歌的歌词内容,哪个来源先回来像样的歌词就用哪个
+     *
+     * @param title 歌名
+     * @param artist 歌手,可以为空
+     * @return 歌词,没找到是null
+     */
+    public String fetch(String title, String artist) {
+        title = title == null ? "" : title;
+        artist = artist == null ? "" : artist;
+        String key = "fetch\n" + title + "\n" + artist;
+        List<String> cached = cache == null ? null : cache.get(key);
+        if (cached != null) {
+            return cached.isEmpty() ? null : cached.get(0);
+        }
+        Outcome<String> outcome = query(title, artist, new Query<String>() {
+
+            String call(ILrcDownload provider, String title, String artist) throws IOException {
+                return provider.getLrcContent(title, artist);
+            }
+
+            boolean isEmpty(String content) {
+                return content == null || content.indexOf('[') < 0;
+            }
+
+            boolean isEnough(String content) {
+                return true;
+            }
+        });
+        String content = null;
+        for (String s : outcome.results) {
+            if (s != null) {
+                content = s;
+                break;
+            }
+        }
+        store(key, outcome, content == null ? Collections.<String>emptyList() : Collections.singletonList(content));
+        return content;
+    }
+
+    /**
+     * 在所有的来源里搜索,结果合在一起
+     *
+     * @param title 歌名
+     * @param artist 歌手,可以为空
+     * @return 搜索结果,最像的在前面
+     */
+    public List<SearchResult> search(String title, String artist) {
+        final String t = title == null ? "" : title;
+        final String a = artist == null ? "" : artist;
+        String key = "search\n" + t + "\n" + a;
+        List<String> cached = cache == null ? null : cache.get(key);
+        if (cached != null) {
+            return toResults(cached);
+        }
+        Outcome<Lyrics> outcome = query(t, a, new Query<Lyrics>() {
+
+            Lyrics call(ILrcDownload provider, String title, String artist) throws IOException {
+                return provider.getLyrics(title, artist);
+            }
+
+            boolean isEmpty(Lyrics lyrics) {
+                return lyrics == null || lyrics.getResult() == null || lyrics.getResult().isEmpty();
+            }
+        });
+        // 每个结果存成 歌手,歌名,编号,下载地址 四个字符串
+        final List<String[]> rows = new ArrayList<String[]>();
+        Set<String> urls = new HashSet<String>();
+        Map<String, Integer> names = new HashMap<String, Integer>();
+        for (int p = 0; p < outcome.results.size(); p++) {
+            Lyrics lyrics = outcome.results.get(p);
+            if (lyrics == null) {
+                continue;
+            }
+            for (Lyric lrc : lyrics.getResult()) {
+                String url = lrc.getLrc();
+                String song = lrc.getSong() == null ? t : lrc.getSong();
+                if (url == null || !urls.add(url)) {
+                    continue;
+                }
+                // 结果自己没带歌手的话,只有按歌手搜的时候才知道是谁唱的
+                String singer = lrc.getArtist() == null ? a : lrc.getArtist();
+                String who = normalize(singer);
+                if (who.length() > 0) {
+                    // 不同的来源搜到同一首歌只留排在前面的来源的,不知道歌手就不合并
+                    String name = who + "\n" + normalize(song);
+                    Integer from = names.get(name);
+                    if (from != null && from != p) {
+                        continue;
+                    }
+                    names.put(name, p);
+                }
+                String[] row = {singer, song, lrc.getAid(), url};
+                rows.add(row);
+            }
+        }
+        final String nt = normalize(t);
+        // 排序是稳定的,一样像的还是按来源的顺序
+        Collections.sort(rows, new Comparator<String[]>() {
+
+            public int compare(String[] o1, String[] o2) {
+                return score(o2[1], nt) - score(o1[1], nt);
+            }
+        });
+        List<String> values = new ArrayList<String>(rows.size() * 4);
+        for (String[] row : rows) {
+            values.addAll(Arrays.asList(row));
+        }
+        store(key, outcome, values);
+        return toResults(values);
+    }
+
+    /**
+     * 歌名和要找的越像分越高
+     */
+    private static int score(String song, String title) {
+        String s = normalize(song);
+        if (s.equals(title)) {
+            return 2;
+        }
+        return s.length() > 0 && title.length() > 0 && (s.contains(title) || title.contains(s)) ? 1 : 0;
+    }
+
+    private static String normalize(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        String n = s.toLowerCase(Locale.ENGLISH);
+        for (int i = 0; i < n.length(); i++) {
+            char c = n.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<SearchResult> toResults(List<String> values) {
+        List<SearchResult> list = new ArrayList<SearchResult>(values.size() / 4);
+        for (int i = 0; i + 3 < values.size(); i += 4) {
+            final String url = values.get(i + 3);
+            SearchResult.Task task = new SearchResult.Task() {
+
+                public String getLyricContent() {
+                    return LRCUtil.getContentFormWeb(url, null);
+                }
+            };
+            list.add(new SearchResult(values.get(i + 2), null, null, values.get(i), values.get(i + 1), task));
+        }
+        return list;
+    }
+
+    /**
+     * 所有来源都正常回答了才缓存,不然下次还要再问
+     */
+    private void store(String key, Outcome<?> outcome, List<String> values) {
+        if (cache != null && (!values.isEmpty() || outcome.complete)) {
+            cache.put(key, values);
+        }
+    }
+
+    /**
+     * 对每个来源的一种查询
+     */
+    private abstract static class Query<T> {
+
+        /**
+         * @throws IOException 网络出错,这次查询就不缓存
+         */
+        abstract T call(ILrcDownload provider, String title, String artist) throws IOException;
+
+        /**
+         * @return 这个结果是不是等于没找到
+         */
+        abstract boolean isEmpty(T result);
+
+        /**
+         * @return 拿到这个结果以后是不是就不用等别的来源了
+         */
+        boolean isEnough(T result) {
+            return false;
+        }
+    }
+
+    /**
+     * 一个来源的一次请求的结果
+     */
+    private static class Attempt<T> {
+
+        final int index;
+        T value;
+        Exception error;
+
+        Attempt(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * 一次查询的结果
+     */
+    private static class Outcome<T> {
+
+        final List<T> results;//按来源的顺序,没有结果的是null
+        boolean complete;//是不是所有的来源都正常回答了
+
+        Outcome(List<T> results) {
+            this.results = results;
+        }
+    }
+
+    /**
+     * 把查询同时发给所有的来源,等到都回来,超时,或者有一个结果就够了为止
+     */
+    private <T> Outcome<T> query(final String title, final String artist, final Query<T> q) {
+        int n = providers.size();
+        CompletionService<Attempt<T>> cs = new ExecutorCompletionService<Attempt<T>>(executor);
+        List<Future<Attempt<T>>> futures = new ArrayList<Future<Attempt<T>>>(n * 2);
+        int[] running = new int[n];//每个来源还有几个请求没回来
+        boolean[] done = new boolean[n];
+        List<T> results = new ArrayList<T>(Collections.<T>nCopies(n, null));
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long hedgeAt = start + TimeUnit.MILLISECONDS.toNanos(hedgeDelay);
+        boolean hedged = hedgeDelay <= 0 || hedgeDelay >= timeout;
+        for (int i = 0; i < n; i++) {
+            futures.add(cs.submit(attempt(i, title, artist, q)));
+            running[i]++;
+        }
+        int remaining = n;
+        boolean failed = false;
+        try {
+            while (remaining > 0) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+                long wait = deadline - now;
+                if (!hedged) {
+                    wait = Math.min(wait, Math.max(0, hedgeAt - now));
+                }
+                Future<Attempt<T>> f = cs.poll(wait, TimeUnit.NANOSECONDS);
+                if (f == null) {
+                    if (!hedged && System.nanoTime() >= hedgeAt) {
+                        hedged = true;
+                        for (int i = 0; i < n; i++) {
+                            if (!done[i]) {
+                                log.log(Level.FINE, "Hedging lyric request to {0}", providers.get(i));
+                                futures.add(cs.submit(attempt(i, title, artist, q)));
+                                running[i]++;
+                            }
+                        }
+                    }
+                    continue;
+                }
+                Attempt<T> a = f.get();
+                running[a.index]--;
+                if (done[a.index]) {
+                    // 对冲的另一次已经回来了
+                    continue;
+                }
+                if (a.error != null) {
+                    log.log(Level.FINE, "Lyric provider " + providers.get(a.index) + " failed", a.error);
+                    if (running[a.index] > 0) {
+                        // 还有一次在路上,等它
+                        continue;
+                    }
+                    failed = true;
+                } else if (!q.isEmpty(a.value)) {
+                    results.set(a.index, a.value);
+                }
+                done[a.index] = true;
+                remaining--;
+                if (a.error == null && !q.isEmpty(a.value) && q.isEnough(a.value)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        } catch (ExecutionException ex) {
+            // attempt里已经把异常都接住了
+            log.log(Level.WARNING, null, ex);
+            failed = true;
+        } finally {
+            for (Future<Attempt<T>> f : futures) {
+                f.cancel(true);
+            }
+        }
+        if (remaining > 0) {
+            log.log(Level.INFO, "Lyric search for {0} timed out, {1} providers pending", new Object[]{title, remaining});
+        }
+        Outcome<T> outcome = new Outcome<T>(results);
+        outcome.complete = !failed && remaining == 0;
+        return outcome;
+    }
+
+    private <T> Callable<Attempt<T>> attempt(final int index, final String title, final String artist, final Query<T> q) {
+        final ILrcDownload provider = providers.get(index);
+        return new Callable<Attempt<T>>() {
+
+            public Attempt<T> call() {
+                Attempt<T> a = new Attempt<T>(index);
+                try {
+                    a.value = q.call(provider, title, artist);
+                } catch (UnsupportedOperationException ex) {
+                    // 这个来源不支持这种查询,当没找到
+                } catch (Exception ex) {
+                    a.error = ex;
+                }
+                return a;
+            }
+        };
+    }
+}
@@ -17,6 +17,7 @@ public class Lyric {
     private String sid;//song id 歌曲id
     private String artist_id;//歌手id
     private String song;//歌曲名称
+    private String artist;//歌手名,歌词米的结果里没有,别的来源知道的话可以填上
 
     public Lyric(){}
     
@@ -97,5 +98,19 @@ public class Lyric {
     public void setSong(String song) {
         this.song = song;
     }
+
+    /**
+     * @return 歌手名,不知道是null
+     */
+    public String getArtist() {
+        return artist;
+    }
+
+    /**
+     * @param artist 歌手名
+     */
+    public void setArtist(String artist) {
+        this.artist = artist;
+    }
     
 }
@@ -220,6 +220,8 @@ public class LRCUtil {
                     Integer.parseInt(config.getProxyPort()));
         }
         http.getParams().setContentCharset("GBK");
+        http.getHttpConnectionManager().getParams().setConnectionTimeout(CONNECT_TIMEOUT);
+        http.getHttpConnectionManager().getParams().setSoTimeout(READ_TIMEOUT);
         //大约在冬季$$齐秦$$$$
         String clause = name + "$$" + author + "$$$$";
         String uri = LRCConstants.BD_SEARCH_URI + URLEncoder.encode(clause, "GBK");
@@ -240,6 +242,8 @@ public class LRCUtil {
     }
 
     private static final Logger log = Logger.getLogger(LRCUtil.class.getName());
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 10000;
 
     /**
      * 根据歌名和歌手名获取json的歌词对象
@@ -249,16 +253,41 @@ public class LRCUtil {
      * @return
      */
     public static Lyrics getGCMLyrics(String title, String artist) {
-        String url = null;
-		try {
-			artist = ("".equalsIgnoreCase(artist) || null == artist) ? "" : "/" + $(format(artist));
-			url = LRCConstants.GCM_URL + $(format(title)) + artist;
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-			return null;
-		}
+        return getGCMLyrics(LRCConstants.GCM_URL, title, artist);
+    }
+
+    /**
+     * 根据歌名和歌手名从指定的地址获取json的歌词对象
+     *
+     * @param baseUrl 接口地址,像{@link LRCConstants#GCM_URL}那样以/结尾
+     * @param title
+     * @param artist
+     * @return
+     */
+    public static Lyrics getGCMLyrics(String baseUrl, String title, String artist) {
+        try {
+            return readGCMLyrics(baseUrl, title, artist);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 和{@link #getGCMLyrics(java.lang.String, java.lang.String, java.lang.String)}一样,
+     * 只是网络出错的时候抛出来
+     *
+     * @param baseUrl 接口地址,以/结尾
+     * @param title
+     * @param artist
+     * @return 没找到的时候count是0
+     * @throws IOException 连不上,超时或者HTTP出错
+     */
+    public static Lyrics readGCMLyrics(String baseUrl, String title, String artist) throws IOException {
+        artist = ("".equalsIgnoreCase(artist) || null == artist) ? "" : "/" + $(format(artist));
+        String url = baseUrl + $(format(title)) + artist;
         //log.log(Level.INFO, "call url:{0}", url);
-        String content = getContentFormWeb(url);
+        String content = readContentFromWeb(url, "GBK");
         //log.log(Level.INFO, "return jsons :{0}", content);
         Lyrics lys = null;
         if (content != null) {
@@ -369,28 +398,41 @@ public class LRCUtil {
 	 * @return
 	 */
 	public static String getContentFormWeb(String url, String code) {
+        try {
+            return readContentFromWeb(url, code);
+        } catch (IOException exe) {
+            exe.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 和{@link #getContentFormWeb(java.lang.String, java.lang.String)}一样,
+     * 只是网络出错的时候抛出来,好和没找到分开
+     *
+     * @param url url中如果包含中文等必须是经过编码后的地址
+     * @param code 歌词内容编码,null就是UTF-8
+     * @return 内容,url是null的时候是null
+     * @throws IOException 连不上,超时或者HTTP出错
+     */
+    public static String readContentFromWeb(String url, String code) throws IOException {
+        if (url == null) {
+            return null;
+        }
         HttpURLConnection conn = null;
         BufferedReader br = null;
         StringBuilder sb = new StringBuilder();
         try {
-            if (url != null) {
-                //将url加码
-                log.log(Level.INFO, url);
-                //url = $(url);//URLEncoder.encode(url,LRCConstants.UTF8);
-                conn = (HttpURLConnection) new URL(url).openConnection();
-                conn.setConnectTimeout(10000);//10s无返回则链接失败
-                br = new BufferedReader(new InputStreamReader(conn.getInputStream(), code == null ? LRCConstants.UTF8 : code));//UTF-8
-                String temp = null;
-                while ((temp = br.readLine()) != null) {
-                    sb.append(temp).append("\n");
-                }
-            } else {
-                sb = null;
+            log.log(Level.INFO, url);
+            conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT);//10s无返回则链接失败
+            conn.setReadTimeout(READ_TIMEOUT);//连上了但是不回数据也不能一直等
+            br = new BufferedReader(new InputStreamReader(conn.getInputStream(), code == null ? LRCConstants.UTF8 : code));//UTF-8
+            String temp = null;
+            while ((temp = br.readLine()) != null) {
+                sb.append(temp).append("\n");
             }
             return sb.toString();
-        } catch (IOException exe) {
-            exe.printStackTrace();
-            return null;
         } finally {
             try {
                 if (br != null) {
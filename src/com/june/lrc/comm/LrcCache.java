@@ -0,0 +1,178 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.june.lrc.comm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 网络歌词的磁盘缓存,一个查询一个文件
+ * 找到的和没找到的都存,各有各的有效期,过期了就当没有
+ * 每一条是若干个字符串,由调用者决定怎么解释
+ *
+ * @author HappyLove
+ */
+public class LrcCache {
+
+    private static final Logger log = Logger.getLogger(LrcCache.class.getName());
+    private static final int MAGIC = 0x4C524343;//LRCC
+    private static final int MAX_LENGTH = 1 << 22;//坏掉的文件不能让它分配太多内存
+    private static final Charset UTF8 = Charset.forName(LRCConstants.UTF8);
+    private final File dir;
+    private final long positiveTTL;
+    private final long negativeTTL;
+
+    /**
+     * @param dir 缓存目录
+     * @param positiveTTL 找到了的结果保存多少毫秒
+     * @param negativeTTL 没找到的结果保存多少毫秒
+     */
+    public LrcCache(File dir, long positiveTTL, long negativeTTL) {
+        this.dir = dir;
+        this.positiveTTL = positiveTTL;
+        this.negativeTTL = negativeTTL;
+    }
+
+    /**
+     * 查缓存
+     *
+     * @param key 查询
+     * @return 没有或者过期了是null,没找到的结果是空列表
+     */
+    public synchronized List<String> get(String key) {
+        File f = getFile(key);
+        if (!f.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            if (in.readInt() != MAGIC || !key.equals(readString(in))) {
+                return null;
+            }
+            if (in.readLong() < System.currentTimeMillis()) {
+                in.close();
+                in = null;
+                f.delete();
+                return null;
+            }
+            int count = in.readInt();
+            List<String> values = new ArrayList<String>(Math.min(count, 16));
+            for (int i = 0; i < count; i++) {
+                values.add(readString(in));
+            }
+            return values;
+        } catch (IOException ex) {
+            log.log(Level.FINE, "Bad lyric cache " + f, ex);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * 存一个结果,values为空就是没找到
+     *
+     * @param key 查询
+     * @param values 结果
+     */
+    public synchronized void put(String key, List<String> values) {
+        long ttl = values.isEmpty() ? negativeTTL : positiveTTL;
+        if (ttl <= 0) {
+            return;
+        }
+        dir.mkdirs();
+        File f = getFile(key);
+        File temp = new File(dir, f.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            writeString(out, key);
+            out.writeLong(System.currentTimeMillis() + ttl);
+            out.writeInt(values.size());
+            for (String v : values) {
+                writeString(out, v);
+            }
+            out.close();
+            out = null;
+            f.delete();
+            if (!temp.renameTo(f)) {
+                temp.delete();
+            }
+        } catch (IOException ex) {
+            log.log(Level.WARNING, "Cannot write lyric cache " + f, ex);
+            close(out);
+            temp.delete();
+        }
+    }
+
+    /**
+     * 文件名是查询的SHA-1,查询本身也存在文件里,万一撞了也不会拿错
+     */
+    private File getFile(String key) {
+        StringBuilder sb = new StringBuilder(40);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF8));
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+        } catch (NoSuchAlgorithmException ex) {
+            sb.append(Integer.toHexString(key.hashCode()));
+        }
+        return new File(dir, sb.append(".cache").toString());
+    }
+
+    /**
+     * 歌词可能超过writeUTF的64K,自己写长度
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = s.getBytes(UTF8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_LENGTH) {
+            throw new IOException("String too long : " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return new String(data, UTF8);
+    }
+
+    private static void close(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ex) {
+                log.log(Level.FINE, null, ex);
+            }
+        }
+    }
+}
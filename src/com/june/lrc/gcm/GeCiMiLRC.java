@@ -5,12 +5,14 @@
  */
 package com.june.lrc.gcm;
 
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.june.lrc.ILrcDownload;
 import com.june.lrc.bean.Lyric;
 import com.june.lrc.bean.Lyrics;
+import com.june.lrc.comm.LRCConstants;
 import com.june.lrc.comm.LRCUtil;
 
 /**
@@ -20,31 +22,39 @@ import com.june.lrc.comm.LRCUtil;
 public class GeCiMiLRC implements ILrcDownload {
 	
     private static final Logger log = Logger.getLogger(GeCiMiLRC.class.getName());
+    private final String baseUrl;
+
+    public GeCiMiLRC() {
+        this(LRCConstants.GCM_URL);
+    }
+
+    /**
+     * @param baseUrl 歌词迷的接口地址,以/结尾
+     */
+    public GeCiMiLRC(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
 
     public boolean download(String title, String artist) {
         log.log(Level.OFF, "Not supported yet.");
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
-    public String getLrcContent(String title, String artist) {
+    public String getLrcContent(String title, String artist) throws IOException {
         //去第一条数据
         String url = null;
-        try {
-            //url = MessageFormat.format(LRCConstants.GCM_URL_, LRCUtil.$(title), LRCUtil.$(artist));
-            log.log(Level.INFO, "title:{0},artist:{1}", new String[]{title,artist});
-            Lyrics lyrics = getLyrics(title, artist);
-            if (!"0".equals(lyrics.getCount())) {
-                Lyric lrc = lyrics.getResult() == null ? null : lyrics.getResult().get(0);
-                url = lrc == null ? null : lrc.getLrc();
-            }
-        } catch (Exception ex) {
-            Logger.getLogger(GeCiMiLRC.class.getName()).log(Level.SEVERE, null, ex);
+        //url = MessageFormat.format(LRCConstants.GCM_URL_, LRCUtil.$(title), LRCUtil.$(artist));
+        log.log(Level.INFO, "title:{0},artist:{1}", new String[]{title,artist});
+        Lyrics lyrics = getLyrics(title, artist);
+        if (lyrics != null && !"0".equals(lyrics.getCount())) {
+            Lyric lrc = lyrics.getResult() == null || lyrics.getResult().isEmpty() ? null : lyrics.getResult().get(0);
+            url = lrc == null ? null : lrc.getLrc();
         }
-        return LRCUtil.getContentFormWeb(url);
+        return LRCUtil.readContentFromWeb(url, "GBK");
     }
 
-    public Lyrics getLyrics(String title, String artist) {
-        return LRCUtil.getGCMLyrics(title, artist);
+    public Lyrics getLyrics(String title, String artist) throws IOException {
+        return LRCUtil.readGCMLyrics(baseUrl, title, artist);
     }
 
 }